@@ -0,0 +1,57 @@
+package Fuzzcode.Benchmarks;
+
+import Fuzzcode.Server.transportLayer.OutboundMessage;
+import Fuzzcode.Server.utilities.MessageHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// MessageHandler: command lookup, and a full enqueue -> worker -> reply round trip.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DispatchBenchmark {
+
+    private String knownCommand;
+    private String unknownCommand;
+    private String personList;
+
+    @Setup(Level.Trial)
+    public void setUp(ServerFixture f) {
+        knownCommand = f.request("OrderItem.PositionCounts", "{\"orderId\":" + f.orderId + "}");
+        unknownCommand = f.request("Item.Listing", "{}");
+        personList = f.request("Person.List", "{}");
+        MessageHandler.getInstance().startProcessing();
+    }
+
+    @Benchmark
+    public boolean lookupKnown() {
+        return MessageHandler.getInstance().isKnownCommand(knownCommand);
+    }
+
+    @Benchmark
+    public boolean lookupUnknown() {
+        return MessageHandler.getInstance().isKnownCommand(unknownCommand);
+    }
+
+    @Benchmark
+    public OutboundMessage roundTrip() throws Exception {
+        CompletableFuture<OutboundMessage> reply = new CompletableFuture<>();
+        MessageHandler.getInstance().enqueueMessage(personList, reply::complete);
+        return reply.get(5, TimeUnit.SECONDS);
+    }
+}
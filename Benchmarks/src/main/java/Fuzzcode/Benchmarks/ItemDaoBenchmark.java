@@ -0,0 +1,43 @@
+package Fuzzcode.Benchmarks;
+
+import Fuzzcode.Server.dao.ItemDao;
+import Fuzzcode.Server.model.Item;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Tag -> item lookup, straight from the database and through the tag index cache.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ItemDaoBenchmark {
+
+    private final ItemDao itemDao = new ItemDao();
+    private int next;
+
+    private String nextTag(ServerFixture f) {
+        next = (next + 1) % f.tags.length;
+        return f.tags[next];
+    }
+
+    @Benchmark
+    public Item readItemByTag(ServerFixture f) {
+        return itemDao.readItemByTag(nextTag(f), false);
+    }
+
+    @Benchmark
+    public Item readActiveItemByTagCached(ServerFixture f) {
+        return itemDao.readActiveItemByTagCached(nextTag(f));
+    }
+}
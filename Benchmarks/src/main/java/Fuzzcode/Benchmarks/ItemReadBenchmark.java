@@ -0,0 +1,63 @@
+package Fuzzcode.Benchmarks;
+
+import Fuzzcode.Server.model.ItemRead;
+import Fuzzcode.Server.service.ItemReadService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// Tag read ingest: the synchronous path (flushes its own batch) and the async path
+// used by the reader ingest (rides along with the next batch). The async path waits for
+// its reads, one writer batch at a time, so it measures writes and not queueing.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ItemReadBenchmark {
+
+    private static final int OUTSTANDING = 500; // one full batch of the batch writer
+
+    private final ItemReadService service = new ItemReadService();
+    private final Instant start = Instant.now();
+    private int next;
+    private long reads;
+
+    private String nextTag(ServerFixture f) {
+        next = (next + 1) % f.tags.length;
+        return f.tags[next];
+    }
+
+    @Benchmark
+    public ItemRead recordScan(ServerFixture f) {
+        return service.recordScan(nextTag(f), null);
+    }
+
+    // Read times move on faster than the duplicate window, so no read is dropped as a repeat.
+    private Instant nextReadTime() {
+        return start.plusSeconds(3 * ++reads);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OUTSTANDING)
+    public int recordScanAsync(ServerFixture f) {
+        CompletableFuture<?>[] pending = new CompletableFuture<?>[OUTSTANDING];
+        for (int i = 0; i < OUTSTANDING; i++) {
+            pending[i] = service.recordScanAsync("bench", 1, nextTag(f), nextReadTime());
+        }
+        CompletableFuture.allOf(pending).join();
+        return pending.length;
+    }
+}
@@ -0,0 +1,46 @@
+package Fuzzcode.Benchmarks;
+
+import Fuzzcode.Server.transportLayer.OrderItemMessageHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// The per-order views the clients refresh most: items of an order and its position counts.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OrderItemBenchmark {
+
+    private final OrderItemMessageHandler handler = new OrderItemMessageHandler();
+    private String listByOrder;
+    private String positionCounts;
+
+    @Setup(Level.Trial)
+    public void setUp(ServerFixture f) {
+        listByOrder = f.request("OrderItem.ListByOrder", "{\"orderId\":" + f.orderId + "}");
+        positionCounts = f.request("OrderItem.PositionCounts", "{\"orderId\":" + f.orderId + "}");
+    }
+
+    @Benchmark
+    public String listByOrder() {
+        return handler.listByOrder(listByOrder).toText();
+    }
+
+    @Benchmark
+    public String positionCounts() {
+        return handler.positionCounts(positionCounts).toText();
+    }
+}
@@ -0,0 +1,84 @@
+package Fuzzcode.Benchmarks;
+
+import Fuzzcode.Server.db.ConnectionManager;
+import Fuzzcode.Server.db.DatabaseInitializer;
+import Fuzzcode.Server.db.SampleDataSeeder;
+import Fuzzcode.Server.model.Item;
+import Fuzzcode.Server.model.Order;
+import Fuzzcode.Server.service.ItemReadService;
+import Fuzzcode.Server.service.ItemService;
+import Fuzzcode.Server.service.OrderService;
+import Fuzzcode.Server.utilities.LoggerHandler;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Seeded database shared by every benchmark: the sample data set (25 orders of 50-55
+// items, each with a handful of reads) in either an in-memory or a file-backed H2.
+@State(Scope.Benchmark)
+public class ServerFixture {
+
+    @Param({"mem", "file"})
+    public String backend;
+
+    int orderId;          // the largest order
+    int itemId;           // an item of that order, with reads
+    String[] tags;        // every active tag, for lookups and scans
+
+    private Path dir;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        LoggerHandler.setLevel(LoggerHandler.Level.ERROR);
+        String url = switch (backend) {
+            case "mem" -> "jdbc:h2:mem:bench_" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+            case "file" -> {
+                dir = Files.createTempDirectory("fuzzcode-bench");
+                yield "jdbc:h2:file:" + dir.resolve("bench").toAbsolutePath() + ";MODE=MySQL";
+            }
+            default -> throw new IllegalArgumentException("Unknown backend: " + backend);
+        };
+        ConnectionManager.init(url, "admin", "root");
+        DatabaseInitializer.initSchema();
+        SampleDataSeeder.seed();
+
+        OrderService orderService = new OrderService();
+        Order largest = orderService.listActiveOrders().stream()
+                .max(Comparator.comparingInt(o -> orderService.countActiveItems(o.orderId())))
+                .orElseThrow(() -> new IllegalStateException("Seeder created no orders"));
+        orderId = largest.orderId();
+
+        ItemService itemService = new ItemService();
+        itemId = itemService.listItemsForOrder(orderId, false).get(0).itemId();
+        List<Item> items = itemService.listActiveItems();
+        tags = items.stream().map(Item::tagId).toArray(String[]::new);
+
+        // Every scan in a benchmark is meant to reach the database.
+        ItemReadService.dedupWindow().setDefaultWindow(Duration.ZERO);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        ConnectionManager.close();
+        if (dir != null) {
+            try (Stream<Path> files = Files.walk(dir)) {
+                for (Path p : files.sorted(Comparator.reverseOrder()).toList()) Files.deleteIfExists(p);
+            }
+        }
+    }
+
+    String request(String type, String payload) {
+        return type + "\n{\"type\":\"" + type + "\",\"payload\":" + payload + "}";
+    }
+}
@@ -0,0 +1,100 @@
+package Fuzzcode.Benchmarks;
+
+import Fuzzcode.Server.transportLayer.ItemMessageHandler;
+import Fuzzcode.Server.transportLayer.ItemReadMessageHandler;
+import Fuzzcode.Server.transportLayer.OrderItemMessageHandler;
+import Fuzzcode.Server.transportLayer.OrderMessageHandler;
+import Fuzzcode.Server.transportLayer.PersonMessageHandler;
+import Fuzzcode.Server.transportLayer.UserMessageHandler;
+import Fuzzcode.Server.transportLayer.WireFormat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+// One parse -> query -> serialize cycle per transport handler, called directly (no queue).
+// Each result is encoded, since a lazily built reply costs nothing until it is sent.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransportHandlerBenchmark {
+
+    private final ItemMessageHandler items = new ItemMessageHandler();
+    private final ItemReadMessageHandler itemReads = new ItemReadMessageHandler();
+    private final OrderMessageHandler orders = new OrderMessageHandler();
+    private final OrderItemMessageHandler orderItems = new OrderItemMessageHandler();
+    private final PersonMessageHandler persons = new PersonMessageHandler();
+    private final UserMessageHandler users = new UserMessageHandler();
+
+    private String itemList;
+    private String itemReadList;
+    private String itemReadListByItem;
+    private String orderList;
+    private String orderItemList;
+    private String personList;
+    private String userList;
+
+    @Setup(Level.Trial)
+    public void setUp(ServerFixture f) {
+        itemList = f.request("Item.List", "{}");
+        itemReadList = f.request("ItemRead.List", "{\"pageSize\":500}");
+        itemReadListByItem = f.request("ItemRead.ListByItem", "{\"itemId\":" + f.itemId + "}");
+        orderList = f.request("Order.List", "{}");
+        orderItemList = f.request("OrderItem.List", "{}");
+        personList = f.request("Person.List", "{}");
+        userList = f.request("User.List", "{}");
+    }
+
+    @Benchmark
+    public String itemList() {
+        return items.list(itemList).toText();
+    }
+
+    @Benchmark
+    public byte[] itemListCbor() {
+        return items.list(itemList).toBytes(WireFormat.CBOR);
+    }
+
+    @Benchmark
+    public void itemReadList(Blackhole bh) {
+        itemReads.readAll(itemReadList, m -> bh.consume(m.toText()));
+    }
+
+    @Benchmark
+    public String itemReadListByItem() {
+        return itemReads.listByItem(itemReadListByItem).toText();
+    }
+
+    @Benchmark
+    public String orderList() {
+        return orders.list(orderList).toText();
+    }
+
+    @Benchmark
+    public String orderItemList() {
+        return orderItems.list(orderItemList).toText();
+    }
+
+    @Benchmark
+    public String personList() {
+        return persons.list(personList).toText();
+    }
+
+    @Benchmark
+    public String userList() {
+        return users.list(userList).toText();
+    }
+}
@@ -19,16 +19,23 @@ public class ItemClient {
     private final WsClientEndpoint endpoint = WsClientEndpoint.getInstance();
     private static final ObjectMapper JSON = new ObjectMapper();
 
+    // Highest revision applied to the store; Item.Since asks only for what came after it.
+    private volatile long revision;
+
     private ItemClient() {
         endpoint.addTextListener(this::onMessage);
     }
     // === Outgoing ===
+    // First call loads every item, later calls only the changes.
     public void requestAll() {
+        requestSince(revision);
+    }
+    private void requestSince(long fromRevision) {
         try {
             ObjectNode root = JSON.createObjectNode();
-            root.put("type", "Item.List");
-            root.putObject("payload");
-            endpoint.send("Item.List\n" + JSON.writeValueAsString(root));
+            root.put("type", "Item.Since");
+            root.putObject("payload").put("revision", fromRevision);
+            endpoint.send("Item.Since\n" + JSON.writeValueAsString(root));
         } catch (Exception e) { e.printStackTrace(); }
     }
     public void createItem(String tagId, Position position, boolean overdue) {
@@ -85,6 +92,11 @@ public class ItemClient {
                     List<Item> items = parseItems(payload.path("orders"));
                     store.replaceAll(items);
                 }
+                case "Item.Changes" -> {
+                    store.upsertAll(parseItems(payload.path("items")));
+                    revision = Math.max(revision, payload.path("revision").asLong(0));
+                    if (payload.path("more").asBoolean(false)) requestSince(revision);
+                }
                 case "Item.Upsert" -> {
                     Item item = parseItem(payload);
                     if (item != null) store.upsert(item);
@@ -1,74 +1,44 @@
 package Fuzzcode.Client.ui.Item;
 
+import Fuzzcode.Client.ui.models.IndexedStore;
+import Fuzzcode.Client.ui.models.StoreChange;
 import Fuzzcode.Server.model.Item;
 
-import javax.swing.*;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
-public class ItemStore {
+public class ItemStore extends IndexedStore<Integer, Item> {
 
     private static final ItemStore INSTANCE = new ItemStore();
     public static ItemStore getInstance() { return INSTANCE; }
 
-    private ItemStore() {}
+    private ItemStore() {
+        super(Item::itemId, Item::deleted);
+    }
 
-    private final List<Item> items = new ArrayList<>();
-    private final List<Listener> listeners = new ArrayList<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
 
     public interface Listener {
         void onItemsChanged(List<Item> items);
+
+        // Same event with what changed in the batch; override to update rows in place.
+        default void onItemsChanged(List<Item> items, StoreChange<Item> change) {
+            onItemsChanged(items);
+        }
     }
 
     public void addListener(Listener l) { listeners.add(l); }
 
     public List<Item> getItems() {
-        return List.copyOf(items);
-    }
-
-    public void replaceAll(List<Item> newItems) {
-        SwingUtilities.invokeLater(() -> {
-            items.clear();
-            for (Item i : newItems) {
-                if (!i.deleted()) items.add(i);
-            }
-            notifyListeners();
-        });
-    }
-
-    public void upsert(Item item) {
-        SwingUtilities.invokeLater(() -> {
-            if (item.deleted()) {
-                remove(item.itemId());
-                return;
-            }
-            int idx = findIndex(item.itemId());
-            if (idx >= 0) items.set(idx, item);
-            else items.add(item);
-            notifyListeners();
-        });
+        return view();
     }
 
     public void remove(int itemId) {
-        SwingUtilities.invokeLater(() -> {
-            int idx = findIndex(itemId);
-            if (idx >= 0) {
-                items.remove(idx);
-                notifyListeners();
-            }
-        });
+        removeKey(itemId);
     }
 
-    private int findIndex(int itemId) {
-        for (int i = 0; i < items.size(); i++) {
-            if (items.get(i).itemId() == itemId) return i;
-        }
-        return -1;
-    }
-
-    private void notifyListeners() {
-        List<Item> snapshot = List.copyOf(items);
-        for (Listener l : listeners) l.onItemsChanged(snapshot);
+    @Override
+    protected void fire(List<Item> view, StoreChange<Item> change) {
+        for (Listener l : listeners) l.onItemsChanged(view, change);
     }
 }
-
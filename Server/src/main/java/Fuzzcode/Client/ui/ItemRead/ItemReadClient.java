@@ -19,16 +19,25 @@ public class ItemReadClient {
     private final WsClientEndpoint endpoint = WsClientEndpoint.getInstance();
     private static final ObjectMapper JSON = new ObjectMapper();
 
+    // Pages of a streamed ItemRead.List, applied to the store once the end marker arrives.
+    private List<ItemRead> snapshotBuffer = new ArrayList<>();
+    // Highest revision applied to the store; ItemRead.Since asks only for what came after it.
+    private volatile long revision;
+
     private ItemReadClient() {
         endpoint.addTextListener(this::onMessage);
     }
     // === Outgoing ===
+    // First call loads every active read, later calls only the changes.
     public void requestAll() {
+        requestSince(revision);
+    }
+    private void requestSince(long fromRevision) {
         try {
             ObjectNode root = JSON.createObjectNode();
-            root.put("type", "ItemRead.List");
-            root.putObject("payload");
-            endpoint.send("ItemRead.List\n" + JSON.writeValueAsString(root));
+            root.put("type", "ItemRead.Since");
+            root.putObject("payload").put("revision", fromRevision);
+            endpoint.send("ItemRead.Since\n" + JSON.writeValueAsString(root));
         } catch (Exception e) { e.printStackTrace(); }
     }
     public void createRead(String tagId, String readTimeIso) {
@@ -81,10 +90,26 @@ public class ItemReadClient {
             JsonNode payload = root.path("payload");
 
             switch (type) {
+                case "ItemRead.SnapshotChunk" -> {
+                    if (payload.path("seq").asInt(0) == 0) snapshotBuffer = new ArrayList<>();
+                    snapshotBuffer.addAll(parseReads(payload.path("reads")));
+                }
+                case "ItemRead.SnapshotEnd" -> {
+                    List<ItemRead> list = snapshotBuffer;
+                    snapshotBuffer = new ArrayList<>();
+                    store.replaceAll(list);
+                }
                 case "ItemRead.Snapshot" -> {
                     List<ItemRead> list = parseReads(payload.path("orders")); // your schema uses "orders"
                     store.replaceAll(list);
                 }
+                case "ItemRead.Changes" -> {
+                    String oldest = payload.path("oldest").asText(null);
+                    store.upsertAll(parseReads(payload.path("reads")),
+                            oldest != null && !oldest.isBlank() ? Instant.parse(oldest) : null);
+                    revision = Math.max(revision, payload.path("revision").asLong(0));
+                    if (payload.path("more").asBoolean(false)) requestSince(revision);
+                }
                 case "ItemRead.Upsert" -> {
                     ItemRead r = parseRead(payload);
                     if (r != null) store.upsert(r);
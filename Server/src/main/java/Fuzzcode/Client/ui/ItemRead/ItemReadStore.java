@@ -1,74 +1,52 @@
 package Fuzzcode.Client.ui.ItemRead;
 
+import Fuzzcode.Client.ui.models.IndexedStore;
+import Fuzzcode.Client.ui.models.StoreChange;
 import Fuzzcode.Server.model.ItemRead;
 
-import javax.swing.*;
-import java.util.ArrayList;
+import java.time.Instant;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
-public class ItemReadStore {
+public class ItemReadStore extends IndexedStore<Integer, ItemRead> {
 
     private static final ItemReadStore INSTANCE = new ItemReadStore();
     public static ItemReadStore getInstance() { return INSTANCE; }
 
-    private ItemReadStore() {}
+    private ItemReadStore() {
+        super(ItemRead::readId, ItemRead::deleted);
+    }
 
-    private final List<ItemRead> reads = new ArrayList<>();
-    private final List<Listener> listeners = new ArrayList<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
 
     public interface Listener {
         void onReadsChanged(List<ItemRead> reads);
+
+        // Same event with what changed in the batch; override to update rows in place.
+        default void onReadsChanged(List<ItemRead> reads, StoreChange<ItemRead> change) {
+            onReadsChanged(reads);
+        }
     }
 
     public void addListener(Listener l) { listeners.add(l); }
 
     public List<ItemRead> getReads() {
-        return List.copyOf(reads);
-    }
-
-    public void replaceAll(List<ItemRead> newReads) {
-        SwingUtilities.invokeLater(() -> {
-            reads.clear();
-            for (ItemRead r : newReads) {
-                if (!r.deleted()) reads.add(r);
-            }
-            notifyListeners();
-        });
-    }
-
-    public void upsert(ItemRead r) {
-        SwingUtilities.invokeLater(() -> {
-            if (r.deleted()) {
-                remove(r.readId());
-                return;
-            }
-            int idx = findIndex(r.readId());
-            if (idx >= 0) reads.set(idx, r);
-            else reads.add(r);
-            notifyListeners();
-        });
+        return view();
     }
 
     public void remove(int readId) {
-        SwingUtilities.invokeLater(() -> {
-            int idx = findIndex(readId);
-            if (idx >= 0) {
-                reads.remove(idx);
-                notifyListeners();
-            }
-        });
+        removeKey(readId);
     }
 
-    private int findIndex(int readId) {
-        for (int i = 0; i < reads.size(); i++) {
-            if (reads.get(i).readId() == readId) return i;
-        }
-        return -1;
+    // Delta sync: like upsertAll, and reads from before `archivedBefore` are dropped as well
+    // (the server archived them, so no tombstone will come). Null keeps them all.
+    public void upsertAll(List<ItemRead> changed, Instant archivedBefore) {
+        if (archivedBefore != null) removeIf(r -> r.readTime().isBefore(archivedBefore));
+        upsertAll(changed);
     }
 
-    private void notifyListeners() {
-        List<ItemRead> snapshot = List.copyOf(reads);
-        for (Listener l : listeners) l.onReadsChanged(snapshot);
+    @Override
+    protected void fire(List<ItemRead> view, StoreChange<ItemRead> change) {
+        for (Listener l : listeners) l.onReadsChanged(view, change);
     }
 }
-
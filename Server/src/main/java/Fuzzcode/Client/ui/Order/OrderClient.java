@@ -19,6 +19,9 @@ public class OrderClient {
 
     private static final ObjectMapper JSON = new ObjectMapper();
 
+    // Highest revision applied to the store; Order.Since asks only for what came after it.
+    private volatile long revision;
+
     private OrderClient() {
         endpoint.addTextListener(this::onMessage);
     }
@@ -26,14 +29,18 @@ public class OrderClient {
     public static OrderClient getInstance() { return INSTANCE; }
 
     // === Outgoing ===
+    // First call loads every order, later calls (reconnect, refresh) only the changes.
     public void requestAll() {
+        requestSince(revision);
+    }
+    private void requestSince(long fromRevision) {
         try {
             ObjectNode root = JSON.createObjectNode();
-            root.put("type", "Order.List");
-            root.putObject("payload"); // empty {}
+            root.put("type", "Order.Since");
+            root.putObject("payload").put("revision", fromRevision);
 
             String json = JSON.writeValueAsString(root);
-            endpoint.send("Order.List\n" + json);
+            endpoint.send("Order.Since\n" + json);
         } catch (Exception e) {
             e.printStackTrace(); // or LoggerHandler.log(...)
         }
@@ -119,6 +126,11 @@ public class OrderClient {
                     List<Order> orders = parseOrders(payload.path("orders"));
                     store.replaceAll(orders);
                 }
+                case "Order.Changes" -> {
+                    store.upsertAll(parseOrders(payload.path("orders")));
+                    revision = Math.max(revision, payload.path("revision").asLong(0));
+                    if (payload.path("more").asBoolean(false)) requestSince(revision);
+                }
                 case "Order.Upsert" -> {
                     Order order = parseOrder(payload.path("order"));
                     if (order != null) {
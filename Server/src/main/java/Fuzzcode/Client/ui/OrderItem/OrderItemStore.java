@@ -1,75 +1,50 @@
 package Fuzzcode.Client.ui.OrderItem;
 
+import Fuzzcode.Client.ui.models.IndexedStore;
+import Fuzzcode.Client.ui.models.StoreChange;
 import Fuzzcode.Server.model.OrderItem;
 
-import javax.swing.*;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
-public class OrderItemStore {
+public class OrderItemStore extends IndexedStore<OrderItemStore.Key, OrderItem> {
 
     private static final OrderItemStore INSTANCE = new OrderItemStore();
     public static OrderItemStore getInstance() { return INSTANCE; }
 
-    private OrderItemStore() {}
+    private OrderItemStore() {
+        super(Key::of, OrderItem::deleted);
+    }
 
-    private final List<OrderItem> relations = new ArrayList<>();
-    private final List<Listener> listeners = new ArrayList<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
 
     public interface Listener {
         void onOrderItemsChanged(List<OrderItem> orderItems);
+
+        // Same event with what changed in the batch; override to update rows in place.
+        default void onOrderItemsChanged(List<OrderItem> orderItems, StoreChange<OrderItem> change) {
+            onOrderItemsChanged(orderItems);
+        }
     }
 
     public void addListener(Listener l) { listeners.add(l); }
 
     public List<OrderItem> getOrderItems() {
-        return List.copyOf(relations);
-    }
-
-    public void replaceAll(List<OrderItem> list) {
-        SwingUtilities.invokeLater(() -> {
-            relations.clear();
-            for (OrderItem oi : list) {
-                if (!oi.deleted()) relations.add(oi);
-            }
-            notifyListeners();
-        });
-    }
-
-    public void upsert(OrderItem oi) {
-        SwingUtilities.invokeLater(() -> {
-            if (oi.deleted()) {
-                remove(oi.orderId(), oi.itemId());
-                return;
-            }
-            int idx = findIndex(oi.orderId(), oi.itemId());
-            if (idx >= 0) relations.set(idx, oi);
-            else relations.add(oi);
-            notifyListeners();
-        });
+        return view();
     }
 
     public void remove(int orderId, int itemId) {
-        SwingUtilities.invokeLater(() -> {
-            int idx = findIndex(orderId, itemId);
-            if (idx >= 0) {
-                relations.remove(idx);
-                notifyListeners();
-            }
-        });
+        removeKey(new Key(orderId, itemId));
     }
 
-    private int findIndex(int orderId, int itemId) {
-        for (int i = 0; i < relations.size(); i++) {
-            OrderItem oi = relations.get(i);
-            if (oi.orderId() == orderId && oi.itemId() == itemId) return i;
+    public record Key(int orderId, int itemId) {
+        static Key of(OrderItem oi) {
+            return new Key(oi.orderId(), oi.itemId());
         }
-        return -1;
     }
 
-    private void notifyListeners() {
-        List<OrderItem> snapshot = List.copyOf(relations);
-        for (Listener l : listeners) l.onOrderItemsChanged(snapshot);
+    @Override
+    protected void fire(List<OrderItem> view, StoreChange<OrderItem> change) {
+        for (Listener l : listeners) l.onOrderItemsChanged(view, change);
     }
 }
-
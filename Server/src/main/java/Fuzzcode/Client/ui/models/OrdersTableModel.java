@@ -4,9 +4,9 @@ import Fuzzcode.Server.model.Order;
 import Fuzzcode.Client.ui.Order.OrderStore;
 
 import javax.swing.table.AbstractTableModel;
-import javax.swing.SwingUtilities;
-import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class OrdersTableModel extends AbstractTableModel implements OrderStore.Listener {
 
@@ -18,20 +18,44 @@ public class OrdersTableModel extends AbstractTableModel implements OrderStore.L
     public static final int COL_LOGGED_BY   = 5;
     public static final int COL_DELETED     = 6; // optional, or HOME_COUNT etc
 
-    private final List<Order> rows = new ArrayList<>();
+    // The store's view (immutable, deleted orders already filtered out) and orderId -> row.
+    private List<Order> rows = List.of();
+    private final Map<Integer, Integer> rowOf = new HashMap<>();
 
     public OrdersTableModel() {
         OrderStore.getInstance().addListener(this);
     }
 
-    // Called by OrderStore whenever its orders change
+    // Called by OrderStore on the EDT whenever its orders change
     @Override
     public void onOrdersChanged(List<Order> orders) {
-        SwingUtilities.invokeLater(() -> {
-            rows.clear();
-            rows.addAll(orders);  // store already filtered out deleted()
-            fireTableDataChanged();
-        });
+        rows = orders;
+        reindex(0);
+        fireTableDataChanged();
+    }
+
+    // Updated orders keep their row and new ones are appended, so only those rows repaint.
+    @Override
+    public void onOrdersChanged(List<Order> orders, StoreChange<Order> change) {
+        if (change.isStructural()) {
+            onOrdersChanged(orders);
+            return;
+        }
+        int before = rows.size();
+        rows = orders;
+        for (Order o : change.updated()) {
+            Integer row = rowOf.get(o.orderId());
+            if (row != null) fireTableRowsUpdated(row, row);
+        }
+        if (rows.size() > before) {
+            reindex(before);
+            fireTableRowsInserted(before, rows.size() - 1);
+        }
+    }
+
+    private void reindex(int from) {
+        if (from == 0) rowOf.clear();
+        for (int i = from; i < rows.size(); i++) rowOf.put(rows.get(i).orderId(), i);
     }
 
     public Integer getOrderIdAtModelRow(int modelRow) {
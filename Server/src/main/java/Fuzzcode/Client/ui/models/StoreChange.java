@@ -0,0 +1,20 @@
+package Fuzzcode.Client.ui.models;
+
+import java.util.List;
+
+// What one batch did to an IndexedStore. Applied in this order it turns the previous view
+// into the new one: `removed` rows leave, `updated` rows are replaced where they are and
+// `added` rows are appended. After a `reset` the view was rebuilt and only it counts.
+public record StoreChange<T>(boolean reset, List<T> added, List<T> updated, List<T> removed) {
+
+    public StoreChange {
+        added = List.copyOf(added);
+        updated = List.copyOf(updated);
+        removed = List.copyOf(removed);
+    }
+
+    // Row positions moved: table models must refresh instead of updating rows in place.
+    public boolean isStructural() {
+        return reset || !removed.isEmpty();
+    }
+}
@@ -1,18 +1,26 @@
 package Fuzzcode;
 
 import Fuzzcode.Server.broker.BrokerHandler;
+import Fuzzcode.Server.cache.PositionCounters;
+import Fuzzcode.Server.cache.TagIndexCache;
+import Fuzzcode.Server.dao.ItemDao;
 import Fuzzcode.Server.db.ConnectionManager;
+import Fuzzcode.Server.db.ConnectionPool;
 import Fuzzcode.Server.db.DatabaseInitializer;
+import Fuzzcode.Server.db.SqlDialect;
+import Fuzzcode.Server.service.ItemReadRetention;
 import Fuzzcode.Client.ui.Components.MainUI;
 import Fuzzcode.Client.ui.styles.Styles;
 import Fuzzcode.Server.utilities.LoggerHandler;
 import Fuzzcode.Server.utilities.MessageHandler;
+import Fuzzcode.Server.utilities.OverflowPolicy;
 import Fuzzcode.Server.websocketServer.WsServerHandler;
 
 import javax.swing.*;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.time.Duration;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -24,12 +32,24 @@ public class Main {
         LoggerHandler.log("=== START Main ====");
 
         try {
+            // -Ddb.url=jdbc:sqlserver://... moves off the embedded H2 file; the dialect follows
+            // the URL unless -Ddb.dialect=h2|mssql says otherwise.
+            String dialect = System.getProperty("db.dialect");
+            if (dialect != null) ConnectionManager.setDialect(SqlDialect.parse(dialect));
+            // -Ddb.leakTrace=true: leak warnings carry the stack of the borrowing call.
+            if (Boolean.getBoolean("db.leakTrace")) {
+                ConnectionManager.setPoolConfig(ConnectionPool.Config.defaults().withLeakTrace(true));
+            }
             ConnectionManager.init(
-                    "jdbc:h2:file:./data/prod_db;MODE=MySQL;AUTO_SERVER=TRUE",
-                    "admin",
-                    "root"
+                    System.getProperty("db.url", "jdbc:h2:file:./data/prod_db;MODE=MySQL;AUTO_SERVER=TRUE"),
+                    System.getProperty("db.user", "admin"),
+                    System.getProperty("db.pass", "root")
             );
             DatabaseInitializer.initSchema();
+            ItemDao itemDao = new ItemDao();
+            TagIndexCache.getInstance().warm(itemDao.listAll(false));
+            PositionCounters.getInstance().startReconciliation(Duration.ofMinutes(5), itemDao::listActivePlacements);
+            ItemReadRetention.getInstance().start(Duration.ofHours(1));
             LoggerHandler.log("Connection Manager Initialized");
 
         } catch (Exception e) {
@@ -45,6 +65,14 @@ public class Main {
 
         MessageHandler MesH = MessageHandler.getInstance();
         try {
+            // -Dmessages.virtualThreads=true: one (virtual) thread per command, as many
+            // in the handlers at once as the connection pool has connections.
+            if (Boolean.getBoolean("messages.virtualThreads")) {
+                MesH.configureExecution(MessageHandler.ExecutionMode.VIRTUAL_THREADS, 0);
+            }
+            // -Dmessages.overflow=block|drop_oldest_read|reject: what a full message queue does.
+            String overflow = System.getProperty("messages.overflow");
+            if (overflow != null) MesH.configureOverflow(OverflowPolicy.valueOf(overflow.trim().toUpperCase()));
             MesH.startProcessing();
             LoggerHandler.log("MessageHandler Initialized");
 
@@ -56,7 +84,6 @@ public class Main {
         BrokerHandler brokerHandler = new BrokerHandler();
         try {
             brokerHandler.startBroker();
-            brokerHandler.startSubscriber("PC", "FXR90CBBF41/data/read");
             LoggerHandler.log("BrokerHandler Initialized");
         } catch (Exception e) {
             e.printStackTrace();
@@ -1,27 +1,38 @@
 package Fuzzcode.Server.apiEndpoint;
 
 import Fuzzcode.Server.security.JwtAuthenticator;
-import Fuzzcode.Server.service.UserService;
-import org.mindrot.jbcrypt.BCrypt;
+import Fuzzcode.Server.service.LoginService;
+import Fuzzcode.Server.utilities.LoggerHandler;
 
+import jakarta.servlet.AsyncContext;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 import java.io.IOException;
 
+// Asynchronous: the request thread only validates and hands the password check to
+// LoginService; the response is written from the hashing thread when it is done.
+// Needs asyncSupported on the servlet holder.
 public class LoginServlet extends HttpServlet {
 
+    private static final long TIMEOUT_MILLIS = 15_000;
+
     private final JwtAuthenticator jwtAuth;
+    private final LoginService loginService;
 
     public LoginServlet(JwtAuthenticator jwtAuth) {
+        this(jwtAuth, new LoginService());
+    }
+
+    public LoginServlet(JwtAuthenticator jwtAuth, LoginService loginService) {
         this.jwtAuth = jwtAuth;
+        this.loginService = loginService;
     }
 
     @Override
     protected void doPost(HttpServletRequest req, HttpServletResponse resp)
             throws IOException {
-        UserService userService = new UserService();
         String username = req.getParameter("username");
         String password = req.getParameter("password");
 
@@ -33,28 +44,56 @@ public class LoginServlet extends HttpServlet {
             return;
         }
 
-        var user = userService.getByUsername(username);
-        if (user == null || !BCrypt.checkpw(password, user.passwordHash())) {
-            unauthorized(resp, "invalid credentials");
-            return;
-        }
-
-        String role = user.role().name(); // or however your AppUser exposes it
+        AsyncContext async = req.startAsync();
+        async.setTimeout(TIMEOUT_MILLIS);
+        loginService.authenticate(username, password, req.getRemoteAddr())
+                .whenComplete((result, err) -> {
+                    HttpServletResponse r = (HttpServletResponse) async.getResponse();
+                    try {
+                        if (err != null) {
+                            LoggerHandler.log(LoggerHandler.Level.ERROR, "Login failed: " + err);
+                            error(r, HttpServletResponse.SC_SERVICE_UNAVAILABLE, "unavailable");
+                        } else {
+                            respond(r, username, result);
+                        }
+                    } catch (IOException | IllegalStateException e) {
+                        // Client gone or the request timed out in the meantime
+                        LoggerHandler.log(LoggerHandler.Level.WARNING, "Could not write login response: " + e.getMessage());
+                    } finally {
+                        try { async.complete(); } catch (IllegalStateException ignore) {}
+                    }
+                });
+    }
 
-        String token = jwtAuth.issueToken(
-                username,
-                role,
-                3600
-        );
+    @Override
+    public void destroy() {
+        loginService.close();
+    }
 
-        resp.setStatus(HttpServletResponse.SC_OK);
-        resp.setContentType("application/json");
-        resp.getWriter().write("{\"REGISTER\":\"" + token + "\"}");
+    private void respond(HttpServletResponse resp, String username, LoginService.Result result) throws IOException {
+        switch (result.outcome()) {
+            case OK -> {
+                String role = result.user().role().name();
+                String token = jwtAuth.issueToken(username, role, 3600);
+                resp.setStatus(HttpServletResponse.SC_OK);
+                resp.setContentType("application/json");
+                resp.getWriter().write("{\"REGISTER\":\"" + token + "\"}");
+            }
+            case INVALID -> error(resp, HttpServletResponse.SC_UNAUTHORIZED, "invalid credentials");
+            case RATE_LIMITED -> {
+                resp.setHeader("Retry-After", String.valueOf(loginService.rateWindow().toSeconds()));
+                error(resp, 429, "too many attempts");
+            }
+            case BUSY -> {
+                resp.setHeader("Retry-After", "1");
+                error(resp, HttpServletResponse.SC_SERVICE_UNAVAILABLE, "busy");
+            }
+            case UNAVAILABLE -> error(resp, HttpServletResponse.SC_SERVICE_UNAVAILABLE, "unavailable");
+        }
     }
-    private void unauthorized(HttpServletResponse resp, String msg) throws IOException {
-        resp.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+    private void error(HttpServletResponse resp, int status, String msg) throws IOException {
+        resp.setStatus(status);
         resp.setContentType("application/json");
         resp.getWriter().write("{\"ERROR\":\"" + msg + "\"}");
     }
 }
-
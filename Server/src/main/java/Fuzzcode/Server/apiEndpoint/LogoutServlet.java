@@ -0,0 +1,42 @@
+package Fuzzcode.Server.apiEndpoint;
+
+import Fuzzcode.Server.security.JwtAuthenticator;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+
+// POST /api/logout with "Authorization: Bearer <token>": the token can no longer open
+// WebSocket sessions, even though it has not expired yet.
+public class LogoutServlet extends HttpServlet {
+
+    private final JwtAuthenticator jwtAuth;
+
+    public LogoutServlet(JwtAuthenticator jwtAuth) {
+        this.jwtAuth = jwtAuth;
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp)
+            throws IOException {
+        String auth = req.getHeader("Authorization");
+        String token = (auth != null && auth.startsWith("Bearer "))
+                ? auth.substring("Bearer ".length()).trim() : null;
+
+        resp.setContentType("application/json");
+        if (token == null || token.isBlank()) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            resp.getWriter().write("{\"ERROR\":\"missing token\"}");
+            return;
+        }
+        if (!jwtAuth.revoke(token)) {
+            resp.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+            resp.getWriter().write("{\"ERROR\":\"invalid token\"}");
+            return;
+        }
+        resp.setStatus(HttpServletResponse.SC_OK);
+        resp.getWriter().write("{\"LOGOUT\":\"ok\"}");
+    }
+}
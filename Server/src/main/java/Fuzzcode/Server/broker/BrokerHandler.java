@@ -1,32 +1,40 @@
 package Fuzzcode.Server.broker;
 
+import Fuzzcode.Server.service.ItemReadBatchWriter;
+import Fuzzcode.Server.utilities.Backpressure;
 import Fuzzcode.Server.utilities.LoggerHandler;
 import Fuzzcode.Server.utilities.MessageHandler;
 import io.netty.handler.codec.mqtt.MqttQoS;
+import io.vertx.core.Context;
 import io.vertx.core.Vertx;
 import io.vertx.mqtt.MqttEndpoint;
 import io.vertx.mqtt.MqttServer;
 import io.vertx.mqtt.MqttServerOptions;
 import io.vertx.mqtt.MqttTopicSubscription;
-import org.eclipse.paho.client.mqttv3.*;
+import io.vertx.mqtt.messages.MqttPublishMessage;
 
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 
-public class BrokerHandler implements MqttCallback {
+public class BrokerHandler {
 
     private static final String HOST = "0.0.0.0";
     private static final int PORT = 1883;
-    private MqttClient client;
+    private final ReaderIngest readerIngest = ReaderIngest.getInstance();
+    private Vertx vertx;
+    private MqttServer mqttServer;
 
     public void startBroker() {
+        startBroker(PORT);
+    }
+    public void startBroker(int port) {
         LoggerHandler.log("=== START startBroker ===");
-        Vertx vertx = Vertx.vertx();
+        vertx = Vertx.vertx();
         MqttServerOptions opts = new MqttServerOptions()
                 .setHost(HOST)
-                .setPort(PORT);
+                .setPort(port);
 
-        MqttServer mqttServer = MqttServer.create(vertx, opts);
+        mqttServer = MqttServer.create(vertx, opts);
 
         mqttServer
                 .endpointHandler(this::handleClientConnection)
@@ -38,9 +46,12 @@ public class BrokerHandler implements MqttCallback {
                 .toCompletableFuture()
                 .join();
 
-        LoggerHandler.log("MQTT Broker started on tcp://" + HOST + ":" + PORT);
+        LoggerHandler.log("MQTT Broker started on tcp://" + HOST + ":" + mqttServer.actualPort());
         LoggerHandler.log("=== END startBroker ===");
     }
+    public int port() {
+        return mqttServer != null ? mqttServer.actualPort() : PORT;
+    }
     private void handleClientConnection(MqttEndpoint endpoint) {
         LoggerHandler.log("=== START handleClientConnection ===");
         LoggerHandler.log("Client connected: " + endpoint.clientIdentifier());
@@ -59,60 +70,61 @@ public class BrokerHandler implements MqttCallback {
             endpoint.subscribeAcknowledge(sub.messageId(), grantedQosLevels);
         });
 
+        Context context = vertx.getOrCreateContext();
         endpoint.publishHandler(message -> {
-            String payload = message.payload().toString(StandardCharsets.UTF_8);
-            LoggerHandler.log("Inbound: " + message.topicName() + " : " + payload);
-
-            MessageHandler.getInstance().enqueueMessage("BROKER " + payload);
-
-            endpoint.publishAcknowledge(message.messageId());
+            Backpressure pressure = onPublish(message);
+            int id = message.messageId();
+            switch (message.qosLevel()) {
+                case AT_LEAST_ONCE -> acknowledgeWhenDrained(context, endpoint, pressure, () -> endpoint.publishAcknowledge(id));
+                case EXACTLY_ONCE -> acknowledgeWhenDrained(context, endpoint, pressure, () -> endpoint.publishReceived(id));
+                default -> { }
+            }
         });
+        endpoint.publishReleaseHandler(endpoint::publishComplete);
         LoggerHandler.log("=== END handleClientConnection ===");
 
     }
-    public void startSubscriber(String clientId, String topic) throws Exception {
-        LoggerHandler.log("=== START startSubscriber ===");
-        client = new MqttClient("tcp://" + HOST + ":" + PORT, clientId, null);
-
-        MqttConnectOptions options = new MqttConnectOptions();
-        options.setKeepAliveInterval(60);
-        options.setCleanSession(true);
-
-        client.setCallback(this);
-        client.connect(options);
-
-        client.subscribe(topic, 0);
-        LoggerHandler.log("Subscribed to topic: " + topic);
-        LoggerHandler.log("=== END startSubscriber ===");
-    }
-    public void publish(String topic, String msg) throws Exception {
-        LoggerHandler.log("=== START publish ===");
-        client.publish(topic, msg.getBytes(StandardCharsets.UTF_8), 0, false);
-        LoggerHandler.log("=== END publish ===");
-    }
-    @Override
-    public void connectionLost(Throwable cause) {
-        LoggerHandler.log("=== START connectionLost ===");
-        LoggerHandler.log("Connection lost!!!!");
-        LoggerHandler.log("=== END connectionLost ===");
+    // Runs on the event loop. Reader traffic goes straight into the ingest pipeline;
+    // anything else that carries a known command is queued like a WebSocket request.
+    // Returns the queue the publish went to, for the acknowledgement.
+    private Backpressure onPublish(MqttPublishMessage message) {
+        String topic = message.topicName();
+        if (ReaderIngest.isReadTopic(topic)) {
+            readerIngest.ingest(topic, message.payload().getBytes());
+            return ItemReadBatchWriter.getInstance().pressure();
+        }
+        String payload = message.payload().toString(StandardCharsets.UTF_8);
+        MessageHandler handler = MessageHandler.getInstance();
+        if (handler.isKnownCommand(payload)) {
+            // Never block the event loop; the held-back acks below slow the client down instead.
+            if (!handler.offerMessage(payload, null)) {
+                LoggerHandler.log(LoggerHandler.Level.WARNING, "Message queue full, dropped MQTT publish on " + topic);
+            }
+        } else {
+            LoggerHandler.log(LoggerHandler.Level.WARNING, "Unhandled MQTT publish on " + topic);
+        }
+        return handler.pressure();
     }
-    @Override
-    public void messageArrived(String topic, MqttMessage message) {
-        LoggerHandler.log("=== START messageArrived ===");
-        MessageHandler.getInstance().enqueueMessage("BROKER " + new String(message.getPayload()));
-        LoggerHandler.log("=== END messageArrived ===");
+
+    // Backpressure for MQTT: while the queue is busy, PUBACK/PUBREC are held back. A client
+    // stops publishing once its in-flight window is full of unacknowledged messages.
+    private static void acknowledgeWhenDrained(Context context, MqttEndpoint endpoint, Backpressure pressure, Runnable ack) {
+        if (!pressure.isBusy()) {
+            ack.run();
+            return;
+        }
+        pressure.whenDrained(() -> context.runOnContext(v -> {
+            if (endpoint.isConnected()) ack.run();
+        }));
     }
-    @Override
-    public void deliveryComplete(IMqttDeliveryToken token) { }
     public void stopBroker() {
         LoggerHandler.log("=== START stopBroker ===");
-        if (client != null) {
-            try {
-                System.out.println("Stopping Broker...");
-                client.disconnect();
-            } catch (Exception e) {
-                System.err.println("Failed to stop Broker: " + e.getMessage());
-            }
+        try {
+            System.out.println("Stopping Broker...");
+            if (mqttServer != null) mqttServer.close().toCompletionStage().toCompletableFuture().join();
+            if (vertx != null) vertx.close().toCompletionStage().toCompletableFuture().join();
+        } catch (Exception e) {
+            System.err.println("Failed to stop Broker: " + e.getMessage());
         }
         LoggerHandler.log("=== END stopBroker ===");
     }
@@ -0,0 +1,224 @@
+package Fuzzcode.Server.broker;
+
+import Fuzzcode.Server.service.ItemReadService;
+import Fuzzcode.Server.transportLayer.ChangeFeed;
+import Fuzzcode.Server.transportLayer.OutboundMessage;
+import Fuzzcode.Server.transportLayer.WireWriter;
+import Fuzzcode.Server.utilities.LoggerHandler;
+import tools.jackson.core.JsonParser;
+import tools.jackson.core.JsonToken;
+import tools.jackson.databind.ObjectMapper;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoField;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Reader ingest: turns tag-read publishes from the RFID readers ("<reader>/data/read")
+// into ItemReads. Runs on the MQTT event loop, so it only decodes (streaming, no tree),
+// drops duplicates in memory and offers each read to the batched ItemRead writer. The
+// writer thread checks the tag; a full queue rejects or drops instead of waiting.
+// Stored reads go out on the ChangeFeed like ItemReads created over the WebSocket.
+//
+// Accepts the reader's data events, one object or an array of them:
+//   { "timestamp": "2025-11-11T10:15:30.123+0000", "type": "SIMPLE",
+//     "data": { "idHex": "E280...", "antenna": 1, "peakRssi": -52, ... } }
+public final class ReaderIngest {
+
+    private static final ReaderIngest INSTANCE = new ReaderIngest();
+    public static final String READ_TOPIC_SUFFIX = "/data/read";
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    // Readers send "+0000" offsets, which the ISO parsers reject.
+    private static final DateTimeFormatter READER_TIME = new DateTimeFormatterBuilder()
+            .appendPattern("uuuu-MM-dd'T'HH:mm:ss")
+            .optionalStart().appendFraction(ChronoField.NANO_OF_SECOND, 0, 9, true).optionalEnd()
+            .appendPattern("[XXX][XX]")
+            .toFormatter();
+
+    public record TagRead(String tagId, int antenna, Instant readTime) {}
+
+    public record ReaderStats(
+            String readerId,
+            long messages,
+            long tagReads,
+            long stored,
+            long dropped,      // duplicate or unknown tag
+            long failed,
+            long decodeErrors,
+            long readsLastSecond,
+            Instant lastSeen
+    ) {}
+
+    private static final class Counters {
+        final LongAdder messages = new LongAdder();
+        final LongAdder tagReads = new LongAdder();
+        final LongAdder stored = new LongAdder();
+        final LongAdder dropped = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        final LongAdder decodeErrors = new LongAdder();
+        final AtomicLong lastSeenMillis = new AtomicLong();
+        // Reads per wall-clock second: the running second and the one before it.
+        long second;
+        long inSecond;
+        long previousSecond;
+
+        synchronized void countReads(long nowMillis, int n) {
+            long s = nowMillis / 1000;
+            if (s != second) {
+                previousSecond = s == second + 1 ? inSecond : 0;
+                second = s;
+                inSecond = 0;
+            }
+            inSecond += n;
+        }
+
+        synchronized long readsLastSecond(long nowMillis) {
+            long s = nowMillis / 1000;
+            if (s == second) return previousSecond;
+            return s == second + 1 ? inSecond : 0;
+        }
+    }
+
+    private final Map<String, Counters> readers = new ConcurrentHashMap<>();
+    private final ItemReadService itemReadService = new ItemReadService();
+    private final ChangeFeed changeFeed = ChangeFeed.getInstance();
+
+    private ReaderIngest() {}
+
+    public static ReaderIngest getInstance() {
+        return INSTANCE;
+    }
+
+    public static boolean isReadTopic(String topic) {
+        return topic != null && topic.endsWith(READ_TOPIC_SUFFIX);
+    }
+
+    // "FXR90CBBF41/data/read" -> "FXR90CBBF41"
+    public static String readerIdOf(String topic) {
+        int slash = topic.indexOf('/');
+        return slash > 0 ? topic.substring(0, slash) : topic;
+    }
+
+    // Decodes one publish and queues its reads; returns how many reads it carried.
+    public int ingest(String topic, byte[] payload) {
+        String readerId = readerIdOf(topic);
+        Counters c = readers.computeIfAbsent(readerId, r -> new Counters());
+        long now = System.currentTimeMillis();
+        c.messages.increment();
+        c.lastSeenMillis.set(now);
+
+        List<TagRead> reads;
+        try {
+            reads = decode(payload);
+        } catch (RuntimeException e) {
+            c.decodeErrors.increment();
+            LoggerHandler.log(LoggerHandler.Level.WARNING, "Undecodable read from " + readerId + ": " + e.getMessage());
+            return 0;
+        }
+
+        c.tagReads.add(reads.size());
+        c.countReads(now, reads.size());
+        for (TagRead r : reads) {
+            itemReadService.recordScanAsync(readerId, r.antenna(), r.tagId(), r.readTime())
+                    .whenComplete((read, err) -> {
+                        if (err != null) c.failed.increment();
+                        else if (read == null) c.dropped.increment();
+                        else {
+                            c.stored.increment();
+                            changeFeed.publish(OutboundMessage.event("ItemRead.Upsert", "ItemRead#" + read.readId(), 0,
+                                    g -> WireWriter.writeItemReadFields(g, read)), null);
+                        }
+                    });
+        }
+        return reads.size();
+    }
+
+    public static List<TagRead> decode(byte[] payload) {
+        List<TagRead> out = new ArrayList<>(1);
+        try (JsonParser p = JSON.createParser(payload)) {
+            JsonToken t = p.nextToken();
+            if (t == JsonToken.START_ARRAY) {
+                while ((t = p.nextToken()) == JsonToken.START_OBJECT) decodeEvent(p, out);
+            } else if (t == JsonToken.START_OBJECT) {
+                decodeEvent(p, out);
+            } else {
+                throw new IllegalArgumentException("expected a JSON object or array");
+            }
+        }
+        return out;
+    }
+
+    public Map<String, ReaderStats> stats() {
+        long now = System.currentTimeMillis();
+        Map<String, ReaderStats> out = new TreeMap<>();
+        readers.forEach((id, c) -> out.put(id, new ReaderStats(
+                id,
+                c.messages.sum(),
+                c.tagReads.sum(),
+                c.stored.sum(),
+                c.dropped.sum(),
+                c.failed.sum(),
+                c.decodeErrors.sum(),
+                c.readsLastSecond(now),
+                Instant.ofEpochMilli(c.lastSeenMillis.get())
+        )));
+        return out;
+    }
+
+    /* --------------- decoding --------------- */
+
+    // Parser sits on the event's START_OBJECT; leaves it on the matching END_OBJECT.
+    private static void decodeEvent(JsonParser p, List<TagRead> out) {
+        String tagId = null;
+        int antenna = 0;
+        Instant time = null;
+
+        while (p.nextToken() == JsonToken.PROPERTY_NAME) {
+            String field = p.currentName();
+            JsonToken value = p.nextToken();
+            if ("timestamp".equals(field) && value == JsonToken.VALUE_STRING) {
+                time = parseTime(p.getString());
+            } else if ("data".equals(field) && value == JsonToken.START_OBJECT) {
+                while (p.nextToken() == JsonToken.PROPERTY_NAME) {
+                    String name = p.currentName();
+                    JsonToken v = p.nextToken();
+                    switch (name) {
+                        case "idHex", "tagId", "epc" -> {
+                            if (v == JsonToken.VALUE_STRING) tagId = p.getString();
+                        }
+                        case "antenna" -> {
+                            if (v == JsonToken.VALUE_NUMBER_INT) antenna = p.getIntValue();
+                        }
+                        default -> p.skipChildren();
+                    }
+                }
+            } else {
+                p.skipChildren();
+            }
+        }
+
+        if (tagId == null || tagId.isBlank()) return; // heartbeats and GPI events carry no tag
+        out.add(new TagRead(tagId, antenna, time != null ? time : Instant.now()));
+    }
+
+    private static Instant parseTime(String s) {
+        try {
+            return Instant.parse(s);
+        } catch (DateTimeParseException ignore) {}
+        try {
+            return OffsetDateTime.parse(s, READER_TIME).toInstant();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package Fuzzcode.Server.cache;
+
+import Fuzzcode.Server.db.ConnectionManager;
+import Fuzzcode.Server.model.Position;
+import Fuzzcode.Server.utilities.LoggerHandler;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Position counts per order and overall, maintained by the DAOs instead of being
+// recounted per request, so reading them costs no query.
+// Built from the database on first use (and again when ConnectionManager points at a new
+// database). After that every write that can move a count reports the item's new state:
+// "item 7 is DELIVERED", "item 7 is in order 3". Those are idempotent, so a report that
+// races with a rebuild cannot count twice. Writes that bypass the DAOs, or that race each
+// other, can still leave drift; reconcile() recounts from the base tables and repairs it.
+public final class PositionCounters {
+
+    private static final Position[] POSITIONS = Position.values();
+    private static final PositionCounters INSTANCE = new PositionCounters();
+
+    // orderId 0: not in an active order.
+    public record Placement(int itemId, int orderId, Position position) {}
+
+    public record Reconciliation(int items, int orders, int driftedOrders, boolean globalDrifted, long tookMillis) {
+        public boolean drifted() {
+            return driftedOrders > 0 || globalDrifted;
+        }
+    }
+
+    private final Map<Integer, Placement> items = new HashMap<>();
+    private final Map<Integer, int[]> byOrder = new HashMap<>();
+    private final int[] global = new int[POSITIONS.length];
+    private boolean loaded;
+    private int generation = -1;
+    private ScheduledExecutorService reconciler;
+
+    private PositionCounters() {}
+
+    public static PositionCounters getInstance() {
+        return INSTANCE;
+    }
+
+    // === READS ===
+    // The loader lists every active item with its active order; only called to build.
+    public synchronized Map<Position, Integer> countsForOrder(int orderId, Supplier<List<Placement>> loader) {
+        ensureLoaded(loader);
+        return toMap(byOrder.get(orderId));
+    }
+    public synchronized Map<Integer, Map<Position, Integer>> countsForOrders(Collection<Integer> orderIds,
+                                                                            Supplier<List<Placement>> loader) {
+        ensureLoaded(loader);
+        Map<Integer, Map<Position, Integer>> out = new LinkedHashMap<>();
+        for (Integer id : orderIds) out.put(id, toMap(byOrder.get(id)));
+        return out;
+    }
+    // All active items, whether in an order or not.
+    public synchronized Map<Position, Integer> globalCounts(Supplier<List<Placement>> loader) {
+        ensureLoaded(loader);
+        return toMap(global);
+    }
+
+    // === UPDATES ===
+    // Called after the write has committed. Ignored while nothing is loaded: the first read
+    // builds from the database and sees the write anyway.
+    public synchronized void itemCreated(int itemId, Position position) {
+        if (!isLive()) return;
+        Placement current = items.get(itemId);
+        apply(itemId, new Placement(itemId, current != null ? current.orderId() : 0, orHome(position)));
+    }
+    public synchronized void positionChanged(int itemId, Position position) {
+        if (!isLive()) return;
+        Placement current = items.get(itemId);
+        if (current != null) apply(itemId, new Placement(itemId, current.orderId(), orHome(position)));
+    }
+    public synchronized void attached(int orderId, int itemId) {
+        if (!isLive()) return;
+        Placement current = items.get(itemId);
+        if (current != null) apply(itemId, new Placement(itemId, orderId, current.position()));
+    }
+    public synchronized void detached(int orderId, int itemId) {
+        if (!isLive()) return;
+        Placement current = items.get(itemId);
+        if (current != null && current.orderId() == orderId) {
+            apply(itemId, new Placement(itemId, 0, current.position()));
+        }
+    }
+    public synchronized void itemDeleted(int itemId) {
+        if (!isLive()) return;
+        apply(itemId, null);
+    }
+    // For bulk writes that bypass the DAOs: the next read rebuilds.
+    public synchronized void invalidate() {
+        loaded = false;
+        items.clear();
+        byOrder.clear();
+        Arrays.fill(global, 0);
+    }
+
+    // === RECONCILIATION ===
+    // Recounts from the base tables, reports what differed and keeps the fresh counts.
+    // Holds the lock for the query, so updates wait for the rebuild instead of racing it.
+    public synchronized Reconciliation reconcile(Supplier<List<Placement>> loader) {
+        long start = System.currentTimeMillis();
+        boolean compare = isLive();
+        Map<Integer, int[]> before = new HashMap<>();
+        byOrder.forEach((id, c) -> before.put(id, c.clone()));
+        int[] globalBefore = global.clone();
+
+        load(loader);
+
+        int drifted = 0;
+        if (compare) {
+            for (Map.Entry<Integer, int[]> e : byOrder.entrySet()) {
+                if (!Arrays.equals(e.getValue(), before.remove(e.getKey()))) drifted++;
+            }
+            drifted += before.size(); // counted in memory, gone from the database
+        }
+        boolean globalDrifted = compare && !Arrays.equals(global, globalBefore);
+        return new Reconciliation(items.size(), byOrder.size(), drifted, globalDrifted,
+                System.currentTimeMillis() - start);
+    }
+    public synchronized void startReconciliation(Duration every, Supplier<List<Placement>> loader) {
+        if (reconciler != null) return;
+        reconciler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "position-reconciler");
+            t.setDaemon(true);
+            return t;
+        });
+        long millis = Math.max(1, every.toMillis());
+        reconciler.scheduleWithFixedDelay(() -> {
+            if (!ConnectionManager.isInitialized()) return;
+            try {
+                Reconciliation r = reconcile(loader);
+                if (r.drifted()) {
+                    LoggerHandler.log(LoggerHandler.Level.WARNING, "Position counters drifted and were repaired: " + r);
+                }
+            } catch (RuntimeException e) {
+                LoggerHandler.log(LoggerHandler.Level.ERROR, "Position counter reconciliation failed", e);
+            }
+        }, millis, millis, TimeUnit.MILLISECONDS);
+    }
+    public synchronized void stopReconciliation() {
+        if (reconciler == null) return;
+        reconciler.shutdownNow();
+        reconciler = null;
+    }
+
+    /* --------------- helpers --------------- */
+
+    private boolean isLive() {
+        if (generation != ConnectionManager.generation()) invalidate();
+        return loaded;
+    }
+
+    private void ensureLoaded(Supplier<List<Placement>> loader) {
+        if (!isLive()) load(loader);
+    }
+
+    private void load(Supplier<List<Placement>> loader) {
+        int current = ConnectionManager.generation();
+        List<Placement> placements = loader.get(); // throws: stay unloaded
+        invalidate();
+        for (Placement p : placements) apply(p.itemId(), new Placement(p.itemId(), p.orderId(), orHome(p.position())));
+        generation = current;
+        loaded = true;
+    }
+
+    // Moves an item's contribution from its current placement to the next (null: gone).
+    private void apply(int itemId, Placement next) {
+        Placement previous = next == null ? items.remove(itemId) : items.put(itemId, next);
+        if (previous != null) {
+            int slot = previous.position().ordinal();
+            global[slot]--;
+            if (previous.orderId() > 0) {
+                int[] counts = byOrder.get(previous.orderId());
+                if (counts != null && --counts[slot] == 0 && isEmpty(counts)) byOrder.remove(previous.orderId());
+            }
+        }
+        if (next != null) {
+            int slot = next.position().ordinal();
+            global[slot]++;
+            if (next.orderId() > 0) byOrder.computeIfAbsent(next.orderId(), id -> new int[POSITIONS.length])[slot]++;
+        }
+    }
+
+    private static boolean isEmpty(int[] counts) {
+        for (int c : counts) if (c != 0) return false;
+        return true;
+    }
+
+    private static Position orHome(Position position) {
+        return position != null ? position : Position.HOME;
+    }
+
+    private static Map<Position, Integer> toMap(int[] counts) {
+        Map<Position, Integer> out = new EnumMap<>(Position.class);
+        for (Position p : POSITIONS) out.put(p, counts != null ? counts[p.ordinal()] : 0);
+        return out;
+    }
+}
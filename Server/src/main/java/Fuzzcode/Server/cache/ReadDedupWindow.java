@@ -0,0 +1,161 @@
+package Fuzzcode.Server.cache;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Per reader/antenna/tag duplicate suppression.
+// A read is a duplicate when the same tag was accepted from the same reader and antenna
+// less than `window` ago (measured on the read timestamps). Accepted keys are filed in
+// one-second expiry buckets; buckets are swept as time moves on, so idle tags fall out
+// on their own and memory stays proportional to the number of tags seen per window.
+public final class ReadDedupWindow {
+
+    public static final String DEFAULT_READER = "default";
+
+    private static final class Seen {
+        long lastAcceptedEventMillis;
+        long expiresAtMillis;
+    }
+
+    public record Stats(long checked, long duplicates, long expired, long forcedEvictions, int tracked) {}
+
+    private final Map<String, Seen> seen = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Long, ConcurrentLinkedQueue<String>> expiryBuckets = new ConcurrentSkipListMap<>();
+    private final Map<String, Duration> windows = new ConcurrentHashMap<>();
+    private final AtomicLong lastSweepSecond = new AtomicLong();
+
+    private volatile Duration defaultWindow;
+    private volatile int maxTracked = 1_000_000;
+
+    private final LongAdder checked = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder forcedEvictions = new LongAdder();
+
+    public ReadDedupWindow(Duration defaultWindow) {
+        this.defaultWindow = defaultWindow;
+    }
+
+    /* --------------- configuration --------------- */
+
+    public void setDefaultWindow(Duration window) {
+        this.defaultWindow = window;
+    }
+
+    public void setWindow(String readerId, Duration window) {
+        windows.put(readerId, window);
+    }
+
+    public void setWindow(String readerId, int antenna, Duration window) {
+        windows.put(readerId + '#' + antenna, window);
+    }
+
+    public void setMaxTracked(int maxTracked) {
+        this.maxTracked = Math.max(1, maxTracked);
+    }
+
+    public Duration windowFor(String readerId, int antenna) {
+        Duration w = windows.get(readerId + '#' + antenna);
+        if (w == null) w = windows.get(readerId);
+        return w != null ? w : defaultWindow;
+    }
+
+    /* --------------- dedup --------------- */
+
+    public boolean isDuplicate(String tagId, Instant readTime) {
+        return isDuplicate(DEFAULT_READER, 0, tagId, readTime);
+    }
+
+    // Atomically checks and records the read; true means "drop it".
+    public boolean isDuplicate(String readerId, int antenna, String tagId, Instant readTime) {
+        checked.increment();
+        long nowMillis = System.currentTimeMillis();
+        sweep(nowMillis);
+
+        long windowMillis = windowFor(readerId, antenna).toMillis();
+        if (windowMillis <= 0) return false;
+
+        long eventMillis = readTime.toEpochMilli();
+        String key = readerId + '#' + antenna + '#' + tagId;
+        boolean[] duplicate = {false};
+        boolean[] accepted = {false};
+
+        seen.compute(key, (k, s) -> {
+            if (s != null && Math.abs(eventMillis - s.lastAcceptedEventMillis) < windowMillis) {
+                duplicate[0] = true;
+                return s;
+            }
+            if (s == null) s = new Seen();
+            s.lastAcceptedEventMillis = eventMillis;
+            s.expiresAtMillis = nowMillis + windowMillis;
+            accepted[0] = true;
+            return s;
+        });
+
+        if (duplicate[0]) {
+            duplicates.increment();
+            return true;
+        }
+        if (accepted[0]) {
+            expiryBuckets.computeIfAbsent(Math.floorDiv(nowMillis + windowMillis, 1000L) + 1,
+                    b -> new ConcurrentLinkedQueue<>()).add(key);
+            if (seen.size() > maxTracked) evictOldest();
+        }
+        return false;
+    }
+
+    public Stats stats() {
+        return new Stats(checked.sum(), duplicates.sum(), expired.sum(), forcedEvictions.sum(), seen.size());
+    }
+
+    public void clear() {
+        seen.clear();
+        expiryBuckets.clear();
+    }
+
+    /* --------------- expiry --------------- */
+
+    // At most one thread sweeps per second; everybody else carries on.
+    private void sweep(long nowMillis) {
+        long second = Math.floorDiv(nowMillis, 1000L);
+        long last = lastSweepSecond.get();
+        if (second <= last || !lastSweepSecond.compareAndSet(last, second)) return;
+
+        Map.Entry<Long, ConcurrentLinkedQueue<String>> bucket;
+        while ((bucket = expiryBuckets.firstEntry()) != null && bucket.getKey() <= second) {
+            if (expiryBuckets.remove(bucket.getKey(), bucket.getValue())) {
+                drain(bucket.getValue(), nowMillis, false);
+            }
+        }
+    }
+
+    // Over the memory bound: give up the bucket closest to expiry even if it is still live.
+    private void evictOldest() {
+        Map.Entry<Long, ConcurrentLinkedQueue<String>> bucket = expiryBuckets.pollFirstEntry();
+        if (bucket != null) drain(bucket.getValue(), System.currentTimeMillis(), true);
+    }
+
+    private void drain(ConcurrentLinkedQueue<String> keys, long nowMillis, boolean force) {
+        String key;
+        while ((key = keys.poll()) != null) {
+            boolean[] removed = {false};
+            seen.computeIfPresent(key, (k, s) -> {
+                // The key may have been accepted again since; then a later bucket owns it.
+                if (s.expiresAtMillis <= nowMillis || force) {
+                    removed[0] = true;
+                    return null;
+                }
+                return s;
+            });
+            if (removed[0]) {
+                if (force) forcedEvictions.increment(); else expired.increment();
+            }
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package Fuzzcode.Server.cache;
+
+import Fuzzcode.Server.db.ConnectionManager;
+import Fuzzcode.Server.model.Item;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+// TagID -> active Item index for the scan path.
+// Split into independently locked, access-ordered segments so concurrent scans rarely
+// contend; each segment evicts its least recently used tag once full. Unknown tags are
+// remembered too, so a stray tag being read over and over does not hit the database.
+// ItemDao invalidates entries on every write that can change the answer.
+public final class TagIndexCache {
+
+    private static final TagIndexCache INSTANCE = new TagIndexCache();
+    private static final int SEGMENTS = 16;
+
+    // Marks "looked up, no active item with this tag".
+    private static final Item ABSENT = new Item(0, "", null, false, true);
+
+    public record Stats(long hits, long misses, long evictions, long invalidations, int size) {
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+
+    private final class Segment extends LinkedHashMap<String, Item> {
+        Segment() {
+            super(64, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Item> eldest) {
+            if (size() <= maxEntriesPerSegment) return false;
+            evictions.increment();
+            Item evicted = eldest.getValue();
+            if (evicted != ABSENT) byItemId.remove(evicted.itemId(), eldest.getKey());
+            return true;
+        }
+    }
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final ConcurrentHashMap<Integer, String> byItemId = new ConcurrentHashMap<>();
+    private volatile int maxEntriesPerSegment = 100_000 / SEGMENTS;
+    private volatile int generation = -1;
+
+    // Bumped on every invalidation; a load that raced with one is not cached.
+    private final AtomicLong writeEpoch = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    private TagIndexCache() {
+        for (int i = 0; i < SEGMENTS; i++) segments[i] = new Segment();
+    }
+
+    public static TagIndexCache getInstance() {
+        return INSTANCE;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        maxEntriesPerSegment = Math.max(1, maxEntries / SEGMENTS);
+    }
+
+    // Returns the active item for the tag, or null if there is none. Only calls the
+    // loader (the database) when the tag is not in the index yet.
+    public Item lookup(String tagId, Function<String, Item> loader) {
+        checkGeneration();
+        Segment seg = segmentFor(tagId);
+        Item cached;
+        synchronized (seg) {
+            cached = seg.get(tagId);
+        }
+        if (cached != null) {
+            hits.increment();
+            return cached == ABSENT ? null : cached;
+        }
+
+        misses.increment();
+        long epoch = writeEpoch.get();
+        Item loaded = loader.apply(tagId);
+        if (loaded != null && loaded.deleted()) loaded = null;
+        if (epoch == writeEpoch.get()) {
+            store(tagId, loaded == null ? ABSENT : loaded);
+        }
+        return loaded;
+    }
+
+    public void warm(List<Item> items) {
+        checkGeneration();
+        for (Item it : items) {
+            if (it != null && !it.deleted() && it.tagId() != null) store(it.tagId(), it);
+        }
+    }
+
+    public void invalidateTag(String tagId) {
+        if (tagId == null) return;
+        writeEpoch.incrementAndGet();
+        invalidations.increment();
+        Segment seg = segmentFor(tagId);
+        Item removed;
+        synchronized (seg) {
+            removed = seg.remove(tagId);
+        }
+        if (removed != null && removed != ABSENT) byItemId.remove(removed.itemId(), tagId);
+    }
+
+    public void invalidateItem(int itemId) {
+        writeEpoch.incrementAndGet();
+        String tagId = byItemId.remove(itemId);
+        if (tagId != null) invalidateTag(tagId);
+    }
+
+    public void clear() {
+        writeEpoch.incrementAndGet();
+        for (Segment seg : segments) {
+            synchronized (seg) {
+                seg.clear();
+            }
+        }
+        byItemId.clear();
+    }
+
+    public Stats stats() {
+        int size = 0;
+        for (Segment seg : segments) {
+            synchronized (seg) {
+                size += seg.size();
+            }
+        }
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), invalidations.sum(), size);
+    }
+
+    /* --------------- helpers --------------- */
+
+    private void store(String tagId, Item item) {
+        Segment seg = segmentFor(tagId);
+        synchronized (seg) {
+            seg.put(tagId, item);
+        }
+        if (item != ABSENT) byItemId.put(item.itemId(), tagId);
+    }
+
+    private Segment segmentFor(String tagId) {
+        int h = tagId.hashCode();
+        return segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    // A re-initialised ConnectionManager may point at a different database.
+    private void checkGeneration() {
+        int current = ConnectionManager.generation();
+        if (generation != current) {
+            synchronized (this) {
+                if (generation != current) {
+                    clear();
+                    generation = current;
+                }
+            }
+        }
+    }
+}
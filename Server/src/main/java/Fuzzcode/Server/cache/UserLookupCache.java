@@ -0,0 +1,116 @@
+package Fuzzcode.Server.cache;
+
+import Fuzzcode.Server.db.ConnectionManager;
+import Fuzzcode.Server.model.AppUser;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+// Username -> user for the login path. Entries live only for `ttl` (30s by default): enough
+// to absorb a crowd logging in at shift change, short enough that a user changed on another
+// node is not served for long. Unknown usernames are remembered too. UserDao invalidates
+// entries on every write.
+public final class UserLookupCache {
+
+    private static final UserLookupCache INSTANCE = new UserLookupCache();
+
+    public record Stats(long hits, long misses, long invalidations, int size) {
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+
+    private record Entry(AppUser user, long expiresAtNanos) {}
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile long ttlNanos = Duration.ofSeconds(30).toNanos();
+    private volatile int maxEntries = 10_000;
+    private volatile int generation = -1;
+
+    // Bumped on every invalidation; a load that raced with one is not cached.
+    private final AtomicLong writeEpoch = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    private UserLookupCache() {}
+
+    public static UserLookupCache getInstance() {
+        return INSTANCE;
+    }
+
+    public void setTtl(Duration ttl) {
+        ttlNanos = Math.max(0, ttl.toNanos());
+    }
+
+    public void setMaxEntries(int max) {
+        maxEntries = Math.max(1, max);
+    }
+
+    // Returns the user, or null if there is none; calls the loader only on a miss.
+    public AppUser lookup(String username, Function<String, AppUser> loader) {
+        checkGeneration();
+        long now = System.nanoTime();
+        Entry cached = entries.get(username);
+        if (cached != null && now - cached.expiresAtNanos() < 0) {
+            hits.increment();
+            return cached.user();
+        }
+
+        misses.increment();
+        long epoch = writeEpoch.get();
+        AppUser loaded = loader.apply(username);
+        if (epoch == writeEpoch.get()) {
+            if (entries.size() >= maxEntries) purgeExpired(now);
+            if (entries.size() < maxEntries) entries.put(username, new Entry(loaded, now + ttlNanos));
+        }
+        return loaded;
+    }
+
+    public void invalidate(String username) {
+        if (username == null) return;
+        writeEpoch.incrementAndGet();
+        invalidations.increment();
+        entries.remove(username);
+    }
+
+    public void invalidateUser(int userId) {
+        writeEpoch.incrementAndGet();
+        invalidations.increment();
+        entries.values().removeIf(e -> e.user() != null && e.user().userId() == userId);
+    }
+
+    public void clear() {
+        writeEpoch.incrementAndGet();
+        entries.clear();
+    }
+
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), invalidations.sum(), entries.size());
+    }
+
+    /* --------------- helpers --------------- */
+
+    private void purgeExpired(long now) {
+        entries.values().removeIf(e -> now - e.expiresAtNanos() >= 0);
+    }
+
+    // A new database (tests re-init ConnectionManager) means every entry is stale.
+    private void checkGeneration() {
+        int g = ConnectionManager.generation();
+        if (g != generation) {
+            synchronized (this) {
+                if (g != generation) {
+                    clear();
+                    generation = g;
+                }
+            }
+        }
+    }
+}
@@ -1,16 +1,30 @@
 package Fuzzcode.Server.dao;
 
+import Fuzzcode.Server.cache.PositionCounters;
+import Fuzzcode.Server.cache.TagIndexCache;
+import Fuzzcode.Server.model.ChangeSet;
 import Fuzzcode.Server.model.Position;
 import Fuzzcode.Server.utilities.LoggerHandler;
 import Fuzzcode.Server.db.ConnectionManager;
+import Fuzzcode.Server.db.SqlDialect;
 import Fuzzcode.Server.model.Item;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 
 public class ItemDao {
-    private Item mapItem(ResultSet rs) throws SQLException {
+    private static final TagIndexCache TAG_INDEX = TagIndexCache.getInstance();
+    private static final PositionCounters POSITIONS = PositionCounters.getInstance();
+    // Keeps IN lists well below the parameter limits of every supported database.
+    private static final int IDS_PER_QUERY = 500;
+
+    static Item mapItem(ResultSet rs) throws SQLException {
         return new Item(
                 rs.getInt("ItemID"),
                 rs.getString("TagID"),
@@ -22,17 +36,21 @@ public class ItemDao {
     public int createItem(String tagId, Position position, boolean overdue) {
         String sql = """
             INSERT INTO Items (TagID, Position, IsOverdue, Deleted)
-            VALUES (?, ?, ?, FALSE)
-        """;
-        try (Connection c = ConnectionManager.getConnection();
+            VALUES (?, ?, ?, %s)
+        """.formatted(ConnectionManager.dialect().bool(false));
+        try (RevisionFence.Writer fence = RevisionFence.write();
+             Connection c = ConnectionManager.getConnection();
              PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             ps.setString(1, tagId);
             if (position == null) ps.setString(2, String.valueOf(Position.HOME));
             else ps.setString(2, position.name());
             ps.setBoolean(3, overdue);
             ps.executeUpdate();
+            TAG_INDEX.invalidateTag(tagId);
             try (ResultSet keys = ps.getGeneratedKeys()) {
-                return keys.next() ? keys.getInt(1) : 0;
+                int id = keys.next() ? keys.getInt(1) : 0;
+                if (id > 0) POSITIONS.itemCreated(id, position);
+                return id;
             }
         } catch (SQLException e) {
             LoggerHandler.log(e);
@@ -44,7 +62,7 @@ public class ItemDao {
         SELECT ItemID, TagID, Position, IsOverdue, Deleted
         FROM Items
         WHERE ItemID = ?
-    """ + (includeDeleted ? "" : " AND Deleted = FALSE");
+    """ + (includeDeleted ? "" : " AND Deleted = " + ConnectionManager.dialect().bool(false));
 
         try (Connection c = ConnectionManager.getConnection();
              PreparedStatement ps = c.prepareStatement(sql)) {
@@ -60,12 +78,56 @@ public class ItemDao {
             return null;
         }
     }
+    public Map<Integer, Item> readItemsByIds(Collection<Integer> itemIds) {
+        return readItemsByIds(itemIds, false);
+    }
+    // Batch lookup: one query per IDS_PER_QUERY ids instead of one per id.
+    // Ids that do not resolve are absent from the map.
+    public Map<Integer, Item> readItemsByIds(Collection<Integer> itemIds, boolean includeDeleted) {
+        List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(itemIds));
+        Map<Integer, Item> found = new LinkedHashMap<>();
+        if (ids.isEmpty()) return found;
+
+        SqlDialect d = ConnectionManager.dialect();
+        try (Connection c = ConnectionManager.getConnection()) {
+            for (int from = 0; from < ids.size(); from += IDS_PER_QUERY) {
+                List<Integer> chunk = ids.subList(from, Math.min(ids.size(), from + IDS_PER_QUERY));
+                String sql = "SELECT ItemID, TagID, Position, IsOverdue, Deleted FROM Items WHERE ItemID IN ("
+                        + "?,".repeat(chunk.size() - 1) + "?)"
+                        + (includeDeleted ? "" : " AND Deleted = " + d.bool(false));
+                try (PreparedStatement ps = c.prepareStatement(sql)) {
+                    for (int i = 0; i < chunk.size(); i++) ps.setInt(i + 1, chunk.get(i));
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            Item item = mapItem(rs);
+                            found.put(item.itemId(), item);
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            LoggerHandler.log(e);
+            return Map.of();
+        }
+
+        // Same order as requested.
+        Map<Integer, Item> out = new LinkedHashMap<>();
+        for (Integer id : ids) {
+            Item item = found.get(id);
+            if (item != null) out.put(id, item);
+        }
+        return out;
+    }
+    // Active item for the tag, answered from the tag index when possible.
+    public Item readActiveItemByTagCached(String tagId) {
+        return TAG_INDEX.lookup(tagId, t -> readItemByTag(t, false));
+    }
     public Item readItemByTag(String tagId, boolean includeDeleted) {
         String sql = """
         SELECT ItemID, TagID, Position, IsOverdue, Deleted
         FROM Items
         WHERE TagID = ?
-    """ + (includeDeleted ? "" : " AND Deleted = FALSE");
+    """ + (includeDeleted ? "" : " AND Deleted = " + ConnectionManager.dialect().bool(false));
 
         try (Connection c = ConnectionManager.getConnection();
              PreparedStatement ps = c.prepareStatement(sql)) {
@@ -107,7 +169,7 @@ public class ItemDao {
         FROM Items i
         JOIN OrderItems oi ON oi.ItemID = i.ItemID
         WHERE oi.OrderID = ?
-          """ + (includeDeleted ? "" : " AND oi.Deleted = FALSE AND i.Deleted = FALSE");
+          """ + (includeDeleted ? "" : " AND oi.Deleted = %1$s AND i.Deleted = %1$s".formatted(ConnectionManager.dialect().bool(false)));
 
         List<Item> items = new ArrayList<>();
         try (PreparedStatement ps = c.prepareStatement(sql)) {
@@ -122,27 +184,158 @@ public class ItemDao {
         return items;
     }
 
-    public boolean updateTag(String tagId, int itemId) {
-        String sql = "UPDATE Items SET TagID = ? WHERE ItemID = ? AND Deleted = FALSE";
+    // === POSITION COUNTS ===
+    // Counted by the database (GROUP BY Position); only the counts cross JDBC.
+    // Active relations and items only, like listByOrder(orderId, false).
+    public Map<Position, Integer> countPositionsByOrder(int orderId) {
+        return countPositionsByOrders(List.of(orderId)).getOrDefault(orderId, emptyCounts());
+    }
+    // Counts for many orders in one round trip per IDS_PER_QUERY orders.
+    // Every requested order gets an entry, all zero when it has no active items.
+    public Map<Integer, Map<Position, Integer>> countPositionsByOrders(Collection<Integer> orderIds) {
+        List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(orderIds));
+        Map<Integer, Map<Position, Integer>> out = new LinkedHashMap<>();
+        if (ids.isEmpty()) return out;
+        for (Integer id : ids) out.put(id, emptyCounts());
 
+        SqlDialect d = ConnectionManager.dialect();
+        try (Connection c = ConnectionManager.getConnection()) {
+            for (int from = 0; from < ids.size(); from += IDS_PER_QUERY) {
+                List<Integer> chunk = ids.subList(from, Math.min(ids.size(), from + IDS_PER_QUERY));
+                String sql = "SELECT oi.OrderID, i.Position, COUNT(*) AS N"
+                        + " FROM OrderItems oi JOIN Items i ON i.ItemID = oi.ItemID"
+                        + " WHERE oi.Deleted = " + d.bool(false) + " AND i.Deleted = " + d.bool(false)
+                        + " AND oi.OrderID IN (" + "?,".repeat(chunk.size() - 1) + "?)"
+                        + " GROUP BY oi.OrderID, i.Position";
+                try (PreparedStatement ps = c.prepareStatement(sql)) {
+                    for (int i = 0; i < chunk.size(); i++) ps.setInt(i + 1, chunk.get(i));
+                    try (ResultSet rs = ps.executeQuery()) {
+                        readCounts(rs, out);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            LoggerHandler.log(e);
+            return Map.of();
+        }
+        return out;
+    }
+    // Same answers from the in-memory counters: no query once they are built.
+    // Falls back to counting in the database if they cannot be built.
+    public Map<Position, Integer> countPositionsByOrderCached(int orderId) {
+        try {
+            return POSITIONS.countsForOrder(orderId, this::listActivePlacements);
+        } catch (RuntimeException e) {
+            return countPositionsByOrder(orderId);
+        }
+    }
+    public Map<Integer, Map<Position, Integer>> countPositionsByOrdersCached(Collection<Integer> orderIds) {
+        try {
+            return POSITIONS.countsForOrders(new LinkedHashSet<>(orderIds), this::listActivePlacements);
+        } catch (RuntimeException e) {
+            return countPositionsByOrders(orderIds);
+        }
+    }
+    public Map<Position, Integer> countPositionsGlobal() {
+        return POSITIONS.globalCounts(this::listActivePlacements);
+    }
+    public PositionCounters.Reconciliation reconcilePositionCounts() {
+        return POSITIONS.reconcile(this::listActivePlacements);
+    }
+    // Every active item with the order it is actively attached to (0 if none).
+    public List<PositionCounters.Placement> listActivePlacements() {
+        String sql = """
+        SELECT i.ItemID, i.Position, oi.OrderID
+        FROM Items i
+        LEFT JOIN OrderItems oi ON oi.ItemID = i.ItemID AND oi.Deleted = %1$s
+        WHERE i.Deleted = %1$s
+    """.formatted(ConnectionManager.dialect().bool(false));
+        List<PositionCounters.Placement> out = new ArrayList<>();
+        try (Connection c = ConnectionManager.getConnection();
+             PreparedStatement ps = c.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                out.add(new PositionCounters.Placement(
+                        rs.getInt("ItemID"),
+                        rs.getInt("OrderID"), // NULL -> 0
+                        Position.fromString(rs.getString("Position"))
+                ));
+            }
+        } catch (SQLException e) {
+            LoggerHandler.log(e);
+            throw new RuntimeException(e);
+        }
+        return out;
+    }
+    // Counts for every active (not deleted) order, in one query; empty orders included.
+    public Map<Integer, Map<Position, Integer>> countPositionsForActiveOrders() {
+        String sql = """
+        SELECT o.OrderID, i.Position, COUNT(i.ItemID) AS N
+        FROM Orders o
+        LEFT JOIN OrderItems oi ON oi.OrderID = o.OrderID AND oi.Deleted = %1$s
+        LEFT JOIN Items i ON i.ItemID = oi.ItemID AND i.Deleted = %1$s
+        WHERE o.Deleted = %1$s
+        GROUP BY o.OrderID, i.Position
+        ORDER BY o.OrderID
+    """.formatted(ConnectionManager.dialect().bool(false));
+        Map<Integer, Map<Position, Integer>> out = new LinkedHashMap<>();
         try (Connection c = ConnectionManager.getConnection();
+             PreparedStatement ps = c.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            readCounts(rs, out);
+        } catch (SQLException e) {
+            LoggerHandler.log(e);
+            return Map.of();
+        }
+        return out;
+    }
+    // Every position present, zero when the order has none.
+    public static Map<Position, Integer> emptyCounts() {
+        Map<Position, Integer> counts = new EnumMap<>(Position.class);
+        for (Position p : Position.values()) counts.put(p, 0);
+        return counts;
+    }
+    private static void readCounts(ResultSet rs, Map<Integer, Map<Position, Integer>> out) throws SQLException {
+        while (rs.next()) {
+            Map<Position, Integer> counts = out.computeIfAbsent(rs.getInt("OrderID"), id -> emptyCounts());
+            String position = rs.getString("Position");
+            if (position == null) continue; // order without active items
+            counts.merge(Position.fromString(position), rs.getInt("N"), Integer::sum);
+        }
+    }
+
+    public boolean updateTag(String tagId, int itemId) {
+        SqlDialect d = ConnectionManager.dialect();
+        String sql = "UPDATE Items SET TagID = ?, Revision = " + d.nextRevision() + " WHERE ItemID = ? AND Deleted = " + d.bool(false);
+
+        try (RevisionFence.Writer fence = RevisionFence.write();
+             Connection c = ConnectionManager.getConnection();
              PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setString(1, tagId);
             ps.setInt(2, itemId);
-            return ps.executeUpdate() > 0;
+            boolean updated = ps.executeUpdate() > 0;
+            if (updated) {
+                TAG_INDEX.invalidateItem(itemId);
+                TAG_INDEX.invalidateTag(tagId);
+            }
+            return updated;
         } catch (SQLException e) {
             LoggerHandler.log(e);
             return false;
         }
     }
     public boolean updateOverdue(int itemId, boolean overdue) {
-        String sql = "UPDATE Items SET IsOverdue = ? WHERE ItemID = ? AND Deleted = FALSE";
+        SqlDialect d = ConnectionManager.dialect();
+        String sql = "UPDATE Items SET IsOverdue = ?, Revision = " + d.nextRevision() + " WHERE ItemID = ? AND Deleted = " + d.bool(false);
 
-        try (Connection c = ConnectionManager.getConnection();
+        try (RevisionFence.Writer fence = RevisionFence.write();
+             Connection c = ConnectionManager.getConnection();
              PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setBoolean(1, overdue);
             ps.setInt(2, itemId);
-            return ps.executeUpdate() > 0;
+            boolean updated = ps.executeUpdate() > 0;
+            if (updated) TAG_INDEX.invalidateItem(itemId);
+            return updated;
         } catch (SQLException e) {
             LoggerHandler.log(e);
             return false;
@@ -150,33 +343,53 @@ public class ItemDao {
     }
     public boolean updatePosition(int itemId, Position position) {
         if (position == null) return false; // avoid NPE / NOT NULL violation
-        try (var c = ConnectionManager.getConnection();
+        try (RevisionFence.Writer fence = RevisionFence.write();
+             var c = ConnectionManager.getConnection();
              var ps = c.prepareStatement("""
              UPDATE Items
-                SET Position = ?
-              WHERE ItemID = ? AND Deleted = FALSE
-         """)) {
+                SET Position = ?, Revision = %s
+              WHERE ItemID = ? AND Deleted = %s
+         """.formatted(ConnectionManager.dialect().nextRevision(), ConnectionManager.dialect().bool(false)))) {
             ps.setString(1, position.name());
             ps.setInt(2, itemId);
-            return ps.executeUpdate() == 1;
+            boolean updated = ps.executeUpdate() == 1;
+            if (updated) {
+                TAG_INDEX.invalidateItem(itemId);
+                POSITIONS.positionChanged(itemId, position);
+            }
+            return updated;
         } catch (SQLException e) {
             LoggerHandler.log(e);
             return false; // or wrap to RuntimeException if that's your convention
         }
     }
     public boolean softDelete(int itemId) {
-        try (Connection c = ConnectionManager.getConnection();
-             PreparedStatement ps = c.prepareStatement("UPDATE Items SET Deleted = TRUE WHERE ItemID = ? AND Deleted = FALSE")) {
+        SqlDialect d = ConnectionManager.dialect();
+        try (RevisionFence.Writer fence = RevisionFence.write();
+             Connection c = ConnectionManager.getConnection();
+             PreparedStatement ps = c.prepareStatement(
+                     "UPDATE Items SET Deleted = " + d.bool(true) + ", Revision = " + d.nextRevision()
+                             + " WHERE ItemID = ? AND Deleted = " + d.bool(false))) {
             ps.setInt(1, itemId);
-            return ps.executeUpdate() > 0;
+            boolean deleted = ps.executeUpdate() > 0;
+            if (deleted) {
+                TAG_INDEX.invalidateItem(itemId);
+                POSITIONS.itemDeleted(itemId);
+            }
+            return deleted;
         } catch (SQLException e) {
             LoggerHandler.log(e);
             return false;
         }
     }
+    // Delta sync: items written after `afterRevision`, soft-deleted ones included.
+    public ChangeSet<Item> listChangedSince(long afterRevision, int limit) {
+        return Revisions.changedSince("Items", "ItemID, TagID, Position, IsOverdue, Deleted",
+                afterRevision, limit, ItemDao::mapItem);
+    }
     public List<Item> listAll(boolean includeDeleted) {
         List<Item> out = new ArrayList<>();
-        String sql = "SELECT * FROM Items" + (includeDeleted ? "" : " WHERE Deleted = FALSE");
+        String sql = "SELECT * FROM Items" + (includeDeleted ? "" : " WHERE Deleted = " + ConnectionManager.dialect().bool(false));
 
         try (Connection c = ConnectionManager.getConnection();
              PreparedStatement ps = c.prepareStatement(sql);
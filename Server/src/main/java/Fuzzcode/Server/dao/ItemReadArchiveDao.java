@@ -0,0 +1,298 @@
+package Fuzzcode.Server.dao;
+
+import Fuzzcode.Server.db.ConnectionManager;
+import Fuzzcode.Server.db.Migration;
+import Fuzzcode.Server.model.ReadRollup;
+import Fuzzcode.Server.utilities.LoggerHandler;
+
+import java.sql.*;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+// Monthly archive partitions of ItemRead and the per-tag rollups built while archiving.
+// A partition ItemRead_YYYYMM holds the reads of one calendar month (UTC) with their
+// original ReadIDs, indexed on (TagID, ReadTime) like the hot table.
+public class ItemReadArchiveDao {
+
+    public record Partition(String table, YearMonth month) {
+        public Instant start() {
+            return month.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+        }
+        public Instant end() {
+            return month.plusMonths(1).atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+        }
+    }
+
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+    // Table names end up in SQL text, so only ever accept our own.
+    private static final Pattern TABLE_NAME = Pattern.compile("ItemRead_\\d{6}");
+
+    // Registry cache: read on every range query, changed only by the retention job.
+    private static volatile List<Partition> partitions;
+    private static volatile int generation = -1;
+
+    public static String tableFor(YearMonth month) {
+        return "ItemRead_" + month.format(SUFFIX);
+    }
+
+    // === PARTITIONS ===
+    public List<Partition> listPartitions() {
+        List<Partition> cached = partitions;
+        if (cached != null && generation == ConnectionManager.generation()) return cached;
+
+        int current = ConnectionManager.generation();
+        List<Partition> out = new ArrayList<>();
+        try (Connection c = ConnectionManager.getConnection();
+             PreparedStatement ps = c.prepareStatement(
+                     "SELECT TableName, MonthStart FROM ItemReadPartitions ORDER BY MonthStart");
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                String table = rs.getString("TableName");
+                if (!TABLE_NAME.matcher(table).matches()) continue;
+                out.add(new Partition(table, YearMonth.from(rs.getDate("MonthStart").toLocalDate())));
+            }
+        } catch (SQLException e) {
+            LoggerHandler.log(e);
+            return List.of();
+        }
+        partitions = List.copyOf(out);
+        generation = current;
+        return partitions;
+    }
+    public List<Partition> partitionsOverlapping(Instant from, Instant to) {
+        List<Partition> out = new ArrayList<>();
+        for (Partition p : listPartitions()) {
+            if (p.start().compareTo(to) <= 0 && p.end().isAfter(from)) out.add(p);
+        }
+        return out;
+    }
+
+    // Oldest read still in the hot table that is older than `before`, or null.
+    public Instant oldestHotReadBefore(Instant before) {
+        try (Connection c = ConnectionManager.getConnection();
+             PreparedStatement ps = c.prepareStatement("SELECT MIN(ReadTime) FROM ItemRead WHERE ReadTime < ?")) {
+            ps.setTimestamp(1, Timestamp.from(before));
+            try (ResultSet rs = ps.executeQuery()) {
+                Timestamp ts = rs.next() ? rs.getTimestamp(1) : null;
+                return ts != null ? ts.toInstant() : null;
+            }
+        } catch (SQLException e) {
+            LoggerHandler.log(e);
+            return null;
+        }
+    }
+
+    // Moves the hot reads in [from, to) - which must lie within `month` - into the month's
+    // partition and folds the active ones into the rollups, all in one transaction.
+    // Returns the number of reads moved.
+    public int archiveRange(YearMonth month, Instant from, Instant to) throws SQLException {
+        String table = tableFor(month);
+        try (Connection c = ConnectionManager.getConnection()) {
+            c.setAutoCommit(false);
+            try {
+                createPartition(c, table, month);
+                rollUp(c, from, to);
+
+                int moved;
+                try (PreparedStatement copy = c.prepareStatement(
+                        "INSERT INTO " + table + " (ReadID, TagID, Deleted, ReadTime)"
+                                + " SELECT ReadID, TagID, Deleted, ReadTime FROM ItemRead"
+                                + " WHERE ReadTime >= ? AND ReadTime < ?")) {
+                    copy.setTimestamp(1, Timestamp.from(from));
+                    copy.setTimestamp(2, Timestamp.from(to));
+                    moved = copy.executeUpdate();
+                }
+                try (PreparedStatement delete = c.prepareStatement(
+                        "DELETE FROM ItemRead WHERE ReadTime >= ? AND ReadTime < ?")) {
+                    delete.setTimestamp(1, Timestamp.from(from));
+                    delete.setTimestamp(2, Timestamp.from(to));
+                    delete.executeUpdate();
+                }
+                try (PreparedStatement count = c.prepareStatement(
+                        "UPDATE ItemReadPartitions SET ArchivedReads = ArchivedReads + ? WHERE TableName = ?")) {
+                    count.setInt(1, moved);
+                    count.setString(2, table);
+                    count.executeUpdate();
+                }
+                c.commit();
+                return moved;
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
+            } finally {
+                c.setAutoCommit(true);
+                partitions = null;
+            }
+        }
+    }
+    // Drops the partition with all its reads. The rollups stay.
+    public boolean dropPartition(Partition p) {
+        if (!TABLE_NAME.matcher(p.table()).matches()) return false;
+        try (Connection c = ConnectionManager.getConnection();
+             Statement st = c.createStatement();
+             PreparedStatement ps = c.prepareStatement("DELETE FROM ItemReadPartitions WHERE TableName = ?")) {
+            st.execute("DROP TABLE IF EXISTS " + p.table());
+            ps.setString(1, p.table());
+            ps.executeUpdate();
+            return true;
+        } catch (SQLException e) {
+            LoggerHandler.log(e);
+            return false;
+        } finally {
+            partitions = null;
+        }
+    }
+
+    // === ROLLUPS ===
+    public int pruneHourly(Instant before) {
+        try (Connection c = ConnectionManager.getConnection();
+             PreparedStatement ps = c.prepareStatement("DELETE FROM ItemReadHourly WHERE BucketStart < ?")) {
+            ps.setTimestamp(1, Timestamp.from(before));
+            return ps.executeUpdate();
+        } catch (SQLException e) {
+            LoggerHandler.log(e);
+            return 0;
+        }
+    }
+    public List<ReadRollup> listRollups(String tagId, Instant from, Instant to, boolean daily) {
+        String sql = "SELECT TagID, BucketStart, ReadCount, FirstRead, LastRead FROM "
+                + (daily ? "ItemReadDaily" : "ItemReadHourly")
+                + " WHERE TagID = ? AND BucketStart >= ? AND BucketStart <= ? ORDER BY BucketStart";
+        List<ReadRollup> out = new ArrayList<>();
+        try (Connection c = ConnectionManager.getConnection();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setString(1, tagId);
+            ps.setTimestamp(2, Timestamp.from(from));
+            ps.setTimestamp(3, Timestamp.from(to));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    out.add(new ReadRollup(
+                            rs.getString("TagID"),
+                            rs.getTimestamp("BucketStart").toInstant(),
+                            rs.getInt("ReadCount"),
+                            rs.getTimestamp("FirstRead").toInstant(),
+                            rs.getTimestamp("LastRead").toInstant()
+                    ));
+                }
+            }
+        } catch (SQLException e) {
+            LoggerHandler.log(e);
+        }
+        return out;
+    }
+
+    /* ---------- Helpers ---------- */
+
+    private void createPartition(Connection c, String table, YearMonth month) throws SQLException {
+        // Same DDL path as the schema migrations, so it is translated for the dialect.
+        Migration.sql("""
+            CREATE TABLE IF NOT EXISTS %s (
+              ReadID INT PRIMARY KEY,
+              TagID VARCHAR(255) NOT NULL,
+              Deleted BOOLEAN NOT NULL DEFAULT FALSE,
+              ReadTime TIMESTAMP NOT NULL
+            )
+        """.formatted(table)).apply(c);
+        Migration.createIndex("IDX_" + table + "_Tag_Time", table, "TagID", "ReadTime").apply(c);
+        try (PreparedStatement chk = c.prepareStatement("SELECT 1 FROM ItemReadPartitions WHERE TableName = ?")) {
+            chk.setString(1, table);
+            try (ResultSet rs = chk.executeQuery()) {
+                if (rs.next()) return;
+            }
+        }
+        try (PreparedStatement ins = c.prepareStatement(
+                "INSERT INTO ItemReadPartitions (TableName, MonthStart, ArchivedReads) VALUES (?, ?, 0)")) {
+            ins.setString(1, table);
+            ins.setDate(2, Date.valueOf(LocalDate.of(month.getYear(), month.getMonth(), 1)));
+            ins.executeUpdate();
+        }
+    }
+
+    private static final class Bucket {
+        int count;
+        Instant first;
+        Instant last;
+
+        void add(Instant t) {
+            count++;
+            if (first == null || t.isBefore(first)) first = t;
+            if (last == null || t.isAfter(last)) last = t;
+        }
+    }
+
+    private record BucketKey(String tagId, Instant start) {}
+
+    // Counts the active reads in [from, to) per tag and hour / day and adds them to the rollups.
+    private void rollUp(Connection c, Instant from, Instant to) throws SQLException {
+        Map<BucketKey, Bucket> hourly = new HashMap<>();
+        Map<BucketKey, Bucket> daily = new HashMap<>();
+        try (PreparedStatement ps = c.prepareStatement(
+                "SELECT TagID, ReadTime FROM ItemRead WHERE Deleted = " + ConnectionManager.dialect().bool(false)
+                        + " AND ReadTime >= ? AND ReadTime < ?")) {
+            ps.setTimestamp(1, Timestamp.from(from));
+            ps.setTimestamp(2, Timestamp.from(to));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String tag = rs.getString("TagID");
+                    Instant t = rs.getTimestamp("ReadTime").toInstant();
+                    hourly.computeIfAbsent(new BucketKey(tag, t.truncatedTo(ChronoUnit.HOURS)), k -> new Bucket()).add(t);
+                    daily.computeIfAbsent(new BucketKey(tag, t.truncatedTo(ChronoUnit.DAYS)), k -> new Bucket()).add(t);
+                }
+            }
+        }
+        mergeInto(c, "ItemReadHourly", hourly);
+        mergeInto(c, "ItemReadDaily", daily);
+    }
+
+    // Portable upsert: add to the existing buckets, insert the ones that did not exist.
+    private void mergeInto(Connection c, String table, Map<BucketKey, Bucket> buckets) throws SQLException {
+        if (buckets.isEmpty()) return;
+        List<Map.Entry<BucketKey, Bucket>> entries = new ArrayList<>(buckets.entrySet());
+        int[] updated;
+        try (PreparedStatement up = c.prepareStatement("UPDATE " + table
+                + " SET ReadCount = ReadCount + ?,"
+                + " FirstRead = CASE WHEN FirstRead < ? THEN FirstRead ELSE ? END,"
+                + " LastRead = CASE WHEN LastRead > ? THEN LastRead ELSE ? END"
+                + " WHERE TagID = ? AND BucketStart = ?")) {
+            for (Map.Entry<BucketKey, Bucket> e : entries) {
+                Bucket b = e.getValue();
+                Timestamp first = Timestamp.from(b.first);
+                Timestamp last = Timestamp.from(b.last);
+                up.setInt(1, b.count);
+                up.setTimestamp(2, first);
+                up.setTimestamp(3, first);
+                up.setTimestamp(4, last);
+                up.setTimestamp(5, last);
+                up.setString(6, e.getKey().tagId());
+                up.setTimestamp(7, Timestamp.from(e.getKey().start()));
+                up.addBatch();
+            }
+            updated = up.executeBatch();
+        }
+        try (PreparedStatement ins = c.prepareStatement("INSERT INTO " + table
+                + " (TagID, BucketStart, ReadCount, FirstRead, LastRead) VALUES (?, ?, ?, ?, ?)")) {
+            boolean any = false;
+            for (int i = 0; i < entries.size(); i++) {
+                if (updated[i] > 0) continue;
+                Bucket b = entries.get(i).getValue();
+                ins.setString(1, entries.get(i).getKey().tagId());
+                ins.setTimestamp(2, Timestamp.from(entries.get(i).getKey().start()));
+                ins.setInt(3, b.count);
+                ins.setTimestamp(4, Timestamp.from(b.first));
+                ins.setTimestamp(5, Timestamp.from(b.last));
+                ins.addBatch();
+                any = true;
+            }
+            if (any) ins.executeBatch();
+        }
+    }
+}
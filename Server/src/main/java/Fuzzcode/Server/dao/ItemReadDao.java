@@ -2,6 +2,8 @@ package Fuzzcode.Server.dao;
 
 import Fuzzcode.Server.utilities.LoggerHandler;
 import Fuzzcode.Server.db.ConnectionManager;
+import Fuzzcode.Server.db.SqlDialect;
+import Fuzzcode.Server.model.ChangeSet;
 import Fuzzcode.Server.model.ItemRead;
 
 import java.sql.*;
@@ -11,12 +13,15 @@ import java.util.List;
 
 public class ItemReadDao {
 
+    private final ItemReadArchiveDao archiveDao = new ItemReadArchiveDao();
+
     public int recordItemRead(String tagId, Instant timestamp) {
         String sql = """
             INSERT INTO ItemRead (TagID, Deleted, ReadTime)
-            VALUES (?, FALSE, ?)
-        """;
-        try (Connection c = ConnectionManager.getConnection();
+            VALUES (?, %s, ?)
+        """.formatted(ConnectionManager.dialect().bool(false));
+        try (RevisionFence.Writer fence = RevisionFence.write();
+             Connection c = ConnectionManager.getConnection();
              PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
 
             ps.setString(1, tagId);
@@ -31,15 +36,64 @@ public class ItemReadDao {
             return 0;
         }
     }
+    // Inserts all reads in one transaction. Returns the generated ReadIDs in input order.
+    public int[] recordItemReads(List<ItemRead> reads) throws SQLException {
+        SqlDialect d = ConnectionManager.dialect();
+        String sql = """
+            INSERT INTO ItemRead (TagID, Deleted, ReadTime)
+            VALUES (?, %s, ?)
+        """.formatted(d.bool(false));
+        int[] ids = new int[reads.size()];
+        if (reads.isEmpty()) return ids;
+
+        try (RevisionFence.Writer fence = RevisionFence.write();
+             Connection c = ConnectionManager.getConnection()) {
+            c.setAutoCommit(false);
+            try (PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                if (d.batchReturnsKeys()) {
+                    for (ItemRead r : reads) {
+                        ps.setString(1, r.tagId());
+                        ps.setTimestamp(2, Timestamp.from(r.readTime()));
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+
+                    try (ResultSet rs = ps.getGeneratedKeys()) {
+                        for (int i = 0; i < ids.length && rs.next(); i++) {
+                            ids[i] = rs.getInt(1);
+                        }
+                    }
+                } else {
+                    // No keys from a batch: one execution per read, still a single commit.
+                    for (int i = 0; i < ids.length; i++) {
+                        ps.setString(1, reads.get(i).tagId());
+                        ps.setTimestamp(2, Timestamp.from(reads.get(i).readTime()));
+                        ps.executeUpdate();
+                        try (ResultSet rs = ps.getGeneratedKeys()) {
+                            ids[i] = rs.next() ? rs.getInt(1) : 0;
+                        }
+                    }
+                }
+                c.commit();
+                return ids;
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
+            } finally {
+                c.setAutoCommit(true);
+            }
+        }
+    }
     public List<ItemRead> listReadsForTag(String tagId, int limit) {
         List<ItemRead> out = new ArrayList<>();
+        SqlDialect d = ConnectionManager.dialect();
         String sql = """
             SELECT ReadID, TagID, ReadTime, Deleted
             FROM ItemRead
-            WHERE TagID = ? AND Deleted = FALSE
+            WHERE TagID = ? AND Deleted = %s
             ORDER BY ReadTime DESC
-            LIMIT ?
-        """;
+            %s
+        """.formatted(d.bool(false), d.limit());
 
         try (Connection c = ConnectionManager.getConnection();
              PreparedStatement ps = c.prepareStatement(sql)) {
@@ -67,9 +121,9 @@ public class ItemReadDao {
         String sql = """
             SELECT ReadID, TagID, ReadTime, Deleted
             FROM ItemRead
-            WHERE Deleted = FALSE
+            WHERE Deleted = %s
             ORDER BY ReadTime DESC
-        """;
+        """.formatted(ConnectionManager.dialect().bool(false));
         try (Connection c = ConnectionManager.getConnection();
              PreparedStatement ps = c.prepareStatement(sql);
              ResultSet rs = ps.executeQuery()) {
@@ -87,13 +141,84 @@ public class ItemReadDao {
         }
         return out;
     }
+    // Keyset page over active reads, newest first. Pass afterTime = null for the first page;
+    // otherwise (afterTime, afterReadId) is the last row of the previous page.
+    public List<ItemRead> listActiveReadsPage(Instant afterTime, int afterReadId, int limit) {
+        List<ItemRead> out = new ArrayList<>(limit);
+        SqlDialect d = ConnectionManager.dialect();
+        String sql = (afterTime == null ? """
+            SELECT ReadID, TagID, ReadTime, Deleted
+            FROM ItemRead
+            WHERE Deleted = %s
+            ORDER BY ReadTime DESC, ReadID DESC
+            %s
+        """ : """
+            SELECT ReadID, TagID, ReadTime, Deleted
+            FROM ItemRead
+            WHERE Deleted = %s
+              AND (ReadTime < ? OR (ReadTime = ? AND ReadID < ?))
+            ORDER BY ReadTime DESC, ReadID DESC
+            %s
+        """).formatted(d.bool(false), d.limit());
+        try (Connection c = ConnectionManager.getConnection();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+
+            int i = 1;
+            if (afterTime != null) {
+                Timestamp after = Timestamp.from(afterTime);
+                ps.setTimestamp(i++, after);
+                ps.setTimestamp(i++, after);
+                ps.setInt(i++, afterReadId);
+            }
+            ps.setInt(i, limit);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    out.add(new ItemRead(
+                            rs.getInt("ReadID"),
+                            rs.getString("TagID"),
+                            rs.getTimestamp("ReadTime").toInstant(),
+                            rs.getBoolean("Deleted")
+                    ));
+                }
+            }
+        } catch (SQLException e) {
+            LoggerHandler.log(e);
+        }
+        return out;
+    }
+    // Delta sync: reads written after `afterRevision`, soft-deleted ones included. Reads
+    // moved to the archive leave no tombstone; see oldestActiveReadTime().
+    public ChangeSet<ItemRead> listChangedSince(long afterRevision, int limit) {
+        return Revisions.changedSince("ItemRead", "ReadID, TagID, ReadTime, Deleted",
+                afterRevision, limit, rs -> new ItemRead(
+                        rs.getInt("ReadID"),
+                        rs.getString("TagID"),
+                        rs.getTimestamp("ReadTime").toInstant(),
+                        rs.getBoolean("Deleted")
+                ));
+    }
+    // Start of the hot table: anything older has been archived. Null when it is empty.
+    public Instant oldestActiveReadTime() {
+        String sql = "SELECT MIN(ReadTime) FROM ItemRead WHERE Deleted = " + ConnectionManager.dialect().bool(false);
+        try (Connection c = ConnectionManager.getConnection();
+             PreparedStatement ps = c.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            Timestamp t = rs.next() ? rs.getTimestamp(1) : null;
+            return t == null ? null : t.toInstant();
+        } catch (SQLException e) {
+            LoggerHandler.log(e);
+            return null;
+        }
+    }
     public ItemRead updateItemRead(int readId, String tagId, Instant ts) {
         String sql = """
             UPDATE ItemRead
-            SET TagID = ?, ReadTime = ?
-            WHERE ReadID = ? AND Deleted = FALSE
-        """;
-        try (Connection c = ConnectionManager.getConnection();
+            SET TagID = ?, ReadTime = ?, Revision = %s
+            WHERE ReadID = ? AND Deleted = %s
+        """.formatted(ConnectionManager.dialect().nextRevision(), ConnectionManager.dialect().bool(false));
+        try (RevisionFence.Writer fence = RevisionFence.write();
+             Connection c = ConnectionManager.getConnection();
              PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setString(1, tagId);
             ps.setTimestamp(2, Timestamp.from(ts));
@@ -127,13 +252,15 @@ public class ItemReadDao {
         return null;
     }
     public boolean softDeleteItemRead(int readId) {
+        SqlDialect d = ConnectionManager.dialect();
         String sql = """
             UPDATE ItemRead
-            SET Deleted = TRUE
-            WHERE ReadID = ? AND Deleted = FALSE
-        """;
+            SET Deleted = %s, Revision = %s
+            WHERE ReadID = ? AND Deleted = %s
+        """.formatted(d.bool(true), d.nextRevision(), d.bool(false));
 
-        try (Connection c = ConnectionManager.getConnection();
+        try (RevisionFence.Writer fence = RevisionFence.write();
+             Connection c = ConnectionManager.getConnection();
              PreparedStatement ps = c.prepareStatement(sql)) {
 
             ps.setInt(1, readId);
@@ -145,23 +272,37 @@ public class ItemReadDao {
             return false;
         }
     }
+    // Also searches the archive partitions the range reaches into.
     public List<ItemRead> listReadsForTagInRange(String tagId, Instant from, Instant to) {
+        return listReadsForTagInRange(tagId, from, to, true);
+    }
+    public List<ItemRead> listReadsForTagInRange(String tagId, Instant from, Instant to, boolean includeArchive) {
         List<ItemRead> out = new ArrayList<>();
 
-        String sql = """
-        SELECT ReadID, TagID, ReadTime, Deleted
-        FROM ItemRead
-        WHERE TagID = ? AND Deleted = FALSE
-          AND ReadTime >= ? AND ReadTime <= ?
-        ORDER BY ReadTime ASC
-    """;
+        List<String> tables = new ArrayList<>();
+        tables.add("ItemRead");
+        if (includeArchive) {
+            for (ItemReadArchiveDao.Partition p : archiveDao.partitionsOverlapping(from, to)) tables.add(p.table());
+        }
+
+        String notDeleted = " AND Deleted = " + ConnectionManager.dialect().bool(false);
+        StringBuilder sql = new StringBuilder();
+        for (String table : tables) {
+            if (!sql.isEmpty()) sql.append(" UNION ALL ");
+            sql.append("SELECT ReadID, TagID, ReadTime, Deleted FROM ").append(table)
+               .append(" WHERE TagID = ?").append(notDeleted).append(" AND ReadTime >= ? AND ReadTime <= ?");
+        }
+        sql.append(" ORDER BY ReadTime ASC");
 
         try (Connection c = ConnectionManager.getConnection();
-             PreparedStatement ps = c.prepareStatement(sql)) {
+             PreparedStatement ps = c.prepareStatement(sql.toString())) {
 
-            ps.setString(1, tagId);
-            ps.setTimestamp(2, Timestamp.from(from));
-            ps.setTimestamp(3, Timestamp.from(to));
+            int i = 1;
+            for (int t = 0; t < tables.size(); t++) {
+                ps.setString(i++, tagId);
+                ps.setTimestamp(i++, Timestamp.from(from));
+                ps.setTimestamp(i++, Timestamp.from(to));
+            }
 
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
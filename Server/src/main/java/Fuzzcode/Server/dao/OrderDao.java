@@ -2,6 +2,8 @@ package Fuzzcode.Server.dao;
 
 import Fuzzcode.Server.utilities.LoggerHandler;
 import Fuzzcode.Server.db.ConnectionManager;
+import Fuzzcode.Server.db.SqlDialect;
+import Fuzzcode.Server.model.ChangeSet;
 import Fuzzcode.Server.model.Order;
 
 import java.sql.*;
@@ -12,7 +14,8 @@ import java.util.List;
 public class OrderDao {
 
     public int createOrder(LocalDate createdDate, Integer customerId, Integer loggedById) {
-        try (Connection c = ConnectionManager.getConnection()) {
+        try (RevisionFence.Writer fence = RevisionFence.write();
+             Connection c = ConnectionManager.getConnection()) {
             return createOrder(c, createdDate, customerId, loggedById);
         } catch (SQLException e) {
             LoggerHandler.log(e);
@@ -30,39 +33,50 @@ public class OrderDao {
         } catch (SQLException e) { LoggerHandler.log(e); return List.of(); }
     }
     public boolean updateOrderDates(int orderId, LocalDate start, LocalDate end) {
-        try (Connection c = ConnectionManager.getConnection()) {
+        try (RevisionFence.Writer fence = RevisionFence.write();
+             Connection c = ConnectionManager.getConnection()) {
             return updateOrderDates(c, orderId, start, end);
         } catch (SQLException e) { LoggerHandler.log(e); return false; }
     }
     public boolean updateOrderStartDate(int orderId, LocalDate start) {
-        try (Connection c = ConnectionManager.getConnection()) {
+        try (RevisionFence.Writer fence = RevisionFence.write();
+             Connection c = ConnectionManager.getConnection()) {
 
             return updateOrderDates(c, orderId, start, (readOrder(orderId, false).endDate()));
         } catch (SQLException e) { LoggerHandler.log(e); return false; }
     }
     public boolean updateOrderEndDate(int orderId, LocalDate end) {
-        try (Connection c = ConnectionManager.getConnection()) {
+        try (RevisionFence.Writer fence = RevisionFence.write();
+             Connection c = ConnectionManager.getConnection()) {
 
             return updateOrderDates(c, orderId,(readOrder(orderId, false).endDate()), end);
         } catch (SQLException e) { LoggerHandler.log(e); return false; }
     }
     public boolean assignCustomer(int orderId, Integer customerId) {
-        try (Connection c = ConnectionManager.getConnection()) {
+        try (RevisionFence.Writer fence = RevisionFence.write();
+             Connection c = ConnectionManager.getConnection()) {
             return assignCustomer(c, orderId, customerId);
         } catch (SQLException e) { LoggerHandler.log(e); return false; }
     }
     public boolean softDeleteOrder(int orderId) {
-        try (Connection c = ConnectionManager.getConnection()) {
+        try (RevisionFence.Writer fence = RevisionFence.write();
+             Connection c = ConnectionManager.getConnection()) {
             return softDeleteOrder(c, orderId);
         } catch (SQLException e) { LoggerHandler.log(e); return false; }
     }
+    // Delta sync: orders written after `afterRevision`, soft-deleted ones included.
+    public ChangeSet<Order> listChangedSince(long afterRevision, int limit) {
+        return Revisions.changedSince("Orders",
+                "OrderID, CreatedDate, StartDate, EndDate, CustomerID, LoggedByID, Deleted",
+                afterRevision, limit, OrderDao::mapOrder);
+    }
 
     /* ================= Connection-taking overloads ================= */
     public int createOrder(Connection c, LocalDate createdDate, Integer customerId, Integer loggedById) throws SQLException {
         String sql = """
             INSERT INTO Orders (CreatedDate, StartDate, EndDate, CustomerID, LoggedByID, Deleted)
-            VALUES (?, NULL, NULL, ?, ?, FALSE)
-        """;
+            VALUES (?, NULL, NULL, ?, ?, %s)
+        """.formatted(ConnectionManager.dialect().bool(false));
         try (PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             ps.setDate(1, Date.valueOf(createdDate != null ? createdDate : LocalDate.now()));
             if (customerId == null) ps.setNull(2, Types.INTEGER); else ps.setInt(2, customerId);
@@ -75,7 +89,7 @@ public class OrderDao {
         String sql = """
             SELECT OrderID, CreatedDate, StartDate, EndDate, CustomerID, LoggedByID, Deleted
             FROM Orders WHERE OrderID = ?
-        """ + (includeDeleted ? "" : " AND Deleted = FALSE");
+        """ + (includeDeleted ? "" : " AND Deleted = " + ConnectionManager.dialect().bool(false));
         try (PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setInt(1, orderId);
             try (ResultSet rs = ps.executeQuery()) { return rs.next() ? mapOrder(rs) : null; }
@@ -86,7 +100,7 @@ public class OrderDao {
         String sql = """
             SELECT OrderID, CreatedDate, StartDate, EndDate, CustomerID, LoggedByID, Deleted
             FROM Orders WHERE 1=1
-        """ + (includeDeleted ? "" : " AND Deleted = FALSE")
+        """ + (includeDeleted ? "" : " AND Deleted = " + ConnectionManager.dialect().bool(false))
                 + (customerId == null ? "" : " AND CustomerID = ?")
                 + " ORDER BY CreatedDate DESC, OrderID DESC";
         try (PreparedStatement ps = c.prepareStatement(sql)) {
@@ -100,9 +114,9 @@ public class OrderDao {
     }
     public boolean updateOrderDates(Connection c, int orderId, LocalDate start, LocalDate end) throws SQLException {
         String sql = """
-            UPDATE Orders SET StartDate = ?, EndDate = ?
-            WHERE OrderID = ? AND Deleted = FALSE
-        """;
+            UPDATE Orders SET StartDate = ?, EndDate = ?, Revision = %s
+            WHERE OrderID = ? AND Deleted = %s
+        """.formatted(ConnectionManager.dialect().nextRevision(), ConnectionManager.dialect().bool(false));
         try (PreparedStatement ps = c.prepareStatement(sql)) {
             if (start == null) ps.setNull(1, Types.DATE); else ps.setDate(1, Date.valueOf(start));
             if (end == null) ps.setNull(2, Types.DATE); else ps.setDate(2, Date.valueOf(end));
@@ -111,7 +125,9 @@ public class OrderDao {
         }
     }
     public boolean assignCustomer(Connection c, int orderId, Integer customerId) throws SQLException {
-        String sql = "UPDATE Orders SET CustomerID = ? WHERE OrderID = ? AND Deleted = FALSE";
+        SqlDialect d = ConnectionManager.dialect();
+        String sql = "UPDATE Orders SET CustomerID = ?, Revision = " + d.nextRevision()
+                + " WHERE OrderID = ? AND Deleted = " + d.bool(false);
         try (PreparedStatement ps = c.prepareStatement(sql)) {
             if (customerId == null) ps.setNull(1, Types.INTEGER); else ps.setInt(1, customerId);
             ps.setInt(2, orderId);
@@ -119,7 +135,9 @@ public class OrderDao {
         }
     }
     public boolean softDeleteOrder(Connection c, int orderId) throws SQLException {
-        String sql = "UPDATE Orders SET Deleted = TRUE WHERE OrderID = ? AND Deleted = FALSE";
+        SqlDialect d = ConnectionManager.dialect();
+        String sql = "UPDATE Orders SET Deleted = " + d.bool(true) + ", Revision = " + d.nextRevision()
+                + " WHERE OrderID = ? AND Deleted = " + d.bool(false);
         try (PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setInt(1, orderId);
             return ps.executeUpdate() > 0;
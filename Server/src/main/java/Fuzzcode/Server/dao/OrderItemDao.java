@@ -1,8 +1,13 @@
 package Fuzzcode.Server.dao;
 
+import Fuzzcode.Server.cache.PositionCounters;
 import Fuzzcode.Server.utilities.LoggerHandler;
 import Fuzzcode.Server.db.ConnectionManager;
+import Fuzzcode.Server.db.SqlDialect;
+import Fuzzcode.Server.model.ChangeSet;
+import Fuzzcode.Server.model.Item;
 import Fuzzcode.Server.model.OrderItem;
+import Fuzzcode.Server.model.OrderItemDetail;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -13,12 +18,14 @@ import java.util.List;
 
 public class OrderItemDao {
 
-
-
+    private static final PositionCounters POSITIONS = PositionCounters.getInstance();
+    private static final List<String> RELATION_KEY = List.of("OrderID", "ItemID");
+    private static final List<String> RELATION_COLUMNS = List.of("OrderID", "ItemID", "Deleted");
 
     /* ---------- Convenience (auto-connection) ---------- */
     public OrderItem attach(int orderId, int itemId) {
-        try (var c = ConnectionManager.getConnection()) {
+        try (RevisionFence.Writer fence = RevisionFence.write();
+             var c = ConnectionManager.getConnection()) {
             return attach(c, orderId, itemId);
         } catch (SQLException e) {
             LoggerHandler.log(e);
@@ -26,7 +33,8 @@ public class OrderItemDao {
         }
     }
     public boolean detach(int orderId, int itemId) {
-        try (Connection c = ConnectionManager.getConnection()) {
+        try (RevisionFence.Writer fence = RevisionFence.write();
+             Connection c = ConnectionManager.getConnection()) {
             return detach(c, orderId, itemId);
         } catch (SQLException e) { LoggerHandler.log(e); return false; }
     }
@@ -45,6 +53,11 @@ public class OrderItemDao {
             return listByOrder(c, orderId, includeDeleted);
         } catch (SQLException e) { LoggerHandler.log(e); return List.of(); }
     }
+    public List<OrderItemDetail> listByOrderWithItems(int orderId, boolean includeDeleted) {
+        try (Connection c = ConnectionManager.getConnection()) {
+            return listByOrderWithItems(c, orderId, includeDeleted);
+        } catch (SQLException e) { LoggerHandler.log(e); return List.of(); }
+    }
     public List<OrderItem> listAll(boolean includeDeleted) {
         try (Connection c = ConnectionManager.getConnection()) {
             return listAll(c, includeDeleted);
@@ -54,44 +67,50 @@ public class OrderItemDao {
         }
     }
 
+    // Delta sync: relations written after `afterRevision`, detached ones included.
+    public ChangeSet<OrderItem> listChangedSince(long afterRevision, int limit) {
+        return Revisions.changedSince("OrderItems", "OrderID, ItemID, Deleted",
+                afterRevision, limit, OrderItemDao::map);
+    }
+
     /* ---------- Connection-taking ---------- */
     public OrderItem attach(Connection c, int orderId, int itemId) throws SQLException {
+        SqlDialect d = ConnectionManager.dialect();
         // 1) Forbid two ACTIVE orders for the same item
-        try (var chk = c.prepareStatement("""
-        SELECT 1 FROM OrderItems WHERE ItemID=? AND Deleted=FALSE LIMIT 1
-    """)) {
+        try (var chk = c.prepareStatement("SELECT 1 FROM OrderItems WHERE ItemID=? AND Deleted=" + d.bool(false))) {
             chk.setInt(1, itemId);
             try (var rs = chk.executeQuery()) {
                 if (rs.next()) throw new IllegalStateException("Item already attached to an active order");
             }
         }
-        // 2) Revive if same OrderID has a soft-deleted relation
-        try (var up = c.prepareStatement("""
-        UPDATE OrderItems SET Deleted=FALSE
-         WHERE OrderID=? AND ItemID=? AND Deleted=TRUE
-    """)) {
+        // 2) Revive the soft-deleted relation of this order, or insert a fresh one
+        try (var up = c.prepareStatement(d.upsert("OrderItems", RELATION_KEY, RELATION_COLUMNS))) {
             up.setInt(1, orderId);
             up.setInt(2, itemId);
-            if (up.executeUpdate() == 1) {
-                return readOne(c, orderId, itemId, true); // tiny private helper
-            }
+            up.setBoolean(3, false);
+            up.executeUpdate();
         }
-        // 3) Insert fresh (PK guards duplicates in same order)
-        try (var ins = c.prepareStatement("""
-        INSERT INTO OrderItems(OrderID, ItemID, Deleted) VALUES (?,?,FALSE)
-    """)) {
-            ins.setInt(1, orderId);
-            ins.setInt(2, itemId);
-            ins.executeUpdate();
+        // The upsert only writes RELATION_COLUMNS, so a revived row needs its revision bumped.
+        try (var rev = c.prepareStatement("UPDATE OrderItems SET Revision = " + d.nextRevision()
+                + " WHERE OrderID = ? AND ItemID = ?")) {
+            rev.setInt(1, orderId);
+            rev.setInt(2, itemId);
+            rev.executeUpdate();
         }
+        // Inside a transaction the caller reports the change once it has committed.
+        if (c.getAutoCommit()) POSITIONS.attached(orderId, itemId);
         return readOne(c, orderId, itemId, true);
     }
     public boolean detach(Connection c, int orderId, int itemId) throws SQLException {
-        String sql = "UPDATE OrderItems SET Deleted = TRUE WHERE OrderID = ? AND ItemID = ? AND Deleted = FALSE";
+        SqlDialect d = ConnectionManager.dialect();
+        String sql = "UPDATE OrderItems SET Deleted = " + d.bool(true) + ", Revision = " + d.nextRevision()
+                + " WHERE OrderID = ? AND ItemID = ? AND Deleted = " + d.bool(false);
         try (PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setInt(1, orderId);
             ps.setInt(2, itemId);
-            return ps.executeUpdate() > 0;
+            boolean detached = ps.executeUpdate() > 0;
+            if (detached && c.getAutoCommit()) POSITIONS.detached(orderId, itemId);
+            return detached;
         }
     }
     public boolean isAttached(Connection c, int orderId, int itemId, boolean includeDeleted) throws SQLException {
@@ -101,9 +120,8 @@ public class OrderItemDao {
          WHERE OrderID = ? AND ItemID = ?
     """;
         if (!includeDeleted) {
-            sql += " AND Deleted = FALSE";
+            sql += " AND Deleted = " + ConnectionManager.dialect().bool(false);
         }
-        sql += " LIMIT 1";
 
         try (var ps = c.prepareStatement(sql)) {
             ps.setInt(1, orderId);
@@ -112,7 +130,7 @@ public class OrderItemDao {
         }
     }
     public int countActiveItems(Connection c, int orderId) throws SQLException {
-        String sql = "SELECT COUNT(*) FROM OrderItems WHERE OrderID = ? AND Deleted = FALSE";
+        String sql = "SELECT COUNT(*) FROM OrderItems WHERE OrderID = ? AND Deleted = " + ConnectionManager.dialect().bool(false);
         try (PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setInt(1, orderId);
             try (ResultSet rs = ps.executeQuery()) { return rs.next() ? rs.getInt(1) : 0; }
@@ -125,7 +143,7 @@ public class OrderItemDao {
         WHERE OrderID = ?
     """;
         if (!includeDeleted) {
-            sql += " AND Deleted = FALSE";
+            sql += " AND Deleted = " + ConnectionManager.dialect().bool(false);
         }
 
         try (
@@ -147,13 +165,46 @@ public class OrderItemDao {
             throw new RuntimeException(e);
         }
     }
+    // Relations of an order with their items, in one round trip. includeDeleted applies to
+    // the relations only: an item is returned even if it was soft-deleted after attaching.
+    public List<OrderItemDetail> listByOrderWithItems(Connection c, int orderId, boolean includeDeleted) throws SQLException {
+        String sql = """
+        SELECT oi.OrderID, oi.ItemID AS RelItemID, oi.Deleted AS RelDeleted,
+               i.ItemID, i.TagID, i.Position, i.IsOverdue, i.Deleted
+        FROM OrderItems oi
+        LEFT JOIN Items i ON i.ItemID = oi.ItemID
+        WHERE oi.OrderID = ?
+    """;
+        if (!includeDeleted) {
+            sql += " AND oi.Deleted = " + ConnectionManager.dialect().bool(false);
+        }
+        sql += " ORDER BY oi.ItemID";
+
+        try (var ps = c.prepareStatement(sql)) {
+            ps.setInt(1, orderId);
+            try (var rs = ps.executeQuery()) {
+                var out = new ArrayList<OrderItemDetail>();
+                while (rs.next()) {
+                    OrderItem relation = new OrderItem(
+                            rs.getInt("OrderID"),
+                            rs.getInt("RelItemID"),
+                            rs.getBoolean("RelDeleted")
+                    );
+                    rs.getInt("ItemID");
+                    Item item = rs.wasNull() ? null : ItemDao.mapItem(rs);
+                    out.add(new OrderItemDetail(relation, item));
+                }
+                return out;
+            }
+        }
+    }
     public List<OrderItem> listAll(Connection c, boolean includeDeleted) throws SQLException {
         String sql = """
         SELECT OrderID, ItemID, Deleted
         FROM OrderItems
     """;
         if (!includeDeleted) {
-            sql += " WHERE Deleted = FALSE";
+            sql += " WHERE Deleted = " + ConnectionManager.dialect().bool(false);
         }
 
         try (PreparedStatement ps = c.prepareStatement(sql);
@@ -176,7 +227,7 @@ public class OrderItemDao {
         String sql = """
       SELECT OrderID, ItemID, Deleted
         FROM OrderItems
-       WHERE OrderID=? AND ItemID=?""" + (includeDeleted ? "" : " AND Deleted=FALSE") + " LIMIT 1";
+       WHERE OrderID=? AND ItemID=?""" + (includeDeleted ? "" : " AND Deleted=" + ConnectionManager.dialect().bool(false));
         try (var ps = c.prepareStatement(sql)) {
             ps.setInt(1, orderId);
             ps.setInt(2, itemId);
@@ -1,6 +1,8 @@
 package Fuzzcode.Server.dao;
 
 import Fuzzcode.Server.db.ConnectionManager;
+import Fuzzcode.Server.db.SqlDialect;
+import Fuzzcode.Server.model.ChangeSet;
 import Fuzzcode.Server.model.Person;
 import Fuzzcode.Server.model.PersonRole;
 import Fuzzcode.Server.utilities.LoggerHandler;
@@ -15,10 +17,11 @@ public class PersonDao {
     public int createPerson(String name, PersonRole role) {
         String sql = """
             INSERT INTO People (Name, Role, Deleted)
-            VALUES (?, ?, FALSE)
-        """;
+            VALUES (?, ?, %s)
+        """.formatted(ConnectionManager.dialect().bool(false));
 
-        try (Connection conn = ConnectionManager.getConnection();
+        try (RevisionFence.Writer fence = RevisionFence.write();
+             Connection conn = ConnectionManager.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
 
             ps.setString(1, name);
@@ -39,7 +42,7 @@ public class PersonDao {
             SELECT PersonID, Name, Role, Deleted
             FROM People
             WHERE PersonID = ?
-        """ + (includeDeleted ? "" : " AND Deleted = FALSE");
+        """ + (includeDeleted ? "" : " AND Deleted = " + ConnectionManager.dialect().bool(false));
 
         try (Connection conn = ConnectionManager.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
@@ -66,8 +69,8 @@ public class PersonDao {
         String sql = """
             SELECT PersonID, Name, Role, Deleted
             FROM People
-            WHERE Deleted = FALSE
-        """;
+            WHERE Deleted = %s
+        """.formatted(ConnectionManager.dialect().bool(false));
 
         try (Connection conn = ConnectionManager.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql);
@@ -87,14 +90,25 @@ public class PersonDao {
         }
         return people;
     }
+    // Delta sync: people written after `afterRevision`, soft-deleted ones included.
+    public ChangeSet<Person> listChangedSince(long afterRevision, int limit) {
+        return Revisions.changedSince("People", "PersonID, Name, Role, Deleted",
+                afterRevision, limit, rs -> new Person(
+                        rs.getInt("PersonID"),
+                        rs.getString("Name"),
+                        PersonRole.valueOf(rs.getString("Role")),
+                        rs.getBoolean("Deleted")
+                ));
+    }
     public boolean updatePerson(int id, String name, PersonRole role) {
         String sql = """
             UPDATE People
-            SET Name = ?, Role = ?
-            WHERE PersonID = ? AND Deleted = FALSE
-        """;
+            SET Name = ?, Role = ?, Revision = %s
+            WHERE PersonID = ? AND Deleted = %s
+        """.formatted(ConnectionManager.dialect().nextRevision(), ConnectionManager.dialect().bool(false));
 
-        try (Connection conn = ConnectionManager.getConnection();
+        try (RevisionFence.Writer fence = RevisionFence.write();
+             Connection conn = ConnectionManager.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
 
             ps.setString(1, name);
@@ -110,11 +124,12 @@ public class PersonDao {
     public boolean updatePersonRole(int id, PersonRole newRole) {
         String sql = """
             UPDATE People
-            SET Role = ?
-            WHERE PersonID = ? AND Deleted = FALSE
-        """;
+            SET Role = ?, Revision = %s
+            WHERE PersonID = ? AND Deleted = %s
+        """.formatted(ConnectionManager.dialect().nextRevision(), ConnectionManager.dialect().bool(false));
 
-        try (Connection conn = ConnectionManager.getConnection();
+        try (RevisionFence.Writer fence = RevisionFence.write();
+             Connection conn = ConnectionManager.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
 
             ps.setString(1, newRole.name());
@@ -127,13 +142,15 @@ public class PersonDao {
         }
     }
     public boolean softDeletePerson(int id) {
+        SqlDialect d = ConnectionManager.dialect();
         String sql = """
             UPDATE People
-            SET Deleted = TRUE
-            WHERE PersonID = ? AND Deleted = FALSE
-        """;
+            SET Deleted = %s, Revision = %s
+            WHERE PersonID = ? AND Deleted = %s
+        """.formatted(d.bool(true), d.nextRevision(), d.bool(false));
 
-        try (Connection conn = ConnectionManager.getConnection();
+        try (RevisionFence.Writer fence = RevisionFence.write();
+             Connection conn = ConnectionManager.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
 
             ps.setInt(1, id);
@@ -145,13 +162,15 @@ public class PersonDao {
         }
     }
     public boolean deletePerson(int id) {
+        SqlDialect d = ConnectionManager.dialect();
         String sql = """
             UPDATE People
-            SET Deleted = TRUE
-            WHERE PersonID = ? AND Deleted = FALSE
-        """;
+            SET Deleted = %s, Revision = %s
+            WHERE PersonID = ? AND Deleted = %s
+        """.formatted(d.bool(true), d.nextRevision(), d.bool(false));
 
-        try (Connection conn = ConnectionManager.getConnection();
+        try (RevisionFence.Writer fence = RevisionFence.write();
+             Connection conn = ConnectionManager.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
 
             ps.setInt(1, id);
@@ -0,0 +1,67 @@
+package Fuzzcode.Server.dao;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Revisions come from a sequence when a row is written, not when it commits: while a write
+// holding N is still open, a reader can already see N+1. Every write that takes revisions
+// holds a Writer from before its first statement until after its commit, and delta sync
+// never reports a revision that an open write could still commit below (Revisions).
+// Covers this process only, which is enough: the synced tables are only written here.
+public final class RevisionFence {
+
+    private static final RevisionFence INSTANCE = new RevisionFence();
+
+    // Highest revision a reader has seen. Every revision handed out later is above it.
+    private final AtomicLong seen = new AtomicLong();
+    // Open writes, each with the `seen` value at its start: its revisions are all above that.
+    private final ConcurrentHashMap<Writer, Long> open = new ConcurrentHashMap<>();
+    private final AtomicLong started = new AtomicLong();
+
+    public final class Writer implements AutoCloseable {
+        private Writer() {}
+
+        @Override
+        public void close() {
+            open.remove(this);
+        }
+    }
+
+    private RevisionFence() {}
+
+    // try (RevisionFence.Writer w = RevisionFence.write(); Connection c = ...) { ... }
+    // Resources close in reverse order, so the writer is released after the commit.
+    public static Writer write() {
+        RevisionFence f = INSTANCE;
+        Writer w = f.new Writer();
+        f.open.put(w, f.seen.get());
+        // After the put: a reader that missed this writer in its scan sees the count move.
+        f.started.incrementAndGet();
+        return w;
+    }
+
+    /* --------------- readers (Revisions) --------------- */
+
+    record Snapshot(long seen, long started, long floor) {}
+
+    // Taken before the query.
+    static Snapshot before() {
+        RevisionFence f = INSTANCE;
+        long seen = f.seen.get();
+        long started = f.started.get();
+        long floor = Long.MAX_VALUE;
+        for (long l : f.open.values()) floor = Math.min(floor, l);
+        return new Snapshot(seen, started, floor);
+    }
+
+    // Highest revision that is safe to report after the query saw up to `maxSeen`: below
+    // every write that was open when the query started, and no higher than `seen` was then
+    // if a write started meanwhile.
+    static long safeRevision(Snapshot s, long maxSeen) {
+        RevisionFence f = INSTANCE;
+        long safe = Math.min(maxSeen, s.floor());
+        if (f.started.get() != s.started()) safe = Math.min(safe, s.seen());
+        f.seen.accumulateAndGet(maxSeen, Math::max);
+        return safe;
+    }
+}
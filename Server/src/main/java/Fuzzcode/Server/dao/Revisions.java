@@ -0,0 +1,57 @@
+package Fuzzcode.Server.dao;
+
+import Fuzzcode.Server.db.ConnectionManager;
+import Fuzzcode.Server.db.SqlDialect;
+import Fuzzcode.Server.model.ChangeSet;
+import Fuzzcode.Server.utilities.LoggerHandler;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+// The query behind every listChangedSince: rows of one table whose Revision is above
+// `after`, in revision order, one page at a time (IDX_<table>_Revision). The revision
+// handed back stops below writes that are still open (RevisionFence), so a row that
+// commits late with a lower revision is not skipped; rows past it come again next time.
+final class Revisions {
+
+    @FunctionalInterface
+    interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    private Revisions() {}
+
+    // `columns` must not include Revision. A caller at revision 0 holds nothing yet, so
+    // deleted rows are left out of its pages. Returns null if the query failed.
+    static <T> ChangeSet<T> changedSince(String table, String columns, long after, int limit, RowMapper<T> mapper) {
+        SqlDialect d = ConnectionManager.dialect();
+        String sql = "SELECT " + columns + ", Revision FROM " + table
+                + " WHERE Revision > ?"
+                + (after > 0 ? "" : " AND Deleted = " + d.bool(false))
+                + " ORDER BY Revision " + d.limit();
+        List<T> rows = new ArrayList<>();
+        long maxSeen = after;
+        RevisionFence.Snapshot fence = RevisionFence.before();
+        try (Connection c = ConnectionManager.getConnection();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setLong(1, after);
+            ps.setInt(2, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(mapper.map(rs));
+                    maxSeen = Math.max(maxSeen, rs.getLong("Revision"));
+                }
+            }
+        } catch (SQLException e) {
+            LoggerHandler.log(e);
+            return null;
+        }
+        long revision = Math.max(after, RevisionFence.safeRevision(fence, maxSeen));
+        // Held back by an open write: the caller picks the rest up on its next request.
+        return new ChangeSet<>(rows, revision, rows.size() == limit && revision > after);
+    }
+}
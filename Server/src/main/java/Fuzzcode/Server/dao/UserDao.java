@@ -1,5 +1,6 @@
 package Fuzzcode.Server.dao;
 
+import Fuzzcode.Server.cache.UserLookupCache;
 import Fuzzcode.Server.utilities.LoggerHandler;
 import Fuzzcode.Server.db.ConnectionManager;
 import Fuzzcode.Server.model.AppUser;
@@ -10,14 +11,18 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class UserDao {
-    private static final String BASE_SELECT = """
+    private static final UserLookupCache USERS = UserLookupCache.getInstance();
+
+    private static String baseSelect() {
+        return """
         SELECT UserID, Username, PasswordHash, Salt, Role, CreatedAt
         FROM Users
-        WHERE Deleted = FALSE
-        """;
+        WHERE Deleted = %s
+        """.formatted(ConnectionManager.dialect().bool(false));
+    }
     /* === UPDATE =================================== */
     public AppUser findByUsername(String username) {
-        String sql = BASE_SELECT + " AND Username = ?";
+        String sql = baseSelect() + " AND Username = ?";
         try (Connection c = ConnectionManager.getConnection();
              PreparedStatement ps = c.prepareStatement(sql)) {
 
@@ -31,8 +36,13 @@ public class UserDao {
         }
     }
 
+    // Login path: served from UserLookupCache for a short while.
+    public AppUser findByUsernameCached(String username) {
+        return USERS.lookup(username, this::findByUsername);
+    }
+
     public AppUser findById(int id) {
-        String sql = BASE_SELECT + " AND UserID = ?";
+        String sql = baseSelect() + " AND UserID = ?";
 
         try (Connection c = ConnectionManager.getConnection();
              PreparedStatement ps = c.prepareStatement(sql)) {
@@ -51,8 +61,8 @@ public class UserDao {
         String sql = """
                 INSERT INTO Users
                 (Username, PasswordHash, Salt, Role, CreatedAt, Deleted)
-                VALUES (?, ?, ?, ?, CURRENT_TIMESTAMP(), FALSE)
-                """;
+                VALUES (?, ?, ?, ?, CURRENT_TIMESTAMP, %s)
+                """.formatted(ConnectionManager.dialect().bool(false));
 
         try (Connection c = ConnectionManager.getConnection();
              PreparedStatement ps = c.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS)) {
@@ -63,6 +73,7 @@ public class UserDao {
             ps.setString(4, role.name());
 
             ps.executeUpdate();
+            USERS.invalidate(username);
 
             try (ResultSet rs = ps.getGeneratedKeys()) {
                 if (rs.next()) return rs.getInt(1);
@@ -102,7 +113,9 @@ public class UserDao {
             ps.setString(1, newHash);
             ps.setString(2, newSalt);
             ps.setInt(3, userId);
-            return ps.executeUpdate() == 1;
+            boolean updated = ps.executeUpdate() == 1;
+            USERS.invalidateUser(userId);
+            return updated;
         } catch (SQLException e) {
             LoggerHandler.log(e);
             return false;
@@ -114,7 +127,9 @@ public class UserDao {
              PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setString(1, newRole.name());
             ps.setInt(2, userId);
-            return ps.executeUpdate() == 1;
+            boolean updated = ps.executeUpdate() == 1;
+            USERS.invalidateUser(userId);
+            return updated;
         } catch (SQLException e) {
             LoggerHandler.log(e);
             return false;
@@ -126,7 +141,10 @@ public class UserDao {
              PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setString(1, newUsername);
             ps.setInt(2, userId);
-            return ps.executeUpdate() == 1;
+            boolean updated = ps.executeUpdate() == 1;
+            USERS.invalidateUser(userId);
+            USERS.invalidate(newUsername); // may be cached as unknown
+            return updated;
         } catch (SQLException e) {
             LoggerHandler.log(e);
             return false;
@@ -138,7 +156,9 @@ public class UserDao {
         try (Connection c = ConnectionManager.getConnection();
              PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setInt(1, userId);
-            return ps.executeUpdate() == 1;
+            boolean updated = ps.executeUpdate() == 1;
+            USERS.invalidateUser(userId);
+            return updated;
         } catch (SQLException e) {
             LoggerHandler.log(e);
             return false;
@@ -5,6 +5,7 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class ConnectionManager {
 
@@ -13,6 +14,12 @@ public class ConnectionManager {
     private static String user;
     private static String pass;
     private static int loginTimeoutSeconds = 5;
+    private static ConnectionPool.Config poolConfig = ConnectionPool.Config.defaults();
+    private static SqlDialect configuredDialect; // null: derived from the URL
+    private static volatile SqlDialect dialect = SqlDialect.H2;
+    private static volatile ConnectionPool pool;
+    // Bumped on every successful init(), so caches can tell the database changed under them.
+    private static final AtomicInteger generation = new AtomicInteger();
 
     private static volatile Connection livingConnection; // only used for H2 mem
 
@@ -39,19 +46,24 @@ public class ConnectionManager {
                     validate(c);
                 }
             }
+            pool = new ConnectionPool(url, user, pass, poolConfig);
         } catch (SQLException e) {
             LoggerHandler.log("ConnectionManager init failed for url=" + url);
             LoggerHandler.log(e);
             throw new RuntimeException("DB init failed", e);
         }
 
+        dialect = configuredDialect != null ? configuredDialect : SqlDialect.forUrl(url);
         initialized = true;
-        LoggerHandler.log("ConnectionManager initialized for " + url);
+        generation.incrementAndGet();
+        LoggerHandler.log("ConnectionManager initialized for " + url + " (" + dialect + " dialect)");
     }
 
     public static Connection getConnection() throws SQLException {
         ensureInitialized();
-        return DriverManager.getConnection(url, user, pass);
+        ConnectionPool p = pool;
+        if (p == null) throw new IllegalStateException("ConnectionManager not initialized. Call ConnectionManager.init(...) first.");
+        return p.borrow();
     }
 
     public static synchronized void setLoginTimeoutSeconds(int seconds) {
@@ -59,7 +71,35 @@ public class ConnectionManager {
         loginTimeoutSeconds = Math.max(1, seconds);
     }
 
+    public static synchronized void setPoolConfig(ConnectionPool.Config config) {
+        if (initialized) return;
+        poolConfig = config;
+    }
+
+    public static synchronized int maxPoolSize() {
+        return poolConfig.maxSize();
+    }
+
+    // Overrides the dialect derived from the JDBC URL; takes effect on the next init().
+    public static synchronized void setDialect(SqlDialect d) {
+        if (initialized) return;
+        configuredDialect = d;
+    }
+
+    public static SqlDialect dialect() {
+        return dialect;
+    }
+
+    public static ConnectionPool.Stats poolStats() {
+        ConnectionPool p = pool;
+        return p == null ? null : p.stats();
+    }
+
     public static synchronized void close() {
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
         if (livingConnection != null) {
             try { livingConnection.close(); } catch (SQLException ignored) {}
             livingConnection = null;
@@ -78,6 +118,9 @@ public class ConnectionManager {
     public static boolean isInitialized() {
         return initialized;
     }
+    public static int generation() {
+        return generation.get();
+    }
 
     public static synchronized void resetForTests() {
         try { close(); } catch (Throwable ignore) {}
@@ -86,9 +129,12 @@ public class ConnectionManager {
         user = null;
         pass = null;
         livingConnection = null;
+        poolConfig = ConnectionPool.Config.defaults();
+        configuredDialect = null;
+        dialect = SqlDialect.H2;
     }
 
-    private static void validate(Connection c) throws SQLException {
+    static void validate(Connection c) throws SQLException {
         try (PreparedStatement ps = c.prepareStatement("SELECT 1")) {
             ps.executeQuery().close();
         }
@@ -0,0 +1,404 @@
+package Fuzzcode.Server.db;
+
+import Fuzzcode.Server.utilities.LoggerHandler;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Small bounded JDBC pool used behind ConnectionManager.getConnection().
+// Callers keep using try-with-resources; close() on the handed-out proxy returns the
+// physical connection to the pool instead of tearing it down.
+public final class ConnectionPool {
+
+    public record Config(
+            int minIdle,
+            int maxSize,
+            Duration idleTimeout,
+            Duration borrowTimeout,
+            Duration leakThreshold,
+            Duration housekeepingInterval,
+            boolean leakTrace // capture the borrower's stack on every borrow; debugging only
+    ) {
+        public Config {
+            if (maxSize < 1) throw new IllegalArgumentException("maxSize must be >= 1");
+            if (minIdle < 0 || minIdle > maxSize) throw new IllegalArgumentException("minIdle must be in [0, maxSize]");
+        }
+        public Config(int minIdle, int maxSize, Duration idleTimeout, Duration borrowTimeout,
+                      Duration leakThreshold, Duration housekeepingInterval) {
+            this(minIdle, maxSize, idleTimeout, borrowTimeout, leakThreshold, housekeepingInterval, false);
+        }
+        public static Config defaults() {
+            return new Config(
+                    2,
+                    16,
+                    Duration.ofMinutes(5),
+                    Duration.ofSeconds(5),
+                    Duration.ofSeconds(30),
+                    Duration.ofSeconds(10),
+                    false
+            );
+        }
+        public Config withLeakTrace(boolean trace) {
+            return new Config(minIdle, maxSize, idleTimeout, borrowTimeout, leakThreshold, housekeepingInterval, trace);
+        }
+    }
+
+    // Upper bounds (micros) of the borrow latency buckets; last bucket is "everything above".
+    private static final long[] LATENCY_BUCKETS_MICROS = {
+            10, 50, 100, 500, 1_000, 5_000, 10_000, 50_000, 100_000, 500_000, 1_000_000
+    };
+
+    public record Stats(
+            int active,
+            int idle,
+            int waiters,
+            int total,
+            int maxSize,
+            long borrows,
+            long timeouts,
+            long validationFailures,
+            long leaksDetected,
+            long[] latencyBucketUpperMicros,
+            long[] latencyHistogram
+    ) {
+        @Override
+        public String toString() {
+            return "PoolStats {" +
+                    "active=" + active +
+                    ", idle=" + idle +
+                    ", waiters=" + waiters +
+                    ", total=" + total + "/" + maxSize +
+                    ", borrows=" + borrows +
+                    ", timeouts=" + timeouts +
+                    ", validationFailures=" + validationFailures +
+                    ", leaks=" + leaksDetected +
+                    '}';
+        }
+    }
+
+    private final String url;
+    private final String user;
+    private final String pass;
+    private final Config config;
+
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger total = new AtomicInteger();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed = false;
+
+    private final AtomicLong borrows = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong validationFailures = new AtomicLong();
+    private final AtomicLong leaksDetected = new AtomicLong();
+    private final AtomicLongArray latencyHistogram = new AtomicLongArray(LATENCY_BUCKETS_MICROS.length + 1);
+
+    ConnectionPool(String url, String user, String pass, Config config) throws SQLException {
+        this.url = url;
+        this.user = user;
+        this.pass = pass;
+        this.config = config;
+        this.permits = new Semaphore(config.maxSize(), true);
+
+        for (int i = 0; i < config.minIdle(); i++) {
+            idle.offerFirst(open());
+        }
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long every = Math.max(1, config.housekeepingInterval().toMillis());
+        housekeeper.scheduleWithFixedDelay(this::housekeep, every, every, TimeUnit.MILLISECONDS);
+    }
+
+    /* --------------- borrow / release --------------- */
+
+    Connection borrow() throws SQLException {
+        if (closed) throw new SQLException("Connection pool is closed");
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(config.borrowTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                timeouts.incrementAndGet();
+                throw new SQLTransientConnectionException(
+                        "Timed out after " + config.borrowTimeout().toMillis() + " ms waiting for a DB connection " + stats());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a DB connection", e);
+        }
+
+        try {
+            PooledConnection pc = takeValidIdle();
+            if (pc == null) pc = open();
+            pc.borrowedAtNanos = System.nanoTime();
+            pc.borrowedBy = Thread.currentThread().getName();
+            // Leak reports name the thread and age; the stack is only filled in when asked for.
+            pc.borrowSite = config.leakTrace() ? new Throwable("Connection borrowed here") : null;
+            pc.leakReported = false;
+            borrowed.add(pc);
+            borrows.incrementAndGet();
+            recordLatency(System.nanoTime() - start);
+            return pc.newHandle();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private PooledConnection takeValidIdle() {
+        PooledConnection pc;
+        while ((pc = idle.pollFirst()) != null) {
+            try {
+                ConnectionManager.validate(pc.physical);
+                return pc;
+            } catch (SQLException e) {
+                validationFailures.incrementAndGet();
+                LoggerHandler.log(LoggerHandler.Level.WARNING, "Pooled connection failed validation, discarding: " + e.getMessage());
+                destroy(pc);
+            }
+        }
+        return null;
+    }
+
+    private void release(PooledConnection pc) {
+        if (!borrowed.remove(pc)) return;
+        try {
+            if (closed || pc.broken || pc.physical.isClosed()) {
+                destroy(pc);
+                return;
+            }
+            resetState(pc);
+            pc.lastReturnedNanos = System.nanoTime();
+            idle.offerFirst(pc);
+        } catch (SQLException e) {
+            LoggerHandler.log(LoggerHandler.Level.WARNING, "Failed to reset pooled connection, discarding: " + e.getMessage());
+            destroy(pc);
+        } finally {
+            permits.release();
+        }
+    }
+
+    // Undo anything a DAO/service may have left behind before the connection is reused.
+    private static void resetState(PooledConnection pc) throws SQLException {
+        Connection c = pc.physical;
+        if (!c.getAutoCommit()) {
+            c.rollback();
+            c.setAutoCommit(true);
+        }
+        if (c.isReadOnly()) c.setReadOnly(false);
+        if (pc.isolationChanged) {
+            c.setTransactionIsolation(pc.defaultIsolation);
+            pc.isolationChanged = false;
+        }
+        c.clearWarnings();
+    }
+
+    private PooledConnection open() throws SQLException {
+        Connection physical = DriverManager.getConnection(url, user, pass);
+        total.incrementAndGet();
+        PooledConnection pc = new PooledConnection(physical, physical.getTransactionIsolation());
+        pc.lastReturnedNanos = System.nanoTime();
+        return pc;
+    }
+
+    private void destroy(PooledConnection pc) {
+        total.decrementAndGet();
+        try { pc.physical.close(); } catch (SQLException ignored) {}
+    }
+
+    /* --------------- housekeeping --------------- */
+
+    private void housekeep() {
+        try {
+            evictIdle();
+            refillIdle();
+            detectLeaks();
+        } catch (Throwable t) {
+            LoggerHandler.log(LoggerHandler.Level.ERROR, "Connection pool housekeeping failed: " + t);
+        }
+    }
+
+    private void evictIdle() {
+        long cutoff = System.nanoTime() - config.idleTimeout().toNanos();
+        // Oldest idle connections sit at the tail, the most recently used at the head.
+        while (idle.size() > config.minIdle()) {
+            PooledConnection tail = idle.peekLast();
+            if (tail == null || tail.lastReturnedNanos - cutoff > 0) break;
+            if (idle.removeLastOccurrence(tail)) destroy(tail);
+        }
+    }
+
+    // Connections dropped after a failed validation or a database restart are replaced here,
+    // so the next borrower does not pay for the connect.
+    private void refillIdle() {
+        while (!closed && idle.size() < config.minIdle() && total.get() < config.maxSize()) {
+            try {
+                idle.offerLast(open());
+            } catch (SQLException e) {
+                LoggerHandler.log(LoggerHandler.Level.WARNING, "Could not refill connection pool: " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private void detectLeaks() {
+        if (config.leakThreshold().isZero()) return;
+        long threshold = config.leakThreshold().toNanos();
+        long now = System.nanoTime();
+        for (PooledConnection pc : borrowed) {
+            if (!pc.leakReported && now - pc.borrowedAtNanos > threshold) {
+                pc.leakReported = true;
+                leaksDetected.incrementAndGet();
+                String message = "Possible connection leak: borrowed by " + pc.borrowedBy + " for "
+                        + TimeUnit.NANOSECONDS.toMillis(now - pc.borrowedAtNanos) + " ms";
+                if (pc.borrowSite != null) {
+                    LoggerHandler.log(LoggerHandler.Level.WARNING, message,
+                            new IllegalStateException("Leaked connection", pc.borrowSite));
+                } else {
+                    LoggerHandler.log(LoggerHandler.Level.WARNING, message + " (enable leakTrace for the borrow stack)");
+                }
+            }
+        }
+    }
+
+    /* --------------- metrics --------------- */
+
+    private void recordLatency(long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        int bucket = LATENCY_BUCKETS_MICROS.length;
+        for (int i = 0; i < LATENCY_BUCKETS_MICROS.length; i++) {
+            if (micros <= LATENCY_BUCKETS_MICROS[i]) { bucket = i; break; }
+        }
+        latencyHistogram.incrementAndGet(bucket);
+    }
+
+    public Stats stats() {
+        long[] hist = new long[latencyHistogram.length()];
+        for (int i = 0; i < hist.length; i++) hist[i] = latencyHistogram.get(i);
+        return new Stats(
+                borrowed.size(),
+                idle.size(),
+                permits.getQueueLength(),
+                total.get(),
+                config.maxSize(),
+                borrows.get(),
+                timeouts.get(),
+                validationFailures.get(),
+                leaksDetected.get(),
+                LATENCY_BUCKETS_MICROS.clone(),
+                hist
+        );
+    }
+
+    public Config config() {
+        return config;
+    }
+
+    /* --------------- shutdown --------------- */
+
+    void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pc;
+        while ((pc = idle.pollFirst()) != null) destroy(pc);
+        // Borrowed connections are closed when their holders hand them back.
+    }
+
+    /* --------------- pooled connection --------------- */
+
+    private final class PooledConnection {
+        final Connection physical;
+        final int defaultIsolation;
+        volatile boolean isolationChanged;
+        volatile long borrowedAtNanos;
+        volatile long lastReturnedNanos;
+        volatile String borrowedBy;
+        volatile Throwable borrowSite;
+        volatile boolean leakReported;
+        volatile boolean broken;
+
+        PooledConnection(Connection physical, int defaultIsolation) {
+            this.physical = physical;
+            this.defaultIsolation = defaultIsolation;
+        }
+
+        Connection newHandle() {
+            return (Connection) Proxy.newProxyInstance(
+                    ConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new Handle(this)
+            );
+        }
+    }
+
+    // One handle per borrow, so a stale reference cannot touch the connection after close().
+    private final class Handle implements InvocationHandler {
+        private final PooledConnection pc;
+        private volatile boolean released = false;
+
+        Handle(PooledConnection pc) {
+            this.pc = pc;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (!released) {
+                        released = true;
+                        release(pc);
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return released || pc.physical.isClosed();
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "PooledConnection[" + pc.physical + (released ? ", released" : "") + "]";
+                }
+                case "setTransactionIsolation" -> pc.isolationChanged = true;
+                default -> { }
+            }
+            if (released) throw new SQLException("Connection has already been returned to the pool");
+            try {
+                return method.invoke(pc.physical, args);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SQLException sql && isFatal(sql)) pc.broken = true;
+                throw cause;
+            }
+        }
+    }
+
+    // SQLState class 08 = connection exception; never hand such a connection out again.
+    private static boolean isFatal(SQLException e) {
+        String state = e.getSQLState();
+        return state != null && state.startsWith("08");
+    }
+}
@@ -3,108 +3,171 @@ package Fuzzcode.Server.db;
 import Fuzzcode.Server.utilities.LoggerHandler;
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.sql.Statement;
+import java.util.List;
 
-public final class DatabaseInitializer {
-    public static void initSchema() {
-        try (Connection c = ConnectionManager.getConnection();
-             Statement stmt = c.createStatement()) {
-
-            stmt.execute("""
-                CREATE TABLE IF NOT EXISTS People (
-                  PersonID INT AUTO_INCREMENT PRIMARY KEY,
-                  Name VARCHAR(255) NOT NULL,
-                  Role VARCHAR(32) NOT NULL CHECK (Role IN ('ADMIN','USER','DRIVER','CUSTOMER')),
-                  Deleted BOOLEAN NOT NULL DEFAULT FALSE
-                )
-            """);
-
-            stmt.execute("""
-                CREATE TABLE IF NOT EXISTS Users (
-                  UserID INT AUTO_INCREMENT PRIMARY KEY,
-                  Username VARCHAR(255) UNIQUE NOT NULL,
-                  PasswordHash VARCHAR(255) NOT NULL,
-                  Salt VARCHAR(255) NOT NULL,
-                  Role VARCHAR(16) NOT NULL DEFAULT 'USER' CHECK (Role IN ('ADMIN','USER')),
-                  CreatedAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-                  Deleted BOOLEAN NOT NULL DEFAULT FALSE
-                )
-            """);
-
-            stmt.execute("""
-                CREATE TABLE IF NOT EXISTS Orders (
-                  OrderID INT AUTO_INCREMENT PRIMARY KEY,
-                  CreatedDate DATE NOT NULL,
-                  StartDate DATE,
-                  EndDate DATE,
-                  CustomerID INT,
-                  LoggedByID INT,
-                  Deleted BOOLEAN NOT NULL DEFAULT FALSE,
-                  FOREIGN KEY (CustomerID) REFERENCES People(PersonID),
-                  FOREIGN KEY (LoggedByID) REFERENCES People(PersonID)
-                )
-            """);
+import static Fuzzcode.Server.db.Migration.addColumn;
+import static Fuzzcode.Server.db.Migration.createIndex;
+import static Fuzzcode.Server.db.Migration.sql;
 
-            stmt.execute("""
-                CREATE TABLE IF NOT EXISTS Items (
-                  ItemID INT AUTO_INCREMENT PRIMARY KEY,
-                  TagID VARCHAR(255) NOT NULL,
-                  Position VARCHAR(32) NOT NULL CHECK (
-                    Position IN ('HOME', 'IN_TRANSIT_OUT', 'DELIVERED', 'IN_TRANSIT_RETURN')
-                  ),
-                  IsOverdue BOOLEAN,
-                  Deleted BOOLEAN NOT NULL DEFAULT FALSE
-                )
-            """);
-            stmt.execute("""
-                CREATE UNIQUE INDEX IF NOT EXISTS IDX_Items_Tag ON Items(TagID)
-            """);
-            stmt.execute("""
-                CREATE INDEX IF NOT EXISTS IDX_Items_Position ON Items(Position)
-            """);
-
-
-            stmt.execute("""
-                    CREATE TABLE IF NOT EXISTS OrderItems (
-                      OrderID INT NOT NULL,
-                      ItemID  INT NOT NULL,
-                      Deleted BOOLEAN NOT NULL DEFAULT FALSE,
-                      PRIMARY KEY (OrderID, ItemID),
-                      FOREIGN KEY (OrderID) REFERENCES Orders(OrderID),
-                      FOREIGN KEY (ItemID)  REFERENCES Items(ItemID)
-                    )
-                """);
+public final class DatabaseInitializer {
 
-                // Drop any legacy single-column unique indexes on ItemID
-                stmt.execute("DROP INDEX IF EXISTS UQ_ORDERITEMS_ITEM");
-                stmt.execute("DROP INDEX IF EXISTS UQ_OrderItems_Item");
+    // Append only: released migrations are checksummed (see SchemaMigrator).
+    static final List<Migration> MIGRATIONS = List.of(
+            // The schema as it was before versioning. Every statement is IF NOT EXISTS, so
+            // databases created by older releases simply get it recorded.
+            Migration.of(1, "baseline schema",
+                    sql("""
+                        CREATE TABLE IF NOT EXISTS People (
+                          PersonID INT AUTO_INCREMENT PRIMARY KEY,
+                          Name VARCHAR(255) NOT NULL,
+                          Role VARCHAR(32) NOT NULL CHECK (Role IN ('ADMIN','USER','DRIVER','CUSTOMER')),
+                          Deleted BOOLEAN NOT NULL DEFAULT FALSE
+                        )
+                    """),
+                    sql("""
+                        CREATE TABLE IF NOT EXISTS Users (
+                          UserID INT AUTO_INCREMENT PRIMARY KEY,
+                          Username VARCHAR(255) UNIQUE NOT NULL,
+                          PasswordHash VARCHAR(255) NOT NULL,
+                          Salt VARCHAR(255) NOT NULL,
+                          Role VARCHAR(16) NOT NULL DEFAULT 'USER' CHECK (Role IN ('ADMIN','USER')),
+                          CreatedAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                          Deleted BOOLEAN NOT NULL DEFAULT FALSE
+                        )
+                    """),
+                    sql("""
+                        CREATE TABLE IF NOT EXISTS Orders (
+                          OrderID INT AUTO_INCREMENT PRIMARY KEY,
+                          CreatedDate DATE NOT NULL,
+                          StartDate DATE,
+                          EndDate DATE,
+                          CustomerID INT,
+                          LoggedByID INT,
+                          Deleted BOOLEAN NOT NULL DEFAULT FALSE,
+                          FOREIGN KEY (CustomerID) REFERENCES People(PersonID),
+                          FOREIGN KEY (LoggedByID) REFERENCES People(PersonID)
+                        )
+                    """),
+                    sql("""
+                        CREATE TABLE IF NOT EXISTS Items (
+                          ItemID INT AUTO_INCREMENT PRIMARY KEY,
+                          TagID VARCHAR(255) NOT NULL,
+                          Position VARCHAR(32) NOT NULL CHECK (
+                            Position IN ('HOME', 'IN_TRANSIT_OUT', 'DELIVERED', 'IN_TRANSIT_RETURN')
+                          ),
+                          IsOverdue BOOLEAN,
+                          Deleted BOOLEAN NOT NULL DEFAULT FALSE
+                        )
+                    """),
+                    sql("CREATE UNIQUE INDEX IF NOT EXISTS IDX_Items_Tag ON Items(TagID)"),
+                    sql("CREATE INDEX IF NOT EXISTS IDX_Items_Position ON Items(Position)"),
+                    sql("""
+                        CREATE TABLE IF NOT EXISTS OrderItems (
+                          OrderID INT NOT NULL,
+                          ItemID  INT NOT NULL,
+                          Deleted BOOLEAN NOT NULL DEFAULT FALSE,
+                          PRIMARY KEY (OrderID, ItemID),
+                          FOREIGN KEY (OrderID) REFERENCES Orders(OrderID),
+                          FOREIGN KEY (ItemID)  REFERENCES Items(ItemID)
+                        )
+                    """),
+                    // Helpful FKs indexes
+                    sql("CREATE INDEX IF NOT EXISTS IDX_OrderItems_Order ON OrderItems(OrderID)"),
+                    sql("CREATE INDEX IF NOT EXISTS IDX_OrderItems_Item  ON OrderItems(ItemID)"),
+                    // Enforce: at most ONE ACTIVE relation per item (Deleted = FALSE)
+                    sql("""
+                        CREATE UNIQUE INDEX IF NOT EXISTS UQ_OrderItems_Item_Active
+                        ON OrderItems(ItemID, Deleted)
+                    """),
+                    sql("""
+                        CREATE TABLE IF NOT EXISTS ItemRead (
+                          ReadID INT AUTO_INCREMENT PRIMARY KEY,
+                          TagID VARCHAR(255) NOT NULL,
+                          Deleted BOOLEAN NOT NULL DEFAULT FALSE,
+                          ReadTime TIMESTAMP NOT NULL
+                        )
+                    """)),
 
-                // Helpful FKs indexes
-                stmt.execute("CREATE INDEX IF NOT EXISTS IDX_OrderItems_Order ON OrderItems(OrderID)");
-                stmt.execute("CREATE INDEX IF NOT EXISTS IDX_OrderItems_Item  ON OrderItems(ItemID)");
+            Migration.of(2, "drop legacy single-column unique indexes on OrderItems.ItemID",
+                    sql("DROP INDEX IF EXISTS UQ_ORDERITEMS_ITEM"),
+                    sql("DROP INDEX IF EXISTS UQ_OrderItems_Item")),
 
-                // Enforce: at most ONE ACTIVE relation per item (Deleted = FALSE)
-                stmt.execute("""
-                  CREATE UNIQUE INDEX IF NOT EXISTS UQ_OrderItems_Item_Active
-                  ON OrderItems(ItemID, Deleted)
-                """);
+            // Hot-path indexes
+            Migration.of(3, "index ItemRead(TagID, ReadTime)",
+                    createIndex("IDX_ItemRead_Tag_Time", "ItemRead", "TagID", "ReadTime")),
+            Migration.of(4, "index ItemRead(Deleted, ReadTime)",
+                    createIndex("IDX_ItemRead_Deleted_Time", "ItemRead", "Deleted", "ReadTime")),
+            Migration.of(5, "index Orders(CustomerID, Deleted)",
+                    createIndex("IDX_Orders_Customer_Deleted", "Orders", "CustomerID", "Deleted")),
+            Migration.of(6, "index People(Role, Deleted)",
+                    createIndex("IDX_People_Role_Deleted", "People", "Role", "Deleted")),
 
-            stmt.execute("""
-                CREATE TABLE IF NOT EXISTS ItemRead (
-                  ReadID INT AUTO_INCREMENT PRIMARY KEY,
-                  TagID VARCHAR(255) NOT NULL,
-                  Deleted BOOLEAN NOT NULL DEFAULT FALSE,
-                  ReadTime TIMESTAMP NOT NULL
-                )
-            """);
+            // Reads older than the hot window live in monthly archive tables (ItemRead_YYYYMM),
+            // registered here; see ItemReadRetention. The rollups hold per-tag read counts of
+            // archived reads and are kept after their partition is dropped.
+            Migration.of(7, "ItemRead archive registry and rollups",
+                    sql("""
+                        CREATE TABLE IF NOT EXISTS ItemReadPartitions (
+                          TableName VARCHAR(64) PRIMARY KEY,
+                          MonthStart DATE NOT NULL,
+                          ArchivedReads INT NOT NULL DEFAULT 0
+                        )
+                    """),
+                    sql("""
+                        CREATE TABLE IF NOT EXISTS ItemReadHourly (
+                          TagID VARCHAR(255) NOT NULL,
+                          BucketStart TIMESTAMP NOT NULL,
+                          ReadCount INT NOT NULL,
+                          FirstRead TIMESTAMP NOT NULL,
+                          LastRead TIMESTAMP NOT NULL,
+                          PRIMARY KEY (TagID, BucketStart)
+                        )
+                    """),
+                    sql("""
+                        CREATE TABLE IF NOT EXISTS ItemReadDaily (
+                          TagID VARCHAR(255) NOT NULL,
+                          BucketStart TIMESTAMP NOT NULL,
+                          ReadCount INT NOT NULL,
+                          FirstRead TIMESTAMP NOT NULL,
+                          LastRead TIMESTAMP NOT NULL,
+                          PRIMARY KEY (TagID, BucketStart)
+                        )
+                    """)),
 
+            // Revision numbers for delta sync (*.Since). Inserts take one from the column
+            // default, updates set it explicitly (SqlDialect.nextRevision()). Existing rows are
+            // numbered once here.
+            Migration.of(8, "Revision columns on synced tables",
+                    sql("CREATE SEQUENCE IF NOT EXISTS EntityRevision AS BIGINT START WITH 1 INCREMENT BY 1"),
+                    revision("Orders"),
+                    revision("Items"),
+                    revision("OrderItems"),
+                    revision("People"),
+                    revision("ItemRead"),
+                    sql("UPDATE Orders SET Revision = NEXT VALUE FOR EntityRevision WHERE Revision IS NULL"),
+                    sql("UPDATE Items SET Revision = NEXT VALUE FOR EntityRevision WHERE Revision IS NULL"),
+                    sql("UPDATE OrderItems SET Revision = NEXT VALUE FOR EntityRevision WHERE Revision IS NULL"),
+                    sql("UPDATE People SET Revision = NEXT VALUE FOR EntityRevision WHERE Revision IS NULL"),
+                    sql("UPDATE ItemRead SET Revision = NEXT VALUE FOR EntityRevision WHERE Revision IS NULL"),
+                    createIndex("IDX_Orders_Revision", "Orders", "Revision"),
+                    createIndex("IDX_Items_Revision", "Items", "Revision"),
+                    createIndex("IDX_OrderItems_Revision", "OrderItems", "Revision"),
+                    createIndex("IDX_People_Revision", "People", "Revision"),
+                    createIndex("IDX_ItemRead_Revision", "ItemRead", "Revision"))
+    );
 
+    public static void initSchema() {
+        try (Connection c = ConnectionManager.getConnection()) {
+            SchemaMigrator.migrate(c, MIGRATIONS);
             LoggerHandler.log("Database schema initialized.");
-        } catch (SQLException e) {
+        } catch (SQLException | RuntimeException e) {
             LoggerHandler.log("Schema init failed");
             LoggerHandler.log(e);
-            throw new RuntimeException(e);
+            throw e instanceof RuntimeException re ? re : new RuntimeException(e);
         }
     }
+    private static Migration.Step revision(String table) {
+        return addColumn(table, "Revision", "BIGINT DEFAULT (NEXT VALUE FOR EntityRevision)");
+    }
     private DatabaseInitializer() {}
 }
@@ -0,0 +1,213 @@
+package Fuzzcode.Server.db;
+
+import Fuzzcode.Server.utilities.LoggerHandler;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// One versioned schema change. Once released a migration must never be edited: its
+// checksum is stored in schema_version and verified on every start. Change the schema
+// by appending a new migration instead.
+public record Migration(int version, String description, List<Migration.Step> steps) {
+
+    private static final Pattern CREATE_TABLE = Pattern.compile(
+            "CREATE TABLE IF NOT EXISTS (\\w+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern CREATE_INDEX = Pattern.compile(
+            "CREATE (UNIQUE )?INDEX IF NOT EXISTS (\\w+)\\s+ON\\s+(\\w+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern DROP_INDEX = Pattern.compile(
+            "DROP INDEX IF EXISTS (\\w+)\\s*", Pattern.CASE_INSENSITIVE);
+    private static final Pattern CREATE_SEQUENCE = Pattern.compile(
+            "CREATE SEQUENCE IF NOT EXISTS (\\w+)", Pattern.CASE_INSENSITIVE);
+
+    public interface Step {
+        void apply(Connection c) throws SQLException;
+        // Stable text the checksum is built from.
+        String describe();
+    }
+
+    public Migration {
+        if (version <= 0) throw new IllegalArgumentException("Migration versions start at 1");
+        steps = List.copyOf(steps);
+    }
+
+    public static Migration of(int version, String description, Step... steps) {
+        return new Migration(version, description, List.of(steps));
+    }
+
+    public String checksum() {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            sha.update((version + ":" + description).getBytes(StandardCharsets.UTF_8));
+            for (Step s : steps) sha.update(("\n" + s.describe()).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(sha.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // === STEPS ===
+    // Statement in H2 syntax, translated for the configured dialect when applied (so the
+    // checksum does not depend on the backend); whitespace does not count either.
+    public static Step sql(String statement) {
+        String normalized = statement.strip().replaceAll("\\s+", " ");
+        return new Step() {
+            public void apply(Connection c) throws SQLException {
+                execute(c, ConnectionManager.dialect(), statement.strip());
+            }
+            public String describe() {
+                return normalized;
+            }
+        };
+    }
+
+    // Creates the index only if no index of that name exists on the table yet, so it can be
+    // rolled out to databases where it was already added by hand (or by an older release).
+    public static Step createIndex(String name, String table, String... columns) {
+        return index(false, name, table, columns);
+    }
+    public static Step createUniqueIndex(String name, String table, String... columns) {
+        return index(true, name, table, columns);
+    }
+
+    private static Step index(boolean unique, String name, String table, String... columns) {
+        String ddl = "CREATE " + (unique ? "UNIQUE " : "") + "INDEX " + name
+                + " ON " + table + "(" + String.join(", ", columns) + ")";
+        return new Step() {
+            public void apply(Connection c) throws SQLException {
+                if (indexExists(c, table, name)) return;
+                String online = ConnectionManager.dialect().createIndexSuffix();
+                if (!online.isEmpty() && !supportsOnlineIndex(c)) {
+                    LoggerHandler.log(LoggerHandler.Level.WARNING,
+                            "Online index builds not available, " + name + " locks " + table + " while it builds");
+                    online = "";
+                }
+                try (Statement st = c.createStatement()) {
+                    st.execute(ddl + online);
+                }
+            }
+            public String describe() {
+                return ddl;
+            }
+        };
+    }
+
+    // ALTER TABLE ... ADD, skipped when the column is already there. `definition` is H2
+    // syntax (type, DEFAULT, ...) and translated like sql().
+    public static Step addColumn(String table, String column, String definition) {
+        String ddl = "ALTER TABLE " + table + " ADD " + column + " " + definition;
+        return new Step() {
+            public void apply(Connection c) throws SQLException {
+                if (columnExists(c, table, column)) return;
+                try (Statement st = c.createStatement()) {
+                    st.execute(ConnectionManager.dialect().ddl(ddl));
+                }
+            }
+            public String describe() {
+                return ddl;
+            }
+        };
+    }
+
+    // Backends without CREATE ... IF NOT EXISTS / DROP INDEX IF EXISTS get the existence
+    // check done here, against the JDBC metadata.
+    private static void execute(Connection c, SqlDialect d, String statement) throws SQLException {
+        String s = statement;
+        if (!d.supportsIfNotExists()) {
+            Matcher m;
+            if ((m = CREATE_TABLE.matcher(s)).lookingAt()) {
+                if (tableExists(c, m.group(1))) return;
+                s = "CREATE TABLE " + m.group(1) + s.substring(m.end());
+            } else if ((m = CREATE_INDEX.matcher(s)).lookingAt()) {
+                if (indexExists(c, m.group(3), m.group(2))) return;
+                s = "CREATE " + (m.group(1) != null ? "UNIQUE " : "") + "INDEX " + m.group(2)
+                        + " ON " + m.group(3) + s.substring(m.end());
+            } else if ((m = CREATE_SEQUENCE.matcher(s)).lookingAt()) {
+                if (sequenceExists(c, m.group(1))) return;
+                s = "CREATE SEQUENCE " + m.group(1) + s.substring(m.end());
+            } else if ((m = DROP_INDEX.matcher(s)).matches()) {
+                String table = tableOfIndex(c, m.group(1));
+                if (table == null) return;
+                s = d.dropIndex(m.group(1), table);
+            }
+        }
+        try (Statement st = c.createStatement()) {
+            st.execute(d.ddl(s));
+        }
+    }
+
+    // ONLINE = ON needs SQL Server Enterprise/Developer (engine edition 3), Azure SQL Database (5)
+    // or Managed Instance (8). H2 in SQL Server mode reports itself as H2.
+    private static boolean supportsOnlineIndex(Connection c) throws SQLException {
+        if (!c.getMetaData().getDatabaseProductName().contains("Microsoft SQL Server")) return false;
+        try (Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT CAST(SERVERPROPERTY('EngineEdition') AS INT)")) {
+            if (!rs.next()) return false;
+            int edition = rs.getInt(1);
+            return edition == 3 || edition == 5 || edition == 8;
+        }
+    }
+
+    static boolean tableExists(Connection c, String table) throws SQLException {
+        DatabaseMetaData meta = c.getMetaData();
+        try (ResultSet rs = meta.getTables(c.getCatalog(), null, stored(meta, table), new String[]{"TABLE"})) {
+            return rs.next();
+        }
+    }
+
+    static boolean columnExists(Connection c, String table, String column) throws SQLException {
+        DatabaseMetaData meta = c.getMetaData();
+        try (ResultSet rs = meta.getColumns(c.getCatalog(), null, stored(meta, table), stored(meta, column))) {
+            return rs.next();
+        }
+    }
+
+    // JDBC metadata has no sequences; both backends have INFORMATION_SCHEMA.SEQUENCES.
+    static boolean sequenceExists(Connection c, String sequence) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(
+                "SELECT 1 FROM INFORMATION_SCHEMA.SEQUENCES WHERE UPPER(SEQUENCE_NAME) = ?")) {
+            ps.setString(1, sequence.toUpperCase(Locale.ROOT));
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private static String tableOfIndex(Connection c, String index) throws SQLException {
+        List<String> tables = new ArrayList<>();
+        try (ResultSet rs = c.getMetaData().getTables(c.getCatalog(), null, "%", new String[]{"TABLE"})) {
+            while (rs.next()) tables.add(rs.getString("TABLE_NAME"));
+        }
+        for (String t : tables) {
+            if (indexExists(c, t, index)) return t;
+        }
+        return null;
+    }
+
+    private static String stored(DatabaseMetaData meta, String identifier) throws SQLException {
+        return meta.storesUpperCaseIdentifiers() ? identifier.toUpperCase()
+                : meta.storesLowerCaseIdentifiers() ? identifier.toLowerCase() : identifier;
+    }
+
+    static boolean indexExists(Connection c, String table, String index) throws SQLException {
+        DatabaseMetaData meta = c.getMetaData();
+        try (ResultSet rs = meta.getIndexInfo(c.getCatalog(), null, stored(meta, table), false, true)) {
+            while (rs.next()) {
+                if (index.equalsIgnoreCase(rs.getString("INDEX_NAME"))) return true;
+            }
+        }
+        return false;
+    }
+}
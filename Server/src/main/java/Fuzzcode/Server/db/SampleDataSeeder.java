@@ -1,5 +1,7 @@
 package Fuzzcode.Server.db;
 
+import Fuzzcode.Server.cache.PositionCounters;
+import Fuzzcode.Server.cache.TagIndexCache;
 import Fuzzcode.Server.model.AppUser;
 import Fuzzcode.Server.model.Person;
 import Fuzzcode.Server.model.PersonRole;
@@ -31,6 +33,7 @@ public final class SampleDataSeeder {
                 int nextTagNum = 1;
 
                 Random rng = new Random(42);
+                List<SeedRead> reads = new ArrayList<>();
 
                 for (int i = 0; i < orderCount; i++) {
                     int customerId = customerIds.get(rng.nextInt(customerIds.size()));
@@ -56,15 +59,18 @@ public final class SampleDataSeeder {
                         int itemId = insertItem(c, tag, position, overdue);
                         insertOrderItem(c, orderId, itemId);
 
-                        int reads = 1 + rng.nextInt(22); // 1..4 reads
-                        for (int r = 0; r < reads; r++) {
-                            insertItemRead(c, tag,
-                                    LocalDateTime.now().minusHours(rng.nextInt(200)));
+                        int readCount = 1 + rng.nextInt(22); // 1..4 reads
+                        for (int r = 0; r < readCount; r++) {
+                            reads.add(new SeedRead(tag, LocalDateTime.now().minusHours(rng.nextInt(200))));
                         }
                     }
                 }
+                insertItemReads(c, reads);
 
                 c.commit();
+                // Items were inserted behind ItemDao's back.
+                TagIndexCache.getInstance().clear();
+                PositionCounters.getInstance().invalidate();
                 System.out.println("[SEED] Sample data inserted.");
             } catch (Exception e) {
                 c.rollback();
@@ -158,8 +164,8 @@ public final class SampleDataSeeder {
                                    int customerId, int loggedById) throws SQLException {
         String sql = """
                 INSERT INTO Orders(CreatedDate, StartDate, EndDate, CustomerID, LoggedByID, Deleted)
-                VALUES(?, ?, ?, ?, ?, FALSE)
-                """;
+                VALUES(?, ?, ?, ?, ?, %s)
+                """.formatted(ConnectionManager.dialect().bool(false));
         try (PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             ps.setDate(1, Date.valueOf(created));
             if (start != null) ps.setDate(2, Date.valueOf(start)); else ps.setNull(2, Types.DATE);
@@ -177,8 +183,8 @@ public final class SampleDataSeeder {
     private static int insertItem(Connection c, String tagId, String position, boolean overdue) throws SQLException {
         String sql = """
                 INSERT INTO Items(TagID, Position, IsOverdue, Deleted)
-                VALUES(?, ?, ?, FALSE)
-                """;
+                VALUES(?, ?, ?, %s)
+                """.formatted(ConnectionManager.dialect().bool(false));
         try (PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             ps.setString(1, tagId);
             ps.setString(2, position);
@@ -193,8 +199,8 @@ public final class SampleDataSeeder {
 
     private static void insertOrderItem(Connection c, int orderId, int itemId) throws SQLException {
         String sql = """
-                INSERT INTO OrderItems(OrderID, ItemID, Deleted) VALUES(?, ?, FALSE)
-                """;
+                INSERT INTO OrderItems(OrderID, ItemID, Deleted) VALUES(?, ?, %s)
+                """.formatted(ConnectionManager.dialect().bool(false));
         try (PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setInt(1, orderId);
             ps.setInt(2, itemId);
@@ -202,14 +208,24 @@ public final class SampleDataSeeder {
         }
     }
 
-    private static void insertItemRead(Connection c, String tagId, LocalDateTime readTime) throws SQLException {
-        String sql = """
-                INSERT INTO ItemRead(TagID, Deleted, ReadTime) VALUES(?, FALSE, ?)
-                """;
-        try (PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.setString(1, tagId);
-            ps.setTimestamp(2, Timestamp.valueOf(readTime));
-            ps.executeUpdate();
+    private record SeedRead(String tagId, LocalDateTime readTime) {}
+
+    // Multi-row INSERTs, as many rows per statement as the dialect allows.
+    private static void insertItemReads(Connection c, List<SeedRead> reads) throws SQLException {
+        SqlDialect d = ConnectionManager.dialect();
+        List<String> columns = List.of("TagID", "Deleted", "ReadTime");
+        int perInsert = d.rowsPerInsert(columns.size());
+        for (int from = 0; from < reads.size(); from += perInsert) {
+            List<SeedRead> chunk = reads.subList(from, Math.min(reads.size(), from + perInsert));
+            try (PreparedStatement ps = c.prepareStatement(d.insertRows("ItemRead", columns, chunk.size()))) {
+                int i = 1;
+                for (SeedRead r : chunk) {
+                    ps.setString(i++, r.tagId());
+                    ps.setBoolean(i++, false);
+                    ps.setTimestamp(i++, Timestamp.valueOf(r.readTime()));
+                }
+                ps.executeUpdate();
+            }
         }
     }
 }
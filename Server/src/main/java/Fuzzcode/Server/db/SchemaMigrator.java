@@ -0,0 +1,126 @@
+package Fuzzcode.Server.db;
+
+import Fuzzcode.Server.utilities.LoggerHandler;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+// Applies pending migrations in version order and records each in schema_version.
+// Applied migrations are checked against their recorded checksum first: a database that
+// was migrated by a different definition of the same version is refused rather than
+// silently diverging.
+public final class SchemaMigrator {
+
+    public record Applied(int version, String description, String checksum, Instant appliedAt, long executionMillis) {}
+
+    public record Result(int applied, int current) {}
+
+    private SchemaMigrator() {}
+
+    public static synchronized Result migrate(Connection c, List<Migration> migrations) throws SQLException {
+        List<Migration> ordered = new ArrayList<>(migrations);
+        ordered.sort(Comparator.comparingInt(Migration::version));
+        Set<Integer> versions = new HashSet<>();
+        for (Migration m : ordered) {
+            if (!versions.add(m.version())) throw new IllegalArgumentException("Duplicate migration version " + m.version());
+        }
+
+        ensureVersionTable(c);
+        Map<Integer, Applied> done = applied(c);
+
+        for (Migration m : ordered) {
+            Applied a = done.get(m.version());
+            if (a != null && !a.checksum().equals(m.checksum())) {
+                throw new IllegalStateException("Migration V" + m.version() + " (" + m.description()
+                        + ") differs from the one applied on " + a.appliedAt() + "; add a new migration instead of editing it");
+            }
+        }
+
+        int count = 0;
+        for (Migration m : ordered) {
+            if (done.containsKey(m.version())) continue;
+            apply(c, m);
+            count++;
+        }
+        int current = ordered.isEmpty() ? 0 : ordered.get(ordered.size() - 1).version();
+        if (count > 0) LoggerHandler.log("Schema migrated to V" + current + " (" + count + " migration(s) applied)");
+        return new Result(count, current);
+    }
+
+    public static List<Applied> history(Connection c) throws SQLException {
+        ensureVersionTable(c);
+        return new ArrayList<>(applied(c).values());
+    }
+
+    /* --------------- helpers --------------- */
+
+    private static void ensureVersionTable(Connection c) throws SQLException {
+        Migration.sql("""
+            CREATE TABLE IF NOT EXISTS schema_version (
+              Version INT PRIMARY KEY,
+              Description VARCHAR(255) NOT NULL,
+              Checksum VARCHAR(64) NOT NULL,
+              AppliedAt TIMESTAMP NOT NULL,
+              ExecutionMillis INT NOT NULL
+            )
+        """).apply(c);
+    }
+
+    private static Map<Integer, Applied> applied(Connection c) throws SQLException {
+        Map<Integer, Applied> out = new TreeMap<>();
+        try (PreparedStatement ps = c.prepareStatement(
+                "SELECT Version, Description, Checksum, AppliedAt, ExecutionMillis FROM schema_version ORDER BY Version");
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                out.put(rs.getInt("Version"), new Applied(
+                        rs.getInt("Version"),
+                        rs.getString("Description"),
+                        rs.getString("Checksum"),
+                        rs.getTimestamp("AppliedAt").toInstant(),
+                        rs.getInt("ExecutionMillis")
+                ));
+            }
+        }
+        return out;
+    }
+
+    // Each migration runs in its own transaction. Databases that commit DDL implicitly
+    // (H2, MySQL) cannot roll a half-applied migration back, which is why the steps are
+    // written to be re-runnable (IF [NOT] EXISTS, existence-checked indexes).
+    private static void apply(Connection c, Migration m) throws SQLException {
+        long start = System.currentTimeMillis();
+        boolean auto = c.getAutoCommit();
+        c.setAutoCommit(false);
+        try {
+            for (Migration.Step step : m.steps()) step.apply(c);
+            try (PreparedStatement ps = c.prepareStatement(
+                    "INSERT INTO schema_version (Version, Description, Checksum, AppliedAt, ExecutionMillis) VALUES (?, ?, ?, ?, ?)")) {
+                ps.setInt(1, m.version());
+                ps.setString(2, m.description());
+                ps.setString(3, m.checksum());
+                ps.setTimestamp(4, Timestamp.from(Instant.now()));
+                ps.setInt(5, (int) (System.currentTimeMillis() - start));
+                ps.executeUpdate();
+            }
+            c.commit();
+            LoggerHandler.log("Applied migration V" + m.version() + ": " + m.description());
+        } catch (SQLException | RuntimeException e) {
+            c.rollback();
+            LoggerHandler.log(LoggerHandler.Level.ERROR, "Migration V" + m.version() + " failed", e);
+            throw e;
+        } finally {
+            c.setAutoCommit(auto);
+        }
+    }
+}
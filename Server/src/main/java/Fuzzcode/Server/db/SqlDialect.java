@@ -0,0 +1,130 @@
+package Fuzzcode.Server.db;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.StringJoiner;
+import java.util.regex.Pattern;
+
+// The SQL that differs between the backends we run on. DAOs write portable SQL and ask
+// ConnectionManager.dialect() for the rest: boolean literals, row limits, upserts and
+// multi-row inserts. Schema statements are written in H2 syntax and translated by ddl().
+//
+// MSSQL output stays within what H2 accepts in MODE=MSSQLServer, so the tests can run the
+// MSSQL dialect without a SQL Server.
+public enum SqlDialect {
+    H2,
+    MSSQL;
+
+    // SQL Server refuses statements with more than 2100 parameters or 1000 VALUES rows.
+    private static final int MAX_ROWS_PER_INSERT = 1000;
+    private static final int MSSQL_MAX_PARAMETERS = 2100;
+
+    public static final String REVISION_SEQUENCE = "EntityRevision";
+
+    private static final Pattern AUTO_INCREMENT = Pattern.compile("\\bAUTO_INCREMENT\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern BOOLEAN = Pattern.compile("\\bBOOLEAN\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern TIMESTAMP = Pattern.compile("\\bTIMESTAMP\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern TRUE = Pattern.compile("\\bTRUE\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern FALSE = Pattern.compile("\\bFALSE\\b", Pattern.CASE_INSENSITIVE);
+
+    // jdbc:sqlserver: and H2 in SQL Server compatibility mode get MSSQL, everything else H2.
+    public static SqlDialect forUrl(String jdbcUrl) {
+        if (jdbcUrl == null) return H2;
+        String u = jdbcUrl.toLowerCase(Locale.ROOT);
+        if (u.startsWith("jdbc:sqlserver:")) return MSSQL;
+        if (u.startsWith("jdbc:h2:") && u.contains(";mode=mssqlserver")) return MSSQL;
+        return H2;
+    }
+    public static SqlDialect parse(String name) {
+        return switch (name.trim().toLowerCase(Locale.ROOT)) {
+            case "h2" -> H2;
+            case "mssql", "sqlserver" -> MSSQL;
+            default -> throw new IllegalArgumentException("Unknown SQL dialect: " + name);
+        };
+    }
+
+    // === QUERIES ===
+    public String bool(boolean value) {
+        if (this == MSSQL) return value ? "1" : "0";
+        return value ? "TRUE" : "FALSE";
+    }
+
+    // Every write to a delta-synced table (Orders, Items, OrderItems, People, ItemRead) sets
+    // its Revision column to the next value of this sequence; see the *.Since commands.
+    public String nextRevision() {
+        return "NEXT VALUE FOR " + REVISION_SEQUENCE;
+    }
+
+    // Appended after ORDER BY (required on MSSQL); binds one int parameter, the row count.
+    public String limit() {
+        return this == MSSQL ? "OFFSET 0 ROWS FETCH NEXT ? ROWS ONLY" : "LIMIT ?";
+    }
+
+    // Insert-or-update keyed on `keys`. Binds one parameter per entry of `columns`, in order.
+    public String upsert(String table, List<String> keys, List<String> columns) {
+        String cols = String.join(", ", columns);
+        String params = placeholders(columns.size());
+        if (this == H2) {
+            return "MERGE INTO " + table + " (" + cols + ") KEY (" + String.join(", ", keys) + ") VALUES (" + params + ")";
+        }
+        StringJoiner on = new StringJoiner(" AND ");
+        for (String k : keys) on.add("t." + k + " = s." + k);
+        List<String> sets = new ArrayList<>();
+        for (String col : columns) {
+            if (!keys.contains(col)) sets.add(col + " = s." + col);
+        }
+        StringJoiner values = new StringJoiner(", ");
+        for (String col : columns) values.add("s." + col);
+
+        return "MERGE INTO " + table + " AS t"
+                + " USING (VALUES (" + params + ")) AS s (" + cols + ")"
+                + " ON " + on
+                + (sets.isEmpty() ? "" : " WHEN MATCHED THEN UPDATE SET " + String.join(", ", sets))
+                + " WHEN NOT MATCHED THEN INSERT (" + cols + ") VALUES (" + values + ");";
+    }
+
+    // Multi-row INSERT; rows must not exceed rowsPerInsert(columns.size()).
+    public String insertRows(String table, List<String> columns, int rows) {
+        String row = "(" + placeholders(columns.size()) + ")";
+        StringJoiner values = new StringJoiner(", ");
+        for (int i = 0; i < rows; i++) values.add(row);
+        return "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES " + values;
+    }
+    public int rowsPerInsert(int columns) {
+        if (this == MSSQL) return Math.max(1, Math.min(MAX_ROWS_PER_INSERT, (MSSQL_MAX_PARAMETERS - 1) / columns));
+        return MAX_ROWS_PER_INSERT;
+    }
+
+    // H2 hands back every generated key of a JDBC batch; the SQL Server driver only the last.
+    public boolean batchReturnsKeys() {
+        return this == H2;
+    }
+
+    // === SCHEMA ===
+    // Translates an H2 column/table definition. IF [NOT] EXISTS is not handled here:
+    // SQL Server has no CREATE ... IF NOT EXISTS, see Migration.
+    public String ddl(String statement) {
+        if (this == H2) return statement;
+        String s = AUTO_INCREMENT.matcher(statement).replaceAll("IDENTITY(1,1)");
+        s = BOOLEAN.matcher(s).replaceAll("BIT");
+        s = TIMESTAMP.matcher(s).replaceAll("DATETIME2");
+        s = TRUE.matcher(s).replaceAll("1");
+        return FALSE.matcher(s).replaceAll("0");
+    }
+    public boolean supportsIfNotExists() {
+        return this == H2;
+    }
+    // Appended to CREATE INDEX so it does not lock out writes while it builds. SQL Server has
+    // ONLINE = ON only in some editions, Migration checks before using it; H2 has no option.
+    public String createIndexSuffix() {
+        return this == MSSQL ? " WITH (ONLINE = ON)" : "";
+    }
+    public String dropIndex(String index, String table) {
+        return this == MSSQL ? "DROP INDEX " + index + " ON " + table : "DROP INDEX " + index;
+    }
+
+    private static String placeholders(int n) {
+        return "?, ".repeat(n - 1) + "?";
+    }
+}
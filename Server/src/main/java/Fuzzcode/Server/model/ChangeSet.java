@@ -0,0 +1,14 @@
+package Fuzzcode.Server.model;
+
+import java.util.List;
+
+// One page of rows written after a revision, deleted rows included, oldest change first.
+// `revision` is where to ask from next: the highest revision in `rows`, unless a write
+// still in flight may commit below that, in which case the rows above it come again.
+// Apply rows as upserts by key, so seeing one twice is harmless.
+// `more` means the page was full and the caller should ask again from `revision`.
+public record ChangeSet<T>(List<T> rows, long revision, boolean more) {
+    public ChangeSet {
+        rows = List.copyOf(rows);
+    }
+}
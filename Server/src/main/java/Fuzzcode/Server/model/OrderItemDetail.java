@@ -0,0 +1,7 @@
+package Fuzzcode.Server.model;
+
+// An order relation together with the item it points at (item is null if the row is missing).
+public record OrderItemDetail(
+        OrderItem relation,
+        Item item
+) {}
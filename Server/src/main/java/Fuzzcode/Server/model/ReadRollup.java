@@ -0,0 +1,12 @@
+package Fuzzcode.Server.model;
+
+import java.time.Instant;
+
+// Reads of one tag within one hour or day (bucketStart, UTC).
+public record ReadRollup(
+        String tagId,
+        Instant bucketStart,
+        int readCount,
+        Instant firstRead,
+        Instant lastRead
+) {}
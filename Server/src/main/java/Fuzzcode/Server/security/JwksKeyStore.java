@@ -0,0 +1,201 @@
+package Fuzzcode.Server.security;
+
+import Fuzzcode.Server.utilities.LoggerHandler;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+
+import java.io.File;
+import java.net.URL;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Signing keys of one issuer, kept in memory and refreshed in the background.
+// Verification only ever reads the last key set that was loaded; it never waits on the
+// issuer. A token signed with a key we do not know yet (rotation) or a key set older
+// than the refresh interval schedules a refresh and is answered from what we have
+// (stale-while-revalidate). When the issuer cannot be reached, the last good keys keep
+// working for `outageGrace`; after that its tokens are refused until a refresh succeeds.
+//
+// Loaders: remote(URL) for an HTTP JWKS endpoint (file: URLs read a local file), fixed()
+// and of(Loader) for tests and in-process issuers.
+public final class JwksKeyStore implements JWKSource<SecurityContext> {
+
+    @FunctionalInterface
+    public interface Loader {
+        JWKSet load() throws Exception;
+    }
+
+    public record Config(Duration refreshInterval, Duration minRefreshGap, Duration outageGrace) {
+        public static Config defaults() {
+            return new Config(Duration.ofMinutes(5), Duration.ofSeconds(30), Duration.ofHours(24));
+        }
+    }
+
+    public record Stats(String name, int keys, Instant lastSuccess, long refreshes, long failures,
+                        long unknownKeyLookups, boolean expired) {}
+
+    private record Snapshot(JWKSet keys, long loadedAtNanos, Instant loadedAt) {}
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 2_000;
+    private static final int READ_TIMEOUT_MILLIS = 2_000;
+    private static final int SIZE_LIMIT_BYTES = 256 * 1024;
+
+    // One thread refreshes every store; a fetch only ever delays other refreshes.
+    private static ScheduledExecutorService refresher;
+
+    private final String name;
+    private final Loader loader;
+    private final Config config;
+    private volatile Snapshot snapshot;
+    private ScheduledFuture<?> schedule;
+
+    private final AtomicLong lastAttemptNanos = new AtomicLong(System.nanoTime() - Long.MAX_VALUE / 2); // "long ago"
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private final AtomicBoolean expiredLogged = new AtomicBoolean();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder unknownKeyLookups = new LongAdder();
+
+    private JwksKeyStore(String name, Loader loader, Config config) {
+        this.name = name;
+        this.loader = loader;
+        this.config = config;
+    }
+
+    public static JwksKeyStore remote(URL jwksUrl, Config config) {
+        Loader loader = "file".equals(jwksUrl.getProtocol())
+                ? () -> JWKSet.load(new File(jwksUrl.toURI()))
+                : () -> JWKSet.load(jwksUrl, CONNECT_TIMEOUT_MILLIS, READ_TIMEOUT_MILLIS, SIZE_LIMIT_BYTES);
+        return new JwksKeyStore(jwksUrl.toString(), loader, config);
+    }
+
+    public static JwksKeyStore of(String name, Loader loader, Config config) {
+        return new JwksKeyStore(name, loader, config);
+    }
+
+    // Always serves `keys`; for tests and issuers whose keys live in this process.
+    public static JwksKeyStore fixed(JWKSet keys) {
+        JwksKeyStore store = new JwksKeyStore("fixed", () -> keys, Config.defaults());
+        store.install(keys);
+        return store;
+    }
+
+    /* --------------- lifecycle --------------- */
+
+    // Loads the keys in the background right away and then every refreshInterval.
+    public synchronized JwksKeyStore start() {
+        if (schedule != null) return this;
+        long every = Math.max(1, config.refreshInterval().toMillis());
+        schedule = refresher().scheduleWithFixedDelay(this::refresh, 0, every, TimeUnit.MILLISECONDS);
+        return this;
+    }
+
+    public synchronized void stop() {
+        if (schedule == null) return;
+        schedule.cancel(false);
+        schedule = null;
+    }
+
+    // Loads on the calling thread; for startup and tests, never for the request path.
+    public boolean refreshNow() {
+        return refresh();
+    }
+
+    /* --------------- JWKSource --------------- */
+
+    @Override
+    public List<JWK> get(JWKSelector selector, SecurityContext context) {
+        Snapshot s = snapshot;
+        if (s == null) {
+            requestRefresh();
+            return List.of();
+        }
+        long age = System.nanoTime() - s.loadedAtNanos();
+        if (age > config.outageGrace().toNanos()) {
+            if (expiredLogged.compareAndSet(false, true)) {
+                LoggerHandler.log(LoggerHandler.Level.ERROR, "JWKS " + name + " not refreshed since "
+                        + s.loadedAt() + ", refusing its tokens");
+            }
+            requestRefresh();
+            return List.of();
+        }
+        List<JWK> found = selector.select(s.keys());
+        if (found.isEmpty()) {
+            unknownKeyLookups.increment();
+            requestRefresh();
+        } else if (age > config.refreshInterval().toNanos()) {
+            requestRefresh();
+        }
+        return found;
+    }
+
+    public Stats stats() {
+        Snapshot s = snapshot;
+        return new Stats(
+                name,
+                s == null ? 0 : s.keys().getKeys().size(),
+                s == null ? null : s.loadedAt(),
+                refreshes.sum(),
+                failures.sum(),
+                unknownKeyLookups.sum(),
+                s == null || System.nanoTime() - s.loadedAtNanos() > config.outageGrace().toNanos()
+        );
+    }
+
+    /* --------------- helpers --------------- */
+
+    // At most one refresh per minRefreshGap, however many tokens ask for one.
+    private void requestRefresh() {
+        long now = System.nanoTime();
+        long last = lastAttemptNanos.get();
+        if (now - last < config.minRefreshGap().toNanos()) return;
+        if (!lastAttemptNanos.compareAndSet(last, now)) return;
+        refresher().execute(this::refresh);
+    }
+
+    private boolean refresh() {
+        if (!refreshing.compareAndSet(false, true)) return false;
+        try {
+            lastAttemptNanos.set(System.nanoTime());
+            JWKSet keys = loader.load();
+            install(keys);
+            refreshes.increment();
+            return true;
+        } catch (Exception e) {
+            failures.increment();
+            Snapshot s = snapshot;
+            LoggerHandler.log(LoggerHandler.Level.WARNING, "JWKS refresh failed for " + name + " ("
+                    + (s == null ? "no keys yet" : "serving keys from " + s.loadedAt()) + "): " + e.getMessage());
+            return false;
+        } finally {
+            refreshing.set(false);
+        }
+    }
+
+    private void install(JWKSet keys) {
+        snapshot = new Snapshot(keys, System.nanoTime(), Instant.now());
+        expiredLogged.set(false);
+    }
+
+    private static synchronized ScheduledExecutorService refresher() {
+        if (refresher == null) {
+            refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "jwks-refresh");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return refresher;
+    }
+}
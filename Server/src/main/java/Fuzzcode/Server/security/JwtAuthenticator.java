@@ -5,13 +5,20 @@ import com.nimbusds.jose.JWSHeader;
 import com.nimbusds.jose.crypto.MACSigner;
 import com.nimbusds.jose.jwk.source.ImmutableSecret;
 import com.nimbusds.jose.proc.*;
-import com.nimbusds.jose.jwk.source.RemoteJWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
 import com.nimbusds.jwt.JWTClaimsSet;
 import com.nimbusds.jwt.SignedJWT;
 import com.nimbusds.jwt.proc.*;
 
+import Fuzzcode.Server.utilities.LoggerHandler;
+
 import java.net.URL;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class JwtAuthenticator {
     public record Config(
@@ -19,7 +26,15 @@ public class JwtAuthenticator {
             String audience,
             ConfigurableJWTProcessor<SecurityContext> processor
     ) {}
+    // A remote issuer whose RS256 keys are published at jwksUrl (http(s): or file:).
+    public record Issuer(String issuer, String audience, String jwksUrl) {}
+    private static final int TOKEN_CACHE_SIZE = 10_000;
+    // The claim verifiers accept exp up to 5 minutes in the past.
+    private static final Duration CLOCK_SKEW = Duration.ofMinutes(5);
+
     private final Map<String, Config> byIssuer;
+    private final List<JwksKeyStore> keyStores = new CopyOnWriteArrayList<>();
+    private final VerifiedTokenCache tokenCache = new VerifiedTokenCache(TOKEN_CACHE_SIZE, Clock.systemUTC());
 
     private final String hmacIssuer;
     private final String hmacAudience;
@@ -34,29 +49,98 @@ public class JwtAuthenticator {
         this.hmacAudience = hmacAudience;
         this.hmacSecret = hmacSecret;
     }
+    // Remote issuers from -Djwt.issuers (see configuredIssuers()).
     public static JwtAuthenticator buildDefault() {
-        try {
-            Config auth0 = buildRemote(
-                    "https://your-tenant.auth0.com/",
-                    "your-audience",
-                    "https://your-tenant.auth0.com/.well-known/jwks.json"
-            );
-            Config keycloak = buildRemote(
-                    "https://id.example.com/realms/app/",
-                    "ws-service",
-                    "https://id.example.com/realms/app/protocol/openid-connect/certs"
-            );
-            Map<String, Config> map = new HashMap<>();
-            map.put(auth0.issuer(), auth0);
-            map.put(keycloak.issuer(), keycloak);
+        return buildRemote(configuredIssuers(), JwksKeyStore.Config.defaults());
+    }
 
-            return new JwtAuthenticator(map, null, null, null);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+    // -Djwt.issuers="issuer|audience|jwksUrl;issuer|audience|jwksUrl"; empty if not set.
+    public static List<Issuer> configuredIssuers() {
+        List<Issuer> issuers = new ArrayList<>();
+        String configured = System.getProperty("jwt.issuers", "");
+        for (String entry : configured.split(";")) {
+            if (entry.isBlank()) continue;
+            String[] f = entry.trim().split("\\|");
+            if (f.length != 3) throw new IllegalArgumentException("jwt.issuers entry must be issuer|audience|jwksUrl: " + entry);
+            issuers.add(new Issuer(f[0].trim(), f[1].trim(), f[2].trim()));
+        }
+        return issuers;
+    }
+
+    // Keys are fetched in the background (see JwksKeyStore), never while verifying.
+    public static JwtAuthenticator buildRemote(List<Issuer> issuers, JwksKeyStore.Config keyConfig) {
+        JwtAuthenticator auth = new JwtAuthenticator(new ConcurrentHashMap<>(), null, null, null);
+        auth.trustIssuers(issuers, keyConfig);
+        return auth;
+    }
+
+    // Adds remote issuers next to the ones this authenticator already accepts.
+    public void trustIssuers(List<Issuer> issuers, JwksKeyStore.Config keyConfig) {
+        for (Issuer i : issuers) {
+            try {
+                addIssuer(i.issuer(), i.audience(), JwksKeyStore.remote(new URL(i.jwksUrl()), keyConfig).start());
+            } catch (java.net.MalformedURLException e) {
+                throw new IllegalArgumentException("Bad JWKS URL for " + i.issuer() + ": " + i.jwksUrl(), e);
+            }
         }
+        if (!issuers.isEmpty()) LoggerHandler.log("JwtAuthenticator trusts " + issuers.size() + " remote issuer(s)");
+    }
+
+    // For tests and in-process issuers: the caller owns refreshing `keys`.
+    public static JwtAuthenticator buildWithKeyStore(String issuer, String audience, JwksKeyStore keys) {
+        JwtAuthenticator auth = new JwtAuthenticator(new ConcurrentHashMap<>(), null, null, null);
+        auth.addIssuer(issuer, audience, keys);
+        return auth;
+    }
+
+    public List<JwksKeyStore.Stats> keyStoreStats() {
+        List<JwksKeyStore.Stats> out = new ArrayList<>();
+        for (JwksKeyStore k : keyStores) out.add(k.stats());
+        return out;
     }
 
+    // Stops the background key refreshes.
+    public void close() {
+        for (JwksKeyStore k : keyStores) k.stop();
+    }
+
+    // Tokens seen before are answered from the cache until their exp.
     public AuthContext verify(String token) throws Exception {
+        String key = VerifiedTokenCache.keyOf(token);
+        if (tokenCache.isRevoked(key)) throw new BadJWTException("revoked");
+        AuthContext cached = tokenCache.get(key);
+        if (cached != null) return cached;
+
+        AuthContext ctx = verifySignature(token);
+        tokenCache.put(key, ctx);
+        return ctx;
+    }
+
+    // Logout: the token is refused from now on. Returns false if it was not valid anyway.
+    public boolean revoke(String token) {
+        String key = VerifiedTokenCache.keyOf(token);
+        if (tokenCache.isRevoked(key)) return true;
+        Instant expiresAt;
+        try {
+            AuthContext cached = tokenCache.get(key);
+            expiresAt = (cached != null ? cached : verifySignature(token)).expiresAt();
+        } catch (Exception e) {
+            return false;
+        }
+        tokenCache.revoke(key, expiresAt.plus(CLOCK_SKEW));
+        return true;
+    }
+
+    // E.g. after a role change: the subject's tokens are fully verified again on next use.
+    public int invalidateSubject(String subject) {
+        return tokenCache.invalidateSubject(subject);
+    }
+
+    public VerifiedTokenCache.Stats tokenCacheStats() {
+        return tokenCache.stats();
+    }
+
+    private AuthContext verifySignature(String token) throws Exception {
         SignedJWT jwt = SignedJWT.parse(token);
         String iss = jwt.getJWTClaimsSet().getIssuer();
         Config cfg = byIssuer.get(iss);
@@ -89,8 +173,11 @@ public class JwtAuthenticator {
         }
         return Set.of();
     }
-    private static Config buildRemote(String issuer, String audience, String jwksUrl) throws Exception {
-        var jwks = new RemoteJWKSet<SecurityContext>(new URL(jwksUrl));
+    private void addIssuer(String issuer, String audience, JwksKeyStore keys) {
+        keyStores.add(keys);
+        byIssuer.put(issuer, buildRemote(issuer, audience, keys));
+    }
+    private static Config buildRemote(String issuer, String audience, JWKSource<SecurityContext> jwks) {
         var selector = new JWSVerificationKeySelector<SecurityContext>(JWSAlgorithm.RS256, jwks);
 
         var proc = new DefaultJWTProcessor<SecurityContext>();
@@ -125,7 +212,7 @@ public class JwtAuthenticator {
         });
         var cfg = new Config(issuer, audience, proc);
 
-        return new JwtAuthenticator(Map.of(issuer, cfg), issuer, audience, secret);
+        return new JwtAuthenticator(new ConcurrentHashMap<>(Map.of(issuer, cfg)), issuer, audience, secret);
     }
 
     public String issueToken(String subject, String scope, int ttlSeconds) {
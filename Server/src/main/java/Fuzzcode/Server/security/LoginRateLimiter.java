@@ -0,0 +1,61 @@
+package Fuzzcode.Server.security;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Fixed-window attempt counters for the login endpoint, one per username and client
+// address pair and one per client address. Keying the user window on the address too
+// means guessing at someone's password from elsewhere cannot lock them out. Stale
+// windows are swept at most once per window length, so the maps only hold keys that
+// tried to log in recently.
+public final class LoginRateLimiter {
+
+    private record Window(long startNanos, int attempts) {}
+    private record UserAt(String username, String address) {}
+
+    private final int perUser;
+    private final int perAddress;
+    private final long windowNanos;
+    private final Map<UserAt, Window> users = new ConcurrentHashMap<>();
+    private final Map<String, Window> addresses = new ConcurrentHashMap<>();
+    private final AtomicLong lastSweepNanos = new AtomicLong(System.nanoTime());
+
+    public LoginRateLimiter(int perUser, int perAddress, Duration window) {
+        this.perUser = Math.max(1, perUser);
+        this.perAddress = Math.max(1, perAddress);
+        this.windowNanos = Math.max(1, window.toNanos());
+    }
+
+    // Counts the attempt; false if the user from this address, or the address itself,
+    // used up its window.
+    public boolean tryAcquire(String username, String address) {
+        long now = System.nanoTime();
+        sweep(now);
+        boolean userOk = count(users, new UserAt(username.toLowerCase(Locale.ROOT), address), perUser, now);
+        boolean addressOk = address == null || count(addresses, address, perAddress, now);
+        return userOk && addressOk;
+    }
+
+    public Duration window() {
+        return Duration.ofNanos(windowNanos);
+    }
+
+    /* --------------- helpers --------------- */
+
+    private <K> boolean count(Map<K, Window> map, K key, int limit, long now) {
+        Window w = map.compute(key, (k, old) -> old == null || now - old.startNanos() >= windowNanos
+                ? new Window(now, 1)
+                : new Window(old.startNanos(), old.attempts() + 1));
+        return w.attempts() <= limit;
+    }
+
+    private void sweep(long now) {
+        long last = lastSweepNanos.get();
+        if (now - last < windowNanos || !lastSweepNanos.compareAndSet(last, now)) return;
+        users.values().removeIf(w -> now - w.startNanos() >= windowNanos);
+        addresses.values().removeIf(w -> now - w.startNanos() >= windowNanos);
+    }
+}
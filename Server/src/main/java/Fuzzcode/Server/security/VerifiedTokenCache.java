@@ -0,0 +1,128 @@
+package Fuzzcode.Server.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Tokens that already passed signature and claim checks, keyed by the SHA-256 of the
+// token (the token itself is never stored). A client reconnecting with the same token
+// costs a hash and a map lookup. Entries die at the token's exp; the least recently used
+// entry goes once the cache is full. Revoked tokens are remembered until their exp, so
+// presenting them again does not just re-verify them.
+public final class VerifiedTokenCache {
+
+    public record Stats(long hits, long misses, long evictions, long revocations, int size) {
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+
+    private final int maxEntries;
+    private final Clock clock;
+    private final LinkedHashMap<String, AuthContext> entries;
+    private final Map<String, Instant> revoked = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder revocations = new LongAdder();
+
+    VerifiedTokenCache(int maxEntries, Clock clock) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, AuthContext> eldest) {
+                if (size() <= VerifiedTokenCache.this.maxEntries) return false;
+                evictions.increment();
+                return true;
+            }
+        };
+    }
+
+    static String keyOf(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    // The cached context, or null if the token has to be verified.
+    AuthContext get(String key) {
+        Instant now = clock.instant();
+        synchronized (entries) {
+            AuthContext ctx = entries.get(key);
+            if (ctx != null && now.isBefore(ctx.expiresAt())) {
+                hits.increment();
+                return ctx;
+            }
+            if (ctx != null) entries.remove(key);
+        }
+        misses.increment();
+        return null;
+    }
+
+    void put(String key, AuthContext ctx) {
+        if (!clock.instant().isBefore(ctx.expiresAt())) return;
+        synchronized (entries) {
+            entries.put(key, ctx);
+        }
+    }
+
+    boolean isRevoked(String key) {
+        if (revoked.isEmpty()) return false;
+        Instant until = revoked.get(key);
+        if (until == null) return false;
+        if (clock.instant().isBefore(until)) return true;
+        revoked.remove(key, until);
+        return false;
+    }
+
+    // Logout: the token is refused until `until` (its exp plus the accepted clock skew).
+    void revoke(String key, Instant until) {
+        synchronized (entries) {
+            entries.remove(key);
+        }
+        revoked.put(key, until);
+        revocations.increment();
+        purgeRevoked();
+    }
+
+    // Drops every cached token of the subject; they are verified again on next use.
+    int invalidateSubject(String subject) {
+        int n = 0;
+        synchronized (entries) {
+            for (Iterator<AuthContext> it = entries.values().iterator(); it.hasNext(); ) {
+                if (subject.equals(it.next().subject())) {
+                    it.remove();
+                    n++;
+                }
+            }
+        }
+        return n;
+    }
+
+    Stats stats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), revocations.sum(), size);
+    }
+
+    private void purgeRevoked() {
+        Instant now = clock.instant();
+        revoked.values().removeIf(until -> !now.isBefore(until));
+    }
+}
@@ -0,0 +1,270 @@
+package Fuzzcode.Server.service;
+
+import Fuzzcode.Server.dao.ItemDao;
+import Fuzzcode.Server.dao.ItemReadDao;
+import Fuzzcode.Server.model.ItemRead;
+import Fuzzcode.Server.utilities.Backpressure;
+import Fuzzcode.Server.utilities.LoggerHandler;
+import Fuzzcode.Server.utilities.OverflowPolicy;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Ingest stage in front of ItemReadDao. Reads are collected until either maxBatchSize
+// rows are waiting or the oldest one has lingered for `linger`, then written with a
+// single executeBatch() in one transaction. Each caller gets its ReadID via a future.
+// The queue is bounded; when it is full the overflow policy decides (default: the oldest
+// queued read is dropped). offer() never waits, whatever the policy.
+public final class ItemReadBatchWriter {
+
+    private static final ItemReadBatchWriter INSTANCE = new ItemReadBatchWriter();
+    private static final int DEFAULT_CAPACITY = 50_000;
+
+    private record Pending(ItemRead read, boolean urgent, boolean checkTag, CompletableFuture<Integer> result) {}
+
+    public record Stats(long submitted, long written, long failed, long batches, int queued) {
+        public double avgBatchSize() {
+            return batches == 0 ? 0 : (double) (written + failed) / batches;
+        }
+    }
+
+    private final ItemDao itemDao = new ItemDao();
+    private final ItemReadDao itemReadDao = new ItemReadDao();
+    private volatile BlockingQueue<Pending> queue = new LinkedBlockingQueue<>(DEFAULT_CAPACITY);
+    private volatile OverflowPolicy overflow = OverflowPolicy.DROP_OLDEST_READ;
+    private volatile Backpressure pressure = new Backpressure(this::queued, DEFAULT_CAPACITY);
+
+    private volatile int maxBatchSize = 500;
+    private volatile long lingerNanos = Duration.ofMillis(20).toNanos();
+    private volatile Thread writer;   // null until the first read, and again after the writer ended
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    private ItemReadBatchWriter() {}
+
+    public static ItemReadBatchWriter getInstance() {
+        return INSTANCE;
+    }
+
+    public void configure(int maxBatchSize, Duration linger) {
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.lingerNanos = Math.max(0, linger.toNanos());
+    }
+
+    // Must be called before the first read is submitted; later calls are ignored.
+    public synchronized void configureQueue(int capacity, OverflowPolicy policy) {
+        if (writer != null) {
+            LoggerHandler.log(LoggerHandler.Level.WARNING, "ItemRead batch writer already running, configureQueue() ignored");
+            return;
+        }
+        int cap = Math.max(1, capacity);
+        queue = new LinkedBlockingQueue<>(cap);
+        pressure = new Backpressure(this::queued, cap);
+        overflow = policy;
+    }
+
+    public Backpressure pressure() {
+        return pressure;
+    }
+
+    // Queues a read for the next batch. The future completes with the generated ReadID,
+    // or exceptionally if the batch could not be written.
+    public CompletableFuture<Integer> submit(String tagId, Instant readTime) {
+        return enqueue(tagId, readTime, false, false, true);
+    }
+
+    // Same as submit(), but the writer flushes right away instead of waiting out the
+    // linger time. Meant for callers that block on the result.
+    public CompletableFuture<Integer> submitAndFlush(String tagId, Instant readTime) {
+        return enqueue(tagId, readTime, true, false, true);
+    }
+
+    // For the MQTT event loop: never waits (BLOCK behaves like REJECT), and the tag is
+    // checked on the writer thread, so a tag index miss does not query the database on
+    // the caller's thread. Completes with null when no active item has the tag.
+    public CompletableFuture<Integer> offer(String tagId, Instant readTime) {
+        return enqueue(tagId, readTime, false, true, false);
+    }
+
+    public Stats stats() {
+        return new Stats(submitted.get(), written.get(), failed.get(), batches.get(), queued());
+    }
+
+    private int queued() {
+        return queue.size();
+    }
+
+    /* --------------- writer loop --------------- */
+
+    private CompletableFuture<Integer> enqueue(String tagId, Instant readTime, boolean urgent,
+                                               boolean checkTag, boolean mayBlock) {
+        ensureStarted();
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        Pending pending = new Pending(new ItemRead(0, tagId, readTime, false), urgent, checkTag, result);
+        if (!admit(pending, mayBlock)) {
+            pressure.recordRejected();
+            result.completeExceptionally(new RejectedExecutionException("ItemRead queue full"));
+            return result;
+        }
+        submitted.incrementAndGet();
+        // Again after the add: a writer that ended meanwhile has already drained the queue.
+        ensureStarted();
+        return result;
+    }
+
+    private boolean admit(Pending pending, boolean mayBlock) {
+        BlockingQueue<Pending> q = queue;
+        if (q.offer(pending)) return true;
+        switch (overflow) {
+            case BLOCK -> {
+                if (!mayBlock) return false;
+                try {
+                    q.put(pending);
+                    return true;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            case DROP_OLDEST_READ -> {
+                return dropOldest(q) && q.offer(pending);
+            }
+            default -> {
+                return false;
+            }
+        }
+    }
+
+    // Urgent reads have a caller waiting on them and are never dropped.
+    private boolean dropOldest(BlockingQueue<Pending> q) {
+        for (Pending oldest : q) {
+            if (oldest.urgent() || !q.remove(oldest)) continue;
+            pressure.recordDropped();
+            oldest.result().completeExceptionally(new RejectedExecutionException("Dropped: ItemRead queue full"));
+            return true;
+        }
+        return false;
+    }
+
+    private void ensureStarted() {
+        if (writer != null) return;
+        synchronized (this) {
+            if (writer == null) start();
+        }
+    }
+
+    private void start() {
+        Thread t = new Thread(this::run, "itemread-batch-writer");
+        t.setDaemon(true);
+        writer = t;
+        t.start();
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>();
+        while (true) {
+            try {
+                Pending first = queue.take();
+                batch.add(first);
+                fill(batch, first.urgent());
+                pressure.onDequeued();
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LoggerHandler.log("=== THREAD itemread-batch-writer ended! ===");
+                failAll(batch, e);
+                stopped(e);
+                break;
+            } catch (RuntimeException e) {
+                LoggerHandler.log(LoggerHandler.Level.ERROR, "ItemRead batch writer failed", e);
+                failAll(batch, e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // No reader is left waiting on a dead writer: fail what is queued and let the next
+    // enqueue start a new one.
+    private void stopped(Exception cause) {
+        synchronized (this) {
+            writer = null;
+        }
+        List<Pending> left = new ArrayList<>();
+        queue.drainTo(left);
+        failAll(left, cause);
+        pressure.onDequeued();
+    }
+
+    private void fill(List<Pending> batch, boolean urgent) throws InterruptedException {
+        int max = maxBatchSize;
+        long deadline = System.nanoTime() + lingerNanos;
+        while (batch.size() < max) {
+            if (urgent) {
+                // Take what is already queued, but do not wait for more.
+                queue.drainTo(batch, max - batch.size());
+                return;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                queue.drainTo(batch, max - batch.size());
+                return;
+            }
+            Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) return;
+            batch.add(next);
+            urgent = next.urgent();
+        }
+    }
+
+    private void flush(List<Pending> batch) {
+        batch.removeIf(this::unknownTag);
+        if (batch.isEmpty()) return;
+        List<ItemRead> rows = new ArrayList<>(batch.size());
+        for (Pending p : batch) rows.add(p.read());
+
+        batches.incrementAndGet();
+        try {
+            int[] ids = itemReadDao.recordItemReads(rows);
+            for (int i = 0; i < ids.length; i++) {
+                if (ids[i] > 0) {
+                    written.incrementAndGet();
+                    batch.get(i).result().complete(ids[i]);
+                } else {
+                    failed.incrementAndGet();
+                    batch.get(i).result().completeExceptionally(
+                            new SQLException("No ReadID generated for tag " + rows.get(i).tagId()));
+                }
+            }
+        } catch (SQLException e) {
+            LoggerHandler.log(LoggerHandler.Level.ERROR, "Failed to write ItemRead batch of " + batch.size(), e);
+            failAll(batch, e);
+        }
+    }
+
+    // Reads that came in through offer() have not been checked against the items yet.
+    private boolean unknownTag(Pending p) {
+        if (!p.checkTag() || itemDao.readActiveItemByTagCached(p.read().tagId()) != null) return false;
+        LoggerHandler.log(LoggerHandler.Level.WARNING, "⚠ Unknown tag scanned: " + p.read().tagId());
+        p.result().complete(null);
+        return true;
+    }
+
+    private void failAll(List<Pending> batch, Exception cause) {
+        for (Pending p : batch) {
+            if (p.result().completeExceptionally(cause)) failed.incrementAndGet();
+        }
+    }
+}
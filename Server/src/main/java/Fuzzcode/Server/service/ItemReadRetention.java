@@ -0,0 +1,116 @@
+package Fuzzcode.Server.service;
+
+import Fuzzcode.Server.dao.ItemReadArchiveDao;
+import Fuzzcode.Server.db.ConnectionManager;
+import Fuzzcode.Server.utilities.LoggerHandler;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Keeps the hot ItemRead table small. Reads older than the hot window are moved, a month
+// at a time, into monthly archive partitions (ItemRead_YYYYMM) and counted into the hourly
+// and daily per-tag rollups on the way. Partitions older than archiveMonths are dropped;
+// their rollups stay. Hourly rollups are pruned after hourlyRollups, daily ones are kept.
+public final class ItemReadRetention {
+
+    private static final ItemReadRetention INSTANCE = new ItemReadRetention();
+
+    public record Policy(Duration hotWindow, int archiveMonths, Duration hourlyRollups) {
+        public Policy {
+            if (hotWindow.isNegative() || archiveMonths < 0 || hourlyRollups.isNegative())
+                throw new IllegalArgumentException("Retention periods must not be negative");
+        }
+        public static Policy defaults() {
+            return new Policy(Duration.ofDays(31), 24, Duration.ofDays(90));
+        }
+    }
+
+    public record Report(int archivedReads, int partitionsFilled, int partitionsDropped, int hourlyPruned, long tookMillis) {}
+
+    private final ItemReadArchiveDao archiveDao = new ItemReadArchiveDao();
+    private volatile Policy policy = Policy.defaults();
+    private ScheduledExecutorService scheduler;
+
+    private ItemReadRetention() {}
+
+    public static ItemReadRetention getInstance() {
+        return INSTANCE;
+    }
+
+    public void configure(Policy policy) {
+        this.policy = policy;
+    }
+    public Policy policy() {
+        return policy;
+    }
+
+    public Report runOnce() {
+        return runOnce(Instant.now());
+    }
+    // Serialised: two overlapping runs would archive the same month twice.
+    public synchronized Report runOnce(Instant now) {
+        long start = System.currentTimeMillis();
+        Policy p = policy;
+
+        // Whole days only, so an hour or day bucket is never split between hot and archive.
+        Instant cutoff = now.minus(p.hotWindow()).truncatedTo(ChronoUnit.DAYS);
+        int archived = 0;
+        int filled = 0;
+        Instant oldest;
+        while ((oldest = archiveDao.oldestHotReadBefore(cutoff)) != null) {
+            YearMonth month = YearMonth.from(oldest.atZone(ZoneOffset.UTC));
+            Instant monthStart = month.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+            Instant monthEnd = month.plusMonths(1).atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+            Instant to = monthEnd.isBefore(cutoff) ? monthEnd : cutoff;
+            try {
+                archived += archiveDao.archiveRange(month, monthStart, to);
+                filled++;
+            } catch (SQLException e) {
+                LoggerHandler.log(LoggerHandler.Level.ERROR, "Archiving reads of " + month + " failed", e);
+                break; // retried on the next run
+            }
+        }
+
+        YearMonth keepFrom = YearMonth.from(now.atZone(ZoneOffset.UTC)).minusMonths(p.archiveMonths());
+        int dropped = 0;
+        for (ItemReadArchiveDao.Partition partition : archiveDao.listPartitions()) {
+            if (partition.month().isBefore(keepFrom) && archiveDao.dropPartition(partition)) dropped++;
+        }
+
+        int pruned = archiveDao.pruneHourly(now.minus(p.hourlyRollups()).truncatedTo(ChronoUnit.HOURS));
+
+        Report report = new Report(archived, filled, dropped, pruned, System.currentTimeMillis() - start);
+        if (archived > 0 || dropped > 0) LoggerHandler.log("ItemRead retention: " + report);
+        return report;
+    }
+
+    public synchronized void start(Duration every) {
+        if (scheduler != null) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "itemread-retention");
+            t.setDaemon(true);
+            return t;
+        });
+        long millis = Math.max(1, every.toMillis());
+        scheduler.scheduleWithFixedDelay(() -> {
+            if (!ConnectionManager.isInitialized()) return;
+            try {
+                runOnce();
+            } catch (RuntimeException e) {
+                LoggerHandler.log(LoggerHandler.Level.ERROR, "ItemRead retention run failed", e);
+            }
+        }, millis, millis, TimeUnit.MILLISECONDS);
+    }
+    public synchronized void stop() {
+        if (scheduler == null) return;
+        scheduler.shutdownNow();
+        scheduler = null;
+    }
+}
@@ -1,62 +1,130 @@
 package Fuzzcode.Server.service;
 
+import Fuzzcode.Server.cache.ReadDedupWindow;
 import Fuzzcode.Server.utilities.LoggerHandler;
 import Fuzzcode.Server.dao.ItemDao;
+import Fuzzcode.Server.dao.ItemReadArchiveDao;
 import Fuzzcode.Server.dao.ItemReadDao;
+import Fuzzcode.Server.model.ChangeSet;
 import Fuzzcode.Server.model.Item;
 import Fuzzcode.Server.model.ItemRead;
+import Fuzzcode.Server.model.ReadRollup;
 
 import java.time.*;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class ItemReadService {
 
     private static final Duration DUPLICATE_IGNORE_WINDOW = Duration.ofSeconds(2);
+    // Shared by every service instance, so all entry points see the same recent reads.
+    private static final ReadDedupWindow DEDUP = new ReadDedupWindow(DUPLICATE_IGNORE_WINDOW);
+    // How long a caller waits for its read to be written; it runs on a message worker.
+    private static final Duration RECORD_TIMEOUT = Duration.ofSeconds(5);
 
     private final ItemDao itemDao = new ItemDao();
     private final ItemReadDao itemReadDao = new ItemReadDao();
+    private final ItemReadArchiveDao archiveDao = new ItemReadArchiveDao();
+    private final ItemReadBatchWriter batchWriter = ItemReadBatchWriter.getInstance();
 
-    private volatile String lastTag = null;
-    private volatile Instant lastReadTime = Instant.EPOCH;
 
     public ItemRead recordScan(String tagId, String timestampStr) {
-        Objects.requireNonNull(tagId, "tagId");
-        final Instant nowInstant = parseToInstantOrNow(timestampStr);
+        try {
+            return recordScanWithin(tagId, timestampStr);
+        } catch (TimeoutException e) {
+            return null;
+        }
+    }
 
-        Instant prevTime = lastReadTime;
-        String  prevTag  = lastTag;
+    // Waits at most RECORD_TIMEOUT for the batch writer. On a timeout the read stays queued
+    // and may still be written; the caller only stops waiting for it.
+    public ItemRead recordScanWithin(String tagId, String timestampStr) throws TimeoutException {
+        try {
+            return recordScan(tagId, timestampStr, true).get(RECORD_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            LoggerHandler.log(LoggerHandler.Level.WARNING, "⚠ Timed out writing ItemRead for tag: " + tagId);
+            throw e;
+        } catch (ExecutionException e) {
+            LoggerHandler.log(LoggerHandler.Level.WARNING, "⚠ Failed to insert ItemRead for tag: " + tagId);
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
 
-        if (tagId.equals(prevTag) &&
-                Duration.between(prevTime, nowInstant).compareTo(DUPLICATE_IGNORE_WINDOW) < 0) {
+    // Non-blocking variant for high-volume ingest: the read is written with the next
+    // batch. Completes with null when the read was a duplicate or the tag is unknown.
+    public CompletableFuture<ItemRead> recordScanAsync(String tagId, String timestampStr) {
+        return recordScan(tagId, timestampStr, false);
+    }
 
-            LoggerHandler.log(LoggerHandler.Level.INFO, "⏱ Ignored duplicate read for " + tagId);
-            return null; // nothing new stored
+    // Reader-aware variant for the MQTT event loop, never blocks: the duplicate window (tuned
+    // per reader and antenna) is in memory and the tag is checked by the batch writer thread.
+    public CompletableFuture<ItemRead> recordScanAsync(String readerId, int antenna, String tagId, Instant readTime) {
+        Objects.requireNonNull(tagId, "tagId");
+        if (DEDUP.isDuplicate(readerId, antenna, tagId, readTime)) {
+            LoggerHandler.log(LoggerHandler.Level.DEBUG, () -> "⏱ Ignored duplicate read for " + tagId);
+            return CompletableFuture.completedFuture(null);
         }
+        return batchWriter.offer(tagId, readTime)
+                .thenApply(id -> id == null ? null : new ItemRead(id, tagId, readTime, false));
+    }
 
-        lastTag = tagId;
-        lastReadTime = nowInstant;
+    public static ReadDedupWindow dedupWindow() {
+        return DEDUP;
+    }
 
-        Item item = itemDao.readItemByTag(tagId, false);
+    private CompletableFuture<ItemRead> recordScan(String tagId, String timestampStr, boolean flushNow) {
+        Objects.requireNonNull(tagId, "tagId");
+        return recordScan(ReadDedupWindow.DEFAULT_READER, 0, tagId, parseToInstantOrNow(timestampStr), flushNow);
+    }
+
+    private CompletableFuture<ItemRead> recordScan(String readerId, int antenna, String tagId,
+                                                   Instant nowInstant, boolean flushNow) {
+        Objects.requireNonNull(tagId, "tagId");
+
+        if (DEDUP.isDuplicate(readerId, antenna, tagId, nowInstant)) {
+            LoggerHandler.log(LoggerHandler.Level.DEBUG, () -> "⏱ Ignored duplicate read for " + tagId);
+            return CompletableFuture.completedFuture(null); // nothing new stored
+        }
+
+        Item item = itemDao.readActiveItemByTagCached(tagId);
         if (item == null) {
             LoggerHandler.log(LoggerHandler.Level.WARNING, "⚠ Unknown tag scanned: " + tagId);
-            return null;
+            return CompletableFuture.completedFuture(null);
         }
 
-        int readId = itemReadDao.recordItemRead(tagId, nowInstant);
-        if (readId == 0) {
-            LoggerHandler.log(LoggerHandler.Level.WARNING, "⚠ Failed to insert ItemRead for tag: " + tagId);
-            return null;
-        }
+        CompletableFuture<Integer> readId = flushNow
+                ? batchWriter.submitAndFlush(tagId, nowInstant)
+                : batchWriter.submit(tagId, nowInstant);
 
-        LoggerHandler.log("📥 Recorded scan for tag: " + tagId + " as readId=" + readId);
-        return new ItemRead(readId, tagId, nowInstant, false);
+        return readId.thenApply(id -> {
+            LoggerHandler.log(LoggerHandler.Level.DEBUG, () -> "📥 Recorded scan for tag: " + tagId + " as readId=" + id);
+            return new ItemRead(id, tagId, nowInstant, false);
+        });
     }
     public List<ItemRead> listAllActiveReads() {
         return itemReadDao.listAllActiveReads();
     }
+    public List<ItemRead> listActiveReadsPage(Instant afterTime, int afterReadId, int pageSize) {
+        return itemReadDao.listActiveReadsPage(afterTime, afterReadId, pageSize);
+    }
+    public ChangeSet<ItemRead> listChangedSince(long revision, int limit) {
+        return itemReadDao.listChangedSince(revision, limit);
+    }
+    public Instant oldestActiveReadTime() {
+        return itemReadDao.oldestActiveReadTime();
+    }
     public List<ItemRead> getRecentReads(String tagId, int limit) {
         return itemReadDao.listReadsForTag(tagId, limit);
     }
@@ -65,7 +133,7 @@ public class ItemReadService {
         Instant ts = parseToInstantOrNow(timestampStr);
 
         // Optional: validate that tag exists
-        Item item = itemDao.readItemByTag(tagId, false);
+        Item item = itemDao.readActiveItemByTagCached(tagId);
         if (item == null) {
             LoggerHandler.log(LoggerHandler.Level.WARNING,
                     "⚠ Cannot update ItemRead, unknown tag: " + tagId);
@@ -100,6 +168,27 @@ public class ItemReadService {
 
         return itemReadDao.listReadsForTagInRange(item.tagId(), from, to);
     }
+    // Per-hour (or per-day) read counts of a tag: the rollups answer for archived reads,
+    // the hot table for the rest. Buckets are UTC and only present when non-empty.
+    public List<ReadRollup> listReadCounts(String tagId, Instant from, Instant to, boolean daily) {
+        ChronoUnit unit = daily ? ChronoUnit.DAYS : ChronoUnit.HOURS;
+        Instant bucketFrom = from.truncatedTo(unit);
+        TreeMap<Instant, ReadRollup> buckets = new TreeMap<>();
+        for (ReadRollup r : archiveDao.listRollups(tagId, bucketFrom, to, daily)) {
+            buckets.merge(r.bucketStart(), r, ItemReadService::combine);
+        }
+        for (ItemRead read : itemReadDao.listReadsForTagInRange(tagId, bucketFrom, to, false)) {
+            Instant t = read.readTime();
+            buckets.merge(t.truncatedTo(unit), new ReadRollup(tagId, t.truncatedTo(unit), 1, t, t),
+                    ItemReadService::combine);
+        }
+        return new ArrayList<>(buckets.values());
+    }
+    private static ReadRollup combine(ReadRollup a, ReadRollup b) {
+        return new ReadRollup(a.tagId(), a.bucketStart(), a.readCount() + b.readCount(),
+                a.firstRead().isBefore(b.firstRead()) ? a.firstRead() : b.firstRead(),
+                a.lastRead().isAfter(b.lastRead()) ? a.lastRead() : b.lastRead());
+    }
     private static Instant parseToInstantOrNow(String s) {
         if (s == null || s.isBlank()) return Instant.now();
 
@@ -3,9 +3,12 @@ package Fuzzcode.Server.service;
 import Fuzzcode.Server.model.Position;
 import Fuzzcode.Server.utilities.LoggerHandler;
 import Fuzzcode.Server.dao.ItemDao;
+import Fuzzcode.Server.model.ChangeSet;
 import Fuzzcode.Server.model.Item;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public class ItemService {
     private final ItemDao itemDao = new ItemDao();
@@ -24,6 +27,9 @@ public class ItemService {
     public Item getItemById(int id, boolean include) {
         return itemDao.readItemById(id, include);
     }
+    public Map<Integer, Item> getItemsByIds(Collection<Integer> ids, boolean include) {
+        return itemDao.readItemsByIds(ids, include);
+    }
     public boolean changeTag(String tagId, int itemId) {
         return itemDao.updateTag(tagId, itemId);
     }
@@ -42,7 +48,22 @@ public class ItemService {
     public List<Item> listAllItems() {
         return itemDao.listAll(true);
     }
+    public ChangeSet<Item> listChangedSince(long revision, int limit) {
+        return itemDao.listChangedSince(revision, limit);
+    }
     public List<Item> listItemsForOrder(int orderId, boolean includeDeleted) {
         return itemDao.listByOrder(orderId, includeDeleted);
     }
+    public Map<Position, Integer> countPositionsForOrder(int orderId) {
+        return itemDao.countPositionsByOrderCached(orderId);
+    }
+    public Map<Integer, Map<Position, Integer>> countPositionsForOrders(Collection<Integer> orderIds) {
+        return itemDao.countPositionsByOrdersCached(orderIds);
+    }
+    public Map<Position, Integer> countPositionsGlobal() {
+        return itemDao.countPositionsGlobal();
+    }
+    public Map<Integer, Map<Position, Integer>> countPositionsForActiveOrders() {
+        return itemDao.countPositionsForActiveOrders();
+    }
 }
@@ -0,0 +1,135 @@
+package Fuzzcode.Server.service;
+
+import Fuzzcode.Server.dao.UserDao;
+import Fuzzcode.Server.model.AppUser;
+import Fuzzcode.Server.security.LoginRateLimiter;
+import Fuzzcode.Server.utilities.LoggerHandler;
+import org.mindrot.jbcrypt.BCrypt;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Password checks for the login endpoint. BCrypt costs tens of milliseconds of CPU per
+// attempt, so it runs on a small dedicated pool with a bounded queue instead of on Jetty's
+// request threads: a crowd logging in at once queues up here (or is turned away) while
+// WebSocket traffic keeps its threads. Attempts are rate limited per user and address
+// before any work is queued.
+public final class LoginService implements AutoCloseable {
+
+    public enum Outcome { OK, INVALID, RATE_LIMITED, BUSY, UNAVAILABLE }
+
+    public record Result(Outcome outcome, AppUser user) {
+        static Result of(Outcome outcome) {
+            return new Result(outcome, null);
+        }
+    }
+
+    public record Stats(long accepted, long rejected, long rateLimited, int queued, int active) {}
+
+    public record Config(
+            int hashThreads,
+            int queueCapacity,
+            int attemptsPerUser,
+            int attemptsPerAddress,
+            Duration rateWindow
+    ) {
+        public Config {
+            if (hashThreads < 1) throw new IllegalArgumentException("hashThreads must be >= 1");
+            if (queueCapacity < 1) throw new IllegalArgumentException("queueCapacity must be >= 1");
+        }
+        public static Config defaults() {
+            return new Config(
+                    Math.max(1, Runtime.getRuntime().availableProcessors() / 2),
+                    256,
+                    10,
+                    // Handhelds often share one address behind the warehouse NAT.
+                    600,
+                    Duration.ofMinutes(1)
+            );
+        }
+    }
+
+    // Checked for unknown users too, so a miss takes as long as a wrong password.
+    private static final String DUMMY_HASH = BCrypt.hashpw("not-a-password", BCrypt.gensalt());
+
+    private final UserDao dao = new UserDao();
+    private final ThreadPoolExecutor hashing;
+    private final LoginRateLimiter limiter;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder limited = new LongAdder();
+
+    public LoginService() {
+        this(Config.defaults());
+    }
+
+    public LoginService(Config config) {
+        AtomicInteger n = new AtomicInteger();
+        this.hashing = new ThreadPoolExecutor(
+                config.hashThreads(), config.hashThreads(),
+                0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(config.queueCapacity()),
+                r -> {
+                    Thread t = new Thread(r, "login-hash-" + n.getAndIncrement());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.limiter = new LoginRateLimiter(config.attemptsPerUser(), config.attemptsPerAddress(), config.rateWindow());
+    }
+
+    // Never blocks; the future completes on a hashing thread.
+    public CompletableFuture<Result> authenticate(String username, String password, String remoteAddress) {
+        if (!limiter.tryAcquire(username, remoteAddress)) {
+            limited.increment();
+            return CompletableFuture.completedFuture(Result.of(Outcome.RATE_LIMITED));
+        }
+        try {
+            CompletableFuture<Result> result = CompletableFuture.supplyAsync(() -> check(username, password), hashing);
+            accepted.increment();
+            return result;
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            return CompletableFuture.completedFuture(Result.of(Outcome.BUSY));
+        }
+    }
+
+    public Duration rateWindow() {
+        return limiter.window();
+    }
+
+    public Stats stats() {
+        return new Stats(accepted.sum(), rejected.sum(), limited.sum(), hashing.getQueue().size(), hashing.getActiveCount());
+    }
+
+    @Override
+    public void close() {
+        hashing.shutdown();
+    }
+
+    /* --------------- helpers --------------- */
+
+    private Result check(String username, String password) {
+        AppUser user;
+        try {
+            user = dao.findByUsernameCached(username);
+        } catch (RuntimeException e) {
+            LoggerHandler.log(LoggerHandler.Level.ERROR, "User lookup failed during login", e);
+            return Result.of(Outcome.UNAVAILABLE);
+        }
+        if (user == null) {
+            BCrypt.checkpw(password, DUMMY_HASH);
+            return Result.of(Outcome.INVALID);
+        }
+        return BCrypt.checkpw(password, user.passwordHash())
+                ? new Result(Outcome.OK, user)
+                : Result.of(Outcome.INVALID);
+    }
+}
@@ -1,9 +1,13 @@
 package Fuzzcode.Server.service;
 
+import Fuzzcode.Server.cache.PositionCounters;
 import Fuzzcode.Server.dao.OrderItemDao;
+import Fuzzcode.Server.dao.RevisionFence;
 import Fuzzcode.Server.utilities.LoggerHandler;
 import Fuzzcode.Server.db.ConnectionManager;
+import Fuzzcode.Server.model.ChangeSet;
 import Fuzzcode.Server.model.OrderItem;
+import Fuzzcode.Server.model.OrderItemDetail;
 
 import java.sql.Connection;
 import java.util.List;
@@ -18,25 +22,29 @@ public class OrderItemService {
         if (!orderItemDao.itemExists(itemId))
             throw new IllegalArgumentException("Item " + itemId + " does not exist");
         OrderItem oi = orderItemDao.attach(orderId, itemId);
-        LoggerHandler.log("Assigned: " + oi);
+        LoggerHandler.log(LoggerHandler.Level.DEBUG, () -> "Assigned: " + oi);
         return oi;
     }
     public boolean detachItemFromOrder(int itemId, int orderId) {
         boolean ok = orderItemDao.detach(orderId, itemId);
-        LoggerHandler.log(ok ? "Detached item " + itemId + " from order " + orderId
+        LoggerHandler.log(LoggerHandler.Level.DEBUG, () -> ok ? "Detached item " + itemId + " from order " + orderId
                 : "No active relation to detach");
         return ok;
     }
     public boolean moveItemToAnotherOrder(int itemId, int fromOrderId, int toOrderId) {
         if (fromOrderId == toOrderId) return true; // noop
-        try (Connection c = ConnectionManager.getConnection()) {
+        try (RevisionFence.Writer fence = RevisionFence.write();
+             Connection c = ConnectionManager.getConnection()) {
             boolean auto = c.getAutoCommit();
             c.setAutoCommit(false);
             try {
                 orderItemDao.detach(c, fromOrderId, itemId);
                 orderItemDao.attach(c, toOrderId, itemId);
                 c.commit();
-                LoggerHandler.log("Moved item " + itemId + " from order " + fromOrderId + " to " + toOrderId);
+                PositionCounters counters = PositionCounters.getInstance();
+                counters.detached(fromOrderId, itemId);
+                counters.attached(toOrderId, itemId);
+                LoggerHandler.log(LoggerHandler.Level.DEBUG, () -> "Moved item " + itemId + " from order " + fromOrderId + " to " + toOrderId);
                 return true;
             } catch (Exception e) {
                 c.rollback();
@@ -52,15 +60,22 @@ public class OrderItemService {
     }
     public List<OrderItem> getItemsInOrder(int orderId, boolean includeDeleted) {
         List<OrderItem> list = orderItemDao.listByOrder(orderId, includeDeleted);
-        LoggerHandler.log("Order " + orderId + " contains " + list.size() + " item(s)");
+        LoggerHandler.log(LoggerHandler.Level.DEBUG, () -> "Order " + orderId + " contains " + list.size() + " item(s)");
         return list;
     }
+    // Relations with their items in a single query, for the per-order snapshot.
+    public List<OrderItemDetail> getItemsInOrderWithItems(int orderId, boolean includeDeleted) {
+        return orderItemDao.listByOrderWithItems(orderId, includeDeleted);
+    }
     public boolean isAttached(int orderId, int itemId) {
         return orderItemDao.isAttached(orderId, itemId, false);
     }
     public List<OrderItem> listAll(boolean includeDeleted) {
         List<OrderItem> list = orderItemDao.listAll(includeDeleted);
-        LoggerHandler.log("OrderItems listAll(" + includeDeleted + ") -> " + list.size() + " rows");
+        LoggerHandler.log(LoggerHandler.Level.DEBUG, () -> "OrderItems listAll(" + includeDeleted + ") -> " + list.size() + " rows");
         return list;
     }
+    public ChangeSet<OrderItem> listChangedSince(long revision, int limit) {
+        return orderItemDao.listChangedSince(revision, limit);
+    }
 }
@@ -6,7 +6,9 @@ import Fuzzcode.Server.model.UserRole;
 import Fuzzcode.Server.utilities.LoggerHandler;
 import Fuzzcode.Server.dao.OrderDao;
 import Fuzzcode.Server.dao.OrderItemDao;
+import Fuzzcode.Server.dao.RevisionFence;
 import Fuzzcode.Server.db.ConnectionManager;
+import Fuzzcode.Server.model.ChangeSet;
 import Fuzzcode.Server.model.Order;
 import Fuzzcode.Server.model.OrderItem;
 
@@ -77,6 +79,9 @@ public class OrderService {
     public List<Order> listActiveOrders() {
         return orderDao.listOrders(false, null);
     }
+    public ChangeSet<Order> listChangedSince(long revision, int limit) {
+        return orderDao.listChangedSince(revision, limit);
+    }
     public List<Item> listItemsForOrder(int orderId, boolean includeDeleted) {
         try (Connection c = ConnectionManager.getConnection()) {
             return itemDao.listByOrder(orderId, includeDeleted);  // joins inside ItemDao
@@ -86,7 +91,8 @@ public class OrderService {
         }
     }
     public boolean detachItem(int orderId, int itemId) {
-        try (Connection c = ConnectionManager.getConnection()) {
+        try (RevisionFence.Writer fence = RevisionFence.write();
+             Connection c = ConnectionManager.getConnection()) {
             return orderItemDao.detach(c, orderId, itemId);
         } catch (SQLException e) {
             LoggerHandler.log(e);
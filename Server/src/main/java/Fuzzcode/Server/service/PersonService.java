@@ -1,6 +1,7 @@
 package Fuzzcode.Server.service;
 
 import Fuzzcode.Server.dao.PersonDao;
+import Fuzzcode.Server.model.ChangeSet;
 import Fuzzcode.Server.model.Person;
 import Fuzzcode.Server.model.PersonRole;
 
@@ -25,6 +26,9 @@ public class PersonService {
     public List<Person> listPeople() {
         return dao.readAllActive();
     }
+    public ChangeSet<Person> listChangedSince(long revision, int limit) {
+        return dao.listChangedSince(revision, limit);
+    }
     public Person updatePerson(int id, String name, PersonRole role) {
         if (name == null || name.isBlank()) {
             throw new IllegalArgumentException("Name must not be blank");
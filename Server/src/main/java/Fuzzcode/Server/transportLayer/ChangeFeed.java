@@ -0,0 +1,46 @@
+package Fuzzcode.Server.transportLayer;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+// Fans change events (Upsert/Deleted replies) out to every subscribed session.
+// Publishing never blocks: subscribers only queue the event, each on its own outbox.
+public final class ChangeFeed {
+
+    private static final ChangeFeed INSTANCE = new ChangeFeed();
+
+    public interface Subscriber {
+        // origin is the reply sink of the request that caused the change (null for broker
+        // traffic); the requester already has the event as its reply and can skip it.
+        void onEvent(OutboundMessage event, Object origin);
+    }
+
+    public record Stats(long published, int subscribers) {}
+
+    private final CopyOnWriteArrayList<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final LongAdder published = new LongAdder();
+
+    private ChangeFeed() {}
+
+    public static ChangeFeed getInstance() {
+        return INSTANCE;
+    }
+
+    public void subscribe(Subscriber s) {
+        subscribers.addIfAbsent(s);
+    }
+
+    public void unsubscribe(Subscriber s) {
+        subscribers.remove(s);
+    }
+
+    public void publish(OutboundMessage event, Object origin) {
+        if (event == null || !event.isChangeEvent()) return;
+        published.increment();
+        for (Subscriber s : subscribers) s.onEvent(event, origin);
+    }
+
+    public Stats stats() {
+        return new Stats(published.sum(), subscribers.size());
+    }
+}
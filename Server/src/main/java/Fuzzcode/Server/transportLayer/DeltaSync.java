@@ -0,0 +1,50 @@
+package Fuzzcode.Server.transportLayer;
+
+import Fuzzcode.Server.model.ChangeSet;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.databind.JsonNode;
+
+// Shape shared by the *.Since commands (delta sync):
+// In:  <Entity>.Since   { "revision": 0, "limit": 1000 }          (both optional)
+// Out: <Entity>.Changes { "revision": n, "more": false, "<rows>": [...] }
+// Every row carries "deleted"; the client upserts the rows in order, remembers `revision`
+// and asks again from there while `more` is true. Rows can come twice (see ChangeSet).
+// Revision 0 gets live rows only.
+final class DeltaSync {
+
+    static final int DEFAULT_LIMIT = 1_000;
+    static final int MAX_LIMIT = 5_000;
+
+    @FunctionalInterface
+    interface RowWriter<T> {
+        void write(JsonGenerator g, T row);
+    }
+
+    private DeltaSync() {}
+
+    static long revision(JsonNode payload) {
+        return Math.max(0, payload.path("revision").asLong(0));
+    }
+
+    static int limit(JsonNode payload) {
+        return Math.min(MAX_LIMIT, Math.max(1, payload.path("limit").asInt(DEFAULT_LIMIT)));
+    }
+
+    static <T> OutboundMessage changes(String type, String field, ChangeSet<T> set, RowWriter<T> rows) {
+        return changes(type, field, set, rows, g -> {});
+    }
+
+    // `extra` adds fields after revision/more.
+    static <T> OutboundMessage changes(String type, String field, ChangeSet<T> set, RowWriter<T> rows,
+                                       WireWriter.Body extra) {
+        return OutboundMessage.of(type, g -> {
+            g.writeNumberProperty("revision", set.revision());
+            g.writeBooleanProperty("more", set.more());
+            extra.write(g);
+            g.writeName(field);
+            g.writeStartArray();
+            for (T row : set.rows()) rows.write(g, row);
+            g.writeEndArray();
+        });
+    }
+}
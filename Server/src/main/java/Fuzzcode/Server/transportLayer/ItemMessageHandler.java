@@ -1,13 +1,12 @@
 package Fuzzcode.Server.transportLayer;
 
+import Fuzzcode.Server.model.ChangeSet;
 import Fuzzcode.Server.model.Item;
 import Fuzzcode.Server.model.Position;
 import Fuzzcode.Server.service.ItemService;
 import Fuzzcode.Server.utilities.LoggerHandler;
 import tools.jackson.databind.JsonNode;
 import tools.jackson.databind.ObjectMapper;
-import tools.jackson.databind.node.ArrayNode;
-import tools.jackson.databind.node.ObjectNode;
 
 import java.util.List;
 
@@ -20,7 +19,7 @@ public class ItemMessageHandler {
 
     // In:  Item.List
     // Out: Item.Snapshot
-    public String list(String inboundMessage) {
+    public OutboundMessage list(String inboundMessage) {
         int brace = inboundMessage.indexOf('{');
         if (brace < 0) {
             LoggerHandler.log(LoggerHandler.Level.WARNING,
@@ -42,36 +41,64 @@ public class ItemMessageHandler {
 
             List<Item> items = itemService.listActiveItems();
 
-            ObjectNode outRoot = JSON.createObjectNode();
-            outRoot.put("type", "Item.Snapshot");
-
-            ObjectNode payload = outRoot.putObject("payload");
             // spec says "orders" here – keeping that for compatibility
-            ArrayNode arr = payload.putArray("orders");
-
-            for (Item it : items) {
-                ObjectNode node = arr.addObject();
-                node.put("itemId", it.itemId());
-                node.put("tagId", it.tagId());
-                node.put("position", it.position() != null ? it.position().name() : Position.HOME.name());
-                node.put("isOverdue", it.isOverdue() != null && it.isOverdue());
+            return OutboundMessage.of("Item.Snapshot", g -> {
+                g.writeName("orders");
+                g.writeStartArray();
+                for (Item it : items) WireWriter.writeItem(g, it);
+                g.writeEndArray();
+            });
+
+        } catch (Exception e) {
+            LoggerHandler.log(LoggerHandler.Level.ERROR,
+                    "Failed to handle inbound Item.List message", e);
+            return null;
+        }
+    }
+
+    // In:  Item.Since { "revision": n, "limit": 1000 }
+    // Out: Item.Changes { "revision": n, "more": bool, "items": [...] }   (see DeltaSync)
+    public OutboundMessage since(String inboundMessage) {
+        int brace = inboundMessage.indexOf('{');
+        if (brace < 0) {
+            LoggerHandler.log(LoggerHandler.Level.WARNING,
+                    "BROKER payload had no JSON: " + inboundMessage);
+            return null;
+        }
+
+        String jsonPart = inboundMessage.substring(brace).trim();
+
+        try {
+            JsonNode root = JSON.readTree(jsonPart);
+            String type = root.path("type").asText(null);
+
+            if (!"Item.Since".equals(type)) {
+                LoggerHandler.log(LoggerHandler.Level.WARNING,
+                        "Unsupported type for Item.since: " + type);
+                return null;
             }
 
-            String outboundJson = JSON.writerWithDefaultPrettyPrinter()
-                    .writeValueAsString(outRoot);
+            JsonNode payload = root.path("payload");
+            ChangeSet<Item> changes = itemService.listChangedSince(DeltaSync.revision(payload), DeltaSync.limit(payload));
+            if (changes == null) return null;
 
-            return "Item.Snapshot\n" + outboundJson;
+            return DeltaSync.changes("Item.Changes", "items", changes, (g, it) -> {
+                g.writeStartObject();
+                WireWriter.writeItemFields(g, it);
+                g.writeBooleanProperty("deleted", it.deleted());
+                g.writeEndObject();
+            });
 
         } catch (Exception e) {
             LoggerHandler.log(LoggerHandler.Level.ERROR,
-                    "Failed to handle inbound Item.List message", e);
+                    "Failed to handle inbound Item.Since message", e);
             return null;
         }
     }
 
     // In:  Item.Create // Item.Update
     // Out: Item.Upsert
-    public String upsert(String inboundMessage) {
+    public OutboundMessage upsert(String inboundMessage) {
         int brace = inboundMessage.indexOf('{');
         if (brace < 0) {
             LoggerHandler.log(LoggerHandler.Level.WARNING,
@@ -150,19 +177,9 @@ public class ItemMessageHandler {
                 return null;
             }
 
-            ObjectNode outRoot = JSON.createObjectNode();
-            outRoot.put("type", "Item.Upsert");
-            ObjectNode outPayload = outRoot.putObject("payload");
-
-            outPayload.put("itemId", result.itemId());
-            outPayload.put("tagId", result.tagId());
-            outPayload.put("position", result.position() != null ? result.position().name() : Position.HOME.name());
-            outPayload.put("isOverdue", result.isOverdue() != null && result.isOverdue());
-
-            String outboundJson = JSON.writerWithDefaultPrettyPrinter()
-                    .writeValueAsString(outRoot);
-
-            return "Item.Upsert\n" + outboundJson;
+            final Item out = result;
+            return OutboundMessage.event("Item.Upsert", "Item#" + out.itemId(), 0,
+                    g -> WireWriter.writeItemFields(g, out));
 
         } catch (Exception e) {
             LoggerHandler.log(LoggerHandler.Level.ERROR,
@@ -173,7 +190,7 @@ public class ItemMessageHandler {
 
     // IN:  Item.Delete
     // Out: Item.Deleted
-    public String delete(String inboundMessage) {
+    public OutboundMessage delete(String inboundMessage) {
         int brace = inboundMessage.indexOf('{');
         if (brace < 0) {
             LoggerHandler.log(LoggerHandler.Level.WARNING,
@@ -208,15 +225,8 @@ public class ItemMessageHandler {
                 return null;
             }
 
-            ObjectNode outRoot = JSON.createObjectNode();
-            outRoot.put("type", "Item.Deleted");
-            ObjectNode outPayload = outRoot.putObject("payload");
-            outPayload.put("itemId", itemId);
-
-            String outboundJson = JSON.writerWithDefaultPrettyPrinter()
-                    .writeValueAsString(outRoot);
-
-            return "Item.Deleted\n" + outboundJson;
+            return OutboundMessage.event("Item.Deleted", "Item#" + itemId, 0,
+                    g -> g.writeNumberProperty("itemId", itemId));
 
         } catch (Exception e) {
             LoggerHandler.log(LoggerHandler.Level.ERROR,
@@ -1,29 +1,36 @@
 package Fuzzcode.Server.transportLayer;
 
+import Fuzzcode.Server.model.ChangeSet;
 import Fuzzcode.Server.model.ItemRead;
 import Fuzzcode.Server.service.ItemReadService;
 import Fuzzcode.Server.utilities.LoggerHandler;
+import Fuzzcode.Server.utilities.MessageHandler;
 
 import tools.jackson.databind.JsonNode;
 import tools.jackson.databind.ObjectMapper;
-import tools.jackson.databind.node.ArrayNode;
-import tools.jackson.databind.node.ObjectNode;
 
 import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.time.format.DateTimeParseException;
 import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 
 public class ItemReadMessageHandler {
 
     private final ItemReadService itemReadService = new ItemReadService();;
     private static final ObjectMapper JSON = new ObjectMapper();
+    private static final int DEFAULT_PAGE_SIZE = 500;
+    private static final int MAX_PAGE_SIZE = 5_000;
+    // Rows one ItemRead.List answers at most; the client continues from "next". Frames are
+    // queued faster than a slow socket drains them, so an unbounded stream would sit in memory.
+    private static final int SNAPSHOT_ROW_LIMIT = 10_000;
 
     public ItemReadMessageHandler() {
     }
     // In:   ItemRead.Create // ItemRead.Update
-    // Out:  ItemRead.Upsert
-    public String upsert(String inboundMessage) {
+    // Out:  ItemRead.Upsert, or Error "timeout" when the batch writer did not answer in time
+    public OutboundMessage upsert(String inboundMessage) {
         int brace = inboundMessage.indexOf('{');
         if (brace < 0) {
             LoggerHandler.log(LoggerHandler.Level.WARNING,
@@ -59,7 +66,11 @@ public class ItemReadMessageHandler {
 
             if ("ItemRead.Create".equals(type)) {
                 // No readId in payload; create new
-                result = itemReadService.recordScan(tagId, readTime);
+                try {
+                    result = itemReadService.recordScanWithin(tagId, readTime);
+                } catch (TimeoutException e) {
+                    return MessageHandler.errorMessage("timeout", type);
+                }
             } else {
                 // Update: payload must contain readId
                 int readId = payload.path("readId").asInt(0);
@@ -76,19 +87,9 @@ public class ItemReadMessageHandler {
                 return null;
             }
 
-            // Build outbound: ItemRead.Upsert
-            ObjectNode outRoot = JSON.createObjectNode();
-            outRoot.put("type", "ItemRead.Upsert");
-            ObjectNode outPayload = outRoot.putObject("payload");
-            outPayload.put("readId", result.readId());
-            outPayload.put("tagId", result.tagId());
-            outPayload.put("readTime", result.readTime().toString());
-
-            String outboundJson = JSON.writerWithDefaultPrettyPrinter()
-                    .writeValueAsString(outRoot);
-
-            // You’ve been prefixing with "ItemRead.Upsert\n"
-            return "ItemRead.Upsert\n" + outboundJson;
+            final ItemRead out = result;
+            return OutboundMessage.event("ItemRead.Upsert", "ItemRead#" + out.readId(), 0,
+                    g -> WireWriter.writeItemReadFields(g, out));
 
         } catch (Exception e) {
             LoggerHandler.log(LoggerHandler.Level.ERROR,
@@ -96,18 +97,26 @@ public class ItemReadMessageHandler {
             return null;
         }
     }
-    // In:   ItemRead.List { "type": "ItemRead.List", "payload": {} }
-    // Out:  ItemRead.Snapshot { "type": "ItemRead.Snapshot", ... }
-    public String readAll(String inboundMessage) {
+    // In:   ItemRead.List { "type": "ItemRead.List",
+    //                       "payload": { "pageSize": 500, "after": {"readTime": ..., "readId": ...}, "maxPages": 10 } }
+    //        every payload field is optional; maxPages is capped at 10 000 rows worth of pages.
+    // Out:  ItemRead.SnapshotChunk { "seq": 0, "reads": [...] }   (one frame per page, newest first)
+    //       ItemRead.SnapshotEnd   { "chunks": n, "count": n, "next": cursor | null [, "error": "failed"] }
+    //        a non-null next means there is more: send it back as "after" for the rest.
+    public void readAll(String inboundMessage, Consumer<OutboundMessage> reply) {
         int brace = inboundMessage.indexOf('{');
         if (brace < 0) {
             LoggerHandler.log(LoggerHandler.Level.WARNING,
                     "BROKER payload had no JSON: " + inboundMessage);
-            return null;
+            return;
         }
 
         String jsonPart = inboundMessage.substring(brace).trim();
 
+        int seq = 0;
+        long count = 0;
+        Instant cursorTime = null;
+        int cursorId = Integer.MAX_VALUE;
         try {
             JsonNode root = JSON.readTree(jsonPart);
             String type = root.path("type").asText(null);
@@ -115,41 +124,112 @@ public class ItemReadMessageHandler {
             if (!"ItemRead.List".equals(type)) {
                 LoggerHandler.log(LoggerHandler.Level.WARNING,
                         "Unsupported type for readAll: " + type);
-                return null;
+                return;
             }
 
-            List<ItemRead> reads = itemReadService.listAllActiveReads();
+            JsonNode payload = root.path("payload");
+            int pageSize = Math.min(MAX_PAGE_SIZE, Math.max(1, payload.path("pageSize").asInt(DEFAULT_PAGE_SIZE)));
+            int pageLimit = Math.max(1, SNAPSHOT_ROW_LIMIT / pageSize);
+            int maxPages = payload.path("maxPages").asInt(0);
+            if (maxPages <= 0 || maxPages > pageLimit) maxPages = pageLimit;
+
+            JsonNode after = payload.path("after");
+            cursorTime = parseInstantOrDefault(after.path("readTime").asText(null), null);
+            cursorId = after.path("readId").asInt(Integer.MAX_VALUE);
+
+            boolean more = true;
+
+            while (more && seq < maxPages) {
+                List<ItemRead> page = itemReadService.listActiveReadsPage(cursorTime, cursorId, pageSize);
+                more = page.size() == pageSize;
+                if (page.isEmpty()) break;
+
+                final int chunk = seq;
+                reply.accept(OutboundMessage.of("ItemRead.SnapshotChunk", g -> {
+                    g.writeNumberProperty("seq", chunk);
+                    g.writeName("reads");
+                    g.writeStartArray();
+                    for (ItemRead r : page) WireWriter.writeItemRead(g, r);
+                    g.writeEndArray();
+                }));
+
+                seq++;
+                ItemRead last = page.get(page.size() - 1);
+                cursorTime = last.readTime();
+                cursorId = last.readId();
+                count += page.size();
+            }
 
-            ObjectNode outRoot = JSON.createObjectNode();
-            outRoot.put("type", "ItemRead.Snapshot");
+            reply.accept(snapshotEnd(seq, count, more ? cursorTime : null, cursorId, null));
 
-            ObjectNode payload = outRoot.putObject("payload");
+        } catch (Exception e) {
+            LoggerHandler.log(LoggerHandler.Level.ERROR,
+                    "Failed to handle inbound ItemRead.List message", e);
+            // Close the stream anyway, with the cursor reached so far to retry from.
+            reply.accept(snapshotEnd(seq, count, cursorTime, cursorId, "failed"));
+        }
+    }
+    private static OutboundMessage snapshotEnd(int chunks, long total, Instant nextTime, int nextId, String error) {
+        return OutboundMessage.of("ItemRead.SnapshotEnd", g -> {
+            g.writeNumberProperty("chunks", chunks);
+            g.writeNumberProperty("count", total);
+            if (nextTime == null) {
+                g.writeNullProperty("next");
+            } else {
+                g.writeName("next");
+                g.writeStartObject();
+                g.writeStringProperty("readTime", nextTime.toString());
+                g.writeNumberProperty("readId", nextId);
+                g.writeEndObject();
+            }
+            if (error != null) g.writeStringProperty("error", error);
+        });
+    }
+    // In:  ItemRead.Since { "revision": n, "limit": 1000 }
+    // Out: ItemRead.Changes { "revision": n, "more": bool, "reads": [...] }   (see DeltaSync)
+    public OutboundMessage since(String inboundMessage) {
+        int brace = inboundMessage.indexOf('{');
+        if (brace < 0) {
+            LoggerHandler.log(LoggerHandler.Level.WARNING,
+                    "BROKER payload had no JSON: " + inboundMessage);
+            return null;
+        }
 
-            // NOTE: your example calls this "orders" – keeping that for compatibility
-            ArrayNode ordersArray = payload.putArray("orders");
+        String jsonPart = inboundMessage.substring(brace).trim();
 
-            for (ItemRead r : reads) {
-                ObjectNode node = ordersArray.addObject();
-                // Example shows only tagId + readTime; add readId if you like
-                node.put("tagId", r.tagId());
-                node.put("readTime", r.readTime().toString());
-                // node.put("readId", r.readId()); // optional, but useful
-            }
+        try {
+            JsonNode root = JSON.readTree(jsonPart);
+            String type = root.path("type").asText(null);
 
-            String outboundJson = JSON.writerWithDefaultPrettyPrinter()
-                    .writeValueAsString(outRoot);
+            if (!"ItemRead.Since".equals(type)) {
+                LoggerHandler.log(LoggerHandler.Level.WARNING,
+                        "Unsupported type for ItemRead.since: " + type);
+                return null;
+            }
 
-            return "ItemRead.Snapshot\n" + outboundJson;
+            JsonNode payload = root.path("payload");
+            ChangeSet<ItemRead> changes = itemReadService.listChangedSince(DeltaSync.revision(payload), DeltaSync.limit(payload));
+            if (changes == null) return null;
+
+            // Archived reads leave no tombstone: "oldest" is where the hot table starts, the
+            // client drops what it holds from before that.
+            Instant oldest = itemReadService.oldestActiveReadTime();
+            return DeltaSync.changes("ItemRead.Changes", "reads", changes, (g, r) -> {
+                g.writeStartObject();
+                WireWriter.writeItemReadFields(g, r);
+                g.writeBooleanProperty("deleted", r.deleted());
+                g.writeEndObject();
+            }, g -> WireWriter.writeNullableString(g, "oldest", oldest == null ? null : oldest.toString()));
 
         } catch (Exception e) {
             LoggerHandler.log(LoggerHandler.Level.ERROR,
-                    "Failed to handle inbound ItemRead.List message", e);
+                    "Failed to handle inbound ItemRead.Since message", e);
             return null;
         }
     }
     // In:   ItemRead.Delete { "type": "ItemRead.Delete", "payload": {"readId": 1} }
     // Out:  ItemRead.Deleted { "type": "ItemRead.Deleted", "payload": {"readId": 1} }
-    public String delete(String inboundMessage) {
+    public OutboundMessage delete(String inboundMessage) {
         int brace = inboundMessage.indexOf('{');
         if (brace < 0) {
             LoggerHandler.log(LoggerHandler.Level.WARNING,
@@ -182,15 +262,8 @@ public class ItemReadMessageHandler {
                 return null;
             }
 
-            ObjectNode outRoot = JSON.createObjectNode();
-            outRoot.put("type", "ItemRead.Deleted");
-            ObjectNode outPayload = outRoot.putObject("payload");
-            outPayload.put("readId", readId);
-
-            String outboundJson = JSON.writerWithDefaultPrettyPrinter()
-                    .writeValueAsString(outRoot);
-
-            return "ItemRead.Deleted\n" + outboundJson;
+            return OutboundMessage.event("ItemRead.Deleted", "ItemRead#" + readId, 0,
+                    g -> g.writeNumberProperty("readId", readId));
 
         } catch (Exception e) {
             LoggerHandler.log(LoggerHandler.Level.ERROR,
@@ -200,7 +273,7 @@ public class ItemReadMessageHandler {
     }
     // In:  ItemRead.ListByItem
     // Out: ItemRead.SnapshotForItem
-    public String listByItem(String inboundMessage) {
+    public OutboundMessage listByItem(String inboundMessage) {
         int brace = inboundMessage.indexOf('{');
         if (brace < 0) {
             LoggerHandler.log(LoggerHandler.Level.WARNING,
@@ -235,25 +308,18 @@ public class ItemReadMessageHandler {
 
             List<ItemRead> reads = itemReadService.listReadsForItem(itemId, from, to);
 
-            ObjectNode outRoot = JSON.createObjectNode();
-            outRoot.put("type", "ItemRead.SnapshotForItem");
-
-            ObjectNode outPayload = outRoot.putObject("payload");
-            outPayload.put("itemId", itemId);
-
-            ArrayNode arr = outPayload.putArray("reads");
-            for (ItemRead r : reads) {
-                ObjectNode n = arr.addObject();
-                n.put("readId", r.readId());
-                n.put("tagId", r.tagId());
-                n.put("readTime", r.readTime().toString());
-                n.put("deleted", r.deleted());
-            }
-
-            String outboundJson = JSON.writerWithDefaultPrettyPrinter()
-                    .writeValueAsString(outRoot);
-
-            return "ItemRead.SnapshotForItem\n" + outboundJson;
+            return OutboundMessage.of("ItemRead.SnapshotForItem", g -> {
+                g.writeNumberProperty("itemId", itemId);
+                g.writeName("reads");
+                g.writeStartArray();
+                for (ItemRead r : reads) {
+                    g.writeStartObject();
+                    WireWriter.writeItemReadFields(g, r);
+                    g.writeBooleanProperty("deleted", r.deleted());
+                    g.writeEndObject();
+                }
+                g.writeEndArray();
+            });
 
         } catch (Exception e) {
             LoggerHandler.log(LoggerHandler.Level.ERROR,
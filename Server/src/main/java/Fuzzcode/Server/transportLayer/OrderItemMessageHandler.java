@@ -1,17 +1,18 @@
 package Fuzzcode.Server.transportLayer;
 
+import Fuzzcode.Server.model.ChangeSet;
 import Fuzzcode.Server.model.Item;
 import Fuzzcode.Server.model.OrderItem;
+import Fuzzcode.Server.model.OrderItemDetail;
 import Fuzzcode.Server.model.Position;
 import Fuzzcode.Server.service.ItemService;
 import Fuzzcode.Server.service.OrderItemService;
 import Fuzzcode.Server.utilities.LoggerHandler;
+import tools.jackson.core.JsonGenerator;
 import tools.jackson.databind.JsonNode;
 import tools.jackson.databind.ObjectMapper;
-import tools.jackson.databind.node.ArrayNode;
-import tools.jackson.databind.node.ObjectNode;
 
-import java.util.EnumMap;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -25,7 +26,7 @@ public class OrderItemMessageHandler {
 
     // In:  OrderItem.List
     // Out: OrderItem.Snapshot
-    public String list(String inboundMessage) {
+    public OutboundMessage list(String inboundMessage) {
         int brace = inboundMessage.indexOf('{');
         if (brace < 0) {
             LoggerHandler.log(LoggerHandler.Level.WARNING,
@@ -47,34 +48,70 @@ public class OrderItemMessageHandler {
 
             List<OrderItem> all = orderItemService.listAll(false); // only active
 
-            ObjectNode outRoot = JSON.createObjectNode();
-            outRoot.put("type", "OrderItem.Snapshot");
-
-            ObjectNode payload = outRoot.putObject("payload");
             // spec: "orders": [ { orderId, itemId } ... ]
-            ArrayNode arr = payload.putArray("orders");
+            return OutboundMessage.of("OrderItem.Snapshot", g -> {
+                g.writeName("orders");
+                g.writeStartArray();
+                for (OrderItem oi : all) {
+                    g.writeStartObject();
+                    g.writeNumberProperty("orderId", oi.orderId());
+                    g.writeNumberProperty("itemId", oi.itemId());
+                    g.writeEndObject();
+                }
+                g.writeEndArray();
+            });
+
+        } catch (Exception e) {
+            LoggerHandler.log(LoggerHandler.Level.ERROR,
+                    "Failed to handle inbound OrderItem.List message", e);
+            return null;
+        }
+    }
+
+    // In:  OrderItem.Since { "revision": n, "limit": 1000 }
+    // Out: OrderItem.Changes { "revision": n, "more": bool, "orderItems": [...] }   (see DeltaSync)
+    public OutboundMessage since(String inboundMessage) {
+        int brace = inboundMessage.indexOf('{');
+        if (brace < 0) {
+            LoggerHandler.log(LoggerHandler.Level.WARNING,
+                    "BROKER payload had no JSON: " + inboundMessage);
+            return null;
+        }
 
-            for (OrderItem oi : all) {
-                ObjectNode node = arr.addObject();
-                node.put("orderId", oi.orderId());
-                node.put("itemId", oi.itemId());
+        String jsonPart = inboundMessage.substring(brace).trim();
+
+        try {
+            JsonNode root = JSON.readTree(jsonPart);
+            String type = root.path("type").asText(null);
+
+            if (!"OrderItem.Since".equals(type)) {
+                LoggerHandler.log(LoggerHandler.Level.WARNING,
+                        "Unsupported type for OrderItem.since: " + type);
+                return null;
             }
 
-            String outboundJson = JSON.writerWithDefaultPrettyPrinter()
-                    .writeValueAsString(outRoot);
+            JsonNode payload = root.path("payload");
+            ChangeSet<OrderItem> changes = orderItemService.listChangedSince(DeltaSync.revision(payload), DeltaSync.limit(payload));
+            if (changes == null) return null;
 
-            return "OrderItem.Snapshot\n" + outboundJson;
+            return DeltaSync.changes("OrderItem.Changes", "orderItems", changes, (g, oi) -> {
+                g.writeStartObject();
+                g.writeNumberProperty("orderId", oi.orderId());
+                g.writeNumberProperty("itemId", oi.itemId());
+                g.writeBooleanProperty("deleted", oi.deleted());
+                g.writeEndObject();
+            });
 
         } catch (Exception e) {
             LoggerHandler.log(LoggerHandler.Level.ERROR,
-                    "Failed to handle inbound OrderItem.List message", e);
+                    "Failed to handle inbound OrderItem.Since message", e);
             return null;
         }
     }
 
     // In:  OrderItem.Create / OrderItem.Update)
     // Out: OrderItem.Upsert
-    public String upsert(String inboundMessage) {
+    public OutboundMessage upsert(String inboundMessage) {
         int brace = inboundMessage.indexOf('{');
         if (brace < 0) {
             LoggerHandler.log(LoggerHandler.Level.WARNING,
@@ -124,18 +161,13 @@ public class OrderItemMessageHandler {
                 return null;
             }
 
-            ObjectNode outRoot = JSON.createObjectNode();
-            outRoot.put("type", "OrderItem.Upsert");
-
-            ObjectNode outPayload = outRoot.putObject("payload");
-            outPayload.put("orderId", oi.orderId());
-            outPayload.put("itemId", oi.itemId());
-            outPayload.put("deleted", oi.deleted());
-
-            String outboundJson = JSON.writerWithDefaultPrettyPrinter()
-                    .writeValueAsString(outRoot);
-
-            return "OrderItem.Upsert\n" + outboundJson;
+            final OrderItem out = oi;
+            return OutboundMessage.event("OrderItem.Upsert",
+                    "OrderItem#" + out.orderId() + "/" + out.itemId(), out.orderId(), g -> {
+                g.writeNumberProperty("orderId", out.orderId());
+                g.writeNumberProperty("itemId", out.itemId());
+                g.writeBooleanProperty("deleted", out.deleted());
+            });
 
         } catch (Exception e) {
             LoggerHandler.log(LoggerHandler.Level.ERROR,
@@ -146,7 +178,7 @@ public class OrderItemMessageHandler {
 
     // In:  OrderItem.Delete
     // Out: OrderItem.Deleted
-    public String delete(String inboundMessage) {
+    public OutboundMessage delete(String inboundMessage) {
         int brace = inboundMessage.indexOf('{');
         if (brace < 0) {
             LoggerHandler.log(LoggerHandler.Level.WARNING,
@@ -183,17 +215,11 @@ public class OrderItemMessageHandler {
                 return null;
             }
 
-            ObjectNode outRoot = JSON.createObjectNode();
-            outRoot.put("type", "OrderItem.Deleted");
-
-            ObjectNode outPayload = outRoot.putObject("payload");
-            outPayload.put("orderId", orderId);
-            outPayload.put("itemId", itemId);
-
-            String outboundJson = JSON.writerWithDefaultPrettyPrinter()
-                    .writeValueAsString(outRoot);
-
-            return "OrderItem.Deleted\n" + outboundJson;
+            return OutboundMessage.event("OrderItem.Deleted",
+                    "OrderItem#" + orderId + "/" + itemId, orderId, g -> {
+                g.writeNumberProperty("orderId", orderId);
+                g.writeNumberProperty("itemId", itemId);
+            });
 
         } catch (Exception e) {
             LoggerHandler.log(LoggerHandler.Level.ERROR,
@@ -204,7 +230,7 @@ public class OrderItemMessageHandler {
 
     // In:  OrderItem.ListByOrder
     // Out: OrderItem.SnapshotForOrder
-    public String listByOrder(String inboundMessage) {
+    public OutboundMessage listByOrder(String inboundMessage) {
         int brace = inboundMessage.indexOf('{');
         if (brace < 0) {
             LoggerHandler.log(LoggerHandler.Level.WARNING,
@@ -231,41 +257,39 @@ public class OrderItemMessageHandler {
                 return null;
             }
 
-            List<OrderItem> relations = orderItemService.getItemsInOrder(orderId, false);
-            LoggerHandler.log("Order " + orderId + " contains " + relations.size() + " item(s)");
-
-            // Build outbound JSON
-            ObjectNode outRoot = JSON.createObjectNode();
-            outRoot.put("type", "OrderItem.SnapshotForOrder");
-            ObjectNode outPayload = outRoot.putObject("payload");
-            outPayload.put("orderId", orderId);
-
-            ArrayNode arr = outPayload.putArray("items");
-            for (OrderItem oi : relations) {
-                ObjectNode relNode = arr.addObject();
-                relNode.put("orderId", oi.orderId());
-                relNode.put("itemId", oi.itemId());
-                relNode.put("deleted", oi.deleted());
-
-                Item item = itemService.getItemById(oi.itemId(), true);
-                if (item != null) {
-                    ObjectNode itemNode = relNode.putObject("item");
-                    itemNode.put("itemId",   item.itemId());
-                    itemNode.put("tagId",    item.tagId());
-                    itemNode.put("position", item.position().name());
-                    if (item.isOverdue() != null) {
-                        itemNode.put("isOverdue", item.isOverdue());
-                    } else {
-                        itemNode.putNull("isOverdue");
+            List<OrderItemDetail> rows = orderItemService.getItemsInOrderWithItems(orderId, false);
+            LoggerHandler.log(LoggerHandler.Level.DEBUG, () -> "Order " + orderId + " contains " + rows.size() + " item(s)");
+
+            return OutboundMessage.of("OrderItem.SnapshotForOrder", g -> {
+                g.writeNumberProperty("orderId", orderId);
+                g.writeName("items");
+                g.writeStartArray();
+                for (OrderItemDetail row : rows) {
+                    OrderItem oi = row.relation();
+                    g.writeStartObject();
+                    g.writeNumberProperty("orderId", oi.orderId());
+                    g.writeNumberProperty("itemId", oi.itemId());
+                    g.writeBooleanProperty("deleted", oi.deleted());
+
+                    Item item = row.item();
+                    if (item != null) {
+                        g.writeName("item");
+                        g.writeStartObject();
+                        g.writeNumberProperty("itemId", item.itemId());
+                        g.writeStringProperty("tagId", item.tagId());
+                        g.writeStringProperty("position", item.position().name());
+                        if (item.isOverdue() != null) {
+                            g.writeBooleanProperty("isOverdue", item.isOverdue());
+                        } else {
+                            g.writeNullProperty("isOverdue");
+                        }
+                        g.writeBooleanProperty("deleted", item.deleted());
+                        g.writeEndObject();
                     }
-                    itemNode.put("deleted",  item.deleted());
+                    g.writeEndObject();
                 }
-            }
-
-            String outboundJson = JSON.writerWithDefaultPrettyPrinter()
-                    .writeValueAsString(outRoot);
-
-            return "OrderItem.SnapshotForOrder\n" + outboundJson;
+                g.writeEndArray();
+            });
 
         } catch (Exception e) {
             LoggerHandler.log(LoggerHandler.Level.ERROR,
@@ -276,7 +300,7 @@ public class OrderItemMessageHandler {
 
     // In:  OrderItem.PositionCounts
     // Out: OrderItem.PositionCounts
-    public String positionCounts(String inboundMessage) {
+    public OutboundMessage positionCounts(String inboundMessage) {
         int brace = inboundMessage.indexOf('{');
         if (brace < 0) {
             LoggerHandler.log(LoggerHandler.Level.WARNING,
@@ -296,6 +320,32 @@ public class OrderItemMessageHandler {
             }
 
             JsonNode payload = root.path("payload");
+
+            // Many orders at once: { "orderIds": [..] } or { "activeOrders": true }
+            if (payload.path("activeOrders").asBoolean(false) || payload.path("orderIds").isArray()) {
+                Map<Integer, Map<Position, Integer>> byOrder;
+                if (payload.path("activeOrders").asBoolean(false)) {
+                    byOrder = itemService.countPositionsForActiveOrders();
+                } else {
+                    List<Integer> orderIds = new ArrayList<>();
+                    for (JsonNode id : payload.path("orderIds")) {
+                        if (id.asInt(0) > 0) orderIds.add(id.asInt());
+                    }
+                    byOrder = itemService.countPositionsForOrders(orderIds);
+                }
+                return OutboundMessage.of("OrderItem.PositionCountsByOrder", g -> {
+                    g.writeName("orders");
+                    g.writeStartArray();
+                    for (Map.Entry<Integer, Map<Position, Integer>> e : byOrder.entrySet()) {
+                        g.writeStartObject();
+                        g.writeNumberProperty("orderId", e.getKey());
+                        writeCounts(g, e.getValue());
+                        g.writeEndObject();
+                    }
+                    g.writeEndArray();
+                });
+            }
+
             int orderId = payload.path("orderId").asInt(0);
             if (orderId <= 0) {
                 LoggerHandler.log(LoggerHandler.Level.WARNING,
@@ -303,34 +353,13 @@ public class OrderItemMessageHandler {
                 return null;
             }
 
-            // Use ItemService / ItemDao to list items for order
-            List<Item> items = itemService.listItemsForOrder(orderId, false);
+            // Served from the in-memory position counters (PositionCounters), no query per request
+            Map<Position, Integer> counts = itemService.countPositionsForOrder(orderId);
 
-            // Count per Position
-            Map<Position, Integer> counts = new EnumMap<>(Position.class);
-            for (Position p : Position.values()) {
-                counts.put(p, 0);
-            }
-            for (Item item : items) {
-                Position p = item.position() != null ? item.position() : Position.HOME;
-                counts.put(p, counts.get(p) + 1);
-            }
-
-            ObjectNode outRoot = JSON.createObjectNode();
-            outRoot.put("type", "OrderItem.PositionCounts");
-
-            ObjectNode outPayload = outRoot.putObject("payload");
-            outPayload.put("orderId", orderId);
-
-            ObjectNode countsNode = outPayload.putObject("counts");
-            for (Position p : Position.values()) {
-                countsNode.put(p.name(), counts.getOrDefault(p, 0));
-            }
-
-            String outboundJson = JSON.writerWithDefaultPrettyPrinter()
-                    .writeValueAsString(outRoot);
-
-            return "OrderItem.PositionCounts\n" + outboundJson;
+            return OutboundMessage.of("OrderItem.PositionCounts", g -> {
+                g.writeNumberProperty("orderId", orderId);
+                writeCounts(g, counts);
+            });
 
         } catch (Exception e) {
             LoggerHandler.log(LoggerHandler.Level.ERROR,
@@ -338,4 +367,13 @@ public class OrderItemMessageHandler {
             return null;
         }
     }
+
+    private static void writeCounts(JsonGenerator g, Map<Position, Integer> counts) {
+        g.writeName("counts");
+        g.writeStartObject();
+        for (Position p : Position.values()) {
+            g.writeNumberProperty(p.name(), counts.getOrDefault(p, 0));
+        }
+        g.writeEndObject();
+    }
 }
@@ -1,12 +1,11 @@
 package Fuzzcode.Server.transportLayer;
 
+import Fuzzcode.Server.model.ChangeSet;
 import Fuzzcode.Server.model.Order;
 import Fuzzcode.Server.service.OrderService;
 import Fuzzcode.Server.utilities.LoggerHandler;
 import tools.jackson.databind.JsonNode;
 import tools.jackson.databind.ObjectMapper;
-import tools.jackson.databind.node.ArrayNode;
-import tools.jackson.databind.node.ObjectNode;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeParseException;
@@ -24,7 +23,7 @@ public class OrderMessageHandler {
     // In:  Order.List { "type": "Order.List", "payload": {} }
     // Out: Order.Snapshot { "type": "Order.Snapshot", "payload": { orders: [...] } }
     // ---------------------------------------------------------------------
-    public String list(String inboundMessage) {
+    public OutboundMessage list(String inboundMessage) {
         int brace = inboundMessage.indexOf('{');
         if (brace < 0) {
             LoggerHandler.log(LoggerHandler.Level.WARNING,
@@ -46,32 +45,50 @@ public class OrderMessageHandler {
 
             List<Order> orders = orderService.listActiveOrders();
 
-            ObjectNode outRoot = JSON.createObjectNode();
-            outRoot.put("type", "Order.Snapshot");
-
-            ObjectNode payload = outRoot.putObject("payload");
-            ArrayNode ordersArray = payload.putArray("orders");
-
-            for (Order o : orders) {
-                ObjectNode node = ordersArray.addObject();
-                node.put("orderId", o.orderId());
-                // Dates as yyyy-MM-dd
-                if (o.createdDate() != null) node.put("createdDate", o.createdDate().toString());
-                if (o.startDate()   != null) node.put("startDate",   o.startDate().toString());
-                if (o.endDate()     != null) node.put("endDate",     o.endDate().toString());
-                if (o.customerId()  != null) node.put("customerId",  o.customerId());
-                if (o.loggedById()  != null) node.put("loggedById",  o.loggedById());
-                node.put("deleted", o.deleted());
+            return OutboundMessage.of("Order.Snapshot", g -> {
+                g.writeName("orders");
+                g.writeStartArray();
+                for (Order o : orders) WireWriter.writeOrder(g, o);
+                g.writeEndArray();
+            });
+
+        } catch (Exception e) {
+            LoggerHandler.log(LoggerHandler.Level.ERROR,
+                    "Failed to handle inbound Order.List message", e);
+            return null;
+        }
+    }
+    // In:  Order.Since { "revision": n, "limit": 1000 }
+    // Out: Order.Changes { "revision": n, "more": bool, "orders": [...] }   (see DeltaSync)
+    public OutboundMessage since(String inboundMessage) {
+        int brace = inboundMessage.indexOf('{');
+        if (brace < 0) {
+            LoggerHandler.log(LoggerHandler.Level.WARNING,
+                    "BROKER payload had no JSON: " + inboundMessage);
+            return null;
+        }
+
+        String jsonPart = inboundMessage.substring(brace).trim();
+
+        try {
+            JsonNode root = JSON.readTree(jsonPart);
+            String type = root.path("type").asText(null);
+
+            if (!"Order.Since".equals(type)) {
+                LoggerHandler.log(LoggerHandler.Level.WARNING,
+                        "Unsupported type for Order.since: " + type);
+                return null;
             }
 
-            String outboundJson = JSON.writerWithDefaultPrettyPrinter()
-                    .writeValueAsString(outRoot);
+            JsonNode payload = root.path("payload");
+            ChangeSet<Order> changes = orderService.listChangedSince(DeltaSync.revision(payload), DeltaSync.limit(payload));
+            if (changes == null) return null;
 
-            return "Order.Snapshot\n" + outboundJson;
+            return DeltaSync.changes("Order.Changes", "orders", changes, WireWriter::writeOrder);
 
         } catch (Exception e) {
             LoggerHandler.log(LoggerHandler.Level.ERROR,
-                    "Failed to handle inbound Order.List message", e);
+                    "Failed to handle inbound Order.Since message", e);
             return null;
         }
     }
@@ -79,7 +96,7 @@ public class OrderMessageHandler {
     // In:   Order.Create
     // Out:  Order.Upsert
     // NOTE: createdDate from client is *ignored* on update; DB value is kept.
-    public String upsert(String inboundMessage) {
+    public OutboundMessage upsert(String inboundMessage) {
         int brace = inboundMessage.indexOf('{');
         if (brace < 0) {
             LoggerHandler.log(LoggerHandler.Level.WARNING,
@@ -150,23 +167,7 @@ public class OrderMessageHandler {
                 if (outOrder == null) return null;
             }
 
-            ObjectNode outRoot = JSON.createObjectNode();
-            outRoot.put("type", "Order.Upsert");
-            ObjectNode payloadOut = outRoot.putObject("payload");
-            ObjectNode orderNode = payloadOut.putObject("order");
-
-            orderNode.put("orderId", outOrder.orderId());
-            if (outOrder.createdDate() != null) orderNode.put("createdDate", outOrder.createdDate().toString());
-            if (outOrder.startDate()   != null) orderNode.put("startDate",   outOrder.startDate().toString());
-            if (outOrder.endDate()     != null) orderNode.put("endDate",     outOrder.endDate().toString());
-            if (outOrder.customerId()  != null) orderNode.put("customerId",  outOrder.customerId());
-            if (outOrder.loggedById()  != null) orderNode.put("loggedById",  outOrder.loggedById());
-            orderNode.put("deleted", outOrder.deleted());
-
-            String outboundJson = JSON.writerWithDefaultPrettyPrinter()
-                    .writeValueAsString(outRoot);
-
-            return "Order.Upsert\n" + outboundJson;
+            return orderUpsert(outOrder);
 
         } catch (Exception e) {
             LoggerHandler.log(LoggerHandler.Level.ERROR,
@@ -177,7 +178,7 @@ public class OrderMessageHandler {
     // DELETE -> returns Order.Upsert with deleted=true
     // In:   ItemRead.Delete { "type": "ItemRead.List", "payload": {} }
     // Out:  ItemRead.Deleted { "type": "ItemRead.Snapshot", ... }
-    public String delete(String inboundMessage) {
+    public OutboundMessage delete(String inboundMessage) {
         int brace = inboundMessage.indexOf('{');
         if (brace < 0) {
             LoggerHandler.log(LoggerHandler.Level.WARNING,
@@ -216,24 +217,8 @@ public class OrderMessageHandler {
             if (o == null) {
                 return null;
             }
-            ObjectNode outRoot = JSON.createObjectNode();
-            outRoot.put("type", "Order.Upsert"); // or "Order.Deleted" if you prefer
-
-            ObjectNode payloadOut = outRoot.putObject("payload");
-            ObjectNode orderNode = payloadOut.putObject("order");
-
-            orderNode.put("orderId", o.orderId());
-            if (o.createdDate() != null) orderNode.put("createdDate", o.createdDate().toString());
-            if (o.startDate()   != null) orderNode.put("startDate",   o.startDate().toString());
-            if (o.endDate()     != null) orderNode.put("endDate",     o.endDate().toString());
-            if (o.customerId()  != null) orderNode.put("customerId",  o.customerId());
-            if (o.loggedById()  != null) orderNode.put("loggedById",  o.loggedById());
-            orderNode.put("deleted", o.deleted()); // should now be true
-
-            String outboundJson = JSON.writerWithDefaultPrettyPrinter()
-                    .writeValueAsString(outRoot);
-
-            return "Order.Upsert\n" + outboundJson;
+            // deleted is now true
+            return orderUpsert(o);
 
         } catch (Exception e) {
             LoggerHandler.log(LoggerHandler.Level.ERROR,
@@ -242,6 +227,12 @@ public class OrderMessageHandler {
         }
     }
     // === Helpers ===
+    private static OutboundMessage orderUpsert(Order order) {
+        return OutboundMessage.event("Order.Upsert", "Order#" + order.orderId(), order.orderId(), g -> {
+            g.writeName("order");
+            WireWriter.writeOrder(g, order);
+        });
+    }
     private static LocalDate parseLocalDate(String s) {
         if (s == null || s.isBlank()) return null;
         try {
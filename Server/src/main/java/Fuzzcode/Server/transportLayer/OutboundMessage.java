@@ -0,0 +1,123 @@
+package Fuzzcode.Server.transportLayer;
+
+import tools.jackson.core.JsonGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+// One reply/event frame. Holds the payload writer rather than encoded bytes, so every
+// session gets it in its own wire format; each encoding is produced at most once.
+public final class OutboundMessage {
+
+    private final String type;
+    private final String entityKey;
+    private final int orderId;
+    private final WireWriter.Body body;
+    private final boolean textOnly;
+    private volatile String text;
+    private volatile byte[] cbor;
+
+    private OutboundMessage(String type, String entityKey, int orderId, WireWriter.Body body, boolean textOnly) {
+        this.type = type;
+        this.entityKey = entityKey;
+        this.orderId = orderId;
+        this.body = body;
+        this.textOnly = textOnly;
+    }
+
+    public static OutboundMessage of(String type, WireWriter.Body body) {
+        return new OutboundMessage(type, null, 0, body, false);
+    }
+
+    // Sent as a text frame even to sessions that negotiated a binary format.
+    public static OutboundMessage textFrame(String type, WireWriter.Body body) {
+        return new OutboundMessage(type, null, 0, body, true);
+    }
+
+    // A bare text line without envelope ("hello alice", "ERROR:busy").
+    public static OutboundMessage plain(String line) {
+        OutboundMessage m = new OutboundMessage(line, null, 0, null, true);
+        m.text = line;
+        return m;
+    }
+
+    // A change to one entity (Upsert/Deleted), fanned out to subscribed sessions.
+    // entityKey ("Item#12") lets queued updates to the same entity supersede each other;
+    // orderId > 0 also reaches sessions watching that order.
+    public static OutboundMessage event(String type, String entityKey, int orderId, WireWriter.Body body) {
+        return new OutboundMessage(type, entityKey, orderId, body, false);
+    }
+
+    public String type() {
+        return type;
+    }
+
+    // "Item" for "Item.Upsert".
+    public String topic() {
+        int dot = type.indexOf('.');
+        return dot < 0 ? type : type.substring(0, dot);
+    }
+
+    public String entityKey() {
+        return entityKey;
+    }
+
+    public int orderId() {
+        return orderId;
+    }
+
+    public boolean isChangeEvent() {
+        return entityKey != null;
+    }
+
+    public boolean isTextOnly() {
+        return textOnly;
+    }
+
+    // Text frame: "<Type>\n" + compact JSON envelope.
+    public String toText() {
+        String t = text;
+        if (t == null) {
+            StringWriter out = new StringWriter(256);
+            try (JsonGenerator g = WireFormat.JSON.mapper().createGenerator(out)) {
+                writeEnvelope(g);
+            }
+            t = type + "\n" + out;
+            text = t;
+        }
+        return t;
+    }
+
+    // Binary frame: the envelope alone, the type is inside it.
+    public byte[] toBytes(WireFormat format) {
+        if (!format.isBinary() || textOnly) {
+            return toText().getBytes(StandardCharsets.UTF_8);
+        }
+        byte[] b = cbor;
+        if (b == null) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+            try (JsonGenerator g = format.mapper().createGenerator(out)) {
+                writeEnvelope(g);
+            }
+            b = out.toByteArray();
+            cbor = b;
+        }
+        return b;
+    }
+
+    private void writeEnvelope(JsonGenerator g) {
+        g.writeStartObject();
+        g.writeStringProperty("type", type);
+        g.writeName("payload");
+        g.writeStartObject();
+        body.write(g);
+        g.writeEndObject();
+        g.writeEndObject();
+    }
+
+    @Override
+    public String toString() {
+        return toText();
+    }
+}
@@ -1,13 +1,13 @@
 package Fuzzcode.Server.transportLayer;
 
+import Fuzzcode.Server.model.ChangeSet;
 import Fuzzcode.Server.model.Person;
 import Fuzzcode.Server.model.PersonRole;
 import Fuzzcode.Server.service.PersonService;
 import Fuzzcode.Server.utilities.LoggerHandler;
+import tools.jackson.core.JsonGenerator;
 import tools.jackson.databind.JsonNode;
 import tools.jackson.databind.ObjectMapper;
-import tools.jackson.databind.node.ArrayNode;
-import tools.jackson.databind.node.ObjectNode;
 
 import java.util.List;
 
@@ -20,7 +20,7 @@ public class PersonMessageHandler {
 
     // In:  Person.List
     // Out: Person.Snapshot
-    public String list(String inboundMessage) {
+    public OutboundMessage list(String inboundMessage) {
         int brace = inboundMessage.indexOf('{');
         if (brace < 0) {
             LoggerHandler.log(LoggerHandler.Level.WARNING,
@@ -42,34 +42,66 @@ public class PersonMessageHandler {
 
             List<Person> people = personService.listPeople();
 
-            ObjectNode outRoot = JSON.createObjectNode();
-            outRoot.put("type", "Person.Snapshot");
-
-            ObjectNode payload = outRoot.putObject("payload");
             // spec calls this "orders" – keep it for compatibility
-            ArrayNode arr = payload.putArray("orders");
+            return OutboundMessage.of("Person.Snapshot", g -> {
+                g.writeName("orders");
+                g.writeStartArray();
+                for (Person p : people) {
+                    g.writeStartObject();
+                    writePersonFields(g, p);
+                    g.writeEndObject();
+                }
+                g.writeEndArray();
+            });
+
+        } catch (Exception e) {
+            LoggerHandler.log(LoggerHandler.Level.ERROR,
+                    "Failed to handle inbound Person.List message", e);
+            return null;
+        }
+    }
+    // In:  Person.Since { "revision": n, "limit": 1000 }
+    // Out: Person.Changes { "revision": n, "more": bool, "people": [...] }   (see DeltaSync)
+    public OutboundMessage since(String inboundMessage) {
+        int brace = inboundMessage.indexOf('{');
+        if (brace < 0) {
+            LoggerHandler.log(LoggerHandler.Level.WARNING,
+                    "BROKER payload had no JSON: " + inboundMessage);
+            return null;
+        }
+
+        String jsonPart = inboundMessage.substring(brace).trim();
+
+        try {
+            JsonNode root = JSON.readTree(jsonPart);
+            String type = root.path("type").asText(null);
 
-            for (Person p : people) {
-                ObjectNode node = arr.addObject();
-                node.put("personId", p.personId());
-                node.put("name", p.name());
-                node.put("role", p.role() != null ? p.role().name() : null);
+            if (!"Person.Since".equals(type)) {
+                LoggerHandler.log(LoggerHandler.Level.WARNING,
+                        "Unsupported type for Person.since: " + type);
+                return null;
             }
 
-            String outboundJson = JSON.writerWithDefaultPrettyPrinter()
-                    .writeValueAsString(outRoot);
+            JsonNode payload = root.path("payload");
+            ChangeSet<Person> changes = personService.listChangedSince(DeltaSync.revision(payload), DeltaSync.limit(payload));
+            if (changes == null) return null;
 
-            return "Person.Snapshot\n" + outboundJson;
+            return DeltaSync.changes("Person.Changes", "people", changes, (g, p) -> {
+                g.writeStartObject();
+                writePersonFields(g, p);
+                g.writeBooleanProperty("deleted", p.deleted());
+                g.writeEndObject();
+            });
 
         } catch (Exception e) {
             LoggerHandler.log(LoggerHandler.Level.ERROR,
-                    "Failed to handle inbound Person.List message", e);
+                    "Failed to handle inbound Person.Since message", e);
             return null;
         }
     }
     // In:  Person.Create // Person.Update
     // Out: Person.Upsert
-    public String upsert(String inboundMessage) {
+    public OutboundMessage upsert(String inboundMessage) {
         int brace = inboundMessage.indexOf('{');
         if (brace < 0) {
             LoggerHandler.log(LoggerHandler.Level.WARNING,
@@ -126,18 +158,9 @@ public class PersonMessageHandler {
                 return null;
             }
 
-            ObjectNode outRoot = JSON.createObjectNode();
-            outRoot.put("type", "Person.Upsert");
-
-            ObjectNode outPayload = outRoot.putObject("payload");
-            outPayload.put("personId", outPerson.personId());
-            outPayload.put("name", outPerson.name());
-            outPayload.put("role", outPerson.role() != null ? outPerson.role().name() : null);
-
-            String outboundJson = JSON.writerWithDefaultPrettyPrinter()
-                    .writeValueAsString(outRoot);
-
-            return "Person.Upsert\n" + outboundJson;
+            final Person out = outPerson;
+            return OutboundMessage.event("Person.Upsert", "Person#" + out.personId(), 0,
+                    g -> writePersonFields(g, out));
 
         } catch (Exception e) {
             LoggerHandler.log(LoggerHandler.Level.ERROR,
@@ -147,7 +170,7 @@ public class PersonMessageHandler {
     }
     // In:  Person.Delete
     // Out: Person.Deleted
-    public String delete(String inboundMessage) {
+    public OutboundMessage delete(String inboundMessage) {
         int brace = inboundMessage.indexOf('{');
         if (brace < 0) {
             LoggerHandler.log(LoggerHandler.Level.WARNING,
@@ -182,17 +205,10 @@ public class PersonMessageHandler {
                 return null;
             }
 
-            ObjectNode outRoot = JSON.createObjectNode();
-            outRoot.put("type", "Person.Deleted");
-
-            ObjectNode outPayload = outRoot.putObject("payload");
-            outPayload.put("personId", personId);
-            outPayload.put("deleted", true);
-
-            String outboundJson = JSON.writerWithDefaultPrettyPrinter()
-                    .writeValueAsString(outRoot);
-
-            return "Person.Deleted\n" + outboundJson;
+            return OutboundMessage.event("Person.Deleted", "Person#" + personId, 0, g -> {
+                g.writeNumberProperty("personId", personId);
+                g.writeBooleanProperty("deleted", true);
+            });
 
         } catch (Exception e) {
             LoggerHandler.log(LoggerHandler.Level.ERROR,
@@ -200,6 +216,11 @@ public class PersonMessageHandler {
             return null;
         }
     }
+    private static void writePersonFields(JsonGenerator g, Person p) {
+        g.writeNumberProperty("personId", p.personId());
+        WireWriter.writeNullableString(g, "name", p.name());
+        WireWriter.writeNullableString(g, "role", p.role() != null ? p.role().name() : null);
+    }
     private static PersonRole parseRole(String s) {
         if (s == null) return null;
         try {
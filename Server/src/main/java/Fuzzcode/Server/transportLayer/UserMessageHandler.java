@@ -4,10 +4,9 @@ import Fuzzcode.Server.model.AppUser;
 import Fuzzcode.Server.model.UserRole;
 import Fuzzcode.Server.service.UserService;
 import Fuzzcode.Server.utilities.LoggerHandler;
+import tools.jackson.core.JsonGenerator;
 import tools.jackson.databind.JsonNode;
 import tools.jackson.databind.ObjectMapper;
-import tools.jackson.databind.node.ArrayNode;
-import tools.jackson.databind.node.ObjectNode;
 
 import java.util.List;
 
@@ -20,7 +19,7 @@ public class UserMessageHandler {
 
     // In:  User.List
     // Out: User.Snapshot
-    public String list(String inboundMessage) {
+    public OutboundMessage list(String inboundMessage) {
         int brace = inboundMessage.indexOf('{');
         if (brace < 0) {
             LoggerHandler.log(LoggerHandler.Level.WARNING,
@@ -42,23 +41,16 @@ public class UserMessageHandler {
 
             List<AppUser> users = userService.listAll();
 
-            ObjectNode outRoot = JSON.createObjectNode();
-            outRoot.put("type", "User.Snapshot");
-
-            ObjectNode payload = outRoot.putObject("payload");
-            ArrayNode arr = payload.putArray("orders");
-
-            for (AppUser u : users) {
-                ObjectNode node = arr.addObject();
-                node.put("userId", u.userId());
-                node.put("username", u.username());
-                node.put("role", u.role() != null ? u.role().name() : null);
-            }
-
-            String outboundJson = JSON.writerWithDefaultPrettyPrinter()
-                    .writeValueAsString(outRoot);
-
-            return "User.Snapshot\n" + outboundJson;
+            return OutboundMessage.of("User.Snapshot", g -> {
+                g.writeName("orders");
+                g.writeStartArray();
+                for (AppUser u : users) {
+                    g.writeStartObject();
+                    writeUserFields(g, u);
+                    g.writeEndObject();
+                }
+                g.writeEndArray();
+            });
 
         } catch (Exception e) {
             LoggerHandler.log(LoggerHandler.Level.ERROR,
@@ -68,7 +60,7 @@ public class UserMessageHandler {
     }
     // In:  User.Create // User.Update
     // Out: User.Upsert
-    public String upsert(String inboundMessage) {
+    public OutboundMessage upsert(String inboundMessage) {
         int brace = inboundMessage.indexOf('{');
         if (brace < 0) {
             LoggerHandler.log(LoggerHandler.Level.WARNING,
@@ -163,21 +155,10 @@ public class UserMessageHandler {
                 return null;
             }
 
-            ObjectNode outRoot = JSON.createObjectNode();
-            outRoot.put("type", "User.Upsert");
-
-            ObjectNode outPayload = outRoot.putObject("payload");
-            outPayload.put("userId", outUser.userId());
-            outPayload.put("username", outUser.username());
-            outPayload.put("role", outUser.role() != null ? outUser.role().name() : null);
-
-            // Again, strongly recommended NOT to send any password/hash:
-            // outPayload.put("password", outUser.passwordHash());
-
-            String outboundJson = JSON.writerWithDefaultPrettyPrinter()
-                    .writeValueAsString(outRoot);
-
-            return "User.Upsert\n" + outboundJson;
+            // Never send the password hash or salt back out.
+            final AppUser out = outUser;
+            return OutboundMessage.event("User.Upsert", "User#" + out.userId(), 0,
+                    g -> writeUserFields(g, out));
 
         } catch (Exception e) {
             LoggerHandler.log(LoggerHandler.Level.ERROR,
@@ -187,7 +168,7 @@ public class UserMessageHandler {
     }
     // In:  User.Delete
     // Out: User.Deleted
-    public String delete(String inboundMessage) {
+    public OutboundMessage delete(String inboundMessage) {
         int brace = inboundMessage.indexOf('{');
         if (brace < 0) {
             LoggerHandler.log(LoggerHandler.Level.WARNING,
@@ -222,16 +203,8 @@ public class UserMessageHandler {
                 return null;
             }
 
-            ObjectNode outRoot = JSON.createObjectNode();
-            outRoot.put("type", "User.Deleted");
-
-            ObjectNode outPayload = outRoot.putObject("payload");
-            outPayload.put("userId", userId);
-
-            String outboundJson = JSON.writerWithDefaultPrettyPrinter()
-                    .writeValueAsString(outRoot);
-
-            return "User.Deleted\n" + outboundJson;
+            return OutboundMessage.event("User.Deleted", "User#" + userId, 0,
+                    g -> g.writeNumberProperty("userId", userId));
 
         } catch (Exception e) {
             LoggerHandler.log(LoggerHandler.Level.ERROR,
@@ -239,6 +212,11 @@ public class UserMessageHandler {
             return null;
         }
     }
+    private static void writeUserFields(JsonGenerator g, AppUser u) {
+        g.writeNumberProperty("userId", u.userId());
+        WireWriter.writeNullableString(g, "username", u.username());
+        WireWriter.writeNullableString(g, "role", u.role() != null ? u.role().name() : null);
+    }
     private static UserRole parseRole(String s) {
         if (s == null || s.isBlank()) return null;
         try {
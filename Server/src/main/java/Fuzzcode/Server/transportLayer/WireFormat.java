@@ -0,0 +1,39 @@
+package Fuzzcode.Server.transportLayer;
+
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.dataformat.cbor.CBORMapper;
+
+import java.util.Locale;
+
+// Encoding negotiated per WebSocket session. JSON goes out as text frames
+// ("<Type>\n{json}"), binary formats as a single binary frame holding the envelope.
+public enum WireFormat {
+    JSON(new ObjectMapper(), false),
+    CBOR(new CBORMapper(), true);
+
+    private final ObjectMapper mapper;
+    private final boolean binary;
+
+    WireFormat(ObjectMapper mapper, boolean binary) {
+        this.mapper = mapper;
+        this.binary = binary;
+    }
+
+    ObjectMapper mapper() {
+        return mapper;
+    }
+
+    public boolean isBinary() {
+        return binary;
+    }
+
+    // null when the client asked for something we do not speak.
+    public static WireFormat parse(String s) {
+        if (s == null) return null;
+        try {
+            return valueOf(s.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package Fuzzcode.Server.transportLayer;
+
+import Fuzzcode.Server.model.Item;
+import Fuzzcode.Server.model.ItemRead;
+import Fuzzcode.Server.model.Order;
+import Fuzzcode.Server.model.Position;
+import tools.jackson.core.JsonGenerator;
+
+// Writes outbound payloads straight from model records with a streaming generator,
+// so replies never materialise as a JsonNode tree. The same writers serve every
+// WireFormat; see OutboundMessage for the envelope.
+public final class WireWriter {
+
+    @FunctionalInterface
+    public interface Body {
+        void write(JsonGenerator g);
+    }
+
+    private WireWriter() {}
+
+    // === RECORDS ===
+
+    public static void writeItemRead(JsonGenerator g, ItemRead r) {
+        g.writeStartObject();
+        writeItemReadFields(g, r);
+        g.writeEndObject();
+    }
+
+    public static void writeItemReadFields(JsonGenerator g, ItemRead r) {
+        g.writeNumberProperty("readId", r.readId());
+        g.writeStringProperty("tagId", r.tagId());
+        g.writeStringProperty("readTime", r.readTime().toString());
+    }
+
+    // Snapshot/upsert shape: position defaults to HOME, overdue to false.
+    public static void writeItem(JsonGenerator g, Item it) {
+        g.writeStartObject();
+        writeItemFields(g, it);
+        g.writeEndObject();
+    }
+
+    public static void writeItemFields(JsonGenerator g, Item it) {
+        g.writeNumberProperty("itemId", it.itemId());
+        g.writeStringProperty("tagId", it.tagId());
+        g.writeStringProperty("position", it.position() != null ? it.position().name() : Position.HOME.name());
+        g.writeBooleanProperty("isOverdue", it.isOverdue() != null && it.isOverdue());
+    }
+
+    public static void writeOrder(JsonGenerator g, Order o) {
+        g.writeStartObject();
+        g.writeNumberProperty("orderId", o.orderId());
+        // Dates as yyyy-MM-dd
+        if (o.createdDate() != null) g.writeStringProperty("createdDate", o.createdDate().toString());
+        if (o.startDate()   != null) g.writeStringProperty("startDate",   o.startDate().toString());
+        if (o.endDate()     != null) g.writeStringProperty("endDate",     o.endDate().toString());
+        if (o.customerId()  != null) g.writeNumberProperty("customerId",  o.customerId());
+        if (o.loggedById()  != null) g.writeNumberProperty("loggedById",  o.loggedById());
+        g.writeBooleanProperty("deleted", o.deleted());
+        g.writeEndObject();
+    }
+
+    // === HELPERS ===
+
+    public static void writeNullableString(JsonGenerator g, String name, String value) {
+        if (value == null) g.writeNullProperty(name);
+        else g.writeStringProperty(name, value);
+    }
+}
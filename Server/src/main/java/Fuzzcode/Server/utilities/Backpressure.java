@@ -0,0 +1,75 @@
+package Fuzzcode.Server.utilities;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+// Queue-depth gauge with hysteresis for one ingest queue. Producers that can slow their
+// source down (MQTT acks, WebSocket demand) check isBusy() and park a resume callback
+// with whenDrained(); the consumer calls onDequeued() and the callbacks run once the
+// queue is back under the low watermark.
+public final class Backpressure {
+
+    public record Gauge(int depth, int capacity, boolean busy, long rejected, long dropped) {}
+
+    private final IntSupplier depth;
+    private final int capacity;
+    private final int high;
+    private final int low;
+    private final ConcurrentLinkedQueue<Runnable> waiters = new ConcurrentLinkedQueue<>();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private volatile boolean busy;
+
+    // Busy from 3/4 of capacity until the depth falls back to 1/4.
+    public Backpressure(IntSupplier depth, int capacity) {
+        this.depth = depth;
+        this.capacity = capacity;
+        this.high = Math.max(1, capacity * 3 / 4);
+        this.low = capacity / 4;
+    }
+
+    public boolean isBusy() {
+        int d = depth.getAsInt();
+        if (d >= high) busy = true;
+        else if (d <= low) busy = false;
+        return busy;
+    }
+
+    // Runs `resume` now if the queue is not busy, otherwise on the consumer thread once it drained.
+    public void whenDrained(Runnable resume) {
+        if (!isBusy()) {
+            resume.run();
+            return;
+        }
+        waiters.add(resume);
+        // The consumer may have drained the queue between the check and the add.
+        if (!isBusy()) release();
+    }
+
+    public void onDequeued() {
+        if (!waiters.isEmpty() && !isBusy()) release();
+    }
+
+    public void recordRejected() {
+        rejected.increment();
+    }
+    public void recordDropped() {
+        dropped.increment();
+    }
+
+    public Gauge gauge() {
+        return new Gauge(depth.getAsInt(), capacity, isBusy(), rejected.sum(), dropped.sum());
+    }
+
+    private void release() {
+        Runnable r;
+        while ((r = waiters.poll()) != null) {
+            try {
+                r.run();
+            } catch (RuntimeException e) {
+                LoggerHandler.log(LoggerHandler.Level.ERROR, "Backpressure resume callback failed", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package Fuzzcode.Server.utilities;
+
+import Fuzzcode.Server.transportLayer.OutboundMessage;
+
+import java.util.function.Consumer;
+
+// Maps the command token of an inbound message ("Item.Create\n{...}") to its handler.
+// The token is everything before the first newline / whitespace / '{'. Lookups hash and
+// compare that prefix in place, so dispatch never allocates a substring.
+// A command may name its route key: the payload field of the entity it changes or reads.
+// MessageHandler runs commands with the same route key value one after another.
+public final class CommandRegistry {
+
+    @FunctionalInterface
+    public interface Handler {
+        OutboundMessage handle(String message);
+    }
+
+    // For commands that answer with more than one frame (paged snapshots).
+    @FunctionalInterface
+    public interface StreamingHandler {
+        void handle(String message, Consumer<OutboundMessage> reply);
+    }
+
+    private static final class Table {
+        final String[] keys;
+        final StreamingHandler[] handlers;
+        final String[] routeKeys; // quoted field name ("\"orderId\""), null when keyless
+        int size;
+
+        Table(int capacity) {
+            this.keys = new String[capacity];
+            this.handlers = new StreamingHandler[capacity];
+            this.routeKeys = new String[capacity];
+        }
+    }
+
+    private volatile Table table = new Table(64);
+
+    public CommandRegistry register(String command, Handler handler) {
+        return register(command, null, handler);
+    }
+
+    public CommandRegistry register(String command, String routeKey, Handler handler) {
+        return registerStreaming(command, routeKey, (message, reply) -> {
+            OutboundMessage outbound = handler.handle(message);
+            if (outbound != null) {
+                reply.accept(outbound);
+            } else {
+                LoggerHandler.log(LoggerHandler.Level.DEBUG, () -> "No outbound message produced for " + commandOf(message));
+            }
+        });
+    }
+
+    public CommandRegistry registerStreaming(String command, StreamingHandler handler) {
+        return registerStreaming(command, null, handler);
+    }
+
+    public synchronized CommandRegistry registerStreaming(String command, String routeKey, StreamingHandler handler) {
+        if (command == null || command.isEmpty() || commandLength(command) != command.length()) {
+            throw new IllegalArgumentException("Invalid command token: " + command);
+        }
+        Table current = table;
+        // Keep the load factor under 0.5 so probe chains stay short.
+        int capacity = current.keys.length;
+        while ((current.size + 1) * 2 > capacity) capacity <<= 1;
+
+        // Copy-on-write: readers never see a half-filled table.
+        Table next = new Table(capacity);
+        for (int i = 0; i < current.keys.length; i++) {
+            if (current.keys[i] != null) put(next, current.keys[i], current.handlers[i], current.routeKeys[i]);
+        }
+        put(next, command, handler, routeKey == null ? null : "\"" + routeKey + "\"");
+        table = next;
+        return this;
+    }
+
+    public StreamingHandler lookup(String message) {
+        Table t = table;
+        int i = slot(t, message);
+        return i < 0 ? null : t.handlers[i];
+    }
+
+    // Quoted JSON name of the command's route key ("\"orderId\""), null when it has none.
+    public String routeKeyOf(String message) {
+        Table t = table;
+        int i = slot(t, message);
+        return i < 0 ? null : t.routeKeys[i];
+    }
+
+    public boolean isRegistered(String message) {
+        return lookup(message) != null;
+    }
+
+    public int size() {
+        return table.size;
+    }
+
+    // Allocates; meant for logging and error replies, not the dispatch path.
+    public static String commandOf(String message) {
+        return message == null ? "" : message.substring(0, commandLength(message));
+    }
+
+    /* --------------- helpers --------------- */
+
+    private static int slot(Table t, String message) {
+        if (message == null) return -1;
+        int len = commandLength(message);
+        if (len == 0) return -1;
+
+        int mask = t.keys.length - 1;
+        for (int i = spread(hash(message, len)) & mask; ; i = (i + 1) & mask) {
+            String key = t.keys[i];
+            if (key == null) return -1;
+            if (key.length() == len && message.regionMatches(0, key, 0, len)) return i;
+        }
+    }
+
+    static int commandLength(String message) {
+        int n = message.length();
+        for (int i = 0; i < n; i++) {
+            char c = message.charAt(i);
+            if (c == '\n' || c == '\r' || c == ' ' || c == '\t' || c == '{') return i;
+        }
+        return n;
+    }
+
+    // Same as String.hashCode() over the first len chars.
+    private static int hash(String s, int len) {
+        int h = 0;
+        for (int i = 0; i < len; i++) h = 31 * h + s.charAt(i);
+        return h;
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    private static void put(Table t, String key, StreamingHandler handler, String routeKey) {
+        int mask = t.keys.length - 1;
+        for (int i = spread(key.hashCode()) & mask; ; i = (i + 1) & mask) {
+            if (t.keys[i] == null) {
+                t.keys[i] = key;
+                t.handlers[i] = handler;
+                t.routeKeys[i] = routeKey;
+                t.size++;
+                return;
+            }
+            if (t.keys[i].equals(key)) {
+                t.handlers[i] = handler;
+                t.routeKeys[i] = routeKey;
+                return;
+            }
+        }
+    }
+}
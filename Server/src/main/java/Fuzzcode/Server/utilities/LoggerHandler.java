@@ -1,53 +1,143 @@
 package Fuzzcode.Server.utilities;
 
+import java.io.PrintStream;
 import java.time.Instant;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
 
+// Asynchronous logger. Callers only claim a slot in a preallocated ring (one atomic
+// increment) and store the entry; formatting and console output happen on the
+// "log-writer" thread. The ring doubles as the bounded history behind outputReport():
+// it always holds the last CAPACITY entries. If the console falls more than a ring
+// behind, the writer skips ahead and counts the lines it lost.
 public class LoggerHandler {
     public enum Level {
+        DEBUG,
         INFO,
         WARNING,
         ERROR
     }
     private LoggerHandler() {}
 
-    private static final List<String> logs = new ArrayList<>();
+    private static final int CAPACITY = 8_192; // power of two
+    private static final int MASK = CAPACITY - 1;
     private static final DateTimeFormatter TS_FORMAT =
             DateTimeFormatter.ISO_INSTANT;
 
-    private static String format(Level level, String msg) {
-        return TS_FORMAT.format(Instant.now()) + " [" + level + "] " + msg;
+    private record Entry(long seq, long millis, Level level, String message, Throwable error) {}
+
+    private static final AtomicReferenceArray<Entry> ring = new AtomicReferenceArray<>(CAPACITY);
+    private static final AtomicLong head = new AtomicLong();
+    private static final AtomicLong consoleDropped = new AtomicLong();
+    private static volatile long reportFrom = 0;
+    private static volatile long written = 0;
+    private static volatile Level minLevel = Level.INFO;
+    private static volatile boolean writerParked;
+    private static final Thread writer = startWriter();
+
+    // === LEVELS ===
+    public static void setLevel(Level level) {
+        minLevel = level;
+    }
+    public static boolean isEnabled(Level level) {
+        return level.ordinal() >= minLevel.ordinal();
     }
+
+    // === LOGGING ===
     public static void log(String message) {
-        logs.add(format(Level.INFO, message));
-        System.out.println(format(Level.INFO, message));
+        if (isEnabled(Level.INFO)) append(Level.INFO, message, null);
     }
     public static void log(Level level, String message) {
-        logs.add(format(level, message));
-        System.out.println(format(Level.INFO, message));
+        if (isEnabled(level)) append(level, message, null);
+    }
+    // The message is only built when the level is enabled: use for hot paths.
+    public static void log(Level level, Supplier<String> message) {
+        if (isEnabled(level)) append(level, message.get(), null);
     }
     public static void log(Level level, String message, Exception e) {
-        logs.add(format(level, message));
-        System.out.println(format(Level.INFO, message + e));
+        if (isEnabled(level)) append(level, message + " " + e, e);
     }
     public static void log(Exception e) {
-        logs.add(format(Level.ERROR, e.getClass().getSimpleName() + ": " + e.getMessage()));
-        System.out.println(format(Level.ERROR, e.getClass().getSimpleName() + ": " + e.getMessage()));
-        for (StackTraceElement element : e.getStackTrace()) {
-            logs.add("    at " + element.toString());
-        }
+        append(Level.ERROR, e.getClass().getSimpleName() + ": " + e.getMessage(), e);
     }
+
+    // Prints the retained history (oldest first) synchronously.
     public static void outputReport() {
-        System.out.println("=== Logger Output ===");
-        for (String log : logs) {
-            System.out.println(log);
+        PrintStream out = System.out;
+        out.println("=== Logger Output ===");
+        long end = head.get();
+        long start = Math.max(reportFrom, end - CAPACITY);
+        for (long seq = start; seq < end; seq++) {
+            Entry e = ring.get((int) (seq & MASK));
+            if (e != null && e.seq() == seq) print(out, e);
         }
-        System.out.println("=====================");
+        out.println("=====================");
     }
+    // Hides everything logged so far from outputReport().
     public static void clear() {
-        logs.clear();
+        reportFrom = head.get();
+    }
+    // Waits (bounded) until the writer has printed everything logged before the call.
+    public static void flush() {
+        long target = head.get();
+        long deadline = System.nanoTime() + 2_000_000_000L;
+        while (written < target && System.nanoTime() < deadline) {
+            LockSupport.unpark(writer);
+            Thread.onSpinWait();
+        }
+    }
+    public static long droppedConsoleLines() {
+        return consoleDropped.get();
     }
 
+    // === INTERNALS ===
+    private static void append(Level level, String message, Throwable error) {
+        long seq = head.getAndIncrement();
+        ring.set((int) (seq & MASK), new Entry(seq, System.currentTimeMillis(), level, message, error));
+        if (writerParked) LockSupport.unpark(writer);
+    }
+
+    private static Thread startWriter() {
+        Thread t = new Thread(LoggerHandler::drain, "log-writer");
+        t.setDaemon(true);
+        t.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(LoggerHandler::flush, "log-flush"));
+        return t;
+    }
+
+    private static void drain() {
+        long next = 0;
+        while (true) {
+            Entry e = ring.get((int) (next & MASK));
+            if (e != null && e.seq() == next) {
+                print(System.out, e);
+                written = ++next;
+                continue;
+            }
+            if (e != null && e.seq() > next) {
+                // Overwritten before we got to it: resume at the oldest entry still held.
+                long resume = Math.max(next + 1, head.get() - CAPACITY);
+                consoleDropped.addAndGet(resume - next);
+                written = next = resume;
+                continue;
+            }
+            // Nothing published at `next` yet (or a producer is mid-store): wait for work.
+            writerParked = true;
+            if (head.get() <= next) LockSupport.parkNanos(10_000_000L);
+            else Thread.onSpinWait();
+            writerParked = false;
+        }
+    }
+
+    private static void print(PrintStream out, Entry e) {
+        out.println(TS_FORMAT.format(Instant.ofEpochMilli(e.millis())) + " [" + e.level() + "] " + e.message());
+        if (e.error() != null) {
+            for (StackTraceElement element : e.error().getStackTrace()) {
+                out.println("    at " + element.toString());
+            }
+        }
+    }
 }
@@ -1,9 +1,21 @@
 package Fuzzcode.Server.utilities;
 
+import Fuzzcode.Server.db.ConnectionManager;
 import Fuzzcode.Server.transportLayer.*;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
 public class MessageHandler {
@@ -11,166 +23,588 @@ public class MessageHandler {
     private static final MessageHandler INSTANCE = new MessageHandler();
 
     // To help make sure that everything is returned on the same connection.
+    // sink is the connection's own reply sink, also the ChangeFeed origin so the requester is
+    // not sent its own change twice. Replies go through the ticket, which keeps them in the
+    // order the connection sent its requests; both are null for fire-and-forget messages.
     private static final class Job {
         final String message;
-        final Consumer<String> reply;
+        final Consumer<OutboundMessage> sink;
+        final ReplySequencer<OutboundMessage>.Ticket ticket;
+        final long enqueuedAtNanos = System.nanoTime();
 
-        Job(String message, Consumer<String> reply) {
+        Job(String message, Consumer<OutboundMessage> sink, ReplySequencer<OutboundMessage>.Ticket ticket) {
             this.message = message;
-            this.reply = reply;
+            this.sink = sink;
+            this.ticket = ticket;
         }
     }
-    private final BlockingQueue<Job> messageQueue = new LinkedBlockingQueue<>();
 
-    // HANDLERS
-    private final ItemReadMessageHandler itemReadMessageHandler = new ItemReadMessageHandler();
-    private final ItemMessageHandler itemMessageHandler = new ItemMessageHandler();
-    private final OrderMessageHandler orderMessageHandler = new OrderMessageHandler();
-    private final OrderItemMessageHandler orderItemMessageHandler = new OrderItemMessageHandler();
-    private final PersonMessageHandler personMessageHandler = new PersonMessageHandler();
-    private final UserMessageHandler userMessageHandler = new UserMessageHandler();
+    // PARTITIONED: a fixed set of worker threads, one queue each.
+    // VIRTUAL_THREADS: every command on its own virtual thread (platform threads before
+    // Java 21), at most as many inside a handler at once as the connection pool has
+    // connections.
+    // In both, commands with the same route key value (see buildRegistry) run one after
+    // another, a session's commands run in the order it sent them (see follow), and each
+    // session gets its replies in request order.
+    public enum ExecutionMode { PARTITIONED, VIRTUAL_THREADS }
 
-    // SETUP
-    private MessageHandler() {
-        startProcessing();
-    }
-    public static MessageHandler getInstance() {
-        return INSTANCE;
-    }
+    private static final int LANES = 1_024; // power of two
+    private static final int NO_KEY = Integer.MIN_VALUE;
+    private static final String READ_COMMAND = "ItemRead.Create";
 
+    public record PartitionStats(
+            int partition,
+            int queueDepth,
+            int queueCapacity,
+            long processed,
+            double avgLatencyMicros,
+            long maxLatencyMicros,
+            double avgQueueWaitMicros
+    ) {}
 
-    public void enqueueMessage(String message) {
-        enqueueMessage(message, null);
-    }
-    public void enqueueMessage(String message, Consumer<String> reply) {
-        try {
-            messageQueue.put(new Job(message, reply));
-            LoggerHandler.log("Message queued: " + message);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            LoggerHandler.log("=== THREAD enqueueMessage ended! ===");
-            LoggerHandler.log("ERROR: Failed to enqueue message: " + e.getMessage());
+    private static final class Counters {
+        final AtomicLong processed = new AtomicLong();
+        final AtomicLong totalLatencyNanos = new AtomicLong();
+        final AtomicLong maxLatencyNanos = new AtomicLong();
+        final AtomicLong totalWaitNanos = new AtomicLong();
+
+        void record(long waitNanos, long latencyNanos) {
+            processed.incrementAndGet();
+            totalWaitNanos.addAndGet(waitNanos);
+            totalLatencyNanos.addAndGet(latencyNanos);
+            maxLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+        }
+
+        PartitionStats stats(int index, int depth, int capacity) {
+            long n = processed.get();
+            return new PartitionStats(
+                    index,
+                    depth,
+                    capacity,
+                    n,
+                    n == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalLatencyNanos.get()) / (double) n,
+                    TimeUnit.NANOSECONDS.toMicros(maxLatencyNanos.get()),
+                    n == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalWaitNanos.get()) / (double) n
+            );
         }
     }
 
+    private final class Partition {
+        final int index;
+        final BlockingQueue<Job> queue;
+        final Counters counters = new Counters();
+
+        Partition(int index, int capacity) {
+            this.index = index;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
 
-    public void startProcessing() {
-        LoggerHandler.log("=== Start startProcessing ===");
-        Thread processor = new Thread(() -> {
+        void run() {
             while (true) {
                 try {
-                    Job job = messageQueue.take();
-                    processMessage(job);
+                    Job job = queue.take();
+                    pressure.onDequeued();
+                    long start = System.nanoTime();
+                    try {
+                        processMessage(job);
+                    } catch (RuntimeException e) {
+                        LoggerHandler.log(LoggerHandler.Level.ERROR, "Worker " + index + " failed on message", e);
+                    } finally {
+                        finish(job);
+                    }
+                    long end = System.nanoTime();
+                    counters.record(start - job.enqueuedAtNanos, end - start);
                 } catch (InterruptedException e) {
                     Thread.currentThread().interrupt();
-                    LoggerHandler.log("=== THREAD startProcessing ended! ===");
+                    LoggerHandler.log("=== THREAD message-worker-" + index + " ended! ===");
                     break;
                 }
             }
-        });
-        processor.setDaemon(true);
-        processor.start();
+        }
+
+        PartitionStats stats() {
+            return counters.stats(index, queue.size(), queue.size() + queue.remainingCapacity());
+        }
     }
 
-    private void processMessage(Job job) {
-        String message = job.message;
-        String outbound = null;
+    // Runs its commands one after another in arrival order; the backlog is worked off on a
+    // single thread of the executor, which is released once the lane is empty.
+    private static final class Lane {
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        private boolean running;
 
-        // === ORDERS ===
-        if (message.startsWith("Order.List")) {
-            outbound = orderMessageHandler.list(message);
-        }
-        else if (message.startsWith("Order.Create")
-                || message.startsWith("Order.Update")) {
-            outbound = orderMessageHandler.upsert(message);
+        void submit(Runnable task, Executor executor) {
+            synchronized (this) {
+                tasks.addLast(task);
+                if (running) return;
+                running = true;
+            }
+            executor.execute(this::drain);
         }
-        else if (message.startsWith("Order.Delete")) {
-            outbound = orderMessageHandler.delete(message);
+
+        private void drain() {
+            while (true) {
+                Runnable next;
+                synchronized (this) {
+                    next = tasks.pollFirst();
+                    if (next == null) {
+                        running = false;
+                        return;
+                    }
+                }
+                next.run();
+            }
         }
+    }
 
+    // State of VIRTUAL_THREADS mode, created by startProcessing().
+    private final class VirtualExecution {
+        final Executor executor;
+        final Semaphore handlerPermits;
+        final Semaphore admission;
+        final int capacity;
+        final Lane[] lanes = new Lane[LANES];
+        final Counters counters = new Counters();
 
-        // ==== ORDER ITEMS ===
-        if (message.startsWith("OrderItem.ListByOrder")) {
-            outbound = orderItemMessageHandler.listByOrder(message);
+        VirtualExecution(int maxConcurrent, int capacity) {
+            this.capacity = capacity;
+            this.handlerPermits = new Semaphore(maxConcurrent);
+            this.admission = new Semaphore(capacity);
+            for (int i = 0; i < LANES; i++) lanes[i] = new Lane();
+            ThreadFactory virtual = virtualThreadFactory();
+            if (virtual != null) {
+                executor = task -> virtual.newThread(task).start();
+                LoggerHandler.log("=== Start startProcessing (virtual threads, " + maxConcurrent + " concurrent) ===");
+            } else {
+                // No virtual threads on this JVM: a pool as large as the permits never blocks on them.
+                AtomicInteger n = new AtomicInteger();
+                executor = Executors.newFixedThreadPool(maxConcurrent, r -> {
+                    Thread t = new Thread(r, "message-exec-" + n.getAndIncrement());
+                    t.setDaemon(true);
+                    return t;
+                });
+                LoggerHandler.log(LoggerHandler.Level.WARNING,
+                        "Virtual threads unavailable (Java " + Runtime.version().feature() + "), using "
+                                + maxConcurrent + " platform threads");
+            }
         }
-        else if (message.startsWith("OrderItem.PositionCounts")) {
-            outbound = orderItemMessageHandler.positionCounts(message);
+
+        // Lane by route key value, or by session for keyless commands with a reply; -1 for
+        // keyless fire-and-forget commands, which run in no particular order.
+        int laneOf(String message, Object replyTarget) {
+            int key = entityHash(message);
+            if (key == NO_KEY) {
+                if (replyTarget == null) return -1;
+                key = System.identityHashCode(replyTarget);
+            }
+            return key & (LANES - 1);
         }
-        else if (message.startsWith("OrderItem.List")) {
-            outbound = orderItemMessageHandler.list(message);
+
+        // There is no queue to evict from here, so DROP_OLDEST_READ rejects like REJECT.
+        boolean submit(Job job, int lane, boolean block) throws InterruptedException {
+            if (block) admission.acquire();
+            else if (!admission.tryAcquire()) return false;
+            Runnable task = () -> run(job);
+            if (lane < 0) executor.execute(task);
+            else lanes[lane].submit(task, executor);
+            return true;
         }
-        else if (message.startsWith("OrderItem.Create")
-                || message.startsWith("OrderItem.Update")) {
-            outbound = orderItemMessageHandler.upsert(message);
+
+        private void run(Job job) {
+            long start = System.nanoTime();
+            try {
+                handlerPermits.acquire();
+                try {
+                    processMessage(job);
+                } finally {
+                    handlerPermits.release();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                LoggerHandler.log(LoggerHandler.Level.ERROR, "Virtual worker failed on message", e);
+            } finally {
+                finish(job);
+                admission.release();
+                pressure.onDequeued();
+                counters.record(start - job.enqueuedAtNanos, System.nanoTime() - start);
+            }
         }
-        else if (message.startsWith("OrderItem.Delete")) {
-            outbound = orderItemMessageHandler.delete(message);
+
+        int inFlight() {
+            return capacity - admission.availablePermits();
         }
+    }
 
+    private int workerCount = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private int queueCapacity = 10_000;
+    private ExecutionMode mode = ExecutionMode.PARTITIONED;
+    private volatile OverflowPolicy overflow = OverflowPolicy.BLOCK;
+    private volatile Backpressure pressure = new Backpressure(this::deepestQueue, queueCapacity);
+    private int maxConcurrent; // 0: as many as the connection pool has connections
+    private volatile Partition[] partitions;
+    private volatile VirtualExecution virtual;
+    private final AtomicInteger roundRobin = new AtomicInteger();
+    // One per connection with requests in flight.
+    private final ConcurrentHashMap<Consumer<OutboundMessage>, ReplySequencer<OutboundMessage>> sequencers =
+            new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Consumer<OutboundMessage>, SessionRoute> routes = new ConcurrentHashMap<>();
+
+    // Partition or lane a session's commands in flight were queued on.
+    private static final class SessionRoute {
+        int slot;
+        int inFlight;
+    }
 
-        // === ITEMS ===
-        if (message.startsWith("Item.List")) {
-            outbound = itemMessageHandler.list(message);
+    // HANDLERS
+    private final ItemReadMessageHandler itemReadMessageHandler = new ItemReadMessageHandler();
+    private final ItemMessageHandler itemMessageHandler = new ItemMessageHandler();
+    private final OrderMessageHandler orderMessageHandler = new OrderMessageHandler();
+    private final OrderItemMessageHandler orderItemMessageHandler = new OrderItemMessageHandler();
+    private final PersonMessageHandler personMessageHandler = new PersonMessageHandler();
+    private final UserMessageHandler userMessageHandler = new UserMessageHandler();
+
+    private static final Consumer<OutboundMessage> NO_REPLY = outbound -> {};
+    private final ChangeFeed changeFeed = ChangeFeed.getInstance();
+    private final CommandRegistry commands = buildRegistry();
+
+    // SETUP
+    private MessageHandler() {}
+    public static MessageHandler getInstance() {
+        return INSTANCE;
+    }
+
+    // Must be called before the first message is queued; later calls are ignored.
+    public synchronized void configure(int workers, int capacityPerWorker) {
+        if (partitions != null || virtual != null) {
+            LoggerHandler.log(LoggerHandler.Level.WARNING, "MessageHandler already running, configure() ignored");
+            return;
         }
-        else if (message.startsWith("Item.Create")
-                || message.startsWith("Item.Update")) {
-            outbound = itemMessageHandler.upsert(message);
+        workerCount = Math.max(1, workers);
+        queueCapacity = Math.max(1, capacityPerWorker);
+    }
+    // Same rules as configure(). maxConcurrent <= 0 sizes the handler limit to the pool.
+    public synchronized void configureExecution(ExecutionMode executionMode, int maxConcurrentHandlers) {
+        if (partitions != null || virtual != null) {
+            LoggerHandler.log(LoggerHandler.Level.WARNING, "MessageHandler already running, configureExecution() ignored");
+            return;
         }
-        else if (message.startsWith("Item.Delete")) {
-            outbound = itemMessageHandler.delete(message);
+        mode = executionMode;
+        maxConcurrent = maxConcurrentHandlers;
+    }
+    public ExecutionMode executionMode() {
+        return mode;
+    }
+    // Same rules as configure().
+    public synchronized void configureOverflow(OverflowPolicy policy) {
+        if (partitions != null || virtual != null) {
+            LoggerHandler.log(LoggerHandler.Level.WARNING, "MessageHandler already running, configureOverflow() ignored");
+            return;
         }
+        overflow = policy;
+    }
+    // Depth gauge of the fullest partition queue (all commands in flight in VIRTUAL_THREADS
+    // mode); replaced when processing starts, so do not hold on to it.
+    public Backpressure pressure() {
+        return pressure;
+    }
+    public OverflowPolicy overflowPolicy() {
+        return overflow;
+    }
 
 
-        // === ITEMREADS ===
-        if (message.startsWith("ItemRead.ListByItem")) {
-            outbound = itemReadMessageHandler.listByItem(message);
-        }
-        else if (message.startsWith("ItemRead.List")) {
-            outbound = itemReadMessageHandler.readAll(message);
+    public boolean enqueueMessage(String message) {
+        return enqueueMessage(message, null);
+    }
+    // Applies the overflow policy when the queue is full; BLOCK waits for room.
+    // Returns false if the message was rejected.
+    public boolean enqueueMessage(String message, Consumer<OutboundMessage> reply) {
+        return admit(message, reply, overflow == OverflowPolicy.BLOCK, null);
+    }
+    // For event-loop callers: never waits, BLOCK behaves like REJECT.
+    public boolean offerMessage(String message, Consumer<OutboundMessage> reply) {
+        return admit(message, reply, false, null);
+    }
+    // Same, and a rejected message is answered with `rejection` in its place among the
+    // session's replies, not ahead of the ones still in flight.
+    public boolean offerMessage(String message, Consumer<OutboundMessage> reply, OutboundMessage rejection) {
+        return admit(message, reply, false, rejection);
+    }
+
+    private boolean admit(String message, Consumer<OutboundMessage> reply, boolean block, OutboundMessage rejection) {
+        Partition[] parts = partitions;
+        VirtualExecution vx = virtual;
+        if (parts == null && vx == null) {
+            startProcessing();
+            parts = partitions;
+            vx = virtual;
         }
-        else if (message.startsWith("BrokerItemRead.Create")) {
-            outbound = itemReadMessageHandler.upsert(message);
+        // The ticket is taken on arrival, before the command can be overtaken by another one.
+        Job job = new Job(message, reply, reply == null ? null : ticketFor(reply));
+        try {
+            int slot = vx != null ? vx.laneOf(message, reply) : Math.floorMod(routingHash(message, reply), parts.length);
+            if (reply != null) slot = follow(reply, slot);
+            boolean accepted = vx != null ? vx.submit(job, slot, block) : offer(parts[slot].queue, job, block);
+            if (!accepted) {
+                if (rejection != null && job.ticket != null) job.ticket.accept(rejection);
+                finish(job);
+                pressure.recordRejected();
+                LoggerHandler.log(LoggerHandler.Level.DEBUG, () -> "Message rejected, queue full: " + CommandRegistry.commandOf(message));
+                return false;
+            }
+            LoggerHandler.log(LoggerHandler.Level.DEBUG, () -> "Message queued: " + message);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            finish(job);
+            LoggerHandler.log("=== THREAD enqueueMessage ended! ===");
+            LoggerHandler.log("ERROR: Failed to enqueue message: " + e.getMessage());
+            return false;
         }
-        else if (message.startsWith("ItemRead.Create")
-                || message.startsWith("ItemRead.Update")) {
-            outbound = itemReadMessageHandler.upsert(message);
+    }
+
+    private boolean offer(BlockingQueue<Job> queue, Job job, boolean block) throws InterruptedException {
+        if (queue.offer(job)) return true;
+        if (block) {
+            queue.put(job);
+            return true;
         }
-        else if (message.startsWith("ItemRead.Delete")) {
-            outbound = itemReadMessageHandler.delete(message);
+        return overflow == OverflowPolicy.DROP_OLDEST_READ && dropOldestRead(queue) && queue.offer(job);
+    }
+
+    // Only reads nobody waits for (reader traffic over MQTT) are dropped.
+    private boolean dropOldestRead(BlockingQueue<Job> queue) {
+        for (Job queued : queue) {
+            if (queued.sink != null || !queued.message.startsWith(READ_COMMAND)) continue;
+            if (!queue.remove(queued)) continue;
+            pressure.recordDropped();
+            return true;
         }
+        return false;
+    }
 
 
-        // ===== PERSON ===
-        if (message.startsWith("Person.List")) {
-            outbound = personMessageHandler.list(message);
-        }
-        else if (message.startsWith("Person.Create")
-                || message.startsWith("Person.Update")) {
-            outbound = personMessageHandler.upsert(message);
+    public synchronized void startProcessing() {
+        if (partitions != null || virtual != null) return;
+        if (mode == ExecutionMode.VIRTUAL_THREADS) {
+            int permits = maxConcurrent > 0 ? maxConcurrent : ConnectionManager.maxPoolSize();
+            pressure = new Backpressure(this::queueDepth, workerCount * queueCapacity);
+            virtual = new VirtualExecution(permits, workerCount * queueCapacity);
+            return;
         }
-        else if (message.startsWith("Person.Delete")) {
-            outbound = personMessageHandler.delete(message);
+        LoggerHandler.log("=== Start startProcessing (" + workerCount + " workers) ===");
+        // By the fullest queue: one hot partition rejects long before the sum looks busy.
+        pressure = new Backpressure(this::deepestQueue, queueCapacity);
+        Partition[] parts = new Partition[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            Partition p = new Partition(i, queueCapacity);
+            parts[i] = p;
+            Thread worker = new Thread(p::run, "message-worker-" + i);
+            worker.setDaemon(true);
+            worker.start();
         }
+        partitions = parts;
+    }
 
+    // In VIRTUAL_THREADS mode a single entry covers all commands in flight.
+    public List<PartitionStats> partitionStats() {
+        Partition[] parts = partitions;
+        List<PartitionStats> out = new ArrayList<>();
+        VirtualExecution vx = virtual;
+        if (vx != null) out.add(vx.counters.stats(0, vx.inFlight(), vx.capacity));
+        if (parts == null) return out;
+        for (Partition p : parts) out.add(p.stats());
+        return out;
+    }
 
-        // ===== USERS ===
-        if (message.startsWith("User.List")) {
-            outbound = userMessageHandler.list(message);
-        }
-        else if (message.startsWith("User.Create")
-                || message.startsWith("User.Update")) {
-            outbound = userMessageHandler.upsert(message);
+    public int queueDepth() {
+        VirtualExecution vx = virtual;
+        if (vx != null) return vx.inFlight();
+        Partition[] parts = partitions;
+        if (parts == null) return 0;
+        int depth = 0;
+        for (Partition p : parts) depth += p.queue.size();
+        return depth;
+    }
+
+    private int deepestQueue() {
+        Partition[] parts = partitions;
+        if (parts == null) return 0;
+        int depth = 0;
+        for (Partition p : parts) depth = Math.max(depth, p.queue.size());
+        return depth;
+    }
+
+    // Partition a message from an idle session would be queued on in PARTITIONED mode, or -1
+    // when its command has no route key value in it (it then goes to its connection's).
+    public int partitionOf(String message) {
+        int h = entityHash(message);
+        return h == NO_KEY ? -1 : Math.floorMod(h, workerCount);
+    }
+
+    // === ROUTING ===
+    // Keyed commands go by their route key value; keyless ones (lists, creates) stick to their
+    // connection, fire-and-forget messages are spread round-robin.
+    private int routingHash(String message, Object replyTarget) {
+        int h = entityHash(message);
+        if (h != NO_KEY) return h;
+        if (replyTarget != null) return System.identityHashCode(replyTarget);
+        return roundRobin.getAndIncrement();
+    }
+    // Hash of the route key value declared for the command, without allocating; NO_KEY when
+    // the command has no route key or the message does not carry it.
+    private int entityHash(String message) {
+        String field = commands.routeKeyOf(message);
+        if (field == null) return NO_KEY;
+        int at = message.indexOf(field);
+        if (at < 0) return NO_KEY;
+        int i = at + field.length();
+        int n = message.length();
+        while (i < n && (Character.isWhitespace(message.charAt(i)) || message.charAt(i) == ':')) i++;
+        if (i < n && message.charAt(i) == '"') i++;
+        int h = field.hashCode();
+        int start = i;
+        while (i < n) {
+            char ch = message.charAt(i);
+            if (ch == '"' || ch == ',' || ch == '}' || Character.isWhitespace(ch)) break;
+            h = 31 * h + ch;
+            i++;
         }
-        else if (message.startsWith("User.Delete")) {
-            outbound = userMessageHandler.delete(message);
+        if (i == start) return NO_KEY;
+        return h == NO_KEY ? NO_KEY + 1 : h;
+    }
+
+    /* --------------- reply order --------------- */
+
+    private ReplySequencer<OutboundMessage>.Ticket ticketFor(Consumer<OutboundMessage> sink) {
+        Object[] ticket = new Object[1];
+        sequencers.compute(sink, (k, seq) -> {
+            if (seq == null) seq = new ReplySequencer<>(k);
+            ticket[0] = seq.next();
+            return seq;
+        });
+        @SuppressWarnings("unchecked")
+        ReplySequencer<OutboundMessage>.Ticket t = (ReplySequencer<OutboundMessage>.Ticket) ticket[0];
+        return t;
+    }
+
+    // Route keys keep one entity's commands in order, but a session can send commands for
+    // different entities that depend on each other (attach an item to an order, then delete
+    // the item). So while a session has commands in flight, its next ones are queued behind
+    // them on the same partition or lane; an idle session is routed by key again.
+    private int follow(Consumer<OutboundMessage> sink, int slot) {
+        int[] chosen = new int[1];
+        routes.compute(sink, (k, r) -> {
+            if (r == null) {
+                r = new SessionRoute();
+                r.slot = slot;
+            }
+            r.inFlight++;
+            chosen[0] = r.slot;
+            return r;
+        });
+        return chosen[0];
+    }
+
+    // Once per job, whether it ran, was rejected or dropped: later replies wait for it.
+    private void finish(Job job) {
+        if (job.ticket == null) return;
+        job.ticket.complete();
+        // Forget sessions with nothing in flight, so closed connections do not pile up.
+        sequencers.computeIfPresent(job.sink, (k, seq) -> seq.isIdle() ? null : seq);
+        routes.computeIfPresent(job.sink, (k, r) -> --r.inFlight == 0 ? null : r);
+    }
+
+    // Thread.ofVirtual() is Java 21; looked up reflectively so the server still runs on 17.
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> type = Class.forName("java.lang.Thread$Builder");
+            builder = type.getMethod("name", String.class, long.class).invoke(builder, "message-vt-", 0L);
+            return (ThreadFactory) type.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+            return null;
         }
+    }
+
+    // === COMMANDS ===
+    // The route key is the payload field naming the entity a command changes or reads; it
+    // decides where the command runs (see routingHash). Each entity has one key, its id:
+    // orderId, itemId, readId, personId, userId. The exceptions:
+    //  - order items go by their order, so they stay ordered with changes to the order;
+    //  - creates have no id yet: items and reads go by tag, users by name, so two creates of
+    //    the same one do not race. Nothing can name the new id before the create replied.
+    // Commands of one session that touch different entities keep their order through follow().
+    private CommandRegistry buildRegistry() {
+        return new CommandRegistry()
+                // Orders
+                .register("Order.List", orderMessageHandler::list)
+                .register("Order.Since", orderMessageHandler::since)
+                .register("Order.Create", orderMessageHandler::upsert)
+                .register("Order.Update", "orderId", orderMessageHandler::upsert)
+                .register("Order.Delete", "orderId", orderMessageHandler::delete)
+                // Order items
+                .register("OrderItem.ListByOrder", "orderId", orderItemMessageHandler::listByOrder)
+                .register("OrderItem.PositionCounts", "orderId", orderItemMessageHandler::positionCounts)
+                .register("OrderItem.List", orderItemMessageHandler::list)
+                .register("OrderItem.Since", orderItemMessageHandler::since)
+                .register("OrderItem.Create", "orderId", orderItemMessageHandler::upsert)
+                .register("OrderItem.Update", "orderId", orderItemMessageHandler::upsert)
+                .register("OrderItem.Delete", "orderId", orderItemMessageHandler::delete)
+                // Items
+                .register("Item.List", itemMessageHandler::list)
+                .register("Item.Since", itemMessageHandler::since)
+                .register("Item.Create", "tagId", itemMessageHandler::upsert)
+                .register("Item.Update", "itemId", itemMessageHandler::upsert)
+                .register("Item.Delete", "itemId", itemMessageHandler::delete)
+                // Item reads
+                .register("ItemRead.ListByItem", "itemId", itemReadMessageHandler::listByItem)
+                .registerStreaming("ItemRead.List", itemReadMessageHandler::readAll)
+                .register("ItemRead.Since", itemReadMessageHandler::since)
+                .register("ItemRead.Create", "tagId", itemReadMessageHandler::upsert)
+                .register("ItemRead.Update", "readId", itemReadMessageHandler::upsert)
+                .register("ItemRead.Delete", "readId", itemReadMessageHandler::delete)
+                // People
+                .register("Person.List", personMessageHandler::list)
+                .register("Person.Since", personMessageHandler::since)
+                .register("Person.Create", personMessageHandler::upsert)
+                .register("Person.Update", "personId", personMessageHandler::upsert)
+                .register("Person.Delete", "personId", personMessageHandler::delete)
+                // Users
+                .register("User.List", userMessageHandler::list)
+                .register("User.Create", "username", userMessageHandler::upsert)
+                .register("User.Update", "userId", userMessageHandler::upsert)
+                .register("User.Delete", "userId", userMessageHandler::delete);
+    }
 
+    public boolean isKnownCommand(String message) {
+        return commands.isRegistered(message);
+    }
+
+    // Structured error frame, same envelope as every other outbound message.
+    public static OutboundMessage errorMessage(String code, String command) {
+        return OutboundMessage.of("Error", g -> {
+            g.writeStringProperty("code", code);
+            g.writeStringProperty("command", command);
+        });
+    }
+
+    private void processMessage(Job job) {
+        String message = job.message;
+        Consumer<OutboundMessage> direct = job.ticket != null ? job.ticket : NO_REPLY;
+        Object origin = job.sink;
+        // Changes go back to the requester and out to every other subscribed session.
+        Consumer<OutboundMessage> reply = outbound -> {
+            direct.accept(outbound);
+            if (outbound.isChangeEvent()) changeFeed.publish(outbound, origin);
+        };
 
-        // === Finally +++
-        if (outbound != null && job.reply != null) {
-            job.reply.accept(outbound);
-        } else if (outbound == null) {
-            System.out.println("No outbound message produced");
+        CommandRegistry.StreamingHandler handler = commands.lookup(message);
+        if (handler != null) {
+            handler.handle(message, reply);
+        } else {
+            LoggerHandler.log(LoggerHandler.Level.WARNING, "Unknown command: " + CommandRegistry.commandOf(message));
+            direct.accept(errorMessage("unknown_command", CommandRegistry.commandOf(message)));
         }
     }
 
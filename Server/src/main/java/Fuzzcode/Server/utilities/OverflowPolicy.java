@@ -0,0 +1,11 @@
+package Fuzzcode.Server.utilities;
+
+// What a full ingest queue does with one more message.
+public enum OverflowPolicy {
+    // The caller waits for room (a WebSocket session stops reading instead).
+    BLOCK,
+    // The oldest queued fire-and-forget read makes room; anything else is rejected.
+    DROP_OLDEST_READ,
+    // The new message is refused (WebSocket clients get ERROR:busy).
+    REJECT
+}
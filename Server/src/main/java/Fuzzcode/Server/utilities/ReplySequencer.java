@@ -0,0 +1,71 @@
+package Fuzzcode.Server.utilities;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Keeps one session's replies in request order while its requests run concurrently.
+// Every request takes a ticket in arrival order and replies through it: the oldest open
+// ticket writes straight through, younger ones are held until everything before them
+// has completed. Streaming replies of the oldest request are therefore not delayed.
+public final class ReplySequencer<T> {
+
+    private final Consumer<T> downstream;
+    private final ArrayDeque<Ticket> open = new ArrayDeque<>();
+
+    public ReplySequencer(Consumer<T> downstream) {
+        this.downstream = downstream;
+    }
+
+    public final class Ticket implements Consumer<T> {
+        private List<T> held;
+        private boolean done;
+
+        @Override
+        public void accept(T reply) {
+            synchronized (ReplySequencer.this) {
+                if (open.peekFirst() == this) {
+                    downstream.accept(reply);
+                } else {
+                    if (held == null) held = new ArrayList<>();
+                    held.add(reply);
+                }
+            }
+        }
+
+        // Call exactly once, after the request sent its last reply.
+        public void complete() {
+            synchronized (ReplySequencer.this) {
+                done = true;
+                release();
+            }
+        }
+    }
+
+    public synchronized Ticket next() {
+        Ticket t = new Ticket();
+        open.addLast(t);
+        return t;
+    }
+
+    public synchronized boolean isIdle() {
+        return open.isEmpty();
+    }
+
+    public synchronized int pending() {
+        return open.size();
+    }
+
+    private void release() {
+        while (!open.isEmpty()) {
+            Ticket head = open.peekFirst();
+            if (head.held != null) {
+                for (T reply : head.held) downstream.accept(reply);
+                head.held = null;
+            }
+            if (!head.done) return;
+            open.pollFirst();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package Fuzzcode.Server.websocketServer;
+
+import Fuzzcode.Server.transportLayer.OutboundMessage;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Outbound queue of one WebSocket session. At most one frame is in flight; the next one
+// goes out when the transport confirms the previous, so a slow client backs up here and
+// not in the socket buffers of the server.
+//  - Replies to the session's own requests are delivered in order and never dropped; a
+//    session that lets more than maxReplies of them pile up is closed instead.
+//  - Broadcast events are bounded and coalesced: a queued update to an entity is replaced
+//    in place by a newer one. When the events overflow anyway the client is too slow; the
+//    queued events are dropped and a single Session.Resync tells it to re-list.
+//  - A session whose in-flight frame has not completed for stallMillis is closed on the
+//    next offer, reply or event.
+final class SessionOutbox {
+
+    interface Transport {
+        // Must call done exactly once, whether the send succeeded or not.
+        void send(OutboundMessage message, Runnable done);
+        void close(int code, String reason);
+    }
+
+    record Stats(int queuedReplies, int queuedEvents, long sent, long coalesced, long resyncs, boolean stalled) {}
+
+    private final Transport transport;
+    private final int maxReplies;
+    private final int maxEvents;
+    private final long stallMillis;
+
+    private final ArrayDeque<OutboundMessage> replies = new ArrayDeque<>();
+    private final LinkedHashMap<Object, OutboundMessage> events = new LinkedHashMap<>();
+    private boolean inFlight;
+    private boolean pumping;
+    private long inFlightSinceMillis;
+    private boolean closed;
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong resyncs = new AtomicLong();
+
+    SessionOutbox(Transport transport, int maxReplies, int maxEvents, long stallMillis) {
+        this.transport = transport;
+        this.maxReplies = Math.max(1, maxReplies);
+        this.maxEvents = Math.max(1, maxEvents);
+        this.stallMillis = stallMillis;
+    }
+
+    void offerReply(OutboundMessage message) {
+        boolean overflow;
+        synchronized (this) {
+            if (closed) return;
+            overflow = isStalled() || replies.size() >= maxReplies;
+            if (overflow) abandon();
+            else replies.add(message);
+        }
+        if (overflow) {
+            transport.close(1013, "slow_consumer");
+            return;
+        }
+        pump();
+    }
+
+    void offerEvent(OutboundMessage message) {
+        boolean stalled;
+        synchronized (this) {
+            if (closed) return;
+            stalled = isStalled();
+            if (!stalled) {
+                Object key = message.entityKey() != null ? message.entityKey() : new Object();
+                // Replacing keeps the original slot, so the entity is not pushed to the back.
+                if (events.put(key, message) != null) {
+                    coalesced.incrementAndGet();
+                } else if (events.size() > maxEvents) {
+                    int dropped = events.size();
+                    events.clear();
+                    resyncs.incrementAndGet();
+                    replies.add(OutboundMessage.of("Session.Resync", g -> {
+                        g.writeStringProperty("reason", "slow_consumer");
+                        g.writeNumberProperty("dropped", dropped);
+                    }));
+                }
+            } else {
+                abandon();
+            }
+        }
+        if (stalled) {
+            transport.close(1013, "slow_consumer");
+            return;
+        }
+        pump();
+    }
+
+    synchronized void close() {
+        abandon();
+    }
+
+    synchronized Stats stats() {
+        return new Stats(replies.size(), events.size(), sent.get(), coalesced.get(), resyncs.get(), isStalled());
+    }
+
+    // Callers hold the lock.
+    private boolean isStalled() {
+        return inFlight && System.currentTimeMillis() - inFlightSinceMillis > stallMillis;
+    }
+
+    private void abandon() {
+        closed = true;
+        replies.clear();
+        events.clear();
+    }
+
+    /* --------------- delivery --------------- */
+
+    // Loops instead of recursing, so a transport that completes inline cannot blow the stack.
+    private void pump() {
+        synchronized (this) {
+            if (pumping) return;
+            pumping = true;
+        }
+        try {
+            while (true) {
+                OutboundMessage next;
+                synchronized (this) {
+                    if (inFlight || closed || (next = poll()) == null) {
+                        pumping = false;
+                        return;
+                    }
+                    inFlight = true;
+                    inFlightSinceMillis = System.currentTimeMillis();
+                }
+                transport.send(next, this::onSent);
+            }
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                pumping = false;
+                inFlight = false;
+            }
+            throw e;
+        }
+    }
+
+    private void onSent() {
+        sent.incrementAndGet();
+        synchronized (this) {
+            inFlight = false;
+        }
+        pump();
+    }
+
+    // Replies first: they answer something the user is waiting for.
+    private OutboundMessage poll() {
+        OutboundMessage m = replies.poll();
+        if (m != null) return m;
+        Iterator<OutboundMessage> it = events.values().iterator();
+        if (!it.hasNext()) return null;
+        m = it.next();
+        it.remove();
+        return m;
+    }
+}
@@ -1,82 +1,201 @@
 package Fuzzcode.Server.websocketServer;
 
 import Fuzzcode.Server.security.AuthContext;
-import Fuzzcode.Server.security.JwtAuthenticator;
+import Fuzzcode.Server.transportLayer.ChangeFeed;
+import Fuzzcode.Server.transportLayer.OutboundMessage;
+import Fuzzcode.Server.transportLayer.WireFormat;
+import Fuzzcode.Server.utilities.Backpressure;
+import Fuzzcode.Server.utilities.CommandRegistry;
 import Fuzzcode.Server.utilities.LoggerHandler;
 import Fuzzcode.Server.utilities.MessageHandler;
+import Fuzzcode.Server.utilities.OverflowPolicy;
 import org.eclipse.jetty.websocket.api.Callback;
 import org.eclipse.jetty.websocket.api.Session;
 import org.eclipse.jetty.websocket.api.annotations.*;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
 
+import java.nio.ByteBuffer;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
-@WebSocket
-public class WebSocketServer {
+// Demand is explicit: the next frame is only read once the message queue has room,
+// so a flooding client is held back by TCP instead of filling the heap. Messages are
+// only ever offered, never waited for, so Jetty's threads are not held by a full queue.
+@WebSocket(autoDemand = false)
+public class WebSocketServer implements ChangeFeed.Subscriber {
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final String FORMAT_COMMAND = "Session.Format";
+    private static final String SUBSCRIBE_COMMAND = "Session.Subscribe";
+    private static final String UNSUBSCRIBE_COMMAND = "Session.Unsubscribe";
+    private static final int MAX_QUEUED_REPLIES = 4_096;
+    private static final int MAX_QUEUED_EVENTS = 1_024;
+    private static final long STALL_MILLIS = 30_000;
     private static final Set<Session> ACTIVE =
             ConcurrentHashMap.newKeySet();
     public static int activeCount() { return ACTIVE.size(); }
     private volatile AuthContext auth;
     private volatile Session session;
+    private volatile WireFormat format = WireFormat.JSON;
+    // Set by Session.Format; takes effect once its ack has gone out, so frames queued
+    // before the ack keep the old format and everything after it uses the new one.
+    private record FormatSwitch(OutboundMessage ack, WireFormat format) {}
+    private volatile FormatSwitch pendingFormat;
+    private final Set<String> topics = ConcurrentHashMap.newKeySet();
+    private final Set<Integer> orderIds = ConcurrentHashMap.newKeySet();
+    private final SessionOutbox outbox = new SessionOutbox(new SessionOutbox.Transport() {
+        @Override
+        public void send(OutboundMessage message, Runnable done) {
+            transmit(message, done);
+        }
+        @Override
+        public void close(int code, String reason) {
+            LoggerHandler.log(LoggerHandler.Level.WARNING, "Closing slow WS consumer " + describe());
+            closeSafe(code, reason);
+        }
+    }, MAX_QUEUED_REPLIES, MAX_QUEUED_EVENTS, STALL_MILLIS);
+    // One sink per connection; MessageHandler uses its identity to keep keyless replies ordered.
+    private final Consumer<OutboundMessage> replySink = outbox::offerReply;
+    // The token was verified by the upgrade handler; nothing to build per connection.
     public WebSocketServer(AuthContext auth) {
-        this(auth, JwtAuthenticator.buildDefault());
-    }
-    public WebSocketServer(AuthContext auth, JwtAuthenticator authenticator) {
         this.auth = auth;
     }
     @OnWebSocketOpen
     public void onOpen(Session s) {
         this.session = s;
         ACTIVE.add(s);
-        sendSafe("hello " + auth.subject());
+        outbox.offerReply(OutboundMessage.plain("hello " + auth.subject()));
+        s.demand();
     }
 
     @OnWebSocketMessage
     public void onText(Session s, String msg) {
-        System.out.println("[TEST] got WS text: " + msg);
-        if (msg == null) return;
+        boolean taken = true;
+        try {
+            taken = handleText(msg);
+        } finally {
+            if (taken) demandWhenDrained(s);
+            else resubmitWhenDrained(s, msg);
+        }
+    }
+
+    // False when the message is held back for resubmitWhenDrained.
+    private boolean handleText(String msg) {
+        LoggerHandler.log(LoggerHandler.Level.DEBUG, () -> "WS text: " + msg);
+        if (msg == null) return true;
         if (auth == null) {
-            sendSafe("ERROR:not_authenticated");
-            return;
+            outbox.offerReply(OutboundMessage.plain("ERROR:not_authenticated"));
+            return true;
         }
 
-        if (msg.startsWith("Item.List")
-                || msg.startsWith("Item.Create")
-                || msg.startsWith("Item.Update")
-                || msg.startsWith("Item.Delete")
-                || msg.startsWith("ItemRead.Create")
-                || msg.startsWith("ItemRead.Update")
-                || msg.startsWith("ItemRead.Delete")
-                || msg.startsWith("ItemRead.List")
-                || msg.startsWith("Order.List")
-                || msg.startsWith("Order.Create")
-                || msg.startsWith("Order.Update")
-                || msg.startsWith("Order.Delete")
-                || msg.startsWith("OrderItem.ListByOrder")
-                || msg.startsWith("OrderItem.PositionCounts")
-                || msg.startsWith("ItemRead.ListByItem")
-                || msg.startsWith("OrderItem.List")
-                || msg.startsWith("OrderItem.Create")
-                || msg.startsWith("OrderItem.Update")
-                || msg.startsWith("OrderItem.Delete")
-                || msg.startsWith("Person.List")
-                || msg.startsWith("Person.Create")
-                || msg.startsWith("Person.Update")
-                || msg.startsWith("Person.Delete")
-                || msg.startsWith("User.List")
-                || msg.startsWith("User.Create")
-                || msg.startsWith("User.Update")
-                || msg.startsWith("User.Delete")) {
-
-            MessageHandler
-                    .getInstance()
-                    .enqueueMessage(msg, outbound -> {
-                        sendSafe(outbound);
-                    });
+        if (msg.startsWith("Session.")) {
+            handleSessionCommand(msg);
+            return true;
+        }
 
+        MessageHandler handler = MessageHandler.getInstance();
+        if (handler.isKnownCommand(msg)) {
+            return submit(handler, msg);
+        }
+        outbox.offerReply(MessageHandler.errorMessage("unknown_command", CommandRegistry.commandOf(msg)));
+        return true;
+    }
+
+    // BLOCK keeps a message that did not fit and stops reading until it did; the other
+    // policies answer ERROR:busy in the message's place among this session's replies.
+    private boolean submit(MessageHandler handler, String msg) {
+        if (handler.overflowPolicy() == OverflowPolicy.BLOCK) return handler.offerMessage(msg, replySink);
+        handler.offerMessage(msg, replySink, OutboundMessage.plain("ERROR:busy"));
+        return true;
+    }
+
+    // No demand while a message is held, so nothing from this client can overtake it.
+    private void resubmitWhenDrained(Session s, String msg) {
+        MessageHandler.getInstance().pressure().whenDrained(() -> {
+            if (!s.isOpen()) return;
+            if (submit(MessageHandler.getInstance(), msg)) demandWhenDrained(s);
+            else resubmitWhenDrained(s, msg);
+        });
+    }
+
+    // === SESSION CONTROL ===
+    // Handled here rather than by MessageHandler: they change this connection, not the data.
+    private void handleSessionCommand(String msg) {
+        String command = CommandRegistry.commandOf(msg);
+        JsonNode payload = parsePayload(msg);
+        switch (command) {
+            case FORMAT_COMMAND -> negotiateFormat(payload);
+            case SUBSCRIBE_COMMAND -> updateSubscriptions(payload, true);
+            case UNSUBSCRIBE_COMMAND -> updateSubscriptions(payload, false);
+            default -> outbox.offerReply(MessageHandler.errorMessage("unknown_command", command));
+        }
+    }
+
+    // In:  Session.Format { "type": "Session.Format", "payload": { "format": "cbor" | "json" } }
+    // Out: Session.Format { "format": "CBOR" } as a JSON text frame; every later reply uses the new format.
+    private void negotiateFormat(JsonNode payload) {
+        WireFormat requested = WireFormat.parse(payload.path("format").asText(null));
+        if (requested == null) {
+            outbox.offerReply(MessageHandler.errorMessage("unsupported_format", FORMAT_COMMAND));
             return;
         }
-        sendSafe("echo@" + auth.subject() + ": " + msg);
+        OutboundMessage ack = OutboundMessage.textFrame(FORMAT_COMMAND, g -> g.writeStringProperty("format", requested.name()));
+        pendingFormat = new FormatSwitch(ack, requested);
+        outbox.offerReply(ack);
+    }
+
+    // In:  Session.Subscribe / Session.Unsubscribe
+    //      { "payload": { "topics": ["Item", "Order", ...], "orderIds": [12, ...] } }
+    // Out: Session.Subscriptions { "topics": [...], "orderIds": [...] }
+    // A topic is the entity part of the event type ("Item" gets Item.Upsert / Item.Deleted);
+    // an orderId gets every Order and OrderItem change of that order.
+    private void updateSubscriptions(JsonNode payload, boolean add) {
+        for (JsonNode t : payload.path("topics")) {
+            String topic = t.asText("");
+            if (topic.isBlank()) continue;
+            if (add) topics.add(topic); else topics.remove(topic);
+        }
+        for (JsonNode o : payload.path("orderIds")) {
+            int id = o.asInt(0);
+            if (id <= 0) continue;
+            if (add) orderIds.add(id); else orderIds.remove(id);
+        }
+        if (topics.isEmpty() && orderIds.isEmpty()) {
+            ChangeFeed.getInstance().unsubscribe(this);
+        } else {
+            ChangeFeed.getInstance().subscribe(this);
+        }
+        outbox.offerReply(OutboundMessage.of("Session.Subscriptions", g -> {
+            g.writeName("topics");
+            g.writeStartArray();
+            for (String t : topics) g.writeString(t);
+            g.writeEndArray();
+            g.writeName("orderIds");
+            g.writeStartArray();
+            for (int id : orderIds) g.writeNumber(id);
+            g.writeEndArray();
+        }));
+    }
+
+    @Override
+    public void onEvent(OutboundMessage event, Object origin) {
+        if (origin == replySink || session == null) return;
+        if (topics.contains(event.topic())
+                || (event.orderId() > 0 && orderIds.contains(event.orderId()))) {
+            outbox.offerEvent(event);
+        }
+    }
+
+    private static JsonNode parsePayload(String msg) {
+        int brace = msg.indexOf('{');
+        if (brace < 0) return JSON.missingNode();
+        try {
+            return JSON.readTree(msg.substring(brace)).path("payload");
+        } catch (RuntimeException e) {
+            LoggerHandler.log(LoggerHandler.Level.WARNING, "Bad session command payload: " + msg);
+            return JSON.missingNode();
+        }
     }
     @OnWebSocketClose
     public void onClose(int statusCode, String reason) {
@@ -85,6 +204,8 @@ public class WebSocketServer {
             ACTIVE.remove(s);
             this.session = null;
         }
+        ChangeFeed.getInstance().unsubscribe(this);
+        outbox.close();
          LoggerHandler.log(LoggerHandler.Level.ERROR, "WS close [" + statusCode + "] " + reason);
     }
     @OnWebSocketError
@@ -93,14 +214,45 @@ public class WebSocketServer {
         if (s != null) {
             ACTIVE.remove(s);
         }
+        ChangeFeed.getInstance().unsubscribe(this);
+        outbox.close();
          LoggerHandler.log(LoggerHandler.Level.ERROR, cause.toString());
     }
     // === HELPERS =========================================================
 
-    private void sendSafe(String text) {
+    private static void demandWhenDrained(Session s) {
+        Backpressure pressure = MessageHandler.getInstance().pressure();
+        if (!pressure.isBusy()) {
+            s.demand();
+            return;
+        }
+        pressure.whenDrained(() -> {
+            if (s.isOpen()) s.demand();
+        });
+    }
+
+    private void transmit(OutboundMessage message, Runnable done) {
         Session s = this.session;
-        if (s == null || !s.isOpen()) return;
-        s.sendText(text, Callback.NOOP);
+        if (s == null || !s.isOpen()) {
+            done.run();
+            return;
+        }
+        Callback callback = Callback.from(done, failure -> done.run());
+        WireFormat f = this.format;
+        FormatSwitch pending = this.pendingFormat;
+        if (pending != null && pending.ack() == message) {
+            this.format = pending.format();
+            this.pendingFormat = null;
+        }
+        if (f.isBinary() && !message.isTextOnly()) {
+            s.sendBinary(ByteBuffer.wrap(message.toBytes(f)), callback);
+        } else {
+            s.sendText(message.toText(), callback);
+        }
+    }
+    private String describe() {
+        AuthContext a = this.auth;
+        return a != null ? a.subject() : "<anonymous>";
     }
     private void closeSafe(int code, String reason) {
         Session s = this.session;
@@ -1,7 +1,10 @@
 package Fuzzcode.Server.websocketServer;
 import Fuzzcode.Server.apiEndpoint.LoginServlet;
+import Fuzzcode.Server.apiEndpoint.LogoutServlet;
 import Fuzzcode.Server.security.AuthContext;
+import Fuzzcode.Server.security.JwksKeyStore;
 import Fuzzcode.Server.security.JwtAuthenticator;
+import Fuzzcode.Server.utilities.LoggerHandler;
 import org.eclipse.jetty.ee10.servlet.ServletContextHandler;
 import org.eclipse.jetty.ee10.servlet.ServletHolder;
 import org.eclipse.jetty.ee10.websocket.server.config.JettyWebSocketServletContainerInitializer;
@@ -17,12 +20,16 @@ public class WsServerHandler {
             "e3f7a9c4b8d1f0a2c6e9d4b3f7a8c1e2d3f4b5a6c7d8e9f0a1b2c3d4e5f6a7b8".getBytes(StandardCharsets.UTF_8) //
     );
     public void bootWebsocket() {
+        jwtAuth.trustIssuers(JwtAuthenticator.configuredIssuers(), JwksKeyStore.Config.defaults());
         server = new Server(8080);
         ServletContextHandler context = new ServletContextHandler();
         context.setContextPath("/");
         server.setHandler(context);
 
-        context.addServlet(new ServletHolder(new LoginServlet(jwtAuth)), "/api/login");
+        ServletHolder login = new ServletHolder(new LoginServlet(jwtAuth));
+        login.setAsyncSupported(true);
+        context.addServlet(login, "/api/login");
+        context.addServlet(new ServletHolder(new LogoutServlet(jwtAuth)), "/api/logout");
 
         JettyWebSocketServletContainerInitializer.configure(context, (sc, container) -> container.addMapping("/ws", (req, res) -> {
             String auth = req.getHeader("Authorization");
@@ -56,6 +63,10 @@ public class WsServerHandler {
         try { server.join(); } catch (InterruptedException e) { throw new RuntimeException(e); }
     }
     public void stopWebsocket() {
+        jwtAuth.close();
+        var tokens = jwtAuth.tokenCacheStats();
+        LoggerHandler.log(String.format("[WS] Token cache: %d hits, %d misses (%.1f%% hit rate), %d revoked",
+                tokens.hits(), tokens.misses(), tokens.hitRate() * 100, tokens.revocations()));
         if (server != null && server.isRunning()) {
             try {
                 server.stop();
@@ -233,6 +233,245 @@ public class DBEngineTest {
 
             LoggerHandler.log("=== END DB-004 foreignKeyIntegrity ===");
         }
+        @Test
+        void pool_reusesConnections_andReportsStats() throws Exception {
+            LoggerHandler.log("=== START DB-005 pool_reusesConnections ===");
+            for (int i = 0; i < 50; i++) {
+                try (var c = ConnectionManager.getConnection(); var s = c.createStatement()) {
+                    s.execute("SELECT 1");
+                }
+            }
+            var stats = ConnectionManager.poolStats();
+            assertNotNull(stats);
+            assertEquals(0, stats.active(), "All connections should be back in the pool");
+            assertTrue(stats.total() <= stats.maxSize());
+            assertTrue(stats.borrows() >= 50);
+            assertEquals(stats.borrows(), java.util.Arrays.stream(stats.latencyHistogram()).sum());
+
+            var c = ConnectionManager.getConnection();
+            c.close();
+            assertTrue(c.isClosed(), "Returned handle must report closed");
+            assertThrows(SQLException.class, c::createStatement, "Returned handle must not be usable");
+            LoggerHandler.log(stats.toString());
+            LoggerHandler.log("=== END DB-005 pool_reusesConnections ===");
+        }
+        @Test
+        void pool_borrowTimesOut_whenExhausted() throws Exception {
+            LoggerHandler.log("=== START DB-006 pool_borrowTimesOut ===");
+            ConnectionManager.resetForTests();
+            ConnectionManager.setPoolConfig(new Fuzzcode.Server.db.ConnectionPool.Config(
+                    0, 1,
+                    java.time.Duration.ofMinutes(1),
+                    java.time.Duration.ofMillis(200),
+                    java.time.Duration.ofSeconds(30),
+                    java.time.Duration.ofSeconds(10)));
+            ConnectionManager.init("jdbc:h2:mem:pool_test;MODE=MySQL;DB_CLOSE_DELAY=-1", "admin", "root");
+
+            try (var held = ConnectionManager.getConnection()) {
+                assertThrows(SQLException.class, ConnectionManager::getConnection);
+                assertEquals(1, ConnectionManager.poolStats().timeouts());
+            }
+            try (var again = ConnectionManager.getConnection()) {
+                assertFalse(again.isClosed(), "Connection should be available once returned");
+            }
+            ConnectionManager.resetForTests();
+            LoggerHandler.log("=== END DB-006 pool_borrowTimesOut ===");
+        }
+        @Test
+        void pool_refillsMinIdle_andResetsIsolation() throws Exception {
+            LoggerHandler.log("=== START DB-006b pool_refillsMinIdle ===");
+            ConnectionManager.resetForTests();
+            ConnectionManager.setPoolConfig(new Fuzzcode.Server.db.ConnectionPool.Config(
+                    2, 4,
+                    java.time.Duration.ofMinutes(1),
+                    java.time.Duration.ofSeconds(1),
+                    java.time.Duration.ofSeconds(30),
+                    java.time.Duration.ofMillis(50)));
+            ConnectionManager.init("jdbc:h2:mem:pool_refill_test;MODE=MySQL;DB_CLOSE_DELAY=-1", "admin", "root");
+            try {
+                // Both idle connections die underneath the pool, as after a database restart
+                var a = ConnectionManager.getConnection();
+                var b = ConnectionManager.getConnection();
+                a.unwrap(Connection.class).close();
+                b.unwrap(Connection.class).close();
+                a.close();
+                b.close();
+
+                long deadline = System.currentTimeMillis() + 2_000;
+                while (ConnectionManager.poolStats().idle() < 2 && System.currentTimeMillis() < deadline) Thread.sleep(20);
+                assertEquals(2, ConnectionManager.poolStats().idle(), "housekeeping refills to minIdle");
+
+                int isolation;
+                try (var c = ConnectionManager.getConnection()) {
+                    isolation = c.getTransactionIsolation();
+                    c.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+                }
+                try (var c = ConnectionManager.getConnection()) {
+                    assertEquals(isolation, c.getTransactionIsolation(), "isolation is reset on return");
+                }
+            } finally {
+                ConnectionManager.resetForTests();
+            }
+            LoggerHandler.log("=== END DB-006b pool_refillsMinIdle ===");
+        }
+        @Test
+        void schemaMigrations_areVersionedAndChecksummed() throws Exception {
+            LoggerHandler.log("=== START DB-007 schemaMigrations ===");
+            ConnectionManager.init("jdbc:h2:mem:migrate_test;MODE=MySQL;DB_CLOSE_DELAY=-1", "admin", "root");
+            DatabaseInitializer.initSchema();
+            DatabaseInitializer.initSchema(); // second run must be a no-op
+
+            try (var c = ConnectionManager.getConnection()) {
+                var history = Fuzzcode.Server.db.SchemaMigrator.history(c);
+                assertEquals(8, history.size(), "Every migration should be recorded exactly once");
+                assertEquals(1, history.get(0).version());
+
+                try (var rs = c.getMetaData().getIndexInfo(null, null, "ITEMREAD", false, false)) {
+                    boolean found = false;
+                    while (rs.next()) found |= "IDX_ITEMREAD_TAG_TIME".equalsIgnoreCase(rs.getString("INDEX_NAME"));
+                    assertTrue(found, "Hot-path index on ItemRead(TagID, ReadTime) should exist");
+                }
+
+                var edited = java.util.List.of(Fuzzcode.Server.db.Migration.of(1, "baseline schema",
+                        Fuzzcode.Server.db.Migration.sql("CREATE TABLE IF NOT EXISTS Other (ID INT)")));
+                assertThrows(IllegalStateException.class,
+                        () -> Fuzzcode.Server.db.SchemaMigrator.migrate(c, edited),
+                        "An edited, already applied migration must be refused");
+            }
+            LoggerHandler.log("=== END DB-007 schemaMigrations ===");
+        }
+        @Test
+        void mssqlDialect_runsAgainstH2InSqlServerMode() throws Exception {
+            LoggerHandler.log("=== START DB-008 mssqlDialect ===");
+            ConnectionManager.resetForTests();
+            try {
+                ConnectionManager.init("jdbc:h2:mem:mssql_test;MODE=MSSQLServer;DB_CLOSE_DELAY=-1", "admin", "root");
+                assertEquals(Fuzzcode.Server.db.SqlDialect.MSSQL, ConnectionManager.dialect());
+                assertEquals(" WITH (ONLINE = ON)", ConnectionManager.dialect().createIndexSuffix());
+                // H2 has no online index builds: the indexes are still created, without the option
+                DatabaseInitializer.initSchema();
+
+                var customer = personService.createPerson("MS-Customer", PersonRole.CUSTOMER);
+                var logger   = personService.createPerson("MS-Logger", PersonRole.USER);
+                var order    = orderService.createOrder(java.time.LocalDate.now(), customer.personId(), logger.personId());
+                var item     = itemService.createItem("TAG-MSSQL-1", Position.HOME, false);
+                assertNotNull(order);
+                assertNotNull(item);
+
+                // attach, detach and attach again: the second attach revives via the upsert
+                assertNotNull(orderItemService.assignItemToOrder(item.itemId(), order.orderId()));
+                assertTrue(orderItemService.detachItemFromOrder(item.itemId(), order.orderId()));
+                assertNotNull(orderItemService.assignItemToOrder(item.itemId(), order.orderId()));
+                assertTrue(orderItemService.isAttached(order.orderId(), item.itemId()));
+                assertEquals(1, orderItemService.getItemsInOrder(order.orderId(), true).size());
+
+                var readDao = new Fuzzcode.Server.dao.ItemReadDao();
+                var now = java.time.Instant.now().truncatedTo(java.time.temporal.ChronoUnit.SECONDS);
+                int[] ids = readDao.recordItemReads(java.util.List.of(
+                        new Fuzzcode.Server.model.ItemRead(0, "TAG-MSSQL-1", now.minusSeconds(20), false),
+                        new Fuzzcode.Server.model.ItemRead(0, "TAG-MSSQL-1", now.minusSeconds(10), false),
+                        new Fuzzcode.Server.model.ItemRead(0, "TAG-MSSQL-1", now, false)));
+                assertTrue(ids[0] > 0 && ids[0] < ids[1] && ids[1] < ids[2], "Keys in input order");
+
+                var latest = readDao.listReadsForTag("TAG-MSSQL-1", 2);
+                assertEquals(2, latest.size(), "OFFSET/FETCH limit applies");
+                assertEquals(now, latest.get(0).readTime());
+                assertTrue(readDao.softDeleteItemRead(ids[2]));
+                assertEquals(2, readDao.listActiveReadsPage(null, 0, 10).size());
+
+                var changedReads = readDao.listChangedSince(1, 10);
+                assertNotNull(changedReads, "Revision queries run on the MSSQL dialect");
+                assertTrue(changedReads.rows().stream().anyMatch(r -> r.readId() == ids[2] && r.deleted()));
+            } finally {
+                ConnectionManager.resetForTests();
+            }
+            LoggerHandler.log("=== END DB-008 mssqlDialect ===");
+        }
+        @Test
+        void deltaSync_returnsChangesAndTombstonesSinceRevision() {
+            LoggerHandler.log("=== START DB-009 deltaSync ===");
+            // Asking from revision 1 (not 0) includes tombstones, so this is the real high-water mark.
+            long base = itemService.listChangedSince(1, 100_000).revision();
+
+            var kept    = itemService.createItem("TAG-DELTA-1", Position.HOME, false);
+            var removed = itemService.createItem("TAG-DELTA-2", Position.HOME, false);
+            var created = itemService.listChangedSince(base, 100);
+            assertEquals(java.util.List.of(kept.itemId(), removed.itemId()),
+                    created.rows().stream().map(Fuzzcode.Server.model.Item::itemId).toList(), "Changes come in revision order");
+            assertFalse(created.more());
+            assertTrue(created.revision() > base);
+
+            long seen = created.revision();
+            var nothing = itemService.listChangedSince(seen, 100);
+            assertTrue(nothing.rows().isEmpty(), "No writes, no changes");
+            assertEquals(seen, nothing.revision());
+
+            assertTrue(itemService.moveItem(kept.itemId(), Position.DELIVERED));
+            assertTrue(itemService.deleteItem(removed.itemId()));
+            var delta = itemService.listChangedSince(seen, 100);
+            assertEquals(2, delta.rows().size());
+            assertEquals(Position.DELIVERED, delta.rows().get(0).position());
+            assertTrue(delta.rows().get(1).deleted(), "A soft delete comes back as a tombstone");
+            assertTrue(itemService.listChangedSince(0, 100_000).rows().stream()
+                    .noneMatch(i -> i.itemId() == removed.itemId()), "A fresh client gets live rows only");
+
+            var firstPage = itemService.listChangedSince(base, 1);
+            assertEquals(1, firstPage.rows().size());
+            assertTrue(firstPage.more(), "A full page asks for another");
+
+            // Reviving a detached relation goes through the upsert and must still bump its revision
+            var customer = personService.createPerson("Delta-Customer", PersonRole.CUSTOMER);
+            var order = orderService.createOrder(java.time.LocalDate.now(), customer.personId(), customer.personId());
+            assertNotNull(orderItemService.assignItemToOrder(kept.itemId(), order.orderId()));
+            assertTrue(orderItemService.detachItemFromOrder(kept.itemId(), order.orderId()));
+            long detached = orderItemService.listChangedSince(1, 100_000).revision();
+            assertNotNull(orderItemService.assignItemToOrder(kept.itemId(), order.orderId()));
+            var revived = orderItemService.listChangedSince(detached, 100);
+            assertEquals(1, revived.rows().size());
+            assertFalse(revived.rows().get(0).deleted());
+            LoggerHandler.log("=== END DB-009 deltaSync ===");
+        }
+        @Test
+        void deltaSync_doesNotSkipWritesThatCommitLate() throws Exception {
+            LoggerHandler.log("=== START DB-010 deltaSyncInterleavedWriters ===");
+            var slow = itemService.createItem("TAG-FENCE-SLOW", Position.HOME, false);
+            var fast = itemService.createItem("TAG-FENCE-FAST", Position.HOME, false);
+            long base = itemService.listChangedSince(1, 100_000).revision();
+
+            // Writer 1 takes its revision first but commits last
+            long slowRevision;
+            try (Fuzzcode.Server.dao.RevisionFence.Writer fence = Fuzzcode.Server.dao.RevisionFence.write();
+                 java.sql.Connection c = ConnectionManager.getConnection()) {
+                c.setAutoCommit(false);
+                try (var ps = c.prepareStatement("UPDATE Items SET IsOverdue = TRUE, Revision = "
+                        + ConnectionManager.dialect().nextRevision() + " WHERE ItemID = ?")) {
+                    ps.setInt(1, slow.itemId());
+                    assertEquals(1, ps.executeUpdate());
+                }
+                try (var ps = c.prepareStatement("SELECT Revision FROM Items WHERE ItemID = ?")) {
+                    ps.setInt(1, slow.itemId());
+                    try (var rs = ps.executeQuery()) {
+                        assertTrue(rs.next());
+                        slowRevision = rs.getLong(1);
+                    }
+                }
+
+                // Writer 2 takes a later revision and commits while writer 1 is still open
+                assertTrue(itemService.moveItem(fast.itemId(), Position.DELIVERED));
+                var mid = itemService.listChangedSince(base, 100);
+                assertEquals(java.util.List.of(fast.itemId()),
+                        mid.rows().stream().map(Fuzzcode.Server.model.Item::itemId).toList());
+                assertTrue(mid.revision() < slowRevision, "Must not move past a write that is still open");
+                base = mid.revision();
+                c.commit();
+            }
+
+            var late = itemService.listChangedSince(base, 100);
+            assertTrue(late.rows().stream().anyMatch(i -> i.itemId() == slow.itemId() && Boolean.TRUE.equals(i.isOverdue())),
+                    "The late commit is picked up by the next delta");
+            assertTrue(late.revision() >= slowRevision);
+            LoggerHandler.log("=== END DB-010 deltaSyncInterleavedWriters ===");
+        }
 
     }
     @Nested
@@ -599,6 +838,30 @@ public class DBEngineTest {
                     "Moving a soft-deleted item must fail");
             LoggerHandler.log("=== END ITM-005 testMoveItemInvalidPosition ===");
         }
+        @Test
+        public void testTagIndexCache_hitsAndInvalidates() {
+            LoggerHandler.log("=== START ITM-006 testTagIndexCache ===");
+            var dao = new Fuzzcode.Server.dao.ItemDao();
+            var cache = Fuzzcode.Server.cache.TagIndexCache.getInstance();
+
+            assertNull(dao.readActiveItemByTagCached("TAG-CACHE"), "Unknown tag should not resolve");
+            var item = itemService.createItem("TAG-CACHE", Position.HOME, false);
+            assertNotNull(item);
+            assertNotNull(dao.readActiveItemByTagCached("TAG-CACHE"), "createItem must invalidate the negative entry");
+
+            long hitsBefore = cache.stats().hits();
+            assertEquals(item.itemId(), dao.readActiveItemByTagCached("TAG-CACHE").itemId());
+            assertEquals(hitsBefore + 1, cache.stats().hits(), "Second lookup should be a cache hit");
+
+            assertTrue(itemService.changeTag("TAG-CACHE-2", item.itemId()));
+            assertNull(dao.readActiveItemByTagCached("TAG-CACHE"), "Old tag must be invalidated by updateTag");
+            assertNotNull(dao.readActiveItemByTagCached("TAG-CACHE-2"));
+
+            assertTrue(itemService.deleteItem(item.itemId()));
+            assertNull(dao.readActiveItemByTagCached("TAG-CACHE-2"), "softDelete must invalidate the tag");
+            LoggerHandler.log(cache.stats().toString());
+            LoggerHandler.log("=== END ITM-006 testTagIndexCache ===");
+        }
     }
     @Nested
     class ORIT {
@@ -689,6 +952,110 @@ public class DBEngineTest {
             LoggerHandler.log("=== END testReadAllItemsInOrder ===");
         }
         @Test
+        void testReadItemsInOrderWithItems() {
+            LoggerHandler.log("=== START testReadItemsInOrderWithItems ===");
+            orderItemService.assignItemToOrder(itemOne.itemId(), orderOne.orderId());
+            orderItemService.assignItemToOrder(itemTwo.itemId(), orderOne.orderId());
+            assertTrue(orderItemService.detachItemFromOrder(itemTwo.itemId(), orderOne.orderId()));
+            assertTrue(itemService.deleteItem(itemOne.itemId()));
+
+            List<OrderItemDetail> active = orderItemService.getItemsInOrderWithItems(orderOne.orderId(), false);
+            assertEquals(1, active.size(), "Detached relation should be filtered out");
+            assertEquals(itemOne.itemId(), active.get(0).relation().itemId());
+            assertNotNull(active.get(0).item(), "Item should be embedded even when soft-deleted");
+            assertEquals("TAG-001", active.get(0).item().tagId());
+            assertTrue(active.get(0).item().deleted());
+
+            List<OrderItemDetail> all = orderItemService.getItemsInOrderWithItems(orderOne.orderId(), true);
+            assertEquals(2, all.size());
+            assertEquals(Position.DELIVERED, all.get(1).item().position());
+
+            var byId = itemService.getItemsByIds(List.of(itemTwo.itemId(), itemOne.itemId(), 99_999), false);
+            assertEquals(List.of(itemTwo.itemId()), List.copyOf(byId.keySet()), "Deleted and unknown ids are absent");
+            var withDeleted = itemService.getItemsByIds(List.of(itemTwo.itemId(), itemOne.itemId()), true);
+            assertEquals(List.of(itemTwo.itemId(), itemOne.itemId()), List.copyOf(withDeleted.keySet()),
+                    "Results keep the requested order");
+            assertTrue(itemService.getItemsByIds(List.of(), false).isEmpty());
+            LoggerHandler.log("=== END testReadItemsInOrderWithItems ===");
+        }
+        @Test
+        void testPositionCountersFollowWritesAndReconcile() throws SQLException {
+            LoggerHandler.log("=== START testPositionCountersFollowWritesAndReconcile ===");
+            orderItemService.assignItemToOrder(itemOne.itemId(), orderOne.orderId());
+            // Built here, from the database
+            assertEquals(1, itemService.countPositionsForOrder(orderOne.orderId()).get(Position.HOME));
+
+            // ...and maintained from here on
+            orderItemService.assignItemToOrder(itemTwo.itemId(), orderOne.orderId());
+            itemService.moveItem(itemOne.itemId(), Position.IN_TRANSIT_OUT);
+            var counts = itemService.countPositionsForOrder(orderOne.orderId());
+            assertEquals(0, counts.get(Position.HOME));
+            assertEquals(1, counts.get(Position.IN_TRANSIT_OUT));
+            assertEquals(1, counts.get(Position.DELIVERED));
+
+            assertTrue(orderItemService.moveItemToAnotherOrder(itemTwo.itemId(), orderOne.orderId(), orderTwo.orderId()));
+            assertEquals(0, itemService.countPositionsForOrder(orderOne.orderId()).get(Position.DELIVERED));
+            assertEquals(1, itemService.countPositionsForOrder(orderTwo.orderId()).get(Position.DELIVERED));
+
+            itemService.deleteItem(itemOne.itemId());
+            assertEquals(0, itemService.countPositionsForOrder(orderOne.orderId()).get(Position.IN_TRANSIT_OUT));
+            assertEquals(new Fuzzcode.Server.dao.ItemDao().countPositionsByOrder(orderTwo.orderId()),
+                    itemService.countPositionsForOrder(orderTwo.orderId()), "Counters should match a recount");
+
+            // A write behind the DAOs' back is found and repaired by reconciliation
+            try (Connection c = ConnectionManager.getConnection();
+                 PreparedStatement ps = c.prepareStatement("UPDATE Items SET Position = 'HOME' WHERE ItemID = ?")) {
+                ps.setInt(1, itemTwo.itemId());
+                ps.executeUpdate();
+            }
+            var dao = new Fuzzcode.Server.dao.ItemDao();
+            var r = dao.reconcilePositionCounts();
+            assertTrue(r.drifted());
+            assertEquals(1, r.driftedOrders());
+            assertEquals(1, itemService.countPositionsForOrder(orderTwo.orderId()).get(Position.HOME));
+            assertFalse(dao.reconcilePositionCounts().drifted());
+            LoggerHandler.log("=== END testPositionCountersFollowWritesAndReconcile ===");
+        }
+        @Test
+        void testOldReadsMoveToMonthlyPartitionsWithRollups() {
+            LoggerHandler.log("=== START testOldReadsMoveToMonthlyPartitionsWithRollups ===");
+            var reads = new Fuzzcode.Server.dao.ItemReadDao();
+            var archive = new Fuzzcode.Server.dao.ItemReadArchiveDao();
+            var retention = ItemReadRetention.getInstance();
+            java.time.Instant now = java.time.Instant.parse("2025-06-15T12:00:00Z");
+            java.time.Instant from = java.time.Instant.parse("2025-01-01T00:00:00Z");
+            reads.recordItemRead("TAG-001", java.time.Instant.parse("2025-01-10T08:15:00Z"));
+            reads.recordItemRead("TAG-001", java.time.Instant.parse("2025-01-10T08:45:00Z"));
+            reads.recordItemRead("TAG-001", java.time.Instant.parse("2025-03-02T10:00:00Z"));
+            reads.recordItemRead("TAG-001", java.time.Instant.parse("2025-06-14T09:00:00Z")); // still hot
+
+            try {
+                retention.configure(new ItemReadRetention.Policy(java.time.Duration.ofDays(31), 24, java.time.Duration.ofDays(3650)));
+                var report = retention.runOnce(now);
+                assertEquals(3, report.archivedReads());
+                assertEquals(2, report.partitionsFilled());
+                assertEquals(List.of("ItemRead_202501", "ItemRead_202503"),
+                        archive.listPartitions().stream().map(p -> p.table()).toList());
+                assertEquals(1, reads.listReadsForTagInRange("TAG-001", from, now, false).size(), "Only the hot read is left");
+                assertEquals(4, reads.listReadsForTagInRange("TAG-001", from, now).size(), "Range queries reach into the archive");
+
+                var hourly = new ItemReadService().listReadCounts("TAG-001", from, now, false);
+                assertEquals(3, hourly.size());
+                assertEquals(java.time.Instant.parse("2025-01-10T08:00:00Z"), hourly.get(0).bucketStart());
+                assertEquals(2, hourly.get(0).readCount());
+
+                // Past the archive horizon the partition goes, the rollups stay
+                retention.configure(new ItemReadRetention.Policy(java.time.Duration.ofDays(31), 3, java.time.Duration.ofDays(3650)));
+                assertEquals(1, retention.runOnce(now).partitionsDropped());
+                assertEquals(2, reads.listReadsForTagInRange("TAG-001", from, now).size());
+                var daily = new ItemReadService().listReadCounts("TAG-001", from, now, true);
+                assertEquals(List.of(2, 1, 1), daily.stream().map(r -> r.readCount()).toList());
+            } finally {
+                retention.configure(ItemReadRetention.Policy.defaults());
+            }
+            LoggerHandler.log("=== END testOldReadsMoveToMonthlyPartitionsWithRollups ===");
+        }
+        @Test
         void testDeleteItemInOrder() {
             LoggerHandler.log("=== START testDeleteItemInOrder ===");
             var item = itemService.createItem("TAG-SOFTDELETE", Position.HOME, false);
@@ -950,6 +1317,134 @@ public class DBEngineTest {
             assertEquals(tag, reads.get(0).tagId());
         }
         @Test
+        void recordScanAsync_batchesReads_andReturnsIds() throws Exception {
+            int tags = 50;
+            List<CompletableFuture<ItemRead>> pending = new java.util.ArrayList<>();
+            for (int i = 0; i < tags; i++) {
+                itemService.createItem("BATCH-TAG-" + i, Position.HOME, false);
+            }
+            for (int i = 0; i < tags; i++) {
+                pending.add(itemReadService.recordScanAsync("BATCH-TAG-" + i, "2025-11-11T10:15:30.123Z"));
+            }
+
+            java.util.Set<Integer> ids = new java.util.HashSet<>();
+            for (var f : pending) {
+                ItemRead read = f.get(5, TimeUnit.SECONDS);
+                assertNotNull(read, "Every distinct tag should be recorded");
+                assertTrue(read.readId() > 0, "ReadID should come back through the future");
+                ids.add(read.readId());
+            }
+            assertEquals(tags, ids.size(), "ReadIDs must be unique per read");
+
+            var stats = ItemReadBatchWriter.getInstance().stats();
+            assertTrue(stats.batches() < stats.written(), "Reads should have been grouped into batches: " + stats);
+        }
+        @Test
+        void batchWriter_restartsAfterItsThreadWasInterrupted() throws Exception {
+            itemService.createItem("RESTART-TAG", Position.HOME, false);
+            var writer = ItemReadBatchWriter.getInstance();
+            assertNotNull(writer.submit("RESTART-TAG", java.time.Instant.parse("2025-11-13T08:00:00Z")).get(5, TimeUnit.SECONDS));
+
+            Thread old = Thread.getAllStackTraces().keySet().stream()
+                    .filter(t -> t.getName().equals("itemread-batch-writer")).findFirst().orElseThrow();
+            old.interrupt();
+            old.join(5_000);
+            assertFalse(old.isAlive());
+
+            Integer id = writer.submit("RESTART-TAG", java.time.Instant.parse("2025-11-13T08:00:10Z")).get(5, TimeUnit.SECONDS);
+            assertNotNull(id, "The next read starts a new writer instead of waiting forever");
+        }
+        @Test
+        void readerScan_resolvesTagOnTheWriterThread() throws Exception {
+            String tag = "WRITER-CHECKED-TAG";
+            itemService.createItem(tag, Position.HOME, false);
+            java.time.Instant at = java.time.Instant.parse("2025-11-12T08:00:00Z");
+
+            var known = itemReadService.recordScanAsync("FXR-CHECK", 1, tag, at);
+            var unknown = itemReadService.recordScanAsync("FXR-CHECK", 1, "NO-SUCH-TAG-" + System.nanoTime(), at);
+
+            ItemRead read = known.get(5, TimeUnit.SECONDS);
+            assertNotNull(read);
+            assertTrue(read.readId() > 0);
+            assertNull(unknown.get(5, TimeUnit.SECONDS), "Unknown tags are not stored");
+        }
+        @Test
+        void readerPublish_isIngestedStraightFromTheBroker() throws Exception {
+            String tag = "E2801160600002084E6F1A2B";
+            String readerId = "FXR90INGEST";
+            itemService.createItem(tag, Position.HOME, false);
+            List<String> published = new CopyOnWriteArrayList<>();
+            Fuzzcode.Server.transportLayer.ChangeFeed.Subscriber watcher = (event, origin) -> {
+                if (event.toText().contains(tag)) published.add(event.toText());
+            };
+            var feed = Fuzzcode.Server.transportLayer.ChangeFeed.getInstance();
+            feed.subscribe(watcher);
+
+            var broker = new Fuzzcode.Server.broker.BrokerHandler();
+            broker.startBroker(0);
+            try (MqttClient reader = new MqttClient("tcp://127.0.0.1:" + broker.port(), readerId, null)) {
+                reader.connect();
+                // Second read is the same tag on the same antenna 77 ms later: a duplicate.
+                String events = """
+                    [{"timestamp":"2025-11-11T10:15:30.123+0000","type":"SIMPLE",
+                      "data":{"eventNum":1,"format":"epc","idHex":"%s","antenna":2,"peakRssi":-48,"reads":1}},
+                     {"timestamp":"2025-11-11T10:15:30.200+0000","type":"SIMPLE",
+                      "data":{"eventNum":2,"format":"epc","idHex":"%s","antenna":2,"peakRssi":-50,"reads":1}}]
+                    """.formatted(tag, tag);
+                reader.publish(readerId + "/data/read", events.getBytes(StandardCharsets.UTF_8), 1, false);
+                reader.disconnect();
+            } finally {
+                broker.stopBroker();
+            }
+
+            var ingest = Fuzzcode.Server.broker.ReaderIngest.getInstance();
+            long deadline = System.currentTimeMillis() + 5_000;
+            Fuzzcode.Server.broker.ReaderIngest.ReaderStats stats = ingest.stats().get(readerId);
+            while ((stats == null || stats.stored() + stats.dropped() < 2) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+                stats = ingest.stats().get(readerId);
+            }
+            assertNotNull(stats, "Reader should have stats");
+            assertEquals(1, stats.messages());
+            assertEquals(2, stats.tagReads());
+            assertEquals(1, stats.stored());
+            assertEquals(1, stats.dropped());
+
+            var reads = itemReadService.getRecentReads(tag, 5);
+            assertEquals(1, reads.size());
+            assertEquals(java.time.Instant.parse("2025-11-11T10:15:30.123Z"), reads.get(0).readTime());
+
+            // The stored read reaches clients like one created over the WebSocket.
+            while (published.isEmpty() && System.currentTimeMillis() < deadline) Thread.sleep(20);
+            feed.unsubscribe(watcher);
+            assertEquals(1, published.size(), "published: " + published);
+            assertTrue(published.get(0).startsWith("ItemRead.Upsert"), published.get(0));
+        }
+        @Test
+        void dedupWindow_suppressesInterleavedRepeats() {
+            var dedup = new Fuzzcode.Server.cache.ReadDedupWindow(java.time.Duration.ofSeconds(2));
+            dedup.setWindow("portal-2", java.time.Duration.ofMillis(100));
+            java.time.Instant t0 = java.time.Instant.parse("2025-11-11T10:15:30Z");
+
+            // A, B, A, B within the window: only the first A and B pass
+            assertFalse(dedup.isDuplicate("portal-1", 1, "TAG-A", t0));
+            assertFalse(dedup.isDuplicate("portal-1", 1, "TAG-B", t0.plusMillis(10)));
+            assertTrue(dedup.isDuplicate("portal-1", 1, "TAG-A", t0.plusMillis(500)));
+            assertTrue(dedup.isDuplicate("portal-1", 1, "TAG-B", t0.plusMillis(600)));
+
+            // Same tag on another antenna is tracked separately
+            assertFalse(dedup.isDuplicate("portal-1", 2, "TAG-A", t0.plusMillis(700)));
+
+            // Window elapsed
+            assertFalse(dedup.isDuplicate("portal-1", 1, "TAG-A", t0.plusSeconds(3)));
+
+            // Per-reader window override
+            assertFalse(dedup.isDuplicate("portal-2", 1, "TAG-A", t0));
+            assertFalse(dedup.isDuplicate("portal-2", 1, "TAG-A", t0.plusMillis(200)));
+
+            assertEquals(2, dedup.stats().duplicates());
+        }
+        @Test
         void retained_message_delivered_to_late_subscriber() throws Exception {
             String topic = "retained/demo";
             String payload = "I am retained";
@@ -1267,6 +1762,33 @@ public class DBEngineTest {
             assertTrue(out.contains("====================="));
             assertFalse(out.contains("hello"), "previous test’s logs must not leak");
         }
+        @Test
+        void debugMessagesAreNotBuiltWhenFiltered() {
+            java.util.concurrent.atomic.AtomicInteger built = new java.util.concurrent.atomic.AtomicInteger();
+            LoggerHandler.log(LoggerHandler.Level.DEBUG, () -> "noisy " + built.incrementAndGet());
+            assertEquals(0, built.get(), "DEBUG is off by default");
+
+            LoggerHandler.setLevel(LoggerHandler.Level.DEBUG);
+            try {
+                LoggerHandler.log(LoggerHandler.Level.DEBUG, () -> "noisy " + built.incrementAndGet());
+                assertEquals(1, built.get());
+            } finally {
+                LoggerHandler.setLevel(LoggerHandler.Level.INFO);
+            }
+        }
+        @Test
+        void reportRetainsOnlyTheNewestEntries() {
+            for (int i = 0; i < 20_000; i++) LoggerHandler.log("bulk-" + i);
+
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            System.setOut(new PrintStream(baos));
+            LoggerHandler.outputReport();
+
+            String out = baos.toString();
+            assertTrue(out.contains("] bulk-19999"), "newest entry must be kept");
+            assertFalse(out.contains("] bulk-0" + System.lineSeparator()), "oldest entries must have been evicted");
+            assertTrue(out.split(System.lineSeparator()).length < 20_000, "history must be bounded");
+        }
     }
     @Nested
     class SEC {
@@ -1302,6 +1824,89 @@ public class DBEngineTest {
             }
         }
         @Test
+        void jwtVerify_cachesVerifiedTokensUntilRevoked() throws Exception {
+            byte[] secret = "0123456789abcdef0123456789abcdef".getBytes(StandardCharsets.UTF_8);
+            var jwt = JwtAuthenticator.buildHmacForTests("iss-cache", "aud-cache", secret);
+            String token = jwt.issueToken("alice", "ws:connect", 600);
+
+            assertEquals("alice", jwt.verify(token).subject());
+            assertEquals("alice", jwt.verify(token).subject());
+            var stats = jwt.tokenCacheStats();
+            assertEquals(1, stats.misses());
+            assertEquals(1, stats.hits());
+
+            assertTrue(jwt.revoke(token));
+            assertThrows(com.nimbusds.jwt.proc.BadJWTException.class, () -> jwt.verify(token));
+            assertFalse(jwt.revoke("not.a.token"));
+        }
+        @Test
+        void login_checksPasswordsOffThreadAndRateLimits() throws Exception {
+            ConnectionManager.init("jdbc:h2:mem:sec_login;MODE=MySQL;DB_CLOSE_DELAY=0", "admin", "root");
+            DatabaseInitializer.initSchema();
+            new UserService().register("bob", "hunter2", UserRole.USER);
+
+            var config = new LoginService.Config(1, 4, 3, 100, java.time.Duration.ofMinutes(1));
+            try (var logins = new LoginService(config)) {
+                var ok = logins.authenticate("bob", "hunter2", "10.0.0.1").get(10, TimeUnit.SECONDS);
+                assertEquals(LoginService.Outcome.OK, ok.outcome());
+                assertEquals("bob", ok.user().username());
+                assertEquals(LoginService.Outcome.INVALID,
+                        logins.authenticate("bob", "wrong", "10.0.0.1").get(10, TimeUnit.SECONDS).outcome());
+                assertEquals(LoginService.Outcome.INVALID,
+                        logins.authenticate("nobody", "x", "10.0.0.1").get(10, TimeUnit.SECONDS).outcome());
+                assertEquals(LoginService.Outcome.INVALID,
+                        logins.authenticate("bob", "wrong", "10.0.0.1").get(10, TimeUnit.SECONDS).outcome());
+                // Fourth attempt for bob from 10.0.0.1 within the window
+                assertEquals(LoginService.Outcome.RATE_LIMITED,
+                        logins.authenticate("bob", "hunter2", "10.0.0.1").get(10, TimeUnit.SECONDS).outcome());
+                // Failures from one address do not lock bob out elsewhere
+                assertEquals(LoginService.Outcome.OK,
+                        logins.authenticate("bob", "hunter2", "10.0.0.2").get(10, TimeUnit.SECONDS).outcome());
+            }
+        }
+        @Test
+        void jwks_rotatedKeysArePickedUpInTheBackground() throws Exception {
+            var k1 = new com.nimbusds.jose.jwk.gen.RSAKeyGenerator(2048).keyID("k1").generate();
+            var k2 = new com.nimbusds.jose.jwk.gen.RSAKeyGenerator(2048).keyID("k2").generate();
+            var published = new java.util.concurrent.atomic.AtomicReference<>(
+                    new com.nimbusds.jose.jwk.JWKSet(k1.toPublicJWK()));
+            var keys = Fuzzcode.Server.security.JwksKeyStore.of("in-process", published::get,
+                    new Fuzzcode.Server.security.JwksKeyStore.Config(
+                            java.time.Duration.ofMinutes(5), java.time.Duration.ZERO, java.time.Duration.ofHours(1)));
+            assertTrue(keys.refreshNow());
+
+            var jwt = JwtAuthenticator.buildWithKeyStore("https://issuer.test/", "ws-service", keys);
+            try {
+                assertEquals("alice", jwt.verify(rs256(k1, "alice")).subject());
+
+                // The issuer rotates: the first token with the new key is refused from the
+                // keys we have, and a refresh is started in the background.
+                published.set(new com.nimbusds.jose.jwk.JWKSet(List.of(k1.toPublicJWK(), k2.toPublicJWK())));
+                String rotated = rs256(k2, "bob");
+                assertThrows(Exception.class, () -> jwt.verify(rotated));
+
+                long deadline = System.currentTimeMillis() + 5_000;
+                while (keys.stats().keys() < 2 && System.currentTimeMillis() < deadline) Thread.sleep(10);
+                assertEquals("bob", jwt.verify(rotated).subject());
+                assertEquals(1, keys.stats().unknownKeyLookups());
+            } finally {
+                jwt.close();
+            }
+        }
+        private String rs256(com.nimbusds.jose.jwk.RSAKey key, String subject) throws Exception {
+            var claims = new com.nimbusds.jwt.JWTClaimsSet.Builder()
+                    .issuer("https://issuer.test/")
+                    .audience("ws-service")
+                    .subject(subject)
+                    .expirationTime(new java.util.Date(System.currentTimeMillis() + 600_000))
+                    .build();
+            var jwt = new com.nimbusds.jwt.SignedJWT(
+                    new com.nimbusds.jose.JWSHeader.Builder(com.nimbusds.jose.JWSAlgorithm.RS256).keyID(key.getKeyID()).build(),
+                    claims);
+            jwt.sign(new com.nimbusds.jose.crypto.RSASSASigner(key));
+            return jwt.serialize();
+        }
+        @Test
         void rbac_adminOnly_softDeleteOrder() {
             ConnectionManager.init("jdbc:h2:mem:sec2;MODE=MySQL;DB_CLOSE_DELAY=0", "admin", "root");
             DatabaseInitializer.initSchema();
@@ -1419,6 +2024,40 @@ public class DBEngineTest {
             return probe;
         }
 
+        // Keeps every text frame, for tests that expect pushed events after the first reply.
+        public static class WsCollectingProbe extends Session.Listener.Abstract
+                implements Session.Listener.AutoDemanding {
+            final BlockingQueue<String> frames = new LinkedBlockingQueue<>();
+            volatile Session session;
+
+            @Override
+            public void onWebSocketOpen(Session session) {
+                super.onWebSocketOpen(session);
+                this.session = session;
+            }
+
+            @Override
+            public void onWebSocketText(String message) {
+                frames.add(message);
+            }
+
+            String awaitFrame(String type, long timeoutMillis) throws InterruptedException {
+                long deadline = System.currentTimeMillis() + timeoutMillis;
+                while (true) {
+                    long left = deadline - System.currentTimeMillis();
+                    String f = left > 0 ? frames.poll(left, TimeUnit.MILLISECONDS) : null;
+                    if (f == null) throw new AssertionError("Timed out waiting for " + type);
+                    if (f.startsWith(type + "\n")) return f;
+                }
+            }
+        }
+        private WsCollectingProbe openCollectingSession() throws Exception {
+            WsCollectingProbe probe = new WsCollectingProbe();
+            client.connect(probe, wsUri(FakeJWTToken())).get(5, TimeUnit.SECONDS);
+            assertEquals("hello alice", probe.frames.poll(2, TimeUnit.SECONDS), "Expected greeting on open");
+            return probe;
+        }
+
         private URI wsUri(String token) {
             String q = (token == null || token.isBlank()) ? "" :
                     "?token=" + URLEncoder.encode(token, StandardCharsets.UTF_8);
@@ -1513,6 +2152,41 @@ public class DBEngineTest {
             assertFalse(payload.path("isOverdue").asBoolean());
             assertTrue(payload.has("itemId"), "Upsert payload should contain itemId");
         }
+        @Test
+        void itemUpsert_isPushedToSubscribedSessions() throws Exception {
+            WsCollectingProbe watcher = openCollectingSession();
+            watcher.session.sendText(
+                    "Session.Subscribe\n{\"type\":\"Session.Subscribe\",\"payload\":{\"topics\":[\"Item\"]}}",
+                    Callback.NOOP);
+            String ack = watcher.awaitFrame("Session.Subscriptions", 2_000);
+            assertTrue(ack.contains("\"Item\""), "Subscription not acknowledged: " + ack);
+
+            WsRoundtripProbe writer = openAuthedSession();
+            writer.session().sendText(
+                    "Item.Create\n{\"type\":\"Item.Create\",\"payload\":{\"tagId\":\"BCAST-1\",\"position\":\"HOME\"}}",
+                    Callback.NOOP);
+            String reply = writer.awaitBusinessReply(2_000);
+            assertTrue(reply.startsWith("Item.Upsert"), "Expected Item.Upsert but got: " + reply);
+
+            String pushed = watcher.awaitFrame("Item.Upsert", 2_000);
+            JsonNode payload = JSON.readTree(pushed.substring(pushed.indexOf('{'))).path("payload");
+            assertEquals("BCAST-1", payload.path("tagId").asText());
+        }
+        @Test
+        void unknownCommand_returnsStructuredError() throws Exception {
+            WsRoundtripProbe probe = openAuthedSession();
+
+            // Shares a prefix with Item.List but is not a registered command
+            probe.session().sendText("Item.ListEverything\n{\"type\":\"Item.ListEverything\"}", Callback.NOOP);
+
+            String reply = probe.awaitBusinessReply(2_000);
+            assertTrue(reply.startsWith("Error\n"), "Expected Error frame but got: " + reply);
+
+            JsonNode root = JSON.readTree(reply.substring(reply.indexOf('{')));
+            assertEquals("Error", root.path("type").asText());
+            assertEquals("unknown_command", root.path("payload").path("code").asText());
+            assertEquals("Item.ListEverything", root.path("payload").path("command").asText());
+        }
 
         // ORDER
         private Order seedOrder() {
@@ -1740,6 +2414,47 @@ public class DBEngineTest {
             assertEquals(1, counts.path("DELIVERED").asInt());
         }
         @Test
+        void orderItem_positionCounts_forManyOrders() throws Exception {
+            OrderService orderService = new OrderService();
+            ItemService itemService   = new ItemService();
+            OrderItemService orderItemService = new OrderItemService();
+
+            Order a = orderService.createOrder(java.time.LocalDate.now(), null, null);
+            Order b = orderService.createOrder(java.time.LocalDate.now(), null, null);
+            Order empty = orderService.createOrder(java.time.LocalDate.now(), null, null);
+
+            Item a1 = itemService.createItem("MPOS-A1", Position.HOME, false);
+            Item a2 = itemService.createItem("MPOS-A2", Position.IN_TRANSIT_OUT, false);
+            Item b1 = itemService.createItem("MPOS-B1", Position.DELIVERED, false);
+            Item b2 = itemService.createItem("MPOS-B2", Position.DELIVERED, false);
+            orderItemService.assignItemToOrder(a1.itemId(), a.orderId());
+            orderItemService.assignItemToOrder(a2.itemId(), a.orderId());
+            orderItemService.assignItemToOrder(b1.itemId(), b.orderId());
+            orderItemService.assignItemToOrder(b2.itemId(), b.orderId());
+            itemService.deleteItem(b2.itemId()); // deleted items are not counted
+
+            var byOrder = itemService.countPositionsForOrders(List.of(a.orderId(), b.orderId(), empty.orderId()));
+            assertEquals(1, byOrder.get(a.orderId()).get(Position.HOME));
+            assertEquals(1, byOrder.get(a.orderId()).get(Position.IN_TRANSIT_OUT));
+            assertEquals(1, byOrder.get(b.orderId()).get(Position.DELIVERED));
+            assertEquals(0, byOrder.get(empty.orderId()).get(Position.HOME), "Empty orders are zero-filled");
+
+            var active = itemService.countPositionsForActiveOrders();
+            assertEquals(byOrder.get(a.orderId()), active.get(a.orderId()));
+            assertTrue(active.containsKey(empty.orderId()));
+
+            String wire = """
+        OrderItem.PositionCounts
+        {"type":"OrderItem.PositionCounts","payload":{"orderIds":[%d,%d]}}
+        """.formatted(a.orderId(), b.orderId());
+            String reply = new Fuzzcode.Server.transportLayer.OrderItemMessageHandler().positionCounts(wire).toText();
+            assertTrue(reply.startsWith("OrderItem.PositionCountsByOrder\n"), reply);
+            JsonNode orders = JSON.readTree(reply.substring(reply.indexOf('{'))).path("payload").path("orders");
+            assertEquals(2, orders.size());
+            assertEquals(b.orderId(), orders.get(1).path("orderId").asInt());
+            assertEquals(1, orders.get(1).path("counts").path("DELIVERED").asInt());
+        }
+        @Test
         void itemReadCreate_roundtrip() throws Exception {
             ItemService itemService = new ItemService();
             Item item = itemService.createItem("READ-TAG-1", Position.HOME, false);
@@ -1772,6 +2487,131 @@ public class DBEngineTest {
             assertEquals("2025-02-02T09:32:10Z", payload.path("readTime").asText());
         }
         @Test
+        void itemReadList_streamsKeysetPages() throws Exception {
+            ItemService itemService = new ItemService();
+            ItemReadService itemReadService = new ItemReadService();
+            Item item = itemService.createItem("READ-TAG-PAGED", Position.HOME, false);
+            for (int i = 0; i < 5; i++) {
+                itemReadService.recordScan(item.tagId(), "2025-03-0" + (i + 1) + "T08:00:00Z");
+            }
+
+            List<String> frames = new java.util.ArrayList<>();
+            new Fuzzcode.Server.transportLayer.ItemReadMessageHandler().readAll(
+                    "ItemRead.List\n{\"type\":\"ItemRead.List\",\"payload\":{\"pageSize\":2}}", m -> frames.add(m.toText()));
+
+            assertTrue(frames.size() >= 4, "Expected at least 3 chunks plus end marker, got " + frames.size());
+            String end = frames.get(frames.size() - 1);
+            assertTrue(end.startsWith("ItemRead.SnapshotEnd\n"), "Last frame must be the end marker: " + end);
+            JsonNode endPayload = JSON.readTree(end.substring(end.indexOf('{'))).path("payload");
+            assertTrue(endPayload.path("next").isNull(), "Full stream should not leave a cursor");
+
+            java.util.Set<Integer> seen = new java.util.HashSet<>();
+            java.time.Instant previous = java.time.Instant.MAX;
+            for (int i = 0; i < frames.size() - 1; i++) {
+                String f = frames.get(i);
+                assertTrue(f.startsWith("ItemRead.SnapshotChunk\n"), "Unexpected frame: " + f);
+                JsonNode payload = JSON.readTree(f.substring(f.indexOf('{'))).path("payload");
+                assertEquals(i, payload.path("seq").asInt());
+                assertTrue(payload.path("reads").size() <= 2);
+                for (JsonNode r : payload.path("reads")) {
+                    assertTrue(seen.add(r.path("readId").asInt()), "Read repeated across pages");
+                    java.time.Instant t = java.time.Instant.parse(r.path("readTime").asText());
+                    assertFalse(t.isAfter(previous), "Pages must be newest first");
+                    previous = t;
+                }
+            }
+            assertEquals(seen.size(), endPayload.path("count").asInt());
+            assertEquals(frames.size() - 1, endPayload.path("chunks").asInt());
+        }
+        @Test
+        void itemReadList_continuesFromCursorAndEndsOnFailure() throws Exception {
+            ItemService itemService = new ItemService();
+            ItemReadService itemReadService = new ItemReadService();
+            Item item = itemService.createItem("READ-TAG-RESUME", Position.HOME, false);
+            for (int i = 0; i < 3; i++) {
+                itemReadService.recordScan(item.tagId(), "2025-04-0" + (i + 1) + "T08:00:00Z");
+            }
+            var handler = new Fuzzcode.Server.transportLayer.ItemReadMessageHandler();
+
+            List<String> first = new java.util.ArrayList<>();
+            handler.readAll("ItemRead.List\n{\"type\":\"ItemRead.List\",\"payload\":{\"pageSize\":2,\"maxPages\":1}}",
+                    m -> first.add(m.toText()));
+            assertEquals(2, first.size(), "One chunk plus end marker");
+            String end = first.get(1);
+            JsonNode next = JSON.readTree(end.substring(end.indexOf('{'))).path("payload").path("next");
+            assertFalse(next.isNull(), "A capped stream must leave a cursor");
+
+            List<String> rest = new java.util.ArrayList<>();
+            handler.readAll("ItemRead.List\n{\"type\":\"ItemRead.List\",\"payload\":{\"pageSize\":2,\"maxPages\":1,\"after\":"
+                    + next + "}}", m -> rest.add(m.toText()));
+            JsonNode firstReads = JSON.readTree(first.get(0).substring(first.get(0).indexOf('{'))).path("payload").path("reads");
+            JsonNode restReads = JSON.readTree(rest.get(0).substring(rest.get(0).indexOf('{'))).path("payload").path("reads");
+            for (JsonNode a : firstReads) {
+                for (JsonNode b : restReads) assertNotEquals(a.path("readId").asInt(), b.path("readId").asInt());
+            }
+
+            // The socket side failing mid-stream still closes the stream with an error marker
+            List<String> failed = new java.util.ArrayList<>();
+            handler.readAll("ItemRead.List\n{\"type\":\"ItemRead.List\",\"payload\":{\"pageSize\":2}}", m -> {
+                if (m.type().equals("ItemRead.SnapshotChunk") && !failed.isEmpty()) throw new IllegalStateException("boom");
+                failed.add(m.toText());
+            });
+            String last = failed.get(failed.size() - 1);
+            assertTrue(last.startsWith("ItemRead.SnapshotEnd\n"), "Expected end marker after failure: " + last);
+            JsonNode failedEnd = JSON.readTree(last.substring(last.indexOf('{'))).path("payload");
+            assertEquals("failed", failedEnd.path("error").asText());
+            assertEquals(1, failedEnd.path("chunks").asInt());
+        }
+        @Test
+        void wireFormats_compactAndCborAreSmallerThanPretty() throws Exception {
+            List<Item> items = new java.util.ArrayList<>();
+            for (int i = 0; i < 2_000; i++) {
+                items.add(new Item(i + 1, "WIRE-TAG-" + i, Position.values()[i % Position.values().length], i % 3 == 0, false));
+            }
+            Fuzzcode.Server.transportLayer.OutboundMessage msg =
+                    Fuzzcode.Server.transportLayer.OutboundMessage.of("Item.Snapshot", g -> {
+                        g.writeName("orders");
+                        g.writeStartArray();
+                        for (Item it : items) Fuzzcode.Server.transportLayer.WireWriter.writeItem(g, it);
+                        g.writeEndArray();
+                    });
+
+            // The old path: build a tree, then pretty print it.
+            long t0 = System.nanoTime();
+            tools.jackson.databind.node.ObjectNode root = JSON.createObjectNode();
+            root.put("type", "Item.Snapshot");
+            tools.jackson.databind.node.ArrayNode arr = root.putObject("payload").putArray("orders");
+            for (Item it : items) {
+                tools.jackson.databind.node.ObjectNode n = arr.addObject();
+                n.put("itemId", it.itemId());
+                n.put("tagId", it.tagId());
+                n.put("position", it.position().name());
+                n.put("isOverdue", it.isOverdue() != null && it.isOverdue());
+            }
+            String pretty = "Item.Snapshot\n" + JSON.writerWithDefaultPrettyPrinter().writeValueAsString(root);
+            long t1 = System.nanoTime();
+            String compact = msg.toText();
+            long t2 = System.nanoTime();
+            byte[] cbor = msg.toBytes(Fuzzcode.Server.transportLayer.WireFormat.CBOR);
+            long t3 = System.nanoTime();
+
+            int prettyBytes = pretty.getBytes(StandardCharsets.UTF_8).length;
+            int compactBytes = compact.getBytes(StandardCharsets.UTF_8).length;
+            LoggerHandler.log("Wire sizes (2000 items): pretty=" + prettyBytes + "B/" + (t1 - t0) / 1_000 + "us"
+                    + " compact=" + compactBytes + "B/" + (t2 - t1) / 1_000 + "us"
+                    + " cbor=" + cbor.length + "B/" + (t3 - t2) / 1_000 + "us");
+
+            assertTrue(compactBytes < prettyBytes, "Compact JSON should be smaller than pretty");
+            assertTrue(cbor.length < compactBytes, "CBOR should be smaller than compact JSON");
+
+            // Same document, whatever the encoding.
+            JsonNode fromPretty = JSON.readTree(pretty.substring(pretty.indexOf('{')));
+            JsonNode fromCompact = JSON.readTree(compact.substring(compact.indexOf('{')));
+            JsonNode fromCbor = new tools.jackson.dataformat.cbor.CBORMapper().readTree(cbor);
+            assertEquals(fromPretty, fromCompact);
+            assertEquals(fromCompact, fromCbor);
+        }
+        @Test
         void itemRead_listByItem_roundtrip() throws Exception {
             ItemService itemService       = new ItemService();
             ItemReadService itemReadService = new ItemReadService();
@@ -1860,7 +2700,281 @@ public class DBEngineTest {
             // parse & assert...
         }
 
+        @Test
+        void replySequencer_keepsRequestOrderPerSession() {
+            List<String> out = new java.util.ArrayList<>();
+            var seq = new Fuzzcode.Server.utilities.ReplySequencer<String>(out::add);
+            var first = seq.next();
+            var second = seq.next();
+            var third = seq.next();
+
+            // Later requests finishing first are held back...
+            third.accept("c");
+            third.complete();
+            second.accept("b1");
+            assertTrue(out.isEmpty());
+            // ...while the oldest one streams straight through
+            first.accept("a");
+            assertEquals(List.of("a"), out);
+
+            second.accept("b2");
+            first.complete();
+            assertEquals(List.of("a", "b1", "b2"), out);
+            second.complete();
+            assertEquals(List.of("a", "b1", "b2", "c"), out);
+            assertTrue(seq.isIdle());
+        }
+
+        @Test
+        void virtualThreads_keepReplyOrderAndDoNotEchoToRequester() throws Exception {
+            // Own instance: the shared one is already running partitioned.
+            var ctor = Fuzzcode.Server.utilities.MessageHandler.class.getDeclaredConstructor();
+            ctor.setAccessible(true);
+            var handler = ctor.newInstance();
+            handler.configureExecution(Fuzzcode.Server.utilities.MessageHandler.ExecutionMode.VIRTUAL_THREADS, 4);
+
+            List<String> replies = new CopyOnWriteArrayList<>();
+            java.util.function.Consumer<Fuzzcode.Server.transportLayer.OutboundMessage> sink = m -> replies.add(m.toText());
+            List<Object> foreign = new CopyOnWriteArrayList<>();
+            var own = new java.util.concurrent.atomic.AtomicInteger();
+            Fuzzcode.Server.transportLayer.ChangeFeed.Subscriber watcher = (event, origin) -> {
+                if (origin == sink) own.incrementAndGet(); else foreign.add(origin);
+            };
+            var feed = Fuzzcode.Server.transportLayer.ChangeFeed.getInstance();
+            feed.subscribe(watcher);
+            try {
+                int n = 20;
+                for (int i = 0; i < n; i++) {
+                    String tag = String.format("VT-%02d", i);
+                    assertTrue(handler.enqueueMessage("Item.Create\n{\"type\":\"Item.Create\",\"payload\":{\"tagId\":\""
+                            + tag + "\",\"position\":\"HOME\"}}", sink));
+                }
+                long deadline = System.currentTimeMillis() + 5_000;
+                while (replies.size() < n && System.currentTimeMillis() < deadline) Thread.sleep(10);
+                assertEquals(n, replies.size());
+
+                for (int i = 0; i < n; i++) {
+                    String reply = replies.get(i);
+                    JsonNode payload = JSON.readTree(reply.substring(reply.indexOf('{'))).path("payload");
+                    assertEquals(String.format("VT-%02d", i), payload.path("tagId").asText(), "reply " + i + " out of order");
+                }
+                assertEquals(n, own.get(), "every change is published with the requester as origin");
+                assertTrue(foreign.isEmpty(), "published with a foreign origin: " + foreign);
+            } finally {
+                feed.unsubscribe(watcher);
+            }
+        }
+
+        @Test
+        void partitioned_routesByCommandKeyAndKeepsSessionReplyOrder() throws Exception {
+            var ctor = Fuzzcode.Server.utilities.MessageHandler.class.getDeclaredConstructor();
+            ctor.setAccessible(true);
+            var handler = ctor.newInstance();
+            handler.configure(8, 1_000);
+
+            // An order and its items share a partition, whichever other ids the message carries
+            int order = handler.partitionOf("Order.Delete\n{\"type\":\"Order.Delete\",\"payload\":{\"orderId\":7}}");
+            assertTrue(order >= 0);
+            assertEquals(order, handler.partitionOf(
+                    "OrderItem.Create\n{\"type\":\"OrderItem.Create\",\"payload\":{\"itemId\":99,\"orderId\":7}}"));
+            assertEquals(order, handler.partitionOf(
+                    "OrderItem.Delete\n{\"type\":\"OrderItem.Delete\",\"payload\":{\"orderId\":7,\"itemId\":3}}"));
+            assertEquals(-1, handler.partitionOf("Item.List\n{\"type\":\"Item.List\",\"payload\":{}}"));
+
+            // Keyed commands go by key, keyless ones by session; either way replies keep request order
+            List<String> replies = new CopyOnWriteArrayList<>();
+            java.util.function.Consumer<Fuzzcode.Server.transportLayer.OutboundMessage> sink = m -> replies.add(m.toText());
+            java.util.Set<Integer> used = new java.util.HashSet<>();
+            int n = 10;
+            for (int i = 0; i < n; i++) {
+                String create = "Item.Create\n{\"type\":\"Item.Create\",\"payload\":{\"tagId\":\""
+                        + String.format("PO-%02d", i) + "\",\"position\":\"HOME\"}}";
+                used.add(handler.partitionOf(create));
+                assertTrue(handler.enqueueMessage(create, sink));
+                assertTrue(handler.enqueueMessage("Item.List\n{\"type\":\"Item.List\",\"payload\":{}}", sink));
+            }
+            assertTrue(used.size() > 1, "Creates should not all share a partition");
+
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (replies.size() < 2 * n && System.currentTimeMillis() < deadline) Thread.sleep(10);
+            assertEquals(2 * n, replies.size());
+            for (int i = 0; i < n; i++) {
+                String upsert = replies.get(2 * i);
+                assertTrue(upsert.startsWith("Item.Upsert\n"), "reply " + (2 * i) + ": " + upsert);
+                JsonNode payload = JSON.readTree(upsert.substring(upsert.indexOf('{'))).path("payload");
+                assertEquals(String.format("PO-%02d", i), payload.path("tagId").asText());
+                assertTrue(replies.get(2 * i + 1).startsWith("Item.Snapshot\n"), "reply " + (2 * i + 1));
+            }
+        }
+
+        @Test
+        void partitioned_appliesOneSessionsCommandsInSendOrder() throws Exception {
+            var ctor = Fuzzcode.Server.utilities.MessageHandler.class.getDeclaredConstructor();
+            ctor.setAccessible(true);
+            var handler = ctor.newInstance();
+            handler.configure(8, 1_000);
+
+            // Sent without waiting for the create, so the update and delete name the id it will get
+            int itemId = itemService.createItem("SEQ-PROBE", Position.HOME, false).itemId() + 1;
+            String create = "Item.Create\n{\"type\":\"Item.Create\",\"payload\":{\"tagId\":\"SEQ-ITEM\",\"position\":\"HOME\"}}";
+            String update = "Item.Update\n{\"type\":\"Item.Update\",\"payload\":{\"itemId\":" + itemId + ",\"position\":\"DELIVERED\"}}";
+            String delete = "Item.Delete\n{\"type\":\"Item.Delete\",\"payload\":{\"itemId\":" + itemId + "}}";
+            assertNotEquals(-1, handler.partitionOf(create));
+
+            List<String> replies = new CopyOnWriteArrayList<>();
+            java.util.function.Consumer<Fuzzcode.Server.transportLayer.OutboundMessage> sink = m -> replies.add(m.toText());
+            assertTrue(handler.enqueueMessage(create, sink));
+            assertTrue(handler.enqueueMessage(update, sink));
+            assertTrue(handler.enqueueMessage(delete, sink));
+
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (replies.size() < 3 && System.currentTimeMillis() < deadline) Thread.sleep(10);
+            assertEquals(3, replies.size(), "every command applied: " + replies);
+            assertTrue(replies.get(0).startsWith("Item.Upsert\n") && replies.get(0).contains("\"HOME\""), replies.get(0));
+            assertTrue(replies.get(1).startsWith("Item.Upsert\n") && replies.get(1).contains("\"DELIVERED\""), replies.get(1));
+            assertTrue(replies.get(2).startsWith("Item.Deleted\n"), replies.get(2));
+
+            Item stored = itemService.getItemById(itemId, true);
+            assertEquals("SEQ-ITEM", stored.tagId());
+            assertEquals(Position.DELIVERED, stored.position());
+            assertTrue(stored.deleted());
+        }
+
+        @Test
+        void rejection_isBusyPerPartitionAndKeepsReplyOrder() throws Exception {
+            var ctor = Fuzzcode.Server.utilities.MessageHandler.class.getDeclaredConstructor();
+            ctor.setAccessible(true);
+            var handler = ctor.newInstance();
+            handler.configure(4, 1);
+            handler.configureOverflow(Fuzzcode.Server.utilities.OverflowPolicy.REJECT);
+
+            String read = "ItemRead.ListByItem\n{\"type\":\"ItemRead.ListByItem\",\"payload\":{\"itemId\":1}}";
+            var entered = new CountDownLatch(1);
+            var release = new CountDownLatch(1);
+            // Session A holds the worker of itemId 1 in its reply
+            assertTrue(handler.offerMessage(read, m -> {
+                entered.countDown();
+                try { release.await(5, TimeUnit.SECONDS); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+            }));
+            assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+            List<String> replies = new CopyOnWriteArrayList<>();
+            java.util.function.Consumer<Fuzzcode.Server.transportLayer.OutboundMessage> sink = m -> replies.add(m.toText());
+            assertTrue(handler.offerMessage(read, sink));
+            assertTrue(handler.pressure().isBusy(), "one full partition is enough");
+            assertFalse(handler.offerMessage(read, sink, Fuzzcode.Server.transportLayer.OutboundMessage.plain("ERROR:busy")));
+            assertTrue(replies.isEmpty(), "the rejection waits for the reply before it");
+
+            release.countDown();
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (replies.size() < 2 && System.currentTimeMillis() < deadline) Thread.sleep(10);
+            assertEquals(2, replies.size());
+            assertFalse(replies.get(0).startsWith("ERROR"), replies.get(0));
+            assertEquals("ERROR:busy", replies.get(1));
+        }
+
+        @Test
+        void backpressure_resumesProducersOnceDrained() {
+            var depth = new java.util.concurrent.atomic.AtomicInteger();
+            var pressure = new Fuzzcode.Server.utilities.Backpressure(depth::get, 100);
+            var resumed = new java.util.concurrent.atomic.AtomicInteger();
+
+            pressure.whenDrained(resumed::incrementAndGet);
+            assertEquals(1, resumed.get(), "not busy: resume right away");
+
+            depth.set(80);
+            pressure.whenDrained(resumed::incrementAndGet);
+            depth.set(50);
+            pressure.onDequeued();
+            assertEquals(1, resumed.get(), "still above the low watermark");
+            assertTrue(pressure.isBusy());
+
+            depth.set(20);
+            pressure.onDequeued();
+            assertEquals(2, resumed.get());
+            assertFalse(pressure.gauge().busy());
+        }
+
 
+    }
+    @Nested
+    class UI {
+        private Order order(int id, LocalDate start, boolean deleted) {
+            return new Order(id, LocalDate.of(2025, 1, 1), start, null, null, null, deleted);
+        }
+        // Store changes are applied by a task queued on the EDT; this runs after it.
+        private void flushEdt() throws Exception {
+            javax.swing.SwingUtilities.invokeAndWait(() -> {});
+        }
+
+        @Test
+        void indexedStore_reportsEachChangeAndCoalescesBursts() throws Exception {
+            List<Fuzzcode.Client.ui.models.StoreChange<Order>> changes = new CopyOnWriteArrayList<>();
+            var store = new Fuzzcode.Client.ui.models.IndexedStore<Integer, Order>(Order::orderId, Order::deleted) {
+                @Override
+                protected void fire(List<Order> view, Fuzzcode.Client.ui.models.StoreChange<Order> change) {
+                    changes.add(change);
+                }
+            };
+            LocalDate d1 = LocalDate.of(2025, 2, 1);
+            LocalDate d2 = LocalDate.of(2025, 3, 1);
+
+            store.upsert(order(1, d1, false));
+            flushEdt();
+            assertEquals(1, changes.size());
+            assertEquals(List.of(order(1, d1, false)), changes.get(0).added());
+            assertFalse(changes.get(0).isStructural());
+
+            store.upsert(order(1, d2, false));
+            flushEdt();
+            assertEquals(2, changes.size());
+            assertEquals(List.of(order(1, d2, false)), changes.get(1).updated(), "an upsert of a known key is an update");
+            assertTrue(changes.get(1).added().isEmpty());
+
+            // Queued from one EDT task: applied together, as one change
+            javax.swing.SwingUtilities.invokeAndWait(() -> {
+                store.upsert(order(2, d1, false));
+                store.upsert(order(2, d2, false));
+                store.upsertAll(List.of(order(1, d2, true)));
+            });
+            flushEdt();
+            assertEquals(3, changes.size());
+            var burst = changes.get(2);
+            assertEquals(List.of(order(2, d2, false)), burst.added(), "added then updated in one batch stays an add");
+            assertTrue(burst.updated().isEmpty());
+            assertEquals(List.of(order(1, d2, false)), burst.removed(), "a tombstone removes the row");
+            assertTrue(burst.isStructural());
+            assertEquals(List.of(order(2, d2, false)), store.view());
+        }
+
+        @Test
+        void ordersTableModel_updatesRowsInPlace() throws Exception {
+            var store = Fuzzcode.Client.ui.Order.OrderStore.getInstance();
+            var model = new Fuzzcode.Client.ui.models.OrdersTableModel();
+            LocalDate d1 = LocalDate.of(2025, 2, 1);
+            LocalDate d2 = LocalDate.of(2025, 3, 1);
+            store.replaceAll(List.of(order(11, d1, false), order(12, d1, false)));
+            flushEdt();
+            assertEquals(2, model.getRowCount());
+
+            List<javax.swing.event.TableModelEvent> events = new CopyOnWriteArrayList<>();
+            model.addTableModelListener(events::add);
+            store.upsert(order(12, d2, false));
+            flushEdt();
+            assertEquals(1, events.size());
+            var update = events.get(0);
+            assertEquals(javax.swing.event.TableModelEvent.UPDATE, update.getType());
+            assertEquals(1, update.getFirstRow(), "only the changed row repaints, no full reload");
+            assertEquals(1, update.getLastRow());
+            assertEquals(d2, model.getValueAt(1, Fuzzcode.Client.ui.models.OrdersTableModel.COL_START));
+
+            store.upsert(order(13, d1, false));
+            flushEdt();
+            assertEquals(2, events.size());
+            assertEquals(javax.swing.event.TableModelEvent.INSERT, events.get(1).getType());
+            assertEquals(2, events.get(1).getFirstRow());
+            assertEquals(13, model.getOrderIdAtModelRow(2));
+        }
     }
     //@Nested
     //class UserSecurityTests {}